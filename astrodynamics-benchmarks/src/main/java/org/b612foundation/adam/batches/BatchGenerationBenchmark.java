@@ -0,0 +1,128 @@
+package org.b612foundation.adam.batches;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.common.OrbitDataHelper;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagationType;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import testing.OpmTestData;
+
+/**
+ * Generation of Monte Carlo draws and hypercube perturbations for batch propagations. Lives in the
+ * package of the generators to reach the package-private {@link StateCovarianceNormalDistribution}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchGenerationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class MonteCarloParameters {
+    @Param({"100", "10000"})
+    int draws;
+
+    PropagationParameters cartesian;
+    PropagationParameters keplerian;
+
+    @Setup
+    public void setUp() {
+      cartesian =
+          new PropagationParameters()
+              .setOpm(
+                  OpmTestData.buildOpmWithCartesian()
+                      .setCartesianCovariance(OpmTestData.CARTESIAN_COVARIANCE))
+              .setPropagationType(PropagationType.MONTE_CARLO);
+      cartesian.setMonteCarloDraws(draws);
+      keplerian =
+          new PropagationParameters()
+              .setOpm(OpmTestData.buildOpmWithKeplerianTA())
+              .setKeplerianSigma(OpmTestData.KEPLERIAN_SIGMA_TA)
+              .setPropagationType(PropagationType.MONTE_CARLO);
+      keplerian.setMonteCarloDraws(draws);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Covariance {
+    double[] means;
+    double[][] covariances;
+    StateCovarianceNormalDistribution distribution;
+
+    @Setup
+    public void setUp() {
+      OrbitParameterMessage opm = OpmTestData.buildOpmWithCartesian();
+      means = OrbitDataHelper.extractStateVector(opm.getState_vector());
+      covariances =
+          OrbitDataHelper.extractCartesianCovarianceMatrix(OpmTestData.CARTESIAN_COVARIANCE)
+              .getData();
+      distribution =
+          new StateCovarianceNormalDistribution(
+              means, covariances, StateCovarianceNormalDistribution.DEFAULT_TOLERANCE);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class HyperCubes {
+    OrbitParameterMessage faces;
+    OrbitParameterMessage corners;
+    HyperCubeGenerator generator;
+
+    @Setup
+    public void setUp() {
+      faces = OdmScenarioBuilder.buildOpmWithCovariance("FACES");
+      corners = OdmScenarioBuilder.buildOpmWithCovariance("CORNERS");
+      generator = new HyperCubeGenerator();
+    }
+  }
+
+  @Benchmark
+  public Collection<OrbitParameterMessage> monteCarloCartesianCovariance(
+      MonteCarloParameters parameters) {
+    return MonteCarloGenerator.generateMonteCarloDraws(parameters.cartesian);
+  }
+
+  @Benchmark
+  public Collection<OrbitParameterMessage> monteCarloKeplerianSigma(
+      MonteCarloParameters parameters) {
+    return MonteCarloGenerator.generateMonteCarloDraws(parameters.keplerian);
+  }
+
+  @Benchmark
+  public StateCovarianceNormalDistribution buildDistribution(Covariance covariance) {
+    return new StateCovarianceNormalDistribution(
+        covariance.means,
+        covariance.covariances,
+        StateCovarianceNormalDistribution.DEFAULT_TOLERANCE);
+  }
+
+  @Benchmark
+  public double[] sampleDistribution(Covariance covariance) {
+    return covariance.distribution.sample();
+  }
+
+  @Benchmark
+  public List<OrbitParameterMessage> hyperCubeFaces(HyperCubes hyperCubes) {
+    return hyperCubes.generator.getHypercubePerturbations(hyperCubes.faces);
+  }
+
+  @Benchmark
+  public List<OrbitParameterMessage> hyperCubeCorners(HyperCubes hyperCubes) {
+    return hyperCubes.generator.getHypercubePerturbations(hyperCubes.corners);
+  }
+}
@@ -0,0 +1,41 @@
+package org.b612foundation.adam.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line, but writes results as JSON
+ * to {@value #DEFAULT_RESULT_FILE} unless -rf or -rff say otherwise, so runs can be compared
+ * mechanically.
+ *
+ * <p>Example: {@code java -jar astrodynamics-benchmarks/target/benchmarks.jar OemWriter}
+ */
+public final class BenchmarkRunner {
+  static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  private BenchmarkRunner() {}
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+    if (commandLine.shouldList()) {
+      new Runner(commandLine).list();
+      return;
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result(DEFAULT_RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+}
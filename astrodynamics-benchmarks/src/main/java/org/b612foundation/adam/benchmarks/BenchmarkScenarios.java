@@ -0,0 +1,54 @@
+package org.b612foundation.adam.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OemDataBlock;
+import org.b612foundation.adam.opm.OemMetadata;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+
+/**
+ * Scales the example messages of {@link OdmScenarioBuilder} up to the sizes seen in production.
+ */
+final class BenchmarkScenarios {
+  private BenchmarkScenarios() {}
+
+  /**
+   * Returns an ephemeris with the header and metadata of {@link
+   * OdmScenarioBuilder#buildOemWithAccelerations()} and the given number of lines, one minute apart,
+   * on a circular orbit.
+   */
+  static OrbitEphemerisMessage buildOem(int lines) {
+    OrbitEphemerisMessage template = OdmScenarioBuilder.buildOemWithAccelerations();
+    OemMetadata metadata = template.getBlocks().get(0).getMetadata();
+    DateTimeFormatter format = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    LocalDateTime start = LocalDateTime.parse(metadata.getStart_time());
+    LocalDateTime stop = start.plusMinutes(lines - 1);
+    metadata.setStart_time(start.format(format));
+    metadata.setUsable_start_time(metadata.getStart_time());
+    metadata.setStop_time(stop.format(format));
+    metadata.setUsable_stop_time(metadata.getStop_time());
+
+    OemDataBlock block = new OemDataBlock().setMetadata(metadata);
+    double radius = 7000.0; // km
+    double speed = 7.5; // km/s
+    for (int i = 0; i < lines; i++) {
+      double angle = i * 60 * speed / radius;
+      block.addLine(
+          start.plusMinutes(i).format(format),
+          radius * Math.cos(angle),
+          radius * Math.sin(angle),
+          0,
+          -speed * Math.sin(angle),
+          speed * Math.cos(angle),
+          0);
+    }
+
+    OrbitEphemerisMessage oem =
+        new OrbitEphemerisMessage()
+            .setCcsds_oem_vers(template.getCcsds_oem_vers())
+            .setHeader(template.getHeader());
+    oem.addBlock(block);
+    return oem;
+  }
+}
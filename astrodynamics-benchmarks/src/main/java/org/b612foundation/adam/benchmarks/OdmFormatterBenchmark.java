@@ -0,0 +1,78 @@
+package org.b612foundation.adam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.opm.OdmFormatter;
+import org.b612foundation.adam.opm.OdmParseException;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OemWriter;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parsing of OPM and OEM strings. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OdmFormatterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class OpmStrings {
+    String simpleOpm;
+    String opmWithManeuvers;
+    String opmWithCovariance;
+
+    @Setup
+    public void setUp() {
+      simpleOpm = OdmScenarioBuilder.getSimpleOpm();
+      opmWithManeuvers = OdmScenarioBuilder.getOpmWithKeplerianAndManeuvers();
+      opmWithCovariance = OdmScenarioBuilder.getOpmWithCovariance("CORNERS");
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class OemString {
+    @Param({"100", "10000"})
+    int lines;
+
+    String oem;
+
+    @Setup
+    public void setUp() {
+      oem = OemWriter.toCcsdsOemString(BenchmarkScenarios.buildOem(lines));
+    }
+  }
+
+  @Benchmark
+  public OrbitParameterMessage parseSimpleOpm(OpmStrings strings) throws OdmParseException {
+    return OdmFormatter.parseOpmString(strings.simpleOpm);
+  }
+
+  @Benchmark
+  public OrbitParameterMessage parseOpmWithManeuvers(OpmStrings strings)
+      throws OdmParseException {
+    return OdmFormatter.parseOpmString(strings.opmWithManeuvers);
+  }
+
+  @Benchmark
+  public OrbitParameterMessage parseOpmWithCovariance(OpmStrings strings)
+      throws OdmParseException {
+    return OdmFormatter.parseOpmString(strings.opmWithCovariance);
+  }
+
+  @Benchmark
+  public OrbitEphemerisMessage parseOem(OemString string) throws OdmParseException {
+    return OdmFormatter.parseOemString(string.oem);
+  }
+}
@@ -0,0 +1,45 @@
+package org.b612foundation.adam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.opm.OemWriter;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Writing ephemerides as CCSDS OEM and STK .e strings. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OemWriterBenchmark {
+  @Param({"100", "10000"})
+  int lines;
+
+  OrbitEphemerisMessage oem;
+
+  @Setup
+  public void setUp() {
+    oem = BenchmarkScenarios.buildOem(lines);
+  }
+
+  @Benchmark
+  public String toCcsdsOemString() {
+    return OemWriter.toCcsdsOemString(oem);
+  }
+
+  @Benchmark
+  public String toStkEphemerisString() {
+    return OemWriter.toStkEphemerisString(oem);
+  }
+}
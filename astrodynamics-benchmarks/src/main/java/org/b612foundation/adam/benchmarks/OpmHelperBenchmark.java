@@ -0,0 +1,57 @@
+package org.b612foundation.adam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.opm.OpmHelper;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.util.OrekitDataLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import testing.OpmTestData;
+
+/**
+ * Conversion of OPM states to Cartesian state vectors. Needs the Orekit data that {@link
+ * OrekitDataLoader} loads, which is done once in setup so it is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpmHelperBenchmark {
+  OrbitParameterMessage keplerianTrueAnomaly;
+  OrbitParameterMessage keplerianMeanAnomaly;
+  OrbitParameterMessage cartesian;
+
+  @Setup
+  public void setUp() {
+    OrekitDataLoader.initialize();
+    keplerianTrueAnomaly = OpmTestData.buildOpmWithKeplerianTA();
+    keplerianMeanAnomaly = OpmTestData.buildOpmWithKeplerianMA();
+    cartesian = OpmTestData.buildOpmWithCartesian();
+  }
+
+  @Benchmark
+  public StateVector keplerianTrueAnomalyToCartesian() {
+    return OpmHelper.getCartesianStateVector(keplerianTrueAnomaly);
+  }
+
+  @Benchmark
+  public StateVector keplerianMeanAnomalyToCartesian() {
+    return OpmHelper.getCartesianStateVector(keplerianMeanAnomaly);
+  }
+
+  @Benchmark
+  public StateVector cartesianPassThrough() {
+    return OpmHelper.getCartesianStateVector(cartesian);
+  }
+}
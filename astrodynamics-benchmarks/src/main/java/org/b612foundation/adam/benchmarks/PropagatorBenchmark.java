@@ -0,0 +1,99 @@
+package org.b612foundation.adam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.datamodel.PropagationConfigurationFactory;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.stk.propagators.StkPropagator;
+import org.b612foundation.adam.stk.propagators.StkSegmentPropagator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import testing.OpmTestData;
+
+/**
+ * End-to-end propagation of asteroid 101 with all major bodies, from the OPM to the exported OEM.
+ * Each invocation takes seconds, so iterations are few and measured one call at a time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PropagatorBenchmark {
+  private static final String START_TIME = "2001-01-02T01:13:46.620000Z";
+
+  /** Inputs shared by both propagators: one and ten years, accurate and coarse integration. */
+  @State(Scope.Benchmark)
+  public static class Inputs {
+    @Param({"2002-01-02T01:13:46.620000Z", "2011-01-02T01:13:46.620000Z"})
+    String endTime;
+
+    @Param({"PRECISE", "SCREENING"})
+    PropagatorConfiguration.IntegratorProfile integratorProfile;
+
+    PropagatorConfiguration config;
+    PropagationParameters params;
+
+    @Setup
+    public void setUp() {
+      config =
+          PropagationConfigurationFactory.getAllMajorBodiesConfig()
+              .setIntegratorProfile(integratorProfile);
+      params =
+          new PropagationParameters()
+              .setStart_time(START_TIME)
+              .setEnd_time(endTime)
+              .setStep_duration_sec(86400)
+              .setOpm(OpmTestData.buildOpmWithCartesian());
+    }
+  }
+
+  /** {@link StkSegmentPropagator} additionally varies the output mode. */
+  @State(Scope.Benchmark)
+  public static class SegmentInputs extends Inputs {
+    @Param({"FULL_EPHEMERIS", "EVENTS_ONLY"})
+    PropagationOutputMode outputMode;
+
+    StkSegmentPropagator propagator;
+
+    @Setup
+    public void setUpSegmentPropagator() {
+      params.setOutputMode(outputMode);
+      propagator = new StkSegmentPropagator();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class InterplanetaryInputs extends Inputs {
+    StkPropagator propagator;
+
+    @Setup
+    public void setUpPropagator() throws Exception {
+      propagator = new StkPropagator();
+    }
+  }
+
+  @Benchmark
+  public OrbitEphemerisMessage segmentPropagator(SegmentInputs inputs)
+      throws AdamPropagationException {
+    return inputs.propagator.propagate(inputs.params, inputs.config, "benchmark");
+  }
+
+  @Benchmark
+  public OrbitEphemerisMessage propagator(InterplanetaryInputs inputs)
+      throws AdamPropagationException {
+    return inputs.propagator.propagate(inputs.params, inputs.config, "benchmark");
+  }
+}
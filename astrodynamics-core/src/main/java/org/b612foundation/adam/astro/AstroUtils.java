@@ -1,6 +1,7 @@
 package org.b612foundation.adam.astro;
 
 import java.time.*;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.JulianFields;
 
@@ -65,4 +66,19 @@ public final class AstroUtils {
     long seconds = ChronoUnit.MILLIS.between(julianEpoch, dateTime);
     return seconds / DAY_TO_MILLIS;
   }
+
+  /**
+   * Parses an ISO formatted date/time, with or without a zone or offset. A zone, if present, is
+   * dropped without converting the time, as ODM times are given in the message's time system.
+   *
+   * @param dateTime ISO formatted date/time, such as 2000-01-01T12:00:00 or 2000-01-01T12:00:00Z
+   * @return LocalDateTime version of the date
+   */
+  public static LocalDateTime parseIsoDateTime(String dateTime) {
+    try {
+      return LocalDateTime.parse(dateTime);
+    } catch (DateTimeParseException e) {
+      return ZonedDateTime.parse(dateTime).toLocalDateTime();
+    }
+  }
 }
@@ -0,0 +1,169 @@
+package org.b612foundation.adam.astro;
+
+import java.io.Serializable;
+import java.util.Optional;
+
+/**
+ * Encounter geometry of a flyby on the target plane (b-plane) of the planet, the plane through the
+ * planet's center normal to the incoming asymptote of the planetocentric hyperbola.
+ *
+ * <p>Coordinates follow Öpik theory as used in impact monitoring: η is along the incoming
+ * asymptote, ξ is along the planet's heliocentric velocity crossed with η, and ζ completes the
+ * frame, opposite the projection of the planet's velocity onto the plane. ξ is then the local
+ * minimum orbit intersection distance and ζ measures the early or late arrival at the crossing.
+ *
+ * <p>Units follow the inputs: lengths in the units of the state, velocities in those per second.
+ */
+public final class TargetPlane implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final double xi;
+  private final double zeta;
+  private final double impactParameter;
+  private final double vInfinity;
+  private final double minimumDistance;
+  private final double gm;
+
+  private TargetPlane(
+      double xi,
+      double zeta,
+      double impactParameter,
+      double vInfinity,
+      double minimumDistance,
+      double gm) {
+    this.xi = xi;
+    this.zeta = zeta;
+    this.impactParameter = impactParameter;
+    this.vInfinity = vInfinity;
+    this.minimumDistance = minimumDistance;
+    this.gm = gm;
+  }
+
+  /**
+   * Maps an encounter to the target plane.
+   *
+   * @param relativeState position and velocity relative to the planet, at any point of the flyby.
+   * @param planetVelocity heliocentric velocity of the planet, in the axes of the state.
+   * @param gm gravitational parameter of the planet, in units consistent with the state.
+   * @return the target plane coordinates, or empty if the object is bound to the planet and has no
+   *     incoming asymptote.
+   */
+  public static Optional<TargetPlane> of(
+      double[] relativeState, double[] planetVelocity, double gm) {
+    double[] r = {relativeState[0], relativeState[1], relativeState[2]};
+    double[] v = {relativeState[3], relativeState[4], relativeState[5]};
+    double rMag = norm(r);
+    double v2 = dot(v, v);
+    double vInfinity2 = v2 - 2 * gm / rMag;
+    if (!(vInfinity2 > 0)) {
+      return Optional.empty();
+    }
+    double vInfinity = Math.sqrt(vInfinity2);
+
+    double[] h = cross(r, v);
+    double hMag = norm(h);
+    double[] incoming;
+    double[] b;
+    if (hMag <= 1e-12 * rMag * Math.sqrt(v2)) {
+      // Radial trajectory: it comes in along its velocity and hits the center.
+      incoming = scale(v, 1 / Math.sqrt(v2));
+      b = new double[3];
+    } else {
+      double rv = dot(r, v);
+      double[] eVector = new double[3];
+      for (int i = 0; i < 3; i++) {
+        eVector[i] = ((v2 - gm / rMag) * r[i] - rv * v[i]) / gm;
+      }
+      double e = norm(eVector);
+      double[] unitH = scale(h, 1 / hMag);
+      double[] unitE = scale(eVector, 1 / e);
+      double[] unitQ = cross(unitH, unitE);
+      double sqrtE2 = Math.sqrt(e * e - 1);
+      incoming = new double[3];
+      for (int i = 0; i < 3; i++) {
+        incoming[i] = (unitE[i] + sqrtE2 * unitQ[i]) / e;
+      }
+      // The asymptote passes the planet at b along S x h, so that b x S is along h.
+      b = scale(cross(incoming, unitH), hMag / vInfinity);
+    }
+
+    double[] xiAxis = cross(planetVelocity, incoming);
+    xiAxis = scale(xiAxis, 1 / norm(xiAxis));
+    double[] zetaAxis = cross(xiAxis, incoming);
+    double impactParameter = norm(b);
+    double focus = gm / vInfinity2;
+    double minimumDistance =
+        focus * (Math.sqrt(1 + (impactParameter / focus) * (impactParameter / focus)) - 1);
+    return Optional.of(
+        new TargetPlane(
+            dot(b, xiAxis), dot(b, zetaAxis), impactParameter, vInfinity, minimumDistance, gm));
+  }
+
+  /** Coordinate along the planet's velocity crossed with the incoming asymptote. */
+  public double getXi() {
+    return xi;
+  }
+
+  /** Coordinate opposite the projection of the planet's velocity onto the target plane. */
+  public double getZeta() {
+    return zeta;
+  }
+
+  /** Distance from the planet's center at which the incoming asymptote crosses the plane. */
+  public double getImpactParameter() {
+    return impactParameter;
+  }
+
+  /** Speed relative to the planet far from it, before gravitational focusing. */
+  public double getVInfinity() {
+    return vInfinity;
+  }
+
+  /**
+   * Pericenter distance of the planetocentric hyperbola, i.e. the impact parameter projected to
+   * the true minimum distance by gravitational focusing.
+   */
+  public double getMinimumDistance() {
+    return minimumDistance;
+  }
+
+  /**
+   * Radius of the planet's disk on the target plane: incoming asymptotes crossing within it lead to
+   * impact, since gravitational focusing bends them onto the surface.
+   *
+   * @param bodyRadius radius of the planet, in the units of the state.
+   */
+  public double getCaptureRadius(double bodyRadius) {
+    return bodyRadius * Math.sqrt(1 + 2 * gm / (bodyRadius * vInfinity * vInfinity));
+  }
+
+  /** Whether the flyby hits a planet of the given radius. */
+  public boolean isImpact(double bodyRadius) {
+    return impactParameter <= getCaptureRadius(bodyRadius);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TargetPlane[xi=%g, zeta=%g, b=%g, vInfinity=%g, minimumDistance=%g]",
+        xi, zeta, impactParameter, vInfinity, minimumDistance);
+  }
+
+  private static double dot(double[] a, double[] b) {
+    return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+  }
+
+  private static double norm(double[] a) {
+    return Math.sqrt(dot(a, a));
+  }
+
+  private static double[] cross(double[] a, double[] b) {
+    return new double[] {
+      a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]
+    };
+  }
+
+  private static double[] scale(double[] a, double factor) {
+    return new double[] {a[0] * factor, a[1] * factor, a[2] * factor};
+  }
+}
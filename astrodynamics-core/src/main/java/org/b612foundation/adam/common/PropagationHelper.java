@@ -1,10 +1,13 @@
 package org.b612foundation.adam.common;
 
+import org.b612foundation.adam.opm.CartesianCovariance;
 import org.b612foundation.adam.opm.OemDataBlock;
 import org.b612foundation.adam.opm.OemDataLine;
+import org.b612foundation.adam.opm.OemMetadata;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 import org.b612foundation.adam.opm.StateVector;
 
+import java.util.Collections;
 import java.util.List;
 
 public class PropagationHelper {
@@ -18,6 +21,58 @@ public class PropagationHelper {
     return lines.get(lines.size() - 1);
   }
 
+  /**
+   * Appends the ephemeris of a resumed propagation to the ephemeris it continues, in place, and
+   * returns the extended ephemeris.
+   *
+   * <p>Lines and covariances of {@code extension} go to the last block of {@code previous}, whose
+   * stop times are moved to those of the extension. A leading extension line at the same date as the
+   * last previous line is dropped, since both propagations include the state they meet at.
+   */
+  public static OrbitEphemerisMessage appendEphemeris(
+      OrbitEphemerisMessage previous, OrbitEphemerisMessage extension) {
+    List<OemDataBlock> blocks = previous.getBlocks();
+    OemDataBlock last = blocks.get(blocks.size() - 1);
+    String seam = extractFinalState(previous).getDate();
+    for (OemDataBlock block : extension.getBlocks()) {
+      for (OemDataLine line : block.getLines()) {
+        if (line.getDate().equals(seam)) {
+          continue;
+        }
+        last.getLines().add(line);
+      }
+      for (CartesianCovariance covariance : block.getCovariances()) {
+        last.addCovariance(covariance);
+      }
+      last.getMetadata().setStop_time(block.getMetadata().getStop_time());
+      last.getMetadata().setUsable_stop_time(block.getMetadata().getUsable_stop_time());
+    }
+    return previous;
+  }
+
+  /**
+   * Reverses the time order of an ephemeris in place, for an ephemeris propagated in the opposite
+   * direction to the one it is to be joined with, and returns it.
+   *
+   * <p>Blocks, and lines and covariances within each block, are reversed, and the start and stop
+   * times of each block are swapped.
+   */
+  public static OrbitEphemerisMessage reverseEphemeris(OrbitEphemerisMessage oem) {
+    Collections.reverse(oem.getBlocks());
+    for (OemDataBlock block : oem.getBlocks()) {
+      Collections.reverse(block.getLines());
+      Collections.reverse(block.getCovariances());
+      OemMetadata metadata = block.getMetadata();
+      String start = metadata.getStart_time();
+      metadata.setStart_time(metadata.getStop_time());
+      metadata.setStop_time(start);
+      String usableStart = metadata.getUsable_start_time();
+      metadata.setUsable_start_time(metadata.getUsable_stop_time());
+      metadata.setUsable_stop_time(usableStart);
+    }
+    return oem;
+  }
+
   public static StateVector toStateVector(OemDataLine line) {
     StateVector sv = new StateVector();
     sv.setEpoch(line.getDate());
@@ -0,0 +1,17 @@
+package org.b612foundation.adam.datamodel;
+
+/** What a propagation keeps and returns besides the detected events. */
+public enum PropagationOutputMode {
+  /** Store every integrator step and return the full ephemeris. */
+  FULL_EPHEMERIS,
+  /**
+   * Do not store the trajectory. The returned ephemeris contains a single line with the final
+   * state.
+   */
+  FINAL_STATE_ONLY,
+  /**
+   * Do not store the trajectory or export an ephemeris. Only the events and the final state are
+   * available from the propagator, and the returned ephemeris has no data blocks.
+   */
+  EVENTS_ONLY
+}
@@ -31,6 +31,11 @@ public class PropagationParameters implements Serializable {
   private boolean stopOnImpact;
   /** Whether to record close approaches. Defaults to true. */
   private boolean enableLogCloseApproaches = true;
+  /**
+   * Whether to also record close approaches to the Moon and all planets, within their spheres of
+   * influence. Independent of the Earth close approaches above. Defaults to false.
+   */
+  private boolean enableLogPlanetaryCloseApproaches;
   /** Whether to stop on closest approach. Assumes logging of close approaches is set to true. */
   private boolean stopOnCloseApproach;
   /** The object's altitude (meters) from the target body's surface, at which to stop on impact. */
@@ -43,6 +48,16 @@ public class PropagationParameters implements Serializable {
   /** The distance (meters) from the target body at which to log the close approach. */
   private double closeApproachRadiusFromTargetMeters;
 
+  /** What to keep from the propagation. Defaults to the full ephemeris. */
+  private PropagationOutputMode outputMode = PropagationOutputMode.FULL_EPHEMERIS;
+
+  /**
+   * Whether to integrate both ways from an epoch strictly between the start and end times
+   * concurrently, stitching the two legs into one ephemeris. Ignored by propagators that do not
+   * support it and when the epoch is outside the span.
+   */
+  private boolean bidirectional;
+
   /** The type of propagation to perform. */
   private PropagationType propagationType;
 
@@ -65,10 +80,13 @@ public class PropagationParameters implements Serializable {
     copy.setOpm(opm.deepCopy());
     copy.setStopOnImpact(stopOnImpact);
     copy.setEnableLogCloseApproaches(enableLogCloseApproaches);
+    copy.setEnableLogPlanetaryCloseApproaches(enableLogPlanetaryCloseApproaches);
     copy.setStopOnCloseApproach(stopOnCloseApproach);
     copy.setStopOnImpactAltitudeMeters(stopOnImpactAltitudeMeters);
     copy.setStopOnCloseApproachAfterEpoch(stopOnCloseApproachAfterEpoch);
     copy.setCloseApproachRadiusFromTargetMeters(closeApproachRadiusFromTargetMeters);
+    copy.setOutputMode(outputMode);
+    copy.setBidirectional(bidirectional);
     copy.setPropagationType(propagationType);
     copy.setMonteCarloDraws(monteCarloDraws);
     copy.setKeplerianSigma(keplerianSigma);
@@ -153,6 +171,16 @@ public class PropagationParameters implements Serializable {
     return this;
   }
 
+  public boolean getEnableLogPlanetaryCloseApproaches() {
+    return enableLogPlanetaryCloseApproaches;
+  }
+
+  public PropagationParameters setEnableLogPlanetaryCloseApproaches(
+      boolean enableLogPlanetaryCloseApproaches) {
+    this.enableLogPlanetaryCloseApproaches = enableLogPlanetaryCloseApproaches;
+    return this;
+  }
+
   public boolean getStopOnCloseApproach() {
     return stopOnCloseApproach;
   }
@@ -189,6 +217,24 @@ public class PropagationParameters implements Serializable {
     return this;
   }
 
+  public PropagationOutputMode getOutputMode() {
+    return outputMode;
+  }
+
+  public PropagationParameters setOutputMode(PropagationOutputMode outputMode) {
+    this.outputMode = outputMode;
+    return this;
+  }
+
+  public boolean isBidirectional() {
+    return bidirectional;
+  }
+
+  public PropagationParameters setBidirectional(boolean bidirectional) {
+    this.bidirectional = bidirectional;
+    return this;
+  }
+
   public long getMonteCarloDraws() {
     return monteCarloDraws;
   }
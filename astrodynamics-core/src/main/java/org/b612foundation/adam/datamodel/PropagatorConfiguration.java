@@ -21,6 +21,97 @@ public class PropagatorConfiguration extends AdamObject {
     SPHERICAL_HARMONICS
   }
 
+  /**
+   * Numerical integrator settings to use. Each profile bundles the relative and absolute error
+   * tolerances and the bounds on the integrator step size, in seconds.
+   */
+  public enum IntegratorProfile {
+    /** Matches STK Desktop settings. Used for full-fidelity impact and close approach runs. */
+    PRECISE(1e-13, 1e-11, 1, 1, 86400),
+    /** Looser tolerances for routine ephemeris generation where meter-level accuracy suffices. */
+    STANDARD(1e-11, 1e-9, 60, 1, 86400),
+    /**
+     * Coarse settings for first-pass screening of large populations. Takes far fewer steps, but
+     * results should only be used to decide whether a more precise run is needed.
+     */
+    SCREENING(1e-8, 1e-6, 3600, 60, 10 * 86400);
+
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+    private final double initialStepSize;
+    private final double minimumStepSize;
+    private final double maximumStepSize;
+
+    IntegratorProfile(
+        double relativeTolerance,
+        double absoluteTolerance,
+        double initialStepSize,
+        double minimumStepSize,
+        double maximumStepSize) {
+      this.relativeTolerance = relativeTolerance;
+      this.absoluteTolerance = absoluteTolerance;
+      this.initialStepSize = initialStepSize;
+      this.minimumStepSize = minimumStepSize;
+      this.maximumStepSize = maximumStepSize;
+    }
+
+    public double getRelativeTolerance() {
+      return relativeTolerance;
+    }
+
+    public double getAbsoluteTolerance() {
+      return absoluteTolerance;
+    }
+
+    /** Initial step size, seconds. */
+    public double getInitialStepSize() {
+      return initialStepSize;
+    }
+
+    /** Minimum step size, seconds. */
+    public double getMinimumStepSize() {
+      return minimumStepSize;
+    }
+
+    /** Maximum step size, seconds. */
+    public double getMaximumStepSize() {
+      return maximumStepSize;
+    }
+  }
+
+  /**
+   * Equations of motion to integrate. Only the Sun-centered N-body propagator offers a choice; the
+   * AGI propagators integrate the total acceleration and reject anything else.
+   */
+  public enum Formulation {
+    /** The total acceleration, central body included. */
+    COWELL,
+    /**
+     * The deviation from an osculating two-body reference orbit, rectified when it grows. Takes
+     * longer steps for the same error where perturbations are small compared to the central body's
+     * gravity.
+     */
+    ENCKE
+  }
+
+  /**
+   * Numerical integration method. The AGI propagators only integrate with Runge-Kutta; the
+   * Sun-centered N-body propagator offers both.
+   */
+  public enum IntegratorMethod {
+    /**
+     * Runge-Kutta with adaptive steps: Dormand-Prince 8(5,3) in the N-body propagator, and
+     * Runge-Kutta-Fehlberg 7(8) in the AGI propagators. Robust, but with many force evaluations
+     * per step.
+     */
+    RUNGE_KUTTA,
+    /**
+     * Adams-Moulton multistep method, with few force evaluations per step on smooth arcs. Falls
+     * back to Runge-Kutta near encounters with the perturbing bodies.
+     */
+    ADAMS
+  }
+
   /** Human-readable description. Not used in hash code or equal. */
   private String description;
 
@@ -48,6 +139,18 @@ public class PropagatorConfiguration extends AdamObject {
   private PlanetGravityMode moon = PlanetGravityMode.POINT_MASS;
   /** Names of asteroids we want to include. */
   private List<String> asteroids = new ArrayList<>();
+  /** Tolerances and step size bounds for the numerical integrator. */
+  private IntegratorProfile integratorProfile = IntegratorProfile.PRECISE;
+  /** Equations of motion to integrate. */
+  private Formulation formulation = Formulation.COWELL;
+  /** Numerical integration method. */
+  private IntegratorMethod integratorMethod = IntegratorMethod.RUNGE_KUTTA;
+  /**
+   * Distance from a perturbing body, in meters, within which the N-body propagator regularizes the
+   * integration by a Sundman transformation. 0 never regularizes. Not supported by the AGI
+   * propagators.
+   */
+  private double regularizationDistanceMeters;
 
   public String getDescription() {
     return description;
@@ -186,6 +289,66 @@ public class PropagatorConfiguration extends AdamObject {
     return this;
   }
 
+  public IntegratorProfile getIntegratorProfile() {
+    return integratorProfile;
+  }
+
+  public PropagatorConfiguration setIntegratorProfile(IntegratorProfile integratorProfile) {
+    this.integratorProfile = integratorProfile;
+    return this;
+  }
+
+  public Formulation getFormulation() {
+    return formulation;
+  }
+
+  public PropagatorConfiguration setFormulation(Formulation formulation) {
+    this.formulation = formulation;
+    return this;
+  }
+
+  public IntegratorMethod getIntegratorMethod() {
+    return integratorMethod;
+  }
+
+  public PropagatorConfiguration setIntegratorMethod(IntegratorMethod integratorMethod) {
+    this.integratorMethod = integratorMethod;
+    return this;
+  }
+
+  public double getRegularizationDistanceMeters() {
+    return regularizationDistanceMeters;
+  }
+
+  public PropagatorConfiguration setRegularizationDistanceMeters(
+      double regularizationDistanceMeters) {
+    this.regularizationDistanceMeters = regularizationDistanceMeters;
+    return this;
+  }
+
+  public PropagatorConfiguration deepCopy() {
+    PropagatorConfiguration copy = new PropagatorConfiguration();
+    copy.setUuid(getUuid());
+    copy.setDescription(description);
+    copy.setSun(sun);
+    copy.setMercury(mercury);
+    copy.setVenus(venus);
+    copy.setEarth(earth);
+    copy.setMars(mars);
+    copy.setJupiter(jupiter);
+    copy.setSaturn(saturn);
+    copy.setUranus(uranus);
+    copy.setNeptune(neptune);
+    copy.setPluto(pluto);
+    copy.setMoon(moon);
+    copy.setAsteroids(new ArrayList<>(asteroids));
+    copy.setIntegratorProfile(integratorProfile);
+    copy.setFormulation(formulation);
+    copy.setIntegratorMethod(integratorMethod);
+    copy.setRegularizationDistanceMeters(regularizationDistanceMeters);
+    return copy;
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(
@@ -201,7 +364,11 @@ public class PropagatorConfiguration extends AdamObject {
         neptune,
         pluto,
         moon,
-        asteroids);
+        asteroids,
+        integratorProfile,
+        formulation,
+        integratorMethod,
+        regularizationDistanceMeters);
   }
 
   @Override
@@ -222,6 +389,10 @@ public class PropagatorConfiguration extends AdamObject {
         && Objects.equals(neptune, other.neptune)
         && Objects.equals(pluto, other.pluto)
         && Objects.equals(moon, other.moon)
-        && Objects.equals(asteroids, other.asteroids);
+        && Objects.equals(asteroids, other.asteroids)
+        && Objects.equals(integratorProfile, other.integratorProfile)
+        && Objects.equals(formulation, other.formulation)
+        && Objects.equals(integratorMethod, other.integratorMethod)
+        && regularizationDistanceMeters == other.regularizationDistanceMeters;
   }
 }
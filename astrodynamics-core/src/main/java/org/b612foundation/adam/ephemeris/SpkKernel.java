@@ -0,0 +1,482 @@
+package org.b612foundation.adam.ephemeris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import org.b612foundation.adam.propagators.BodyEphemeris;
+
+/**
+ * Reader of binary SPK kernels, the NAIF DAF files in which JPL distributes planetary and asteroid
+ * ephemerides, for segments of type 2 (Chebyshev position), type 3 (Chebyshev position and
+ * velocity) and type 13 (Hermite interpolation of states, as {@link SpkWriter} writes).
+ *
+ * <p>The file is memory-mapped and segments are evaluated in place, so opening a kernel only reads
+ * its summaries and evaluating a state allocates nothing, type 13 segments interpolating in a
+ * buffer per thread. A kernel only does absolute reads of its buffer once open, so one instance can
+ * be shared by any number of threads.
+ *
+ * <p>States are in km and km/s, in the frame of the segments (normally ICRF), at times in TDB
+ * seconds past J2000. States of a body relative to any other are chained through the centers of
+ * the segments up to their first common center, e.g. the Moon relative to Earth through the
+ * Earth-Moon barycenter. Every segment in a chain must be in the same frame: states in different
+ * frames, such as J2000 and ECLIPJ2000, cannot be summed, so such chains are rejected. Bodies are identified by their NAIF ids, e.g. 10 for the Sun, 399 for
+ * Earth and 2000001 for Ceres.
+ *
+ * <p>Files are limited to 2 GB, the most a single buffer can map.
+ */
+public final class SpkKernel {
+  private static final Logger log = Logger.getLogger(SpkKernel.class.getName());
+
+  /** NAIF id of the solar system barycenter, the root of all segment chains. */
+  public static final int SOLAR_SYSTEM_BARYCENTER = 0;
+
+  // NAIF frame codes start at 1, so no segment is in this frame.
+  private static final int NO_FRAME = 0;
+
+  static final int RECORD_BYTES = 1024;
+  private static final int DOUBLE_BYTES = 8;
+
+  private final ByteBuffer buffer;
+  // Segments of each target, later segments taking precedence as in the SPK specification.
+  private final Map<Integer, Segment[]> segments;
+
+  private SpkKernel(ByteBuffer buffer, Map<Integer, Segment[]> segments) {
+    this.buffer = buffer;
+    this.segments = segments;
+  }
+
+  /** Maps the SPK file and reads its segment summaries. */
+  public static SpkKernel open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("SPK file too large to map: " + path);
+      }
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString());
+    }
+  }
+
+  /** Reads an SPK kernel already in memory, e.g. from a resource. */
+  public static SpkKernel read(ByteBuffer contents, String name) throws IOException {
+    ByteBuffer buffer = contents.duplicate().order(byteOrder(contents, name));
+    String idWord = ascii(buffer, 0, 8);
+    if (!idWord.startsWith("DAF/SPK") && !idWord.startsWith("NAIF/DAF")) {
+      throw new IOException("Not an SPK file: " + name + " starts with " + idWord.trim());
+    }
+    int nd = buffer.getInt(8);
+    int ni = buffer.getInt(12);
+    if (nd != 2 || ni != 6) {
+      throw new IOException("Not an SPK file: " + name + " has ND=" + nd + ", NI=" + ni);
+    }
+    int summaryDoubles = nd + (ni + 1) / 2;
+
+    Map<Integer, List<Segment>> byTarget = new HashMap<>();
+    int skipped = 0;
+    int record = buffer.getInt(76);
+    while (record > 0) {
+      int base = (record - 1) * RECORD_BYTES;
+      int next = (int) buffer.getDouble(base);
+      int count = (int) buffer.getDouble(base + 2 * DOUBLE_BYTES);
+      for (int i = 0; i < count; i++) {
+        int summary = base + (3 + i * summaryDoubles) * DOUBLE_BYTES;
+        int ints = summary + nd * DOUBLE_BYTES;
+        int type = buffer.getInt(ints + 12);
+        int target = buffer.getInt(ints);
+        int center = buffer.getInt(ints + 4);
+        int frame = buffer.getInt(ints + 8);
+        double startEt = buffer.getDouble(summary);
+        double endEt = buffer.getDouble(summary + DOUBLE_BYTES);
+        int startAddress = buffer.getInt(ints + 16);
+        int endAddress = buffer.getInt(ints + 20);
+        Segment segment;
+        if (type == 2 || type == 3) {
+          segment =
+              new ChebyshevSegment(
+                  buffer, target, center, frame, type, startEt, endEt, startAddress, endAddress);
+        } else if (type == 13) {
+          segment =
+              new HermiteSegment(
+                  buffer, target, center, frame, startEt, endEt, startAddress, endAddress);
+        } else {
+          skipped++;
+          continue;
+        }
+        byTarget.computeIfAbsent(segment.target, body -> new ArrayList<>()).add(segment);
+      }
+      record = next;
+    }
+    if (skipped > 0) {
+      log.info("Skipped " + skipped + " segments of unsupported types in " + name);
+    }
+    Map<Integer, Segment[]> segments = new HashMap<>();
+    byTarget.forEach((target, list) -> segments.put(target, list.toArray(new Segment[0])));
+    return new SpkKernel(buffer, segments);
+  }
+
+  /** NAIF ids of the bodies with segments in this kernel. */
+  public Set<Integer> getTargets() {
+    return Collections.unmodifiableSet(segments.keySet());
+  }
+
+  /** Whether the kernel has a segment for the body, relative to any center, at the given time. */
+  public boolean covers(int target, double et) {
+    return findSegment(target, et) != null;
+  }
+
+  /**
+   * Writes the state of the target relative to the observer at the given time.
+   *
+   * @param et TDB seconds past J2000.
+   * @param out receives the position (km) and velocity (km/s).
+   * @throws IllegalArgumentException if a body in either chain has no segment at the time, or if
+   *     the segments of the chains are in different frames.
+   */
+  public void state(int target, int observer, double et, double[] out) {
+    for (int i = 0; i < 6; i++) {
+      out[i] = 0;
+    }
+    // The first center in the target's chain that is also in the observer's.
+    int common = target;
+    while (!isInChain(observer, common, et)) {
+      Segment segment = findSegment(common, et);
+      if (segment == null) {
+        throw new IllegalArgumentException(
+            "No SPK segments relate body " + target + " to " + observer + " at " + et);
+      }
+      common = segment.center;
+    }
+    int targetFrame = addChain(target, common, et, out, 1, NO_FRAME);
+    addChain(observer, common, et, out, -1, targetFrame);
+  }
+
+  /**
+   * Returns the target's ephemeris relative to the observer for a propagation, in meters and m/s.
+   *
+   * @param epochEt the propagation epoch, in TDB seconds past J2000.
+   */
+  public BodyEphemeris bodyEphemeris(int target, int observer, double epochEt) {
+    return (epochSeconds, out) -> {
+      state(target, observer, epochEt + epochSeconds, out);
+      for (int i = 0; i < 6; i++) {
+        out[i] *= 1e3;
+      }
+    };
+  }
+
+  /** Whether the chain of segment centers from the body at the time reaches the ancestor. */
+  private boolean isInChain(int body, int ancestor, double et) {
+    while (body != ancestor) {
+      Segment segment = findSegment(body, et);
+      if (segment == null) {
+        return false;
+      }
+      body = segment.center;
+    }
+    return true;
+  }
+
+  /**
+   * Adds the sign times the state of the body relative to an ancestor in its chain.
+   *
+   * @param frame the frame the segments must be in, or {@link #NO_FRAME} for any single frame.
+   * @return the frame of the segments of the chain, or the given frame if it has none.
+   */
+  private int addChain(int body, int ancestor, double et, double[] out, double sign, int frame) {
+    while (body != ancestor) {
+      Segment segment = findSegment(body, et);
+      if (segment == null) {
+        throw new IllegalArgumentException("No SPK segment for body " + body + " at " + et);
+      }
+      if (frame == NO_FRAME) {
+        frame = segment.frame;
+      } else if (segment.frame != frame) {
+        throw new IllegalArgumentException(
+            "SPK segment for body "
+                + body
+                + " at "
+                + et
+                + " is in frame "
+                + segment.frame
+                + ", not frame "
+                + frame
+                + " of the rest of the chain");
+      }
+      segment.add(et, out, sign);
+      body = segment.center;
+    }
+    return frame;
+  }
+
+  private Segment findSegment(int target, double et) {
+    Segment[] candidates = segments.get(target);
+    if (candidates == null) {
+      return null;
+    }
+    for (int i = candidates.length - 1; i >= 0; i--) {
+      if (candidates[i].startEt <= et && et <= candidates[i].endEt) {
+        return candidates[i];
+      }
+    }
+    return null;
+  }
+
+  private static ByteOrder byteOrder(ByteBuffer buffer, String name) throws IOException {
+    if (buffer.limit() < RECORD_BYTES) {
+      throw new IOException("Not an SPK file: " + name + " is too short");
+    }
+    String format = ascii(buffer, 88, 8);
+    if (format.equals("LTL-IEEE")) {
+      return ByteOrder.LITTLE_ENDIAN;
+    }
+    if (format.equals("BIG-IEEE")) {
+      return ByteOrder.BIG_ENDIAN;
+    }
+    // Files older than the format string: ND is 2 in the right order.
+    return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(8) == 2
+        ? ByteOrder.LITTLE_ENDIAN
+        : ByteOrder.BIG_ENDIAN;
+  }
+
+  private static String ascii(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /** A segment of the states of a target relative to a center over a time span. */
+  private abstract static class Segment {
+    final ByteBuffer buffer;
+    final int target;
+    final int center;
+    // NAIF code of the frame of the states.
+    final int frame;
+    final double startEt;
+    final double endEt;
+
+    Segment(ByteBuffer buffer, int target, int center, int frame, double startEt, double endEt) {
+      this.buffer = buffer;
+      this.target = target;
+      this.center = center;
+      this.frame = frame;
+      this.startEt = startEt;
+      this.endEt = endEt;
+    }
+
+    /** Adds the sign times the state relative to the center at the time. */
+    abstract void add(double et, double[] out, double sign);
+  }
+
+  /** A type 2 or 3 segment: records of Chebyshev coefficients over equal intervals. */
+  private static final class ChebyshevSegment extends Segment {
+    final int type;
+    final double init;
+    final double intervalLength;
+    final int recordDoubles;
+    final int records;
+    final int coefficients;
+    // Byte offset of the first record.
+    final int dataOffset;
+
+    ChebyshevSegment(
+        ByteBuffer buffer,
+        int target,
+        int center,
+        int frame,
+        int type,
+        double startEt,
+        double endEt,
+        int startAddress,
+        int endAddress) {
+      super(buffer, target, center, frame, startEt, endEt);
+      this.type = type;
+      // The directory at the end of the segment: INIT, INTLEN, RSIZE and N.
+      int directory = (endAddress - 4) * DOUBLE_BYTES;
+      this.init = buffer.getDouble(directory);
+      this.intervalLength = buffer.getDouble(directory + DOUBLE_BYTES);
+      this.recordDoubles = (int) buffer.getDouble(directory + 2 * DOUBLE_BYTES);
+      this.records = (int) buffer.getDouble(directory + 3 * DOUBLE_BYTES);
+      this.coefficients = (recordDoubles - 2) / (type == 2 ? 3 : 6);
+      this.dataOffset = (startAddress - 1) * DOUBLE_BYTES;
+    }
+
+    @Override
+    void add(double et, double[] out, double sign) {
+      int index = (int) Math.floor((et - init) / intervalLength);
+      index = Math.max(0, Math.min(records - 1, index));
+      int record = dataOffset + index * recordDoubles * DOUBLE_BYTES;
+      double mid = buffer.getDouble(record);
+      double radius = buffer.getDouble(record + DOUBLE_BYTES);
+      double s = (et - mid) / radius;
+      int first = record + 2 * DOUBLE_BYTES;
+      int componentBytes = coefficients * DOUBLE_BYTES;
+      for (int i = 0; i < 3; i++) {
+        int offset = first + i * componentBytes;
+        out[i] += sign * chebyshev(offset, s);
+        if (type == 2) {
+          out[i + 3] += sign * chebyshevDerivative(offset, s) / radius;
+        } else {
+          out[i + 3] += sign * chebyshev(offset + 3 * componentBytes, s);
+        }
+      }
+    }
+
+    /** Sum of the coefficients at the offset times the Chebyshev polynomials at s. */
+    private double chebyshev(int offset, double s) {
+      double previous = 1;
+      double current = s;
+      double value = buffer.getDouble(offset);
+      if (coefficients > 1) {
+        value += buffer.getDouble(offset + DOUBLE_BYTES) * s;
+      }
+      for (int k = 2; k < coefficients; k++) {
+        double next = 2 * s * current - previous;
+        value += buffer.getDouble(offset + k * DOUBLE_BYTES) * next;
+        previous = current;
+        current = next;
+      }
+      return value;
+    }
+
+    /** Derivative with respect to s of {@link #chebyshev}. */
+    private double chebyshevDerivative(int offset, double s) {
+      double previous = 1;
+      double current = s;
+      double previousDerivative = 0;
+      double currentDerivative = 1;
+      double value = 0;
+      if (coefficients > 1) {
+        value += buffer.getDouble(offset + DOUBLE_BYTES);
+      }
+      for (int k = 2; k < coefficients; k++) {
+        double next = 2 * s * current - previous;
+        double nextDerivative = 2 * current + 2 * s * currentDerivative - previousDerivative;
+        value += buffer.getDouble(offset + k * DOUBLE_BYTES) * nextDerivative;
+        previous = current;
+        current = next;
+        previousDerivative = currentDerivative;
+        currentDerivative = nextDerivative;
+      }
+      return value;
+    }
+  }
+
+  /**
+   * A type 13 segment: states at unequally spaced epochs, interpolated by Hermite polynomials over
+   * a window of the states nearest the time, from their positions and velocities.
+   */
+  private static final class HermiteSegment extends Segment {
+    /** Largest window of the SPK specification, for polynomials of degree up to 27. */
+    static final int MAX_WINDOW = 14;
+
+    // Nodes and divided differences of each thread's current interpolation.
+    private static final ThreadLocal<double[]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[4 * MAX_WINDOW]);
+
+    final int states;
+    final int window;
+    // Byte offsets of the states and of their epochs.
+    final int statesOffset;
+    final int epochsOffset;
+
+    HermiteSegment(
+        ByteBuffer buffer,
+        int target,
+        int center,
+        int frame,
+        double startEt,
+        double endEt,
+        int startAddress,
+        int endAddress)
+        throws IOException {
+      super(buffer, target, center, frame, startEt, endEt);
+      // The segment ends with the window size minus one and the number of states.
+      this.window = (int) buffer.getDouble((endAddress - 2) * DOUBLE_BYTES) + 1;
+      this.states = (int) buffer.getDouble((endAddress - 1) * DOUBLE_BYTES);
+      if (window < 1 || window > MAX_WINDOW || window > states) {
+        throw new IOException("Invalid type 13 window size " + window + " for body " + target);
+      }
+      this.statesOffset = (startAddress - 1) * DOUBLE_BYTES;
+      this.epochsOffset = statesOffset + 6 * states * DOUBLE_BYTES;
+    }
+
+    @Override
+    void add(double et, double[] out, double sign) {
+      int first;
+      if (window % 2 == 0) {
+        first = lastBefore(et) - window / 2 + 1;
+      } else {
+        int nearest = lastBefore(et);
+        if (nearest + 1 < states && epoch(nearest + 1) - et < et - epoch(nearest)) {
+          nearest++;
+        }
+        first = nearest - (window - 1) / 2;
+      }
+      first = Math.max(0, Math.min(states - window, first));
+
+      double[] scratch = SCRATCH.get();
+      int nodes = 2 * window;
+      for (int i = 0; i < 3; i++) {
+        for (int k = 0; k < window; k++) {
+          int state = statesOffset + 6 * (first + k) * DOUBLE_BYTES;
+          double epoch = epoch(first + k);
+          scratch[2 * k] = epoch;
+          scratch[2 * k + 1] = epoch;
+          scratch[nodes + 2 * k] = buffer.getDouble(state + i * DOUBLE_BYTES);
+          scratch[nodes + 2 * k + 1] = buffer.getDouble(state + (i + 3) * DOUBLE_BYTES);
+        }
+        // Divided differences in place. The first difference at each repeated node is the
+        // velocity, already in the odd entries; the even ones still hold the positions.
+        for (int k = nodes - 2; k >= 2; k -= 2) {
+          scratch[nodes + k] =
+              (scratch[nodes + k] - scratch[nodes + k - 2]) / (scratch[k] - scratch[k - 1]);
+        }
+        for (int order = 2; order < nodes; order++) {
+          for (int k = nodes - 1; k >= order; k--) {
+            scratch[nodes + k] =
+                (scratch[nodes + k] - scratch[nodes + k - 1]) / (scratch[k] - scratch[k - order]);
+          }
+        }
+        // Newton form, with its derivative, by Horner's rule.
+        double value = scratch[nodes + nodes - 1];
+        double derivative = 0;
+        for (int k = nodes - 2; k >= 0; k--) {
+          derivative = derivative * (et - scratch[k]) + value;
+          value = value * (et - scratch[k]) + scratch[nodes + k];
+        }
+        out[i] += sign * value;
+        out[i + 3] += sign * derivative;
+      }
+    }
+
+    private double epoch(int index) {
+      return buffer.getDouble(epochsOffset + index * DOUBLE_BYTES);
+    }
+
+    /** Index of the last epoch before the time, or zero if there is none. */
+    private int lastBefore(double et) {
+      int low = 0;
+      int high = states - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (epoch(middle) < et) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+package org.b612foundation.adam.ephemeris;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.b612foundation.adam.astro.AstroUtils;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OemDataBlock;
+import org.b612foundation.adam.opm.OemDataLine;
+import org.b612foundation.adam.opm.OemMetadata;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.DateComponents;
+import org.orekit.time.TimeComponents;
+import org.orekit.time.TimeScale;
+import org.orekit.time.TimeScalesFactory;
+
+/**
+ * Writes trajectories to a binary SPK kernel, which any SPK-aware tool reads far faster than text
+ * ephemerides. Each trajectory becomes one segment of type 13: its states at their own epochs,
+ * interpolated by Hermite polynomials, so integrator steps are stored as they are without refitting.
+ *
+ * <p>Segments are streamed to a {@link FileChannel} one after another, so a kernel can hold tens of
+ * thousands of objects without keeping them in memory. Their summaries are kept in DAF summary
+ * records of 25, written between the segments as they fill, as the NAIF toolkit does.
+ *
+ * <p>Not thread-safe. The kernel is only valid once {@link #close() closed}.
+ */
+public final class SpkWriter implements Closeable {
+  /** NAIF code of the J2000 frame, which SPK uses for ICRF. */
+  public static final int J2000 = 1;
+
+  /** NAIF code of the mean ecliptic and equinox of J2000. */
+  public static final int ECLIPJ2000 = 17;
+
+  /** Hermite degree used when none is given: windows of four states. */
+  public static final int DEFAULT_DEGREE = 7;
+
+  private static final int RECORD_DOUBLES = SpkKernel.RECORD_BYTES / 8;
+  private static final int SUMMARY_DOUBLES = 5;
+  private static final int SUMMARIES_PER_RECORD = (RECORD_DOUBLES - 3) / SUMMARY_DOUBLES;
+  private static final int NAME_BYTES = 8 * SUMMARY_DOUBLES;
+  private static final int EPOCH_DIRECTORY_SPACING = 100;
+  private static final int MAX_DEGREE = 27;
+
+  // Validates that the file was not corrupted by a text-mode transfer, as the toolkit checks.
+  private static final byte[] FTP_STRING = {
+    'F', 'T', 'P', 'S', 'T', 'R', ':', '\r', ':', '\n', ':', '\r', '\n', ':', '\r', 0, ':',
+    (byte) 0x81, ':', 0x10, (byte) 0xce, ':', 'E', 'N', 'D', 'F', 'T', 'P'
+  };
+
+  private final FileChannel channel;
+  private final String internalName;
+  private final ByteBuffer summaryRecord = newRecord();
+  private final ByteBuffer nameRecord = newRecord();
+  // Record number of the summary record being filled, and of the one before it.
+  private int summaryRecordNumber = 2;
+  private int previousSummaryRecordNumber = 0;
+  private int summariesInRecord = 0;
+  // First free double precision address, one-based as in DAF.
+  private int freeAddress = 3 * RECORD_DOUBLES + 1;
+  private int segmentCount = 0;
+
+  private SpkWriter(FileChannel channel, String internalName) {
+    this.channel = channel;
+    this.internalName = internalName;
+  }
+
+  /**
+   * Creates or truncates the file and starts a kernel in it.
+   *
+   * @param internalName name recorded in the file record, up to 60 characters.
+   */
+  public static SpkWriter create(Path path, String internalName) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    SpkWriter writer = new SpkWriter(channel, internalName);
+    // Reserve the file record and the first summary and name records.
+    writer.write(ByteBuffer.allocate(3 * SpkKernel.RECORD_BYTES), 0);
+    return writer;
+  }
+
+  /**
+   * Writes one segment of the states of a target relative to a center.
+   *
+   * @param epochs TDB seconds past J2000 of the states, strictly increasing.
+   * @param states position (km) and velocity (km/s) at each epoch in turn, six values per epoch.
+   * @param frame NAIF code of the frame of the states, e.g. {@link #J2000}.
+   * @param degree odd degree of the Hermite polynomials, from 1 to 27, using (degree + 1) / 2
+   *     states about each time.
+   * @param name segment name, up to 40 characters.
+   */
+  public SpkWriter writeSegment(
+      int target,
+      int center,
+      int frame,
+      double[] epochs,
+      double[] states,
+      int degree,
+      String name)
+      throws IOException {
+    int count = epochs.length;
+    checkArgument(
+        states.length == 6 * count, "Expected %s state values, got %s", 6 * count, states.length);
+    checkArgument(
+        degree % 2 == 1 && degree <= MAX_DEGREE, "Degree should be odd and at most 27: %s", degree);
+    int window = (degree + 1) / 2;
+    checkArgument(count >= window, "Need at least %s states for degree %s", window, degree);
+    for (int i = 1; i < count; i++) {
+      checkArgument(epochs[i] > epochs[i - 1], "Epochs should be increasing at %s", i);
+    }
+    if (summariesInRecord == SUMMARIES_PER_RECORD) {
+      startSummaryRecord();
+    }
+
+    int directory = (count - 1) / EPOCH_DIRECTORY_SPACING;
+    int doubles = 6 * count + count + directory + 2;
+    ByteBuffer data = ByteBuffer.allocate(8 * doubles).order(ByteOrder.LITTLE_ENDIAN);
+    for (double value : states) {
+      data.putDouble(value);
+    }
+    for (double epoch : epochs) {
+      data.putDouble(epoch);
+    }
+    for (int i = 1; i <= directory; i++) {
+      data.putDouble(epochs[i * EPOCH_DIRECTORY_SPACING - 1]);
+    }
+    data.putDouble(window - 1);
+    data.putDouble(count);
+    data.flip();
+    int startAddress = freeAddress;
+    write(data, 8L * (startAddress - 1));
+    freeAddress += doubles;
+
+    int summary = 8 * (3 + summariesInRecord * SUMMARY_DOUBLES);
+    summaryRecord.putDouble(summary, epochs[0]);
+    summaryRecord.putDouble(summary + 8, epochs[count - 1]);
+    int[] ints = {target, center, frame, 13, startAddress, freeAddress - 1};
+    for (int i = 0; i < ints.length; i++) {
+      summaryRecord.putInt(summary + 16 + 4 * i, ints[i]);
+    }
+    putAscii(nameRecord, summariesInRecord * NAME_BYTES, name, NAME_BYTES);
+    summariesInRecord++;
+    segmentCount++;
+    return this;
+  }
+
+  /**
+   * Writes one segment per block of the OEM, whose states are in km and km/s.
+   *
+   * @param target NAIF id of the object, e.g. 2000000 plus its number for a numbered asteroid.
+   * @throws IllegalArgumentException if a block's center or frame has no SPK equivalent.
+   */
+  public SpkWriter writeOem(int target, OrbitEphemerisMessage oem) throws IOException {
+    for (OemDataBlock block : oem.getBlocks()) {
+      OemMetadata metadata = block.getMetadata();
+      TimeScale timeScale = timeScale(metadata.getTime_system());
+      List<OemDataLine> lines = block.getLines();
+      double[] epochs = new double[lines.size()];
+      double[] states = new double[6 * lines.size()];
+      for (int i = 0; i < lines.size(); i++) {
+        epochs[i] = toEt(lines.get(i).getDate(), timeScale);
+        System.arraycopy(lines.get(i).getPoint(), 0, states, 6 * i, 6);
+      }
+      int degree =
+          "HERMITE".equalsIgnoreCase(metadata.getInterpolation())
+                  && metadata.getInterpolation_degree() % 2 == 1
+              ? Math.min(MAX_DEGREE, metadata.getInterpolation_degree())
+              : DEFAULT_DEGREE;
+      writeSegment(
+          target,
+          center(metadata.getCenter_name()),
+          frame(metadata.getRef_frame()),
+          epochs,
+          states,
+          Math.min(degree, 2 * lines.size() - 1),
+          metadata.getObject_name() == null ? String.valueOf(target) : metadata.getObject_name());
+    }
+    return this;
+  }
+
+  /** Number of segments written so far. */
+  public int getSegmentCount() {
+    return segmentCount;
+  }
+
+  /** Writes the last summary record and the file record, and closes the file. */
+  @Override
+  public void close() throws IOException {
+    try {
+      writeSummaryRecord(0);
+      ByteBuffer fileRecord = newRecord();
+      putAscii(fileRecord, 0, "DAF/SPK", 8);
+      fileRecord.putInt(8, 2);
+      fileRecord.putInt(12, 6);
+      putAscii(fileRecord, 16, internalName, 60);
+      fileRecord.putInt(76, 2);
+      fileRecord.putInt(80, summaryRecordNumber);
+      fileRecord.putInt(84, freeAddress);
+      putAscii(fileRecord, 88, "LTL-IEEE", 8);
+      fileRecord.position(699);
+      fileRecord.put(FTP_STRING);
+      fileRecord.position(0);
+      write(fileRecord, 0);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes the full summary record and starts the next one, with its name record, after the data
+   * written so far.
+   */
+  private void startSummaryRecord() throws IOException {
+    int next = (freeAddress - 2) / RECORD_DOUBLES + 2;
+    writeSummaryRecord(next);
+    previousSummaryRecordNumber = summaryRecordNumber;
+    summaryRecordNumber = next;
+    summariesInRecord = 0;
+    clear(summaryRecord);
+    clear(nameRecord);
+    freeAddress = (next + 1) * RECORD_DOUBLES + 1;
+  }
+
+  private void writeSummaryRecord(int next) throws IOException {
+    summaryRecord.putDouble(0, next);
+    summaryRecord.putDouble(8, previousSummaryRecordNumber);
+    summaryRecord.putDouble(16, summariesInRecord);
+    long offset = (long) (summaryRecordNumber - 1) * SpkKernel.RECORD_BYTES;
+    summaryRecord.position(0);
+    write(summaryRecord, offset);
+    nameRecord.position(0);
+    write(nameRecord, offset + SpkKernel.RECORD_BYTES);
+  }
+
+  private void write(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static ByteBuffer newRecord() {
+    return ByteBuffer.allocate(SpkKernel.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void clear(ByteBuffer record) {
+    for (int i = 0; i < SpkKernel.RECORD_BYTES; i++) {
+      record.put(i, (byte) 0);
+    }
+  }
+
+  /** Writes the text padded with blanks, truncated to the length. */
+  private static void putAscii(ByteBuffer buffer, int offset, String text, int length) {
+    byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+    for (int i = 0; i < length; i++) {
+      buffer.put(offset + i, i < bytes.length ? bytes[i] : (byte) ' ');
+    }
+  }
+
+  private static double toEt(String date, TimeScale timeScale) {
+    LocalDateTime dateTime = AstroUtils.parseIsoDateTime(date);
+    AbsoluteDate absoluteDate =
+        new AbsoluteDate(
+            dateTime.getYear(),
+            dateTime.getMonthValue(),
+            dateTime.getDayOfMonth(),
+            dateTime.getHour(),
+            dateTime.getMinute(),
+            dateTime.getSecond() + dateTime.getNano() / 1e9,
+            timeScale);
+    TimeScale tdb = TimeScalesFactory.getTDB();
+    return absoluteDate.offsetFrom(
+        new AbsoluteDate(DateComponents.J2000_EPOCH, TimeComponents.H12, tdb), tdb);
+  }
+
+  private static TimeScale timeScale(OdmCommonMetadata.TimeSystem timeSystem) {
+    switch (timeSystem) {
+      case UTC:
+        return TimeScalesFactory.getUTC();
+      case TAI:
+        return TimeScalesFactory.getTAI();
+      case TT:
+        return TimeScalesFactory.getTT();
+      case GPS:
+        return TimeScalesFactory.getGPS();
+      case TDB:
+        return TimeScalesFactory.getTDB();
+      case TCB:
+        return TimeScalesFactory.getTCB();
+      default:
+        throw new IllegalArgumentException("Unsupported time system " + timeSystem);
+    }
+  }
+
+  private static int center(OdmCommonMetadata.CenterName center) {
+    switch (center) {
+      case SUN:
+        return 10;
+      case EARTH:
+        return 399;
+      default:
+        throw new IllegalArgumentException("No NAIF id for center " + center);
+    }
+  }
+
+  private static int frame(OdmCommonMetadata.ReferenceFrame frame) {
+    switch (frame) {
+      case ICRF:
+      case EME2000:
+      case GCRF:
+        return J2000;
+      case EMEME2000:
+      case J2000_IAU76ECLIP:
+        return ECLIPJ2000;
+      default:
+        throw new IllegalArgumentException("No SPK frame for " + frame);
+    }
+  }
+}
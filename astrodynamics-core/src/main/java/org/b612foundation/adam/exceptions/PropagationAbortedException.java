@@ -0,0 +1,43 @@
+package org.b612foundation.adam.exceptions;
+
+/**
+ * Thrown from inside a running propagation when its {@link
+ * org.b612foundation.adam.propagators.PropagationControl} asks it to stop. Unchecked, because it has
+ * to escape integrator callbacks that cannot declare checked exceptions.
+ */
+public class PropagationAbortedException extends RuntimeException {
+
+  private static final long serialVersionUID = -3021942178653379512L;
+
+  /** Why the propagation was stopped. */
+  public enum Reason {
+    CANCELLED,
+    DEADLINE_EXCEEDED,
+    STEP_BUDGET_EXCEEDED
+  }
+
+  private final Reason reason;
+
+  public PropagationAbortedException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+
+  /**
+   * Returns the first {@link PropagationAbortedException} in the cause chain of the given
+   * throwable, or null if there is none. Propagation libraries may wrap exceptions thrown from
+   * callbacks, so this is how callers recover the original abort.
+   */
+  public static PropagationAbortedException findInCauses(Throwable throwable) {
+    for (Throwable t = throwable; t != null; t = t.getCause()) {
+      if (t instanceof PropagationAbortedException) {
+        return (PropagationAbortedException) t;
+      }
+    }
+    return null;
+  }
+}
@@ -115,16 +115,26 @@ public class OemWriter {
   public static String toCcsdsOemString(OrbitEphemerisMessage oem) {
     StringBuilder builder = new StringBuilder();
     builder.append("CCSDS_OEM_VERS = " + oem.getCcsds_oem_vers() + "\n");
-    builder.append("CREATION_DATE = " + oem.getHeader().getCreation_date() + "\n");
-    builder.append("ORIGINATOR = " + oem.getHeader().getOriginator() + "\n");
+    // Header comments come before the creation date, where the standard and the parser expect them.
     for (String comment : oem.getHeader().getComments()) {
       builder.append("COMMENT " + comment + "\n");
     }
+    builder.append("CREATION_DATE = " + oem.getHeader().getCreation_date() + "\n");
+    builder.append("ORIGINATOR = " + oem.getHeader().getOriginator() + "\n");
     builder.append("\n");
 
+    boolean firstBlock = true;
     for (OemDataBlock block : oem.getBlocks()) {
       OemMetadata metadata = block.getMetadata();
+      if (!firstBlock) {
+        // Ends the previous block's COVARIANCE_STOP line.
+        builder.append("\n");
+      }
+      firstBlock = false;
       builder.append("META_START\n");
+      for (String comment : metadata.getComments()) {
+        builder.append("COMMENT " + comment + "\n");
+      }
       builder.append("OBJECT_NAME          = " + metadata.getObject_name() + "\n");
       builder.append("OBJECT_ID            = " + metadata.getObject_id() + "\n");
       builder.append("CENTER_NAME          = " + metadata.getCenter_name() + "\n");
@@ -0,0 +1,49 @@
+package org.b612foundation.adam.propagators;
+
+import java.io.Serializable;
+
+/**
+ * A local minimum of the distance between a propagated object and a body. Serializable, so
+ * propagators can keep the approaches found so far in a {@link PropagationCheckpoint}.
+ */
+public final class BodyCloseApproach implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String body;
+  private final double epochSeconds;
+  private final double distance;
+  private final double[] relativeState;
+
+  public BodyCloseApproach(
+      String body, double epochSeconds, double distance, double[] relativeState) {
+    this.body = body;
+    this.epochSeconds = epochSeconds;
+    this.distance = distance;
+    this.relativeState = relativeState;
+  }
+
+  /** Name the body was registered under. */
+  public String getBody() {
+    return body;
+  }
+
+  /** Seconds since the propagation epoch. */
+  public double getEpochSeconds() {
+    return epochSeconds;
+  }
+
+  /** Distance from the body's center, in meters. */
+  public double getDistance() {
+    return distance;
+  }
+
+  /** Position (m) and velocity (m/s) relative to the body, in the propagation reference frame. */
+  public double[] getRelativeState() {
+    return relativeState;
+  }
+
+  @Override
+  public String toString() {
+    return "BodyCloseApproach[" + body + " at " + epochSeconds + " s, " + distance + " m]";
+  }
+}
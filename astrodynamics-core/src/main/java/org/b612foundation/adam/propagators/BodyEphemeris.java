@@ -0,0 +1,13 @@
+package org.b612foundation.adam.propagators;
+
+/** Position and velocity of a body over time, in the frame of a propagation. */
+@FunctionalInterface
+public interface BodyEphemeris {
+  /**
+   * Writes the body's state at the given time to the array.
+   *
+   * @param epochSeconds seconds since the propagation epoch, as handed to {@link StepConsumer}.
+   * @param out receives position (m) followed by velocity (m/s) in the propagation reference frame.
+   */
+  void stateAt(double epochSeconds, double[] out);
+}
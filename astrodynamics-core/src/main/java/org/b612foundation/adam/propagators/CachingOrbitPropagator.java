@@ -0,0 +1,325 @@
+package org.b612foundation.adam.propagators;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.OdmFormatter;
+import org.b612foundation.adam.opm.OdmParseException;
+import org.b612foundation.adam.opm.OemWriter;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+
+/**
+ * Answers repeated propagations of identical parameters and configuration from a cache instead of
+ * integrating again.
+ *
+ * <p>Results are keyed by {@link #cacheKey(Class, PropagationParameters, PropagatorConfiguration)},
+ * which covers the delegate's class and the executor of the parameters, so different backends never
+ * share entries. They are kept as CCSDS OEM text, written by {@link OemWriter} and parsed by {@link
+ * OdmFormatter}, in an in-memory LRU bounded by total size. Entries evicted from memory are spilled
+ * to the optional disk directory, which is also consulted on a memory miss, so a directory can be
+ * shared between runs; files in it that do not parse are treated as misses. Every call returns a
+ * fresh copy, so callers may modify the result. Covariances keep the eight significant digits of
+ * the OEM text.
+ *
+ * <p>Disk reads and writes happen outside the lock on the in-memory entries, so a slow disk only
+ * delays the propagations that need it.
+ *
+ * <p>Only {@link PropagationOutputMode#FULL_EPHEMERIS} results are cached, as the other modes
+ * leave the events and the final state on the delegate rather than in the ephemeris. Those are
+ * passed through to the delegate. Likewise, results the delegate keeps of its last run, e.g. the
+ * close approaches of a segment propagator, are not updated by a cache hit; read them only after a
+ * {@link #getMisses() miss}. Failed and aborted propagations are not cached.
+ */
+public class CachingOrbitPropagator implements OrbitPropagator {
+  private static final Logger log = Logger.getLogger(CachingOrbitPropagator.class.getName());
+
+  private static final String DISK_SUFFIX = ".oem";
+
+  /** Fields that identify a request, but do not affect the propagated orbit. */
+  private static final String[] IGNORED_PARAMETER_FIELDS = {"propagator_uuid"};
+
+  private static final String[] IGNORED_CONFIGURATION_FIELDS = {"uuid", "description"};
+
+  private static final ObjectMapper CANONICAL_MAPPER =
+      new ObjectMapper()
+          .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+          .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+  private final OrbitPropagator delegate;
+  private final long maxMemoryBytes;
+  private final Path diskDirectory;
+
+  private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes = 0;
+
+  private long memoryHits = 0;
+  private long diskHits = 0;
+  private long misses = 0;
+
+  /** Caches results of the given propagator in memory only. */
+  public CachingOrbitPropagator(OrbitPropagator delegate, long maxMemoryBytes) {
+    this(delegate, maxMemoryBytes, null);
+  }
+
+  /**
+   * Caches results of the given propagator in memory, spilling evicted entries to the given
+   * directory.
+   *
+   * @param maxMemoryBytes bound on the total serialized size of the results kept in memory.
+   * @param diskDirectory directory for spilled results, created if missing; null disables spilling.
+   */
+  public CachingOrbitPropagator(OrbitPropagator delegate, long maxMemoryBytes, Path diskDirectory) {
+    this.delegate = delegate;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.diskDirectory = diskDirectory;
+    if (diskDirectory != null) {
+      try {
+        Files.createDirectories(diskDirectory);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot create cache directory " + diskDirectory, e);
+      }
+    }
+  }
+
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    if (!isCacheable(propagationParams)) {
+      return delegate.propagate(propagationParams, config, propagationIdForLogging);
+    }
+    String key = cacheKey(delegate.getClass(), propagationParams, config);
+    OrbitEphemerisMessage cached = lookup(key, propagationIdForLogging);
+    if (cached != null) {
+      return cached;
+    }
+    OrbitEphemerisMessage result =
+        delegate.propagate(propagationParams, config, propagationIdForLogging);
+    store(key, result);
+    return result;
+  }
+
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control)
+      throws AdamPropagationException {
+    if (!isCacheable(propagationParams)) {
+      return delegate.propagate(propagationParams, config, propagationIdForLogging, control);
+    }
+    String key = cacheKey(delegate.getClass(), propagationParams, config);
+    OrbitEphemerisMessage cached = lookup(key, propagationIdForLogging);
+    if (cached != null) {
+      return cached;
+    }
+    OrbitEphemerisMessage result =
+        delegate.propagate(propagationParams, config, propagationIdForLogging, control);
+    store(key, result);
+    return result;
+  }
+
+  /** Whether the whole result of the propagation is in its ephemeris. */
+  private static boolean isCacheable(PropagationParameters propagationParams) {
+    return propagationParams.getOutputMode() == PropagationOutputMode.FULL_EPHEMERIS;
+  }
+
+  /**
+   * Returns the hex SHA-256 of the canonical JSON form of the propagator class, parameters and
+   * configuration. The canonical form sorts properties and drops the fields that only identify the
+   * request, so equal propagations get equal keys regardless of who asked for them.
+   *
+   * @param propagatorClass class of the propagator that produces the result.
+   */
+  public static String cacheKey(
+      Class<?> propagatorClass,
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config) {
+    ObjectNode root = CANONICAL_MAPPER.createObjectNode();
+    root.put("propagator", propagatorClass.getName());
+    root.set("parameters", canonicalTree(propagationParams, IGNORED_PARAMETER_FIELDS));
+    root.set("configuration", canonicalTree(config, IGNORED_CONFIGURATION_FIELDS));
+    try {
+      byte[] canonical =
+          CANONICAL_MAPPER.writeValueAsString(root).getBytes(StandardCharsets.UTF_8);
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical);
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Cannot compute propagation cache key", e);
+    }
+  }
+
+  private static JsonNode canonicalTree(Object value, String[] ignoredFields) {
+    JsonNode tree = CANONICAL_MAPPER.valueToTree(value);
+    if (tree instanceof ObjectNode) {
+      ((ObjectNode) tree).remove(Arrays.asList(ignoredFields));
+    }
+    return tree;
+  }
+
+  public synchronized long getMemoryHits() {
+    return memoryHits;
+  }
+
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** Total serialized size of the results currently held in memory. */
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  /** Drops all results held in memory. Spilled results stay on disk. */
+  public synchronized void clearMemory() {
+    memory.clear();
+    memoryBytes = 0;
+  }
+
+  private OrbitEphemerisMessage lookup(String key, String propagationIdForLogging) {
+    byte[] bytes;
+    synchronized (this) {
+      bytes = memory.get(key);
+      if (bytes != null) {
+        memoryHits++;
+      }
+    }
+    if (bytes != null) {
+      log.info("Answering " + propagationIdForLogging + " from the propagation cache");
+      return parse(bytes);
+    }
+    bytes = readFromDisk(key);
+    OrbitEphemerisMessage cached = bytes == null ? null : parseFromDisk(key, bytes);
+    List<Map.Entry<String, byte[]>> evicted;
+    synchronized (this) {
+      if (cached == null) {
+        misses++;
+        return null;
+      }
+      diskHits++;
+      evicted = putInMemory(key, bytes);
+    }
+    spill(evicted);
+    log.info("Answering " + propagationIdForLogging + " from the propagation cache on disk");
+    return cached;
+  }
+
+  private void store(String key, OrbitEphemerisMessage result) {
+    byte[] bytes = OemWriter.toCcsdsOemString(result).getBytes(StandardCharsets.UTF_8);
+    List<Map.Entry<String, byte[]>> evicted;
+    synchronized (this) {
+      evicted = putInMemory(key, bytes);
+    }
+    spill(evicted);
+  }
+
+  /**
+   * Adds the entry and evicts least recently used entries until within bounds.
+   *
+   * @return the evicted entries, to {@link #spill} once the lock is released.
+   */
+  private List<Map.Entry<String, byte[]>> putInMemory(String key, byte[] bytes) {
+    byte[] previous = memory.put(key, bytes);
+    memoryBytes += bytes.length - (previous == null ? 0 : previous.length);
+    List<Map.Entry<String, byte[]>> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+    while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+      Map.Entry<String, byte[]> entry = eldest.next();
+      evicted.add(entry);
+      memoryBytes -= entry.getValue().length;
+      eldest.remove();
+    }
+    return evicted;
+  }
+
+  private void spill(List<Map.Entry<String, byte[]>> evicted) {
+    for (Map.Entry<String, byte[]> entry : evicted) {
+      writeToDisk(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private byte[] readFromDisk(String key) {
+    if (diskDirectory == null) {
+      return null;
+    }
+    Path file = diskDirectory.resolve(key + DISK_SUFFIX);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      return Files.readAllBytes(file);
+    } catch (IOException e) {
+      log.warning("Cannot read cached propagation " + file + ": " + e);
+      return null;
+    }
+  }
+
+  private void writeToDisk(String key, byte[] bytes) {
+    if (diskDirectory == null) {
+      return;
+    }
+    Path file = diskDirectory.resolve(key + DISK_SUFFIX);
+    if (Files.exists(file)) {
+      return;
+    }
+    try {
+      // Write then rename, so concurrent readers never see a partial entry.
+      Path temp = Files.createTempFile(diskDirectory, key, ".tmp");
+      Files.write(temp, bytes);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warning("Cannot spill cached propagation " + file + ": " + e);
+    }
+  }
+
+  /** Parses an entry read from the shared directory, or returns null if it is not a valid OEM. */
+  private OrbitEphemerisMessage parseFromDisk(String key, byte[] bytes) {
+    try {
+      return OdmFormatter.parseOemString(new String(bytes, StandardCharsets.UTF_8));
+    } catch (OdmParseException | RuntimeException e) {
+      log.warning("Ignoring unreadable cached propagation " + key + DISK_SUFFIX + ": " + e);
+      return null;
+    }
+  }
+
+  private static OrbitEphemerisMessage parse(byte[] bytes) {
+    try {
+      return OdmFormatter.parseOemString(new String(bytes, StandardCharsets.UTF_8));
+    } catch (OdmParseException e) {
+      throw new IllegalStateException("Cannot parse cached propagation result", e);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.b612foundation.adam.propagators;
+
+/**
+ * Cubic Hermite fit of a state over one integrator step, through the positions and velocities at
+ * both ends. It is not the dense output of the integrator: its position error grows with the fourth
+ * power of the step size, so events are located closely on the short steps of an encounter and
+ * more loosely on long steps far from any body.
+ */
+final class CubicHermite {
+  private CubicHermite() {}
+
+  /**
+   * Interpolates position and velocity at a fraction of the step.
+   *
+   * @param from position (first three) and velocity (last three) at the start of the step.
+   * @param to state at the end of the step.
+   * @param step signed duration of the step in seconds.
+   * @param fraction of the step from its start, between 0 and 1.
+   * @param out receives the interpolated state.
+   */
+  static void interpolate(double[] from, double[] to, double step, double fraction, double[] out) {
+    interpolate(from, 0, to, 0, step, fraction, out);
+  }
+
+  /** Like {@link #interpolate(double[], double[], double, double, double[])} at array offsets. */
+  static void interpolate(
+      double[] from,
+      int fromOffset,
+      double[] to,
+      int toOffset,
+      double step,
+      double fraction,
+      double[] out) {
+    double s = fraction;
+    double s2 = s * s;
+    double s3 = s2 * s;
+    double h00 = 2 * s3 - 3 * s2 + 1;
+    double h10 = s3 - 2 * s2 + s;
+    double h01 = -2 * s3 + 3 * s2;
+    double h11 = s3 - s2;
+    // Derivatives of the basis with respect to the fraction.
+    double d00 = 6 * s2 - 6 * s;
+    double d10 = 3 * s2 - 4 * s + 1;
+    double d01 = -6 * s2 + 6 * s;
+    double d11 = 3 * s2 - 2 * s;
+    for (int i = 0; i < 3; i++) {
+      double p0 = from[fromOffset + i];
+      double v0 = from[fromOffset + i + 3];
+      double p1 = to[toOffset + i];
+      double v1 = to[toOffset + i + 3];
+      out[i] = h00 * p0 + h10 * step * v0 + h01 * p1 + h11 * step * v1;
+      out[i + 3] = (d00 * p0 + d01 * p1) / step + d10 * v0 + d11 * v1;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.b612foundation.adam.propagators;
+
+import java.io.Serializable;
+
+/**
+ * An event located by an {@link EventDetectorEngine}. Serializable, so propagators can keep the
+ * events found so far in a {@link PropagationCheckpoint}.
+ */
+public final class DetectedEvent implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String detector;
+  private final double epochSeconds;
+  private final double[] state;
+  private final boolean increasing;
+  private final EventAction action;
+
+  public DetectedEvent(
+      String detector,
+      double epochSeconds,
+      double[] state,
+      boolean increasing,
+      EventAction action) {
+    this.detector = detector;
+    this.epochSeconds = epochSeconds;
+    this.state = state;
+    this.increasing = increasing;
+    this.action = action;
+  }
+
+  /** Name of the detector that found the event. */
+  public String getDetector() {
+    return detector;
+  }
+
+  /** Seconds since the propagation epoch. */
+  public double getEpochSeconds() {
+    return epochSeconds;
+  }
+
+  /** Position (m) and velocity (m/s) of the object at the event, interpolated within its step. */
+  public double[] getState() {
+    return state;
+  }
+
+  /**
+   * Whether the detector's function was increasing with time, e.g. an ascending node or exiting a
+   * region.
+   */
+  public boolean isIncreasing() {
+    return increasing;
+  }
+
+  public EventAction getAction() {
+    return action;
+  }
+
+  @Override
+  public String toString() {
+    return "DetectedEvent[" + detector + " at " + epochSeconds + " s, " + action + "]";
+  }
+}
@@ -0,0 +1,70 @@
+package org.b612foundation.adam.propagators;
+
+/**
+ * Bounds how soon a propagated object can come within a radius of a body, so that event detectors
+ * only evaluate the body's ephemeris when the object may be near it.
+ *
+ * <p>After a distance is recorded, the object cannot be within the radius sooner than the excess
+ * distance divided by the largest speed at which the two can close on each other. The gate stays
+ * closed until then, in either direction of time.
+ */
+public final class DistanceGate {
+  /** Bound on closing speeds above that of any planetary encounter, in m/s. */
+  public static final double DEFAULT_MAXIMUM_CLOSING_SPEED = 100e3;
+
+  private final double radius;
+  private double lastSeconds = Double.NaN;
+  private double lastDistance;
+  private double lastClosingSpeed;
+  private double closedSeconds;
+
+  /** @param radius distance from the body's center, in meters, that opens the gate. */
+  public DistanceGate(double radius) {
+    if (!(radius >= 0)) {
+      throw new IllegalArgumentException("Radius must not be negative, got " + radius);
+    }
+    this.radius = radius;
+  }
+
+  public double getRadius() {
+    return radius;
+  }
+
+  /**
+   * Whether the object may be within the radius at the given time. Always true before the first
+   * update.
+   */
+  public boolean isOpen(double epochSeconds) {
+    return Double.isNaN(lastSeconds) || Math.abs(epochSeconds - lastSeconds) >= closedSeconds;
+  }
+
+  /**
+   * Records the distance between the object and the body at the given time.
+   *
+   * @param closingSpeed upper bound of the rate at which the distance can shrink, in m/s, from this
+   *     time until the gate opens again.
+   */
+  public void update(double epochSeconds, double distance, double closingSpeed) {
+    lastSeconds = epochSeconds;
+    lastDistance = distance;
+    lastClosingSpeed = closingSpeed;
+    closedSeconds = Math.max(0, (distance - radius) / closingSpeed);
+  }
+
+  /**
+   * Lower bound of the distance at the given time, from the last update. Greater than the radius
+   * while the gate is closed.
+   */
+  public double minimumDistance(double epochSeconds) {
+    if (Double.isNaN(lastSeconds)) {
+      return 0;
+    }
+    return Math.max(0, lastDistance - lastClosingSpeed * Math.abs(epochSeconds - lastSeconds));
+  }
+
+  /** Opens the gate until the next update. */
+  public void reset() {
+    lastSeconds = Double.NaN;
+    closedSeconds = 0;
+  }
+}
@@ -0,0 +1,11 @@
+package org.b612foundation.adam.propagators;
+
+/** What an {@link EventDetectorEngine} does when an {@link EventDetector} finds an event. */
+public enum EventAction {
+  /** Records the event and continues propagating. */
+  LOG,
+  /** Records the event and requests that the propagation stop at its time. */
+  STOP,
+  /** Only hands the event to the engine's listener, without recording it. */
+  CONTINUE
+}
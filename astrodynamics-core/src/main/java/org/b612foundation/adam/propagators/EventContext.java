@@ -0,0 +1,105 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * State of the propagated object at one time, as seen by {@link EventDetector}s. Body states are
+ * evaluated on first use and shared by all detectors evaluated at the same time, so detectors of
+ * the same body cost one ephemeris evaluation per time.
+ *
+ * <p>Not thread-safe; owned by an {@link EventDetectorEngine}.
+ */
+public final class EventContext {
+  private final Function<String, BodyEphemeris> bodies;
+  private final Map<String, BodyState> bodyStates = new HashMap<>();
+  private double epochSeconds;
+  private double[] state;
+  // Incremented whenever the time changes, invalidating the body states.
+  private long version;
+  private long evaluations;
+
+  EventContext(Function<String, BodyEphemeris> bodies) {
+    this.bodies = bodies;
+  }
+
+  void set(double epochSeconds, double[] state) {
+    this.epochSeconds = epochSeconds;
+    this.state = state;
+    version++;
+  }
+
+  /** Seconds since the propagation epoch, as handed to {@link StepConsumer}. */
+  public double getEpochSeconds() {
+    return epochSeconds;
+  }
+
+  /** Position (m) and velocity (m/s) of the object, in the propagation reference frame. */
+  public double[] getState() {
+    return state;
+  }
+
+  /**
+   * Position and velocity of the named body, in the propagation reference frame. Do not modify
+   * the returned array.
+   *
+   * @throws IllegalArgumentException if the engine has no ephemeris for the body.
+   */
+  public double[] getBodyState(String body) {
+    return evaluate(body).state;
+  }
+
+  /**
+   * Position and velocity of the object relative to the named body. Do not modify the returned
+   * array.
+   */
+  public double[] getRelativeState(String body) {
+    BodyState bodyState = evaluate(body);
+    for (int i = 0; i < 6; i++) {
+      bodyState.relative[i] = state[i] - bodyState.state[i];
+    }
+    return bodyState.relative;
+  }
+
+  /** Distance (m) of the object from the named body. */
+  public double getDistance(String body) {
+    double[] relative = getRelativeState(body);
+    return Math.sqrt(
+        relative[0] * relative[0] + relative[1] * relative[1] + relative[2] * relative[2]);
+  }
+
+  /** Number of body ephemeris evaluations made so far. */
+  long getEvaluations() {
+    return evaluations;
+  }
+
+  private BodyState evaluate(String body) {
+    BodyState bodyState = bodyStates.get(body);
+    if (bodyState == null) {
+      BodyEphemeris ephemeris = bodies.apply(body);
+      if (ephemeris == null) {
+        throw new IllegalArgumentException("No ephemeris for body " + body);
+      }
+      bodyState = new BodyState(ephemeris);
+      bodyStates.put(body, bodyState);
+    }
+    if (bodyState.version != version) {
+      bodyState.ephemeris.stateAt(epochSeconds, bodyState.state);
+      bodyState.version = version;
+      evaluations++;
+    }
+    return bodyState;
+  }
+
+  private static final class BodyState {
+    final BodyEphemeris ephemeris;
+    final double[] state = new double[6];
+    final double[] relative = new double[6];
+    long version = -1;
+
+    BodyState(BodyEphemeris ephemeris) {
+      this.ephemeris = ephemeris;
+    }
+  }
+}
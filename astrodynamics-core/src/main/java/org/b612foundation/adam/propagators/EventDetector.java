@@ -0,0 +1,45 @@
+package org.b612foundation.adam.propagators;
+
+/**
+ * Detects one kind of event in a propagation, for an {@link EventDetectorEngine}.
+ *
+ * <p>Events are the zeros of a bracketing function of the state. The engine evaluates it at every
+ * integrator step, and only locates a zero precisely within steps where it changes sign, so the
+ * function should be cheap and continuous. See {@link EventDetectors} for the common detectors.
+ */
+public interface EventDetector {
+  /** Directions of zero crossings of the bracketing function that are events. */
+  enum Direction {
+    INCREASING,
+    DECREASING,
+    BOTH
+  }
+
+  /** Name of the detector, reported with its events. */
+  String getName();
+
+  /**
+   * The bracketing function, whose zeros are events.
+   *
+   * @param context the object's state at the time evaluated, with access to body states that
+   *     other detectors evaluated at the same time.
+   */
+  double g(EventContext context);
+
+  /** Directions of crossings that count, with respect to increasing time. */
+  default Direction getDirection() {
+    return Direction.BOTH;
+  }
+
+  default EventAction getAction() {
+    return EventAction.LOG;
+  }
+
+  /**
+   * Whether a located zero is reported, e.g. only minima within some distance. Called with the
+   * context at the time of the zero.
+   */
+  default boolean isReported(EventContext context) {
+    return true;
+  }
+}
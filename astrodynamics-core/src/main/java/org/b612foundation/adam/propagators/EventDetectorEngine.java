@@ -0,0 +1,170 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs any number of {@link EventDetector}s together on the integrator steps of a propagation.
+ *
+ * <p>At each step every detector's bracketing function is evaluated in one {@link EventContext},
+ * so body states are computed once per step whatever the number of detectors using them. A change
+ * of sign since the previous step is located by bisection on the cubic Hermite interpolation of
+ * the two steps. Events of one step are handled in time order; after the first {@link
+ * EventAction#STOP} event, further steps and events are ignored and {@link #getStopEvent()} tells
+ * the propagator where to stop.
+ *
+ * <p>Not thread-safe; use one engine per propagation.
+ */
+public class EventDetectorEngine implements StepConsumer {
+  /** Events are located to within this many seconds. */
+  private static final double TIME_TOLERANCE_SECONDS = 1e-3;
+
+  private static final int MAX_REFINEMENT_ITERATIONS = 100;
+
+  private final EventContext context;
+  private final List<EventDetector> detectors = new ArrayList<>();
+  private final List<DetectedEvent> events = new ArrayList<>();
+  private Consumer<DetectedEvent> listener = event -> {};
+  private DetectedEvent stopEvent;
+
+  private boolean hasPrevious;
+  private double previousSeconds;
+  private final double[] previousState = new double[6];
+  private final double[] interpolated = new double[6];
+  private double[] previousValues = new double[0];
+  private double[] values = new double[0];
+
+  /**
+   * @param bodies returns the ephemeris of a body by the name detectors use for it, or null if
+   *     there is none. Called once per body, on first use.
+   */
+  public EventDetectorEngine(Function<String, BodyEphemeris> bodies) {
+    this.context = new EventContext(bodies);
+  }
+
+  public EventDetectorEngine addDetector(EventDetector detector) {
+    detectors.add(detector);
+    previousValues = new double[detectors.size()];
+    values = new double[detectors.size()];
+    hasPrevious = false;
+    return this;
+  }
+
+  /** Sets a listener handed every event as it is found, whatever its action. */
+  public EventDetectorEngine setListener(Consumer<DetectedEvent> listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  @Override
+  public void accept(double epochSeconds, double[] state) {
+    if (stopEvent != null) {
+      return;
+    }
+    context.set(epochSeconds, state);
+    for (int i = 0; i < detectors.size(); i++) {
+      values[i] = detectors.get(i).g(context);
+    }
+    if (hasPrevious) {
+      List<DetectedEvent> found = new ArrayList<>();
+      for (int i = 0; i < detectors.size(); i++) {
+        DetectedEvent event =
+            locate(detectors.get(i), previousValues[i], values[i], epochSeconds, state);
+        if (event != null) {
+          found.add(event);
+        }
+      }
+      double direction = Math.signum(epochSeconds - previousSeconds);
+      found.sort(Comparator.comparingDouble(event -> direction * event.getEpochSeconds()));
+      for (DetectedEvent event : found) {
+        listener.accept(event);
+        if (event.getAction() != EventAction.CONTINUE) {
+          events.add(event);
+        }
+        if (event.getAction() == EventAction.STOP) {
+          stopEvent = event;
+          break;
+        }
+      }
+    }
+    System.arraycopy(state, 0, previousState, 0, 6);
+    System.arraycopy(values, 0, previousValues, 0, values.length);
+    previousSeconds = epochSeconds;
+    hasPrevious = true;
+  }
+
+  /** Recorded events, i.e. those with {@link EventAction#LOG} or STOP, in propagation order. */
+  public List<DetectedEvent> getEvents() {
+    return Collections.unmodifiableList(events);
+  }
+
+  /** The event that requested the propagation to stop, or null if none did. */
+  public DetectedEvent getStopEvent() {
+    return stopEvent;
+  }
+
+  /** Number of body ephemeris evaluations made so far, shared by all detectors. */
+  public long getEvaluations() {
+    return context.getEvaluations();
+  }
+
+  /**
+   * Locates a zero of the detector's function between the previous step and this one, if it
+   * changes sign in a direction the detector reports. A zero exactly at the previous step was
+   * already handled with that step. Leaves the context at the event, or wherever the search
+   * stopped, so the step's time and state are passed in rather than read from it.
+   */
+  private DetectedEvent locate(
+      EventDetector detector,
+      double previousValue,
+      double value,
+      double epochSeconds,
+      double[] state) {
+    boolean crossed = previousValue < 0 ? value >= 0 : previousValue > 0 && value <= 0;
+    if (!crossed) {
+      return null;
+    }
+    double step = epochSeconds - previousSeconds;
+    boolean increasing = (value - previousValue) * step > 0;
+    EventDetector.Direction direction = detector.getDirection();
+    if (increasing
+        ? direction == EventDetector.Direction.DECREASING
+        : direction == EventDetector.Direction.INCREASING) {
+      return null;
+    }
+    double before = 0;
+    double after = 1;
+    int iterations = 0;
+    while ((after - before) * Math.abs(step) > TIME_TOLERANCE_SECONDS
+        && iterations++ < MAX_REFINEMENT_ITERATIONS) {
+      double middle = (before + after) / 2;
+      double middleValue = evaluateAt(detector, middle, step, state);
+      if (middleValue == 0 || (middleValue < 0) != (previousValue < 0)) {
+        after = middle;
+      } else {
+        before = middle;
+      }
+    }
+    evaluateAt(detector, after, step, state);
+    if (!detector.isReported(context)) {
+      return null;
+    }
+    return new DetectedEvent(
+        detector.getName(),
+        context.getEpochSeconds(),
+        interpolated.clone(),
+        increasing,
+        detector.getAction());
+  }
+
+  /** Moves the context to a fraction of the step and evaluates the detector there. */
+  private double evaluateAt(EventDetector detector, double fraction, double step, double[] state) {
+    CubicHermite.interpolate(previousState, state, step, fraction, interpolated);
+    context.set(previousSeconds + fraction * step, interpolated);
+    return detector.g(context);
+  }
+}
@@ -0,0 +1,116 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/** Common {@link EventDetector}s, relative to bodies named as in the engine's ephemerides. */
+public final class EventDetectors {
+  private EventDetectors() {}
+
+  /**
+   * Local minima of the distance to a body within the given distance. The bracketing function is
+   * the range rate, which turns from negative to positive at a minimum.
+   */
+  public static EventDetector closeApproach(
+      String body, double maximumDistance, EventAction action) {
+    return new FunctionDetector(
+        "Close approach to " + body,
+        EventDetector.Direction.INCREASING,
+        action,
+        context -> rangeRate(context.getRelativeState(body)),
+        context -> context.getDistance(body) <= maximumDistance);
+  }
+
+  /**
+   * Periapses about a body, such as perihelia about the Sun: every minimum of the distance,
+   * however far.
+   */
+  public static EventDetector periapsis(String body, EventAction action) {
+    return new FunctionDetector(
+        "Periapsis about " + body,
+        EventDetector.Direction.INCREASING,
+        action,
+        context -> rangeRate(context.getRelativeState(body)),
+        context -> true);
+  }
+
+  /**
+   * Crossings of the x-y plane of the propagation frame through a body, e.g. the plane of Earth's
+   * equator through the Sun for an ICRF frame. Ascending nodes are {@link
+   * DetectedEvent#isIncreasing() increasing}.
+   */
+  public static EventDetector nodeCrossing(String body, EventAction action) {
+    return new FunctionDetector(
+        "Node crossing about " + body,
+        EventDetector.Direction.BOTH,
+        action,
+        context -> context.getRelativeState(body)[2],
+        context -> true);
+  }
+
+  /**
+   * Entries into or exits from a sphere about a body: {@link EventDetector.Direction#DECREASING}
+   * detects entries, {@link EventDetector.Direction#INCREASING} exits and {@link
+   * EventDetector.Direction#BOTH} either.
+   */
+  public static EventDetector region(
+      String body, double radius, EventDetector.Direction direction, EventAction action) {
+    return new FunctionDetector(
+        "Region of " + radius + " m about " + body,
+        direction,
+        action,
+        context -> context.getDistance(body) - radius,
+        context -> true);
+  }
+
+  /** Range rate times distance, with the sign of the range rate. */
+  private static double rangeRate(double[] relative) {
+    return relative[0] * relative[3] + relative[1] * relative[4] + relative[2] * relative[5];
+  }
+
+  private static final class FunctionDetector implements EventDetector {
+    private final String name;
+    private final Direction direction;
+    private final EventAction action;
+    private final ToDoubleFunction<EventContext> function;
+    private final Predicate<EventContext> reported;
+
+    FunctionDetector(
+        String name,
+        Direction direction,
+        EventAction action,
+        ToDoubleFunction<EventContext> function,
+        Predicate<EventContext> reported) {
+      this.name = name;
+      this.direction = direction;
+      this.action = action;
+      this.function = function;
+      this.reported = reported;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public double g(EventContext context) {
+      return function.applyAsDouble(context);
+    }
+
+    @Override
+    public Direction getDirection() {
+      return direction;
+    }
+
+    @Override
+    public EventAction getAction() {
+      return action;
+    }
+
+    @Override
+    public boolean isReported(EventContext context) {
+      return reported.test(context);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds close approaches to any number of bodies from the integrator steps of a propagation,
+ * without evaluating every body at every step.
+ *
+ * <p>Each body has a {@link DistanceGate} for its radius, e.g. its sphere of influence. A body's
+ * ephemeris is only evaluated at steps where the object could have come within that radius since
+ * the body was last evaluated. Once evaluated at two consecutive steps, a change of sign of the
+ * range rate brackets a distance minimum, which is located precisely on a cubic Hermite
+ * interpolation of the two steps. Minima within the body's radius are recorded.
+ *
+ * <p>The gates assume the object and a body never close on each other faster than {@link
+ * #setMaximumClosingSpeed(double)}. Far from all bodies this skips most evaluations, so logging
+ * approaches to all planets costs little more than logging them for one.
+ *
+ * <p>Not thread-safe; use one detector per propagation.
+ */
+public class GatedCloseApproachDetector implements StepConsumer {
+  private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+  private static final int REFINEMENT_ITERATIONS = 50;
+
+  private final List<GatedBody> bodies = new ArrayList<>();
+  private final List<BodyCloseApproach> closeApproaches = new ArrayList<>();
+  private double maximumClosingSpeed = DistanceGate.DEFAULT_MAXIMUM_CLOSING_SPEED;
+
+  private boolean hasPrevious;
+  private double previousSeconds;
+  private final double[] previousState = new double[6];
+  private final double[] bodyState = new double[6];
+  private final double[] objectState = new double[6];
+  private long evaluations;
+  private long skippedEvaluations;
+
+  /**
+   * Adds a body to detect close approaches to.
+   *
+   * @param radius close approaches within this distance (m) are recorded; farther away the body is
+   *     only evaluated when the gate allows.
+   */
+  public GatedCloseApproachDetector addBody(String name, double radius, BodyEphemeris ephemeris) {
+    bodies.add(new GatedBody(name, new DistanceGate(radius), ephemeris));
+    return this;
+  }
+
+  public double getMaximumClosingSpeed() {
+    return maximumClosingSpeed;
+  }
+
+  /**
+   * Upper bound of the speed (m/s) of the object relative to any body, by default {@link
+   * DistanceGate#DEFAULT_MAXIMUM_CLOSING_SPEED}. Too low a bound can miss close approaches; too
+   * high a bound evaluates bodies more often than needed.
+   */
+  public GatedCloseApproachDetector setMaximumClosingSpeed(double maximumClosingSpeed) {
+    if (!(maximumClosingSpeed > 0)) {
+      throw new IllegalArgumentException(
+          "Closing speed must be positive, got " + maximumClosingSpeed);
+    }
+    this.maximumClosingSpeed = maximumClosingSpeed;
+    return this;
+  }
+
+  @Override
+  public void accept(double epochSeconds, double[] state) {
+    for (GatedBody body : bodies) {
+      if (!body.gate.isOpen(epochSeconds)) {
+        body.evaluatedPrevious = false;
+        skippedEvaluations++;
+        continue;
+      }
+      if (hasPrevious && !body.evaluatedPrevious) {
+        // Evaluate the step before the gate opened too, so a minimum in between is bracketed.
+        relativeDistance(body, previousSeconds, previousState);
+        body.previousRangeRate = rangeRate(previousState);
+      }
+      double distance = relativeDistance(body, epochSeconds, state);
+      double rangeRate = rangeRate(state);
+      if (hasPrevious) {
+        double direction = Math.signum(epochSeconds - previousSeconds);
+        if (body.previousRangeRate * direction < 0 && rangeRate * direction >= 0) {
+          locateMinimum(body, epochSeconds, state);
+        }
+      }
+      body.gate.update(epochSeconds, distance, maximumClosingSpeed);
+      body.previousRangeRate = rangeRate;
+      body.evaluatedPrevious = true;
+    }
+    System.arraycopy(state, 0, previousState, 0, 6);
+    previousSeconds = epochSeconds;
+    hasPrevious = true;
+  }
+
+  /** Close approaches found so far, ordered by the time they were passed during propagation. */
+  public List<BodyCloseApproach> getCloseApproaches() {
+    return Collections.unmodifiableList(closeApproaches);
+  }
+
+  /** Number of body ephemeris evaluations made so far, including those refining minima. */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /** Number of body evaluations at steps that the gates skipped. */
+  public long getSkippedEvaluations() {
+    return skippedEvaluations;
+  }
+
+  /** Evaluates the body into bodyState and returns its distance from the given object state. */
+  private double relativeDistance(GatedBody body, double epochSeconds, double[] state) {
+    body.ephemeris.stateAt(epochSeconds, bodyState);
+    evaluations++;
+    double dx = state[0] - bodyState[0];
+    double dy = state[1] - bodyState[1];
+    double dz = state[2] - bodyState[2];
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /**
+   * Range rate times distance, of the given object state relative to the body state of the last
+   * evaluation. Only its sign is used.
+   */
+  private double rangeRate(double[] state) {
+    double rangeRate = 0;
+    for (int i = 0; i < 3; i++) {
+      rangeRate += (state[i] - bodyState[i]) * (state[i + 3] - bodyState[i + 3]);
+    }
+    return rangeRate;
+  }
+
+  /** Golden-section search for the distance minimum between the previous step and this one. */
+  private void locateMinimum(GatedBody body, double epochSeconds, double[] state) {
+    double step = epochSeconds - previousSeconds;
+    double a = 0;
+    double b = 1;
+    double c = b - GOLDEN_RATIO * (b - a);
+    double d = a + GOLDEN_RATIO * (b - a);
+    double fc = interpolatedDistance(body, c, step, state);
+    double fd = interpolatedDistance(body, d, step, state);
+    for (int i = 0; i < REFINEMENT_ITERATIONS; i++) {
+      if (fc < fd) {
+        b = d;
+        d = c;
+        fd = fc;
+        c = b - GOLDEN_RATIO * (b - a);
+        fc = interpolatedDistance(body, c, step, state);
+      } else {
+        a = c;
+        c = d;
+        fc = fd;
+        d = a + GOLDEN_RATIO * (b - a);
+        fd = interpolatedDistance(body, d, step, state);
+      }
+    }
+    double fraction = (a + b) / 2;
+    double distance = interpolatedDistance(body, fraction, step, state);
+    if (distance <= body.gate.getRadius()) {
+      double[] relativeState = new double[6];
+      for (int i = 0; i < 6; i++) {
+        relativeState[i] = objectState[i] - bodyState[i];
+      }
+      closeApproaches.add(
+          new BodyCloseApproach(
+              body.name, previousSeconds + fraction * step, distance, relativeState));
+    }
+  }
+
+  /**
+   * Interpolates the object between the previous step and the given one, at the given fraction of
+   * the step, into objectState, evaluates the body there and returns their distance.
+   */
+  private double interpolatedDistance(
+      GatedBody body, double fraction, double step, double[] state) {
+    CubicHermite.interpolate(previousState, state, step, fraction, objectState);
+    return relativeDistance(body, previousSeconds + fraction * step, objectState);
+  }
+
+  private static final class GatedBody {
+    final String name;
+    final DistanceGate gate;
+    final BodyEphemeris ephemeris;
+    boolean evaluatedPrevious;
+    double previousRangeRate;
+
+    GatedBody(String name, DistanceGate gate, BodyEphemeris ephemeris) {
+      this.name = name;
+      this.gate = gate;
+      this.ephemeris = ephemeris;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package org.b612foundation.adam.propagators;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link PropagationListener} that aggregates counters and phase timers over all propagations it is
+ * attached to, and exposes them as a JMX MBean. Thread-safe, so one instance can be shared by all
+ * propagators of a worker.
+ */
+public class JmxPropagationMetrics implements PropagationListener, JmxPropagationMetricsMBean {
+  private final LongAdder propagationsStarted = new LongAdder();
+  private final LongAdder propagationsSucceeded = new LongAdder();
+  private final LongAdder propagationsFailed = new LongAdder();
+  private final LongAdder steps = new LongAdder();
+  private final LongAdder closeApproaches = new LongAdder();
+  private final LongAdder impacts = new LongAdder();
+  private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+  private volatile double lastFractionComplete = 0;
+
+  public JmxPropagationMetrics() {
+    for (Phase phase : Phase.values()) {
+      phaseNanos.put(phase, new LongAdder());
+    }
+  }
+
+  /**
+   * Registers this instance with the platform MBean server under
+   * org.b612foundation.adam:type=PropagationMetrics,name=[name].
+   *
+   * @return the name it was registered under.
+   */
+  public ObjectName register(String name) throws JMException {
+    ObjectName objectName =
+        new ObjectName(
+            "org.b612foundation.adam:type=PropagationMetrics,name=" + ObjectName.quote(name));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public void propagationStarted(String propagationId) {
+    propagationsStarted.increment();
+    lastFractionComplete = 0;
+  }
+
+  @Override
+  public void propagationFinished(String propagationId, boolean succeeded) {
+    if (succeeded) {
+      propagationsSucceeded.increment();
+    } else {
+      propagationsFailed.increment();
+    }
+  }
+
+  @Override
+  public void phaseFinished(Phase phase, long elapsedNanos) {
+    phaseNanos.get(phase).add(elapsedNanos);
+  }
+
+  @Override
+  public void stepTaken(double fractionComplete) {
+    steps.increment();
+    lastFractionComplete = fractionComplete;
+  }
+
+  @Override
+  public void eventDetected(OrbitEventType eventType) {
+    switch (eventType) {
+      case CLOSE_APPROACH:
+        closeApproaches.increment();
+        break;
+      case IMPACT:
+        impacts.increment();
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public long getPropagationsStarted() {
+    return propagationsStarted.sum();
+  }
+
+  @Override
+  public long getPropagationsSucceeded() {
+    return propagationsSucceeded.sum();
+  }
+
+  @Override
+  public long getPropagationsFailed() {
+    return propagationsFailed.sum();
+  }
+
+  @Override
+  public long getSteps() {
+    return steps.sum();
+  }
+
+  @Override
+  public long getCloseApproaches() {
+    return closeApproaches.sum();
+  }
+
+  @Override
+  public long getImpacts() {
+    return impacts.sum();
+  }
+
+  @Override
+  public long getSetupMillis() {
+    return getPhaseMillis(Phase.SETUP);
+  }
+
+  @Override
+  public long getIntegrationMillis() {
+    return getPhaseMillis(Phase.INTEGRATION);
+  }
+
+  @Override
+  public long getInterpolationMillis() {
+    return getPhaseMillis(Phase.INTERPOLATION);
+  }
+
+  @Override
+  public long getExportMillis() {
+    return getPhaseMillis(Phase.EXPORT);
+  }
+
+  @Override
+  public double getStepsPerSecond() {
+    long nanos = phaseNanos.get(Phase.INTEGRATION).sum();
+    return nanos == 0 ? 0 : steps.sum() * 1e9 / nanos;
+  }
+
+  @Override
+  public double getLastFractionComplete() {
+    return lastFractionComplete;
+  }
+
+  @Override
+  public void reset() {
+    propagationsStarted.reset();
+    propagationsSucceeded.reset();
+    propagationsFailed.reset();
+    steps.reset();
+    closeApproaches.reset();
+    impacts.reset();
+    for (LongAdder nanos : phaseNanos.values()) {
+      nanos.reset();
+    }
+    lastFractionComplete = 0;
+  }
+
+  private long getPhaseMillis(Phase phase) {
+    return TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase).sum());
+  }
+}
@@ -0,0 +1,33 @@
+package org.b612foundation.adam.propagators;
+
+/** Management interface of {@link JmxPropagationMetrics}. */
+public interface JmxPropagationMetricsMBean {
+  long getPropagationsStarted();
+
+  long getPropagationsSucceeded();
+
+  long getPropagationsFailed();
+
+  long getSteps();
+
+  long getCloseApproaches();
+
+  long getImpacts();
+
+  long getSetupMillis();
+
+  long getIntegrationMillis();
+
+  long getInterpolationMillis();
+
+  long getExportMillis();
+
+  /** Integrator steps per second of integration time. */
+  double getStepsPerSecond();
+
+  /** Fraction of the time span completed by the most recently reported step. */
+  double getLastFractionComplete();
+
+  /** Resets all counters and timers to zero. */
+  void reset();
+}
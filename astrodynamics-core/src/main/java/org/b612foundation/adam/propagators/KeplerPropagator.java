@@ -0,0 +1,413 @@
+package org.b612foundation.adam.propagators;
+
+import static org.b612foundation.adam.common.OrbitDataHelper.ANOMALY_ANGLE_EPSILON;
+import static org.b612foundation.adam.common.OrbitDataHelper.STATE_DIMENSION;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.astro.AstroUtils;
+import org.b612foundation.adam.common.OrbitDataHelper;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.OdmCommonHeader;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OemDataBlock;
+import org.b612foundation.adam.opm.OemMetadata;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+
+/**
+ * Two-body propagator using universal variables, valid for elliptic, parabolic and hyperbolic
+ * orbits. All perturbations are ignored, which makes it suitable for fast first-pass screening
+ * before a full force model propagation.
+ *
+ * <p>The static methods are the batch primitives: they work on flat arrays of position (km) and
+ * velocity (km/s) and allocate nothing, so they can be called in tight loops over many objects or
+ * epochs. As an {@link OrbitPropagator} it exports the OPM state on the time grid of the
+ * parameters, ignoring the force model of the configuration. Times are treated as uniform, without
+ * leap seconds.
+ */
+public class KeplerPropagator implements OrbitPropagator {
+  private static final int MAX_ITERATIONS = 50;
+  private static final double TOLERANCE = 1e-12;
+  // Order of the Laguerre-Conway iteration.
+  private static final double LAGUERRE_ORDER = 5;
+
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging) {
+    OrbitParameterMessage opm = propagationParams.getOpm();
+    double gm = gravitationalParameter(opm);
+    double[] initialState = initialState(opm, gm);
+
+    LocalDateTime epoch = AstroUtils.parseIsoDateTime(opm.getState_vector().getEpoch());
+    LocalDateTime start = AstroUtils.parseIsoDateTime(propagationParams.getStart_time());
+    LocalDateTime end = AstroUtils.parseIsoDateTime(propagationParams.getEnd_time());
+    double startSeconds = secondsBetween(epoch, start);
+    double spanSeconds = secondsBetween(start, end);
+    double[] secondsSinceEpoch;
+    switch (propagationParams.getOutputMode()) {
+      case FINAL_STATE_ONLY:
+        secondsSinceEpoch = new double[] {startSeconds + spanSeconds};
+        break;
+      case EVENTS_ONLY:
+        secondsSinceEpoch = new double[0];
+        break;
+      default:
+        secondsSinceEpoch =
+            timeGrid(startSeconds, spanSeconds, propagationParams.getStep_duration_sec());
+    }
+
+    double[] states = new double[STATE_DIMENSION * secondsSinceEpoch.length];
+    propagate(initialState, gm, secondsSinceEpoch, states);
+    return exportOrbitEphemerisMessage(
+        opm, epoch, secondsSinceEpoch, states, propagationParams.getOutputMode());
+  }
+
+  /**
+   * Propagates a state to each of the given times.
+   *
+   * @param state position (km) and velocity (km/s) at the reference epoch.
+   * @param gm gravitational parameter of the central body, km^3/s^2.
+   * @param secondsSinceEpoch times to propagate to, in seconds from the reference epoch.
+   * @param out receives six values per time, position and velocity in the order of the times.
+   */
+  public static void propagate(
+      double[] state, double gm, double[] secondsSinceEpoch, double[] out) {
+    if (out.length < STATE_DIMENSION * secondsSinceEpoch.length) {
+      throw new IllegalArgumentException(
+          "Output needs "
+              + STATE_DIMENSION * secondsSinceEpoch.length
+              + " values, has "
+              + out.length);
+    }
+    for (int i = 0; i < secondsSinceEpoch.length; i++) {
+      propagate(state, 0, gm, secondsSinceEpoch[i], out, STATE_DIMENSION * i);
+    }
+  }
+
+  /**
+   * Propagates the state at {@code stateOffset} of {@code states} by {@code seconds} and writes the
+   * result at {@code outOffset} of {@code out}, which may be the same array.
+   *
+   * @param gm gravitational parameter of the central body, km^3/s^2.
+   * @throws IllegalStateException if Kepler's equation does not converge.
+   */
+  public static void propagate(
+      double[] states, int stateOffset, double gm, double seconds, double[] out, int outOffset) {
+    double x = states[stateOffset];
+    double y = states[stateOffset + 1];
+    double z = states[stateOffset + 2];
+    double vx = states[stateOffset + 3];
+    double vy = states[stateOffset + 4];
+    double vz = states[stateOffset + 5];
+    double r0 = Math.sqrt(x * x + y * y + z * z);
+    double v0Squared = vx * vx + vy * vy + vz * vz;
+    double sqrtGm = Math.sqrt(gm);
+    double sigma0 = (x * vx + y * vy + z * vz) / sqrtGm;
+    // Reciprocal of the semi-major axis: positive for ellipses, zero for parabolas.
+    double alpha = 2 / r0 - v0Squared / gm;
+
+    double dt = seconds;
+    if (alpha > 0) {
+      // Whole revolutions do not change the state, so keep the anomaly small.
+      double period = 2 * Math.PI / Math.sqrt(gm * alpha * alpha * alpha);
+      dt = Math.IEEEremainder(seconds, period);
+    }
+    if (dt == 0) {
+      System.arraycopy(states, stateOffset, out, outOffset, STATE_DIMENSION);
+      return;
+    }
+
+    double chi = initialUniversalAnomaly(r0, sigma0, alpha, gm, dt);
+    // The time equation increases with the universal anomaly, so bracketing its root keeps the
+    // iteration safe where a Laguerre-Conway step overshoots.
+    double low = Double.NEGATIVE_INFINITY;
+    double high = Double.POSITIVE_INFINITY;
+    boolean converged = false;
+    for (int i = 0; i < MAX_ITERATIONS && !converged; i++) {
+      double chiSquared = chi * chi;
+      double psi = alpha * chiSquared;
+      double c = stumpffC(psi);
+      double s = stumpffS(psi);
+      double timeError =
+          sigma0 * chiSquared * c
+              + (1 - alpha * r0) * chiSquared * chi * s
+              + r0 * chi
+              - sqrtGm * dt;
+      if (timeError == 0) {
+        converged = true;
+        break;
+      } else if (timeError < 0 || (Double.isNaN(timeError) && chi < 0)) {
+        low = chi;
+      } else {
+        high = chi;
+      }
+      // The derivative of the time equation is the radius.
+      double r = sigma0 * chi * (1 - psi * s) + (1 - alpha * r0) * chiSquared * c + r0;
+      double rDerivative = sigma0 * (1 - psi * c) + (1 - alpha * r0) * chi * (1 - psi * s);
+      double discriminant =
+          Math.abs(
+              (LAGUERRE_ORDER - 1) * (LAGUERRE_ORDER - 1) * r * r
+                  - LAGUERRE_ORDER * (LAGUERRE_ORDER - 1) * timeError * rDerivative);
+      double next =
+          chi - LAGUERRE_ORDER * timeError / (r + Math.copySign(Math.sqrt(discriminant), r));
+      if (!(next >= low && next <= high)) {
+        if (Double.isInfinite(low)) {
+          next = chi - Math.max(1, Math.abs(chi));
+        } else if (Double.isInfinite(high)) {
+          next = chi + Math.max(1, Math.abs(chi));
+        } else {
+          next = (low + high) / 2;
+        }
+      }
+      converged = Math.abs(next - chi) <= TOLERANCE * Math.max(1, Math.abs(chi));
+      chi = next;
+    }
+    if (!converged) {
+      throw new IllegalStateException(
+          "Kepler's equation did not converge for a propagation of " + seconds + " s");
+    }
+    double chiSquared = chi * chi;
+    double psi = alpha * chiSquared;
+    double c = stumpffC(psi);
+    double s = stumpffS(psi);
+    double r = sigma0 * chi * (1 - psi * s) + (1 - alpha * r0) * chiSquared * c + r0;
+
+    // Lagrange coefficients.
+    double f = 1 - chiSquared * c / r0;
+    double g = dt - chiSquared * chi * s / sqrtGm;
+    double fDot = sqrtGm / (r * r0) * chi * (psi * s - 1);
+    double gDot = 1 - chiSquared * c / r;
+    out[outOffset] = f * x + g * vx;
+    out[outOffset + 1] = f * y + g * vy;
+    out[outOffset + 2] = f * z + g * vz;
+    out[outOffset + 3] = fDot * x + gDot * vx;
+    out[outOffset + 4] = fDot * y + gDot * vy;
+    out[outOffset + 5] = fDot * z + gDot * vz;
+  }
+
+  /**
+   * Converts Keplerian elements to position (km) and velocity (km/s), using the gravitational
+   * parameter of the elements.
+   *
+   * @throws IllegalArgumentException for parabolic elements, which a semi-major axis cannot
+   *     describe, or elements without a gravitational parameter.
+   */
+  public static double[] toCartesian(KeplerianElements elements) {
+    double gm = elements.getGm();
+    double a = elements.getSemi_major_axis();
+    double e = elements.getEccentricity();
+    if (gm <= 0) {
+      throw new IllegalArgumentException("Keplerian elements have no gravitational parameter");
+    }
+    if (e == 1 || (e < 1) != (a > 0)) {
+      throw new IllegalArgumentException(
+          "Semi-major axis " + a + " km is inconsistent with eccentricity " + e);
+    }
+    double p = a * (1 - e * e);
+    double i = Math.toRadians(elements.getInclination());
+    double raan = Math.toRadians(elements.getRa_of_asc_node());
+    double argPeri = Math.toRadians(elements.getArg_of_pericenter());
+    boolean fromMeanAnomaly = elements.hasMeanAnomaly(ANOMALY_ANGLE_EPSILON);
+    double nu = fromMeanAnomaly ? 0 : Math.toRadians(elements.getTrue_anomaly());
+
+    // Position and velocity in the perifocal frame.
+    double cosNu = Math.cos(nu);
+    double sinNu = Math.sin(nu);
+    double radius = p / (1 + e * cosNu);
+    double speed = Math.sqrt(gm / p);
+    double px = radius * cosNu;
+    double py = radius * sinNu;
+    double pvx = -speed * sinNu;
+    double pvy = speed * (e + cosNu);
+
+    double cosO = Math.cos(raan);
+    double sinO = Math.sin(raan);
+    double cosW = Math.cos(argPeri);
+    double sinW = Math.sin(argPeri);
+    double cosI = Math.cos(i);
+    double sinI = Math.sin(i);
+    double r11 = cosO * cosW - sinO * sinW * cosI;
+    double r12 = -cosO * sinW - sinO * cosW * cosI;
+    double r21 = sinO * cosW + cosO * sinW * cosI;
+    double r22 = -sinO * sinW + cosO * cosW * cosI;
+    double r31 = sinW * sinI;
+    double r32 = cosW * sinI;
+    double[] state =
+        new double[] {
+          r11 * px + r12 * py,
+          r21 * px + r22 * py,
+          r31 * px + r32 * py,
+          r11 * pvx + r12 * pvy,
+          r21 * pvx + r22 * pvy,
+          r31 * pvx + r32 * pvy
+        };
+    if (fromMeanAnomaly) {
+      // The state above is at pericenter; the mean anomaly is the time since then.
+      double meanMotion = Math.sqrt(gm / Math.abs(a * a * a));
+      double secondsSincePericenter = Math.toRadians(elements.getMean_anomaly()) / meanMotion;
+      propagate(state, 0, gm, secondsSincePericenter, state, 0);
+    }
+    return state;
+  }
+
+  /**
+   * Returns the position (km) and velocity (km/s) at the OPM epoch, from its Keplerian elements if
+   * it has them and its state vector otherwise.
+   */
+  public static double[] initialState(OrbitParameterMessage opm, double gm) {
+    if (opm.getKeplerian() == null) {
+      return OrbitDataHelper.extractStateVector(opm.getState_vector());
+    }
+    KeplerianElements elements = opm.getKeplerian();
+    if (elements.getGm() <= 0) {
+      elements = elements.deepCopy().setGm(gm);
+    }
+    return toCartesian(elements);
+  }
+
+  /**
+   * Returns the gravitational parameter in km^3/s^2 of the OPM's Keplerian elements, or of its
+   * center if it has none.
+   */
+  public static double gravitationalParameter(OrbitParameterMessage opm) {
+    if (opm.getKeplerian() != null && opm.getKeplerian().getGm() > 0) {
+      return opm.getKeplerian().getGm();
+    }
+    OdmCommonMetadata.CenterName center = opm.getMetadata().getCenter_name();
+    if (center == null) {
+      throw new IllegalArgumentException("OPM has neither a gravitational parameter nor a center");
+    }
+    switch (center) {
+      case EARTH:
+        return AstroConstants.GM_EARTH;
+      case SUN:
+        return AstroConstants.GM;
+      default:
+        throw new IllegalArgumentException("No gravitational parameter for center " + center);
+    }
+  }
+
+  /** Returns the start, every whole step after it within the span, and the end. */
+  private static double[] timeGrid(double startSeconds, double spanSeconds, long stepSeconds) {
+    if (stepSeconds <= 0 || spanSeconds == 0) {
+      return spanSeconds == 0
+          ? new double[] {startSeconds}
+          : new double[] {startSeconds, startSeconds + spanSeconds};
+    }
+    double step = Math.copySign(stepSeconds, spanSeconds);
+    int steps = (int) Math.floor(Math.abs(spanSeconds) / stepSeconds);
+    boolean endOnGrid = steps * (double) stepSeconds == Math.abs(spanSeconds);
+    double[] grid = new double[steps + (endOnGrid ? 1 : 2)];
+    for (int i = 0; i <= steps; i++) {
+      grid[i] = startSeconds + i * step;
+    }
+    grid[grid.length - 1] = startSeconds + spanSeconds;
+    return grid;
+  }
+
+  private static OrbitEphemerisMessage exportOrbitEphemerisMessage(
+      OrbitParameterMessage opm,
+      LocalDateTime epoch,
+      double[] secondsSinceEpoch,
+      double[] states,
+      PropagationOutputMode outputMode) {
+    OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
+    oem.setHeader(
+        new OdmCommonHeader()
+            .setCreation_date(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+            .setOriginator("ADAM Kepler propagator"));
+    if (outputMode == PropagationOutputMode.EVENTS_ONLY) {
+      return oem;
+    }
+
+    OdmCommonMetadata opmMetadata = opm.getMetadata();
+    OemMetadata metadata = new OemMetadata();
+    metadata.setObject_name(opmMetadata.getObject_name());
+    metadata.setObject_id(opmMetadata.getObject_id());
+    metadata.setCenter_name(opmMetadata.getCenter_name());
+    metadata.setRef_frame(opmMetadata.getRef_frame());
+    metadata.setTime_system(opmMetadata.getTime_system());
+    String startTime = formatDate(epoch, secondsSinceEpoch[0]);
+    String stopTime = formatDate(epoch, secondsSinceEpoch[secondsSinceEpoch.length - 1]);
+    metadata.setStart_time(startTime);
+    metadata.setUsable_start_time(startTime);
+    metadata.setStop_time(stopTime);
+    metadata.setUsable_stop_time(stopTime);
+
+    OemDataBlock block = new OemDataBlock();
+    block.getComments().add("Two-body propagation, perturbations ignored");
+    block.setMetadata(metadata);
+    for (int i = 0; i < secondsSinceEpoch.length; i++) {
+      int offset = STATE_DIMENSION * i;
+      block.addLine(
+          formatDate(epoch, secondsSinceEpoch[i]),
+          states[offset],
+          states[offset + 1],
+          states[offset + 2],
+          states[offset + 3],
+          states[offset + 4],
+          states[offset + 5]);
+    }
+    oem.addBlock(block);
+    return oem;
+  }
+
+  /** Guess of the universal anomaly after {@code dt} seconds, following Vallado. */
+  private static double initialUniversalAnomaly(
+      double r0, double sigma0, double alpha, double gm, double dt) {
+    if (alpha > 1e-12 / r0) {
+      return Math.sqrt(gm) * dt * alpha;
+    }
+    if (alpha < -1e-12 / r0) {
+      double a = 1 / alpha;
+      double guess =
+          Math.copySign(Math.sqrt(-a), dt)
+              * Math.log(
+                  -2 * gm * alpha * dt
+                      / (sigma0 * Math.sqrt(gm)
+                          + Math.copySign(Math.sqrt(-gm * a), dt) * (1 - r0 * alpha)));
+      if (!Double.isNaN(guess) && !Double.isInfinite(guess)) {
+        return guess;
+      }
+    }
+    return Math.sqrt(gm) * dt / r0;
+  }
+
+  private static double stumpffC(double psi) {
+    if (psi > 1e-6) {
+      return (1 - Math.cos(Math.sqrt(psi))) / psi;
+    } else if (psi < -1e-6) {
+      return (Math.cosh(Math.sqrt(-psi)) - 1) / -psi;
+    }
+    return 1.0 / 2 - psi / 24 + psi * psi / 720;
+  }
+
+  private static double stumpffS(double psi) {
+    if (psi > 1e-6) {
+      double sqrtPsi = Math.sqrt(psi);
+      return (sqrtPsi - Math.sin(sqrtPsi)) / (psi * sqrtPsi);
+    } else if (psi < -1e-6) {
+      double sqrtPsi = Math.sqrt(-psi);
+      return (Math.sinh(sqrtPsi) - sqrtPsi) / (-psi * sqrtPsi);
+    }
+    return 1.0 / 6 - psi / 120 + psi * psi / 5040;
+  }
+
+  private static double secondsBetween(LocalDateTime from, LocalDateTime to) {
+    return ChronoUnit.NANOS.between(from, to) / AstroConstants.SEC_TO_NANO;
+  }
+
+  private static String formatDate(LocalDateTime epoch, double secondsSinceEpoch) {
+    return epoch
+        .plusNanos(Math.round(secondsSinceEpoch * AstroConstants.SEC_TO_NANO))
+        .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+  }
+}
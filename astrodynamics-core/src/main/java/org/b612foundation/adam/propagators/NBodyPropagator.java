@@ -0,0 +1,901 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.Formulation;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorMethod;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorProfile;
+import org.hipparchus.exception.MathRuntimeException;
+import org.hipparchus.ode.LocalizedODEFormats;
+import org.hipparchus.ode.ODEIntegrator;
+import org.hipparchus.ode.ODEState;
+import org.hipparchus.ode.ODEStateAndDerivative;
+import org.hipparchus.ode.OrdinaryDifferentialEquation;
+import org.hipparchus.ode.events.Action;
+import org.hipparchus.ode.events.ODEEventHandler;
+import org.hipparchus.ode.nonstiff.AdamsMoultonIntegrator;
+import org.hipparchus.ode.nonstiff.DormandPrince853Integrator;
+import org.hipparchus.ode.sampling.ODEStateInterpolator;
+import org.hipparchus.ode.sampling.ODEStepHandler;
+
+/**
+ * Numerically integrates an orbit about a central body perturbed by point masses, in the {@link
+ * Formulation} of the configuration.
+ *
+ * <p>In the {@link Formulation#ENCKE} formulation only the deviation from an osculating two-body
+ * orbit is integrated; the reference orbit itself is propagated exactly by {@link
+ * KeplerPropagator}. Far from the perturbers the deviation is small and smooth, so the integrator
+ * takes longer steps for the same error in the total state. When the deviation exceeds {@link
+ * #setRectificationThreshold(double) a fraction} of the radius the reference is rectified, i.e.
+ * restarted from the current osculating state.
+ *
+ * <p>The {@link IntegratorMethod#ADAMS} method takes two force evaluations per step where
+ * Runge-Kutta takes a dozen or more, which pays off on long smooth arcs of the {@link
+ * Formulation#COWELL} formulation. In the {@link Formulation#ENCKE} formulation Runge-Kutta already
+ * takes long steps, and Adams gains little.
+ * Close to a perturbing body, within {@link #setEncounterHillRadii(double) a few of its Hill
+ * radii}, the integration switches to Runge-Kutta, which adapts its step quickly; it switches back
+ * once clear of the encounter. Should the Adams step control fail, the propagation continues with
+ * Runge-Kutta.
+ *
+ * <p>Within {@link #setRegularizationDistance(double) a given distance} of a perturbing body the
+ * integration is regularized by a Sundman transformation: the independent variable becomes s, with
+ * dt = r ds for the distance r to the body, and time is integrated along with the state. Steps in
+ * s shrink in time with the distance to the body, so the step size follows the encounter instead of
+ * being cut back by the error control, and the encounter takes fewer steps. Regularization is off
+ * unless the configuration sets a distance.
+ *
+ * <p>The tolerances of the integrator profile are applied relative to the initial radius and speed
+ * of the orbit, so both formulations bound the same error in the total state.
+ *
+ * <p>Units are meters and seconds. Not thread-safe; use one propagator per propagation.
+ */
+public class NBodyPropagator {
+  private static final Logger log = Logger.getLogger(NBodyPropagator.class.getName());
+
+  /**
+   * Default maximum step, seconds, of the {@link Formulation#ENCKE} formulation where the
+   * integrator profile allows less. The deviation stays smooth over steps at which the error of the
+   * total motion would grow, so Encke keeps its accuracy at this bound where Cowell loses it.
+   */
+  public static final double DEFAULT_ENCKE_MAXIMUM_STEP_SIZE = 30 * 86400;
+
+  /** Default deviation, as a fraction of the radius, above which Encke's reference is rectified. */
+  public static final double DEFAULT_RECTIFICATION_THRESHOLD = 1e-3;
+
+  /** Default distance, in Hill radii of the nearest perturber, of the multistep fallback. */
+  public static final double DEFAULT_ENCOUNTER_HILL_RADII = 3;
+
+  private static final int EVENT_MAX_ITERATIONS = 100;
+  // Number of past steps of the Adams methods, for an order of ADAMS_STEPS + 1.
+  private static final int ADAMS_STEPS = 6;
+  // Encounters are checked for at least this often, seconds.
+  private static final double ENCOUNTER_CHECK_INTERVAL = 86400;
+  // Leaving an encounter requires this factor more distance than entering, so that integrations
+  // do not switch back and forth at the boundary.
+  private static final double ENCOUNTER_HYSTERESIS = 1.25;
+  // Fraction of the minimum step to locate the end of a regularized integration within.
+  private static final double REGULARIZED_END_CONVERGENCE = 1e-3;
+  // Bisections of a regularized step to locate an output time in, enough to reach the resolution
+  // of the independent variable.
+  private static final int OUTPUT_BISECTIONS = 64;
+  private static final double[] NO_OUTPUT = new double[0];
+
+  private final PointMassForceModel forces;
+  private final IntegratorProfile profile;
+  private Formulation formulation;
+  private IntegratorMethod integratorMethod;
+  private double rectificationThreshold = DEFAULT_RECTIFICATION_THRESHOLD;
+  private double encounterHillRadii = DEFAULT_ENCOUNTER_HILL_RADII;
+  // NaN for the default of the formulation.
+  private double maximumStepSize = Double.NaN;
+  private double regularizationDistance;
+
+  private int evaluations;
+  private int steps;
+  private int rectifications;
+  private double multistepSeconds;
+  private double regularizedSeconds;
+  private boolean multistepFailed;
+  // The phase to continue with after an event stopped the integration.
+  private Phase nextPhase;
+
+  /**
+   * Propagates with the integrator profile, formulation, integrator method and regularization
+   * distance of the configuration. Other settings of the configuration, e.g. the bodies, are up to
+   * the force model.
+   *
+   * @throws IllegalArgumentException if the regularization distance is negative.
+   */
+  public NBodyPropagator(PointMassForceModel forces, PropagatorConfiguration config) {
+    this.forces = forces;
+    this.profile = config.getIntegratorProfile();
+    this.formulation = config.getFormulation();
+    this.integratorMethod = config.getIntegratorMethod();
+    setRegularizationDistance(config.getRegularizationDistanceMeters());
+  }
+
+  public Formulation getFormulation() {
+    return formulation;
+  }
+
+  /** Overrides the formulation of the configuration. */
+  public NBodyPropagator setFormulation(Formulation formulation) {
+    this.formulation = formulation;
+    return this;
+  }
+
+  public IntegratorMethod getIntegratorMethod() {
+    return integratorMethod;
+  }
+
+  /** Overrides the integrator method of the configuration. */
+  public NBodyPropagator setIntegratorMethod(IntegratorMethod integratorMethod) {
+    this.integratorMethod = integratorMethod;
+    return this;
+  }
+
+  public double getMaximumStepSize() {
+    if (!Double.isNaN(maximumStepSize)) {
+      return maximumStepSize;
+    }
+    if (formulation == Formulation.ENCKE) {
+      return Math.max(profile.getMaximumStepSize(), DEFAULT_ENCKE_MAXIMUM_STEP_SIZE);
+    }
+    return profile.getMaximumStepSize();
+  }
+
+  /**
+   * Upper bound of the integrator step, seconds. Defaults to that of the integrator profile, or at
+   * least {@link #DEFAULT_ENCKE_MAXIMUM_STEP_SIZE} in the {@link Formulation#ENCKE} formulation:
+   * the profiles bound steps of the total motion, while the deviation stays smooth over much
+   * longer steps.
+   */
+  public NBodyPropagator setMaximumStepSize(double maximumStepSize) {
+    if (!(maximumStepSize >= profile.getMinimumStepSize())) {
+      throw new IllegalArgumentException(
+          "Maximum step must be at least the minimum step, got " + maximumStepSize);
+    }
+    this.maximumStepSize = maximumStepSize;
+    return this;
+  }
+
+  public double getRectificationThreshold() {
+    return rectificationThreshold;
+  }
+
+  /**
+   * Deviation from the reference orbit, as a fraction of the reference radius, above which the
+   * {@link Formulation#ENCKE} reference is rectified. Defaults to {@link
+   * #DEFAULT_RECTIFICATION_THRESHOLD}.
+   */
+  public NBodyPropagator setRectificationThreshold(double rectificationThreshold) {
+    if (!(rectificationThreshold > 0)) {
+      throw new IllegalArgumentException(
+          "Rectification threshold must be positive, got " + rectificationThreshold);
+    }
+    this.rectificationThreshold = rectificationThreshold;
+    return this;
+  }
+
+  public double getEncounterHillRadii() {
+    return encounterHillRadii;
+  }
+
+  /**
+   * Distance from a perturbing body, in its Hill radii, within which the {@link
+   * IntegratorMethod#ADAMS} method falls back to Runge-Kutta. Defaults to {@link
+   * #DEFAULT_ENCOUNTER_HILL_RADII}.
+   */
+  public NBodyPropagator setEncounterHillRadii(double encounterHillRadii) {
+    if (!(encounterHillRadii > 0)) {
+      throw new IllegalArgumentException(
+          "Encounter distance must be positive, got " + encounterHillRadii);
+    }
+    this.encounterHillRadii = encounterHillRadii;
+    return this;
+  }
+
+  public double getRegularizationDistance() {
+    return regularizationDistance;
+  }
+
+  /**
+   * Overrides the regularization distance of the configuration: the distance from a perturbing
+   * body, m, within which the integration is regularized; 0 never regularizes. Larger distances
+   * save more evaluations in deep encounters, up to about the Hill radius of the body, but also
+   * regularize distant passes that gain nothing.
+   */
+  public NBodyPropagator setRegularizationDistance(double regularizationDistance) {
+    if (!(regularizationDistance >= 0)) {
+      throw new IllegalArgumentException(
+          "Regularization distance must not be negative, got " + regularizationDistance);
+    }
+    this.regularizationDistance = regularizationDistance;
+    return this;
+  }
+
+  /**
+   * Propagates a state between two times.
+   *
+   * @param initialState position (m) and velocity (m/s) relative to the central body at {@code
+   *     startSeconds}.
+   * @param startSeconds seconds since the propagation epoch of the initial state.
+   * @param endSeconds seconds since the propagation epoch to propagate to; earlier than the start
+   *     to propagate backwards.
+   * @param stepConsumer receives the initial state and the state at the end of every integrator
+   *     step; may be null.
+   * @return the state at {@code endSeconds}.
+   */
+  public double[] propagate(
+      double[] initialState, double startSeconds, double endSeconds, StepConsumer stepConsumer) {
+    return propagate(initialState, startSeconds, endSeconds, stepConsumer, NO_OUTPUT, null);
+  }
+
+  /**
+   * Propagates like {@link #propagate(double[], double, double, StepConsumer)}, also handing the
+   * state at each of the given times to the output consumer. States are interpolated within the
+   * integrator steps, so outputs cost no extra steps.
+   *
+   * @param outputSeconds seconds since the propagation epoch to output states at, ordered from
+   *     {@code startSeconds} towards {@code endSeconds} and within both.
+   * @param outputConsumer receives the state at each output time, in order; may be null if there
+   *     are no output times.
+   * @throws IllegalArgumentException if the output times are out of order or out of range.
+   */
+  public double[] propagate(
+      double[] initialState,
+      double startSeconds,
+      double endSeconds,
+      StepConsumer stepConsumer,
+      double[] outputSeconds,
+      StepConsumer outputConsumer) {
+    double direction = endSeconds < startSeconds ? -1 : 1;
+    double previousOutput = startSeconds;
+    for (double seconds : outputSeconds) {
+      if (!(direction * (seconds - previousOutput) >= 0
+          && direction * (endSeconds - seconds) >= 0)) {
+        throw new IllegalArgumentException(
+            "Output times must be ordered between start and end, got " + seconds);
+      }
+      previousOutput = seconds;
+    }
+    if (outputSeconds.length > 0 && outputConsumer == null) {
+      throw new IllegalArgumentException("Output times need an output consumer");
+    }
+    evaluations = 0;
+    steps = 0;
+    rectifications = 0;
+    multistepSeconds = 0;
+    regularizedSeconds = 0;
+    multistepFailed = false;
+    Equations equations;
+    double[] y0;
+    if (formulation == Formulation.ENCKE) {
+      equations = new EnckeEquations(initialState, startSeconds);
+      y0 = new double[6];
+    } else {
+      equations = new CowellEquations();
+      y0 = initialState.clone();
+    }
+    StepHandler stepHandler =
+        new StepHandler(equations, stepConsumer, outputSeconds, outputConsumer, direction);
+    double[] tolerances = tolerances(initialState);
+    ODEState current = new ODEState(startSeconds, y0);
+    Phase phase = phaseAt(startSeconds, initialState);
+    while (true) {
+      if (phase == Phase.REGULARIZED) {
+        double[] state = new double[6];
+        equations.toTotal(current.getTime(), current.getPrimaryState(), state);
+        double seconds =
+            integrateRegularized(current.getTime(), state, endSeconds, tolerances, stepHandler);
+        regularizedSeconds += Math.abs(seconds - current.getTime());
+        if (seconds == endSeconds) {
+          stepHandler.outputRemaining(state);
+          return state;
+        }
+        // Stopped on leaving the regularization distance.
+        current = equations.restart(seconds, state);
+        phase = phaseAt(seconds, state);
+        continue;
+      }
+      boolean multistep = phase == Phase.MULTISTEP;
+      ODEIntegrator integrator =
+          multistep ? createAdamsIntegrator(tolerances) : createRungeKuttaIntegrator(tolerances);
+      if (equations instanceof EnckeEquations) {
+        integrator.addEventHandler(
+            (EnckeEquations) equations,
+            getMaximumStepSize(),
+            profile.getMinimumStepSize(),
+            EVENT_MAX_ITERATIONS);
+      }
+      if (integratorMethod == IntegratorMethod.ADAMS && !multistepFailed) {
+        integrator.addEventHandler(
+            new EncounterSwitch(equations, multistep),
+            Math.min(getMaximumStepSize(), ENCOUNTER_CHECK_INTERVAL),
+            profile.getMinimumStepSize(),
+            EVENT_MAX_ITERATIONS);
+      }
+      if (regularizationDistance > 0) {
+        integrator.addEventHandler(
+            new RegularizationEntry(equations),
+            Math.min(getMaximumStepSize(), ENCOUNTER_CHECK_INTERVAL),
+            profile.getMinimumStepSize(),
+            EVENT_MAX_ITERATIONS);
+      }
+      integrator.addStepHandler(stepHandler);
+      ODEStateAndDerivative end;
+      try {
+        end = integrator.integrate(equations, current, endSeconds);
+      } catch (MathRuntimeException e) {
+        if (!multistep || !isStepControlFailure(e)) {
+          throw e;
+        }
+        // The Adams error estimate can fail to converge, e.g. right after its start at tight
+        // tolerances. Continue from the last step with Runge-Kutta.
+        log.warning(
+            "Adams integration failed at "
+                + stepHandler.lastSeconds
+                + " s, continuing with Runge-Kutta: "
+                + e.getMessage());
+        multistepSeconds += Math.abs(stepHandler.lastSeconds - current.getTime());
+        current = equations.restart(stepHandler.lastSeconds, stepHandler.state);
+        phase = Phase.RUNGE_KUTTA;
+        multistepFailed = true;
+        continue;
+      }
+      if (multistep) {
+        multistepSeconds += Math.abs(end.getTime() - current.getTime());
+      }
+      if (end.getTime() == endSeconds) {
+        double[] finalState = new double[6];
+        equations.toTotal(end.getTime(), end.getPrimaryState(), finalState);
+        stepHandler.outputRemaining(finalState);
+        return finalState;
+      }
+      // Stopped on entering or leaving an encounter, or on entering the regularization distance.
+      current = end;
+      phase = nextPhase;
+    }
+  }
+
+  /**
+   * Whether the integrator gave up on meeting the tolerances, as opposed to failing for reasons
+   * another method would fail for too, e.g. invalid input or NaN forces.
+   */
+  private static boolean isStepControlFailure(MathRuntimeException e) {
+    return e.getSpecifier() == LocalizedODEFormats.MINIMAL_STEPSIZE_REACHED_DURING_INTEGRATION
+        || e.getSpecifier() == LocalizedODEFormats.MULTISTEP_STARTER_STOPPED_EARLY;
+  }
+
+  /** Evaluations of the equations of motion in the last propagation. */
+  public int getEvaluations() {
+    return evaluations;
+  }
+
+  /** Integrator steps taken in the last propagation. */
+  public int getSteps() {
+    return steps;
+  }
+
+  /** Rectifications of the Encke reference orbit in the last propagation. */
+  public int getRectifications() {
+    return rectifications;
+  }
+
+  /** Seconds of the last propagation integrated by the {@link IntegratorMethod#ADAMS} method. */
+  public double getMultistepSeconds() {
+    return multistepSeconds;
+  }
+
+  /** Seconds of the last propagation integrated with regularization. */
+  public double getRegularizedSeconds() {
+    return regularizedSeconds;
+  }
+
+  /** Returns the phase to integrate the given total state in. */
+  private Phase phaseAt(double seconds, double[] state) {
+    if (regularizationDistance > 0) {
+      int body = forces.nearestPerturber(seconds, state, 0);
+      if (body >= 0 && forces.perturberDistance(body, seconds, state, 0) < regularizationDistance) {
+        return Phase.REGULARIZED;
+      }
+    }
+    if (integratorMethod == IntegratorMethod.ADAMS
+        && !multistepFailed
+        && forces.hillRadiiToNearestPerturber(seconds, state, 0) > encounterHillRadii) {
+      return Phase.MULTISTEP;
+    }
+    return Phase.RUNGE_KUTTA;
+  }
+
+  /**
+   * Integrates the Sundman-transformed equations about the perturbing body nearest to the given
+   * total state, until leaving the regularization distance or reaching the end time.
+   *
+   * @param state the total state at {@code seconds}, updated to the state at the returned time.
+   * @return the time the integration stopped at.
+   */
+  private double integrateRegularized(
+      double seconds,
+      double[] state,
+      double endSeconds,
+      double[] tolerances,
+      StepHandler stepHandler) {
+    int body = forces.nearestPerturber(seconds, state, 0);
+    double direction = Math.signum(endSeconds - seconds);
+    double[] absoluteTolerance = Arrays.copyOf(tolerances, 7);
+    double[] relativeTolerance = Arrays.copyOf(relativeTolerance(), 7);
+    // Time errors show as along-track position errors, so bound them by the position tolerance
+    // over the speed, and not relative to the time since the epoch.
+    absoluteTolerance[6] = profile.getRelativeTolerance() * tolerances[0] / tolerances[3];
+    relativeTolerance[6] = 0;
+    // Steps in s are steps in time over the distance, which is about the regularization distance
+    // where the integration starts and stops.
+    double minimumStep = profile.getMinimumStepSize() / regularizationDistance;
+    DormandPrince853Integrator integrator =
+        new DormandPrince853Integrator(
+            minimumStep,
+            getMaximumStepSize() / regularizationDistance,
+            absoluteTolerance,
+            relativeTolerance);
+    integrator.setInitialStepSize(profile.getInitialStepSize() / regularizationDistance);
+    RegularizationBoundary boundary = new RegularizationBoundary(body, endSeconds, direction);
+    integrator.addEventHandler(
+        boundary,
+        getMaximumStepSize() / regularizationDistance,
+        REGULARIZED_END_CONVERGENCE * minimumStep,
+        EVENT_MAX_ITERATIONS);
+    integrator.addStepHandler(stepHandler);
+    double[] y0 = Arrays.copyOf(state, 7);
+    y0[6] = seconds;
+    // The distance to the body is well above a meter, so s advances less than time does.
+    double finalS = Math.abs(endSeconds - seconds);
+    stepHandler.regularized = true;
+    ODEStateAndDerivative end;
+    try {
+      end =
+          integrator.integrate(
+              new SundmanEquations(body, direction), new ODEState(0, y0), finalS);
+    } finally {
+      stepHandler.regularized = false;
+    }
+    double[] y = end.getPrimaryState();
+    System.arraycopy(y, 0, state, 0, 6);
+    if (!boundary.reachedEnd) {
+      return y[6];
+    }
+    // The end is located in s, which leaves a small fraction of a step in time to the end time.
+    // Cover it by a Taylor expansion of the motion.
+    double dt = endSeconds - y[6];
+    double[] acceleration = new double[3];
+    forces.centralAcceleration(state, 0, acceleration, 0);
+    forces.addPerturbations(y[6], state, 0, acceleration, 0);
+    for (int i = 0; i < 3; i++) {
+      state[i] += dt * (state[i + 3] + dt / 2 * acceleration[i]);
+      state[i + 3] += dt * acceleration[i];
+    }
+    return endSeconds;
+  }
+
+  /**
+   * Absolute tolerances of the position and velocity components, relative to the initial radius and
+   * speed.
+   */
+  private double[] tolerances(double[] initialState) {
+    double radius = Math.sqrt(dot(initialState, 0, initialState, 0));
+    double speed = Math.sqrt(dot(initialState, 3, initialState, 3));
+    double[] absoluteTolerance = new double[6];
+    for (int i = 0; i < 3; i++) {
+      absoluteTolerance[i] = profile.getRelativeTolerance() * radius;
+      absoluteTolerance[i + 3] = profile.getRelativeTolerance() * speed;
+    }
+    return absoluteTolerance;
+  }
+
+  private ODEIntegrator createRungeKuttaIntegrator(double[] absoluteTolerance) {
+    DormandPrince853Integrator integrator =
+        new DormandPrince853Integrator(
+            profile.getMinimumStepSize(),
+            getMaximumStepSize(),
+            absoluteTolerance,
+            relativeTolerance());
+    integrator.setInitialStepSize(profile.getInitialStepSize());
+    return integrator;
+  }
+
+  private ODEIntegrator createAdamsIntegrator(double[] absoluteTolerance) {
+    AdamsMoultonIntegrator integrator =
+        new AdamsMoultonIntegrator(
+            ADAMS_STEPS,
+            profile.getMinimumStepSize(),
+            getMaximumStepSize(),
+            absoluteTolerance,
+            relativeTolerance());
+    return integrator;
+  }
+
+  private double[] relativeTolerance() {
+    double[] relativeTolerance = new double[6];
+    Arrays.fill(relativeTolerance, profile.getRelativeTolerance());
+    return relativeTolerance;
+  }
+
+  private static double dot(double[] a, int aOffset, double[] b, int bOffset) {
+    return a[aOffset] * b[bOffset]
+        + a[aOffset + 1] * b[bOffset + 1]
+        + a[aOffset + 2] * b[bOffset + 2];
+  }
+
+  /** Equations of motion whose integrated variables map to the total state. */
+  private abstract class Equations implements OrdinaryDifferentialEquation {
+    @Override
+    public int getDimension() {
+      return 6;
+    }
+
+    /** Writes the total state for the integrated variables at the given time. */
+    abstract void toTotal(double seconds, double[] y, double[] out);
+
+    /** Returns the integrated variables to restart from the given total state. */
+    abstract ODEState restart(double seconds, double[] total);
+  }
+
+  /** The total acceleration. */
+  private final class CowellEquations extends Equations {
+    @Override
+    public double[] computeDerivatives(double seconds, double[] y) {
+      evaluations++;
+      double[] yDot = new double[6];
+      System.arraycopy(y, 3, yDot, 0, 3);
+      forces.centralAcceleration(y, 0, yDot, 3);
+      forces.addPerturbations(seconds, y, 0, yDot, 3);
+      return yDot;
+    }
+
+    @Override
+    void toTotal(double seconds, double[] y, double[] out) {
+      System.arraycopy(y, 0, out, 0, 6);
+    }
+
+    @Override
+    ODEState restart(double seconds, double[] total) {
+      return new ODEState(seconds, total.clone());
+    }
+  }
+
+  /**
+   * The deviation from a two-body reference orbit, with Battin's formulation of the difference of
+   * the central accelerations to avoid cancellation. Also the event handler that rectifies the
+   * reference when the deviation grows too large.
+   */
+  private final class EnckeEquations extends Equations implements ODEEventHandler {
+    private final double[] reference;
+    private double referenceSeconds;
+    private final double[] osculating = new double[6];
+    private final double[] total = new double[6];
+
+    EnckeEquations(double[] initialState, double startSeconds) {
+      this.reference = initialState.clone();
+      this.referenceSeconds = startSeconds;
+    }
+
+    @Override
+    public double[] computeDerivatives(double seconds, double[] y) {
+      evaluations++;
+      osculate(seconds);
+      double rho2 = dot(osculating, 0, osculating, 0);
+      double rho3 = rho2 * Math.sqrt(rho2);
+      // r^2 / rho^2 = 1 + q, and f(q) = 1 - (1 + q)^(-3/2) without cancellation for small q.
+      double q = (dot(y, 0, y, 0) + 2 * dot(y, 0, osculating, 0)) / rho2;
+      double onePlusQ32 = Math.pow(1 + q, 1.5);
+      double f = q * (3 + 3 * q + q * q) / ((1 + onePlusQ32) * onePlusQ32);
+      double factor = forces.getCentralGm() / rho3;
+      double[] yDot = new double[6];
+      for (int i = 0; i < 3; i++) {
+        total[i] = osculating[i] + y[i];
+        yDot[i] = y[i + 3];
+        yDot[i + 3] = factor * (f * total[i] - y[i]);
+      }
+      forces.addPerturbations(seconds, total, 0, yDot, 3);
+      return yDot;
+    }
+
+    @Override
+    void toTotal(double seconds, double[] y, double[] out) {
+      osculate(seconds);
+      for (int i = 0; i < 6; i++) {
+        out[i] = osculating[i] + y[i];
+      }
+    }
+
+    @Override
+    ODEState restart(double seconds, double[] total) {
+      System.arraycopy(total, 0, reference, 0, 6);
+      referenceSeconds = seconds;
+      return new ODEState(seconds, new double[6]);
+    }
+
+    /** Propagates the reference orbit to the given time into osculating. */
+    private void osculate(double seconds) {
+      KeplerPropagator.propagate(
+          reference, 0, forces.getCentralGm(), seconds - referenceSeconds, osculating, 0);
+    }
+
+    @Override
+    public double g(ODEStateAndDerivative state) {
+      double[] y = state.getPrimaryState();
+      osculate(state.getTime());
+      return rectificationThreshold * Math.sqrt(dot(osculating, 0, osculating, 0))
+          - Math.sqrt(dot(y, 0, y, 0));
+    }
+
+    @Override
+    public Action eventOccurred(ODEStateAndDerivative state, boolean increasing) {
+      return increasing ? Action.CONTINUE : Action.RESET_STATE;
+    }
+
+    @Override
+    public ODEState resetState(ODEStateAndDerivative state) {
+      toTotal(state.getTime(), state.getPrimaryState(), total);
+      rectifications++;
+      return restart(state.getTime(), total);
+    }
+  }
+
+  /**
+   * Stops the integration on entering an encounter while integrating with the multistep method,
+   * or on leaving it while integrating with Runge-Kutta.
+   */
+  private final class EncounterSwitch implements ODEEventHandler {
+    private final Equations equations;
+    private final boolean multistep;
+    private final double[] state = new double[6];
+
+    EncounterSwitch(Equations equations, boolean multistep) {
+      this.equations = equations;
+      this.multistep = multistep;
+    }
+
+    @Override
+    public double g(ODEStateAndDerivative current) {
+      equations.toTotal(current.getTime(), current.getPrimaryState(), state);
+      double hillRadii = forces.hillRadiiToNearestPerturber(current.getTime(), state, 0);
+      return multistep
+          ? hillRadii - encounterHillRadii
+          : hillRadii - ENCOUNTER_HYSTERESIS * encounterHillRadii;
+    }
+
+    @Override
+    public Action eventOccurred(ODEStateAndDerivative current, boolean increasing) {
+      if (increasing == multistep) {
+        return Action.CONTINUE;
+      }
+      nextPhase = multistep ? Phase.RUNGE_KUTTA : Phase.MULTISTEP;
+      return Action.STOP;
+    }
+  }
+
+  /**
+   * Stops the integration in time on coming within the regularization distance of a perturbing
+   * body.
+   */
+  private final class RegularizationEntry implements ODEEventHandler {
+    private final Equations equations;
+    private final double[] state = new double[6];
+
+    RegularizationEntry(Equations equations) {
+      this.equations = equations;
+    }
+
+    @Override
+    public double g(ODEStateAndDerivative current) {
+      equations.toTotal(current.getTime(), current.getPrimaryState(), state);
+      int body = forces.nearestPerturber(current.getTime(), state, 0);
+      return forces.perturberDistance(body, current.getTime(), state, 0) - regularizationDistance;
+    }
+
+    @Override
+    public Action eventOccurred(ODEStateAndDerivative current, boolean increasing) {
+      if (increasing) {
+        return Action.CONTINUE;
+      }
+      nextPhase = Phase.REGULARIZED;
+      return Action.STOP;
+    }
+  }
+
+  /**
+   * The state and time, by the independent variable s of the Sundman transformation dt = r ds,
+   * where r is the distance to the perturbing body of the encounter.
+   */
+  private final class SundmanEquations implements OrdinaryDifferentialEquation {
+    private final int body;
+    private final double direction;
+
+    /** @param direction the sign of the time step, as s always increases. */
+    SundmanEquations(int body, double direction) {
+      this.body = body;
+      this.direction = direction;
+    }
+
+    @Override
+    public int getDimension() {
+      return 7;
+    }
+
+    @Override
+    public double[] computeDerivatives(double s, double[] y) {
+      evaluations++;
+      double seconds = y[6];
+      double[] yDot = new double[7];
+      forces.centralAcceleration(y, 0, yDot, 3);
+      forces.addPerturbations(seconds, y, 0, yDot, 3);
+      double dtds = direction * forces.perturberDistance(body, seconds, y, 0);
+      for (int i = 0; i < 3; i++) {
+        yDot[i] = dtds * y[i + 3];
+        yDot[i + 3] *= dtds;
+      }
+      yDot[6] = dtds;
+      return yDot;
+    }
+  }
+
+  /**
+   * Stops the regularized integration on reaching the end time, or on leaving the regularization
+   * distance of its body.
+   */
+  private final class RegularizationBoundary implements ODEEventHandler {
+    private final int body;
+    private final double endSeconds;
+    private final double direction;
+    private boolean reachedEnd;
+
+    RegularizationBoundary(int body, double endSeconds, double direction) {
+      this.body = body;
+      this.endSeconds = endSeconds;
+      this.direction = direction;
+    }
+
+    @Override
+    public double g(ODEStateAndDerivative current) {
+      double[] y = current.getPrimaryState();
+      // Negative inside both boundaries, and zero at whichever comes first.
+      return Math.max(pastEnd(y), outside(y));
+    }
+
+    @Override
+    public Action eventOccurred(ODEStateAndDerivative current, boolean increasing) {
+      if (!increasing) {
+        return Action.CONTINUE;
+      }
+      double[] y = current.getPrimaryState();
+      reachedEnd = pastEnd(y) >= outside(y);
+      return Action.STOP;
+    }
+
+    /** Seconds past the end time. */
+    private double pastEnd(double[] y) {
+      return direction * (y[6] - endSeconds);
+    }
+
+    /** Meters outside the regularization distance, with hysteresis. */
+    private double outside(double[] y) {
+      return forces.perturberDistance(body, y[6], y, 0)
+          - ENCOUNTER_HYSTERESIS * regularizationDistance;
+    }
+  }
+
+  /** The integrations a propagation alternates between. */
+  private enum Phase {
+    MULTISTEP,
+    RUNGE_KUTTA,
+    REGULARIZED
+  }
+
+  /**
+   * Counts steps, keeps the total state of the last one and hands it to the consumer, if any. Also
+   * interpolates the states at the output times within each step.
+   */
+  private final class StepHandler implements ODEStepHandler {
+    private final Equations equations;
+    private final StepConsumer stepConsumer;
+    private final double[] outputSeconds;
+    private final StepConsumer outputConsumer;
+    private final double direction;
+    private final double[] state = new double[6];
+    private final double[] outputState = new double[6];
+    private double lastSeconds;
+    private boolean started;
+    // Index of the next output time.
+    private int nextOutput;
+    // Whether the integrated variables are those of the SundmanEquations.
+    private boolean regularized;
+
+    StepHandler(
+        Equations equations,
+        StepConsumer stepConsumer,
+        double[] outputSeconds,
+        StepConsumer outputConsumer,
+        double direction) {
+      this.equations = equations;
+      this.stepConsumer = stepConsumer;
+      this.outputSeconds = outputSeconds;
+      this.outputConsumer = outputConsumer;
+      this.direction = direction;
+    }
+
+    @Override
+    public void init(ODEStateAndDerivative initialState, double finalTime) {
+      // Integrations restarted after an encounter switch begin at the last step.
+      if (started) {
+        return;
+      }
+      started = true;
+      accept(initialState);
+      while (nextOutput < outputSeconds.length && outputSeconds[nextOutput] == lastSeconds) {
+        outputConsumer.accept(outputSeconds[nextOutput++], state);
+      }
+    }
+
+    @Override
+    public void handleStep(ODEStateInterpolator interpolator, boolean isLast) {
+      steps++;
+      // Called before a rectification at the end of the step, so the reference still applies.
+      accept(interpolator.getCurrentState());
+      while (nextOutput < outputSeconds.length
+          && direction * (lastSeconds - outputSeconds[nextOutput]) >= 0) {
+        double seconds = outputSeconds[nextOutput++];
+        if (regularized) {
+          interpolateRegularized(interpolator, seconds);
+        } else {
+          ODEStateAndDerivative interpolated = interpolator.getInterpolatedState(seconds);
+          equations.toTotal(seconds, interpolated.getPrimaryState(), outputState);
+        }
+        outputConsumer.accept(seconds, outputState);
+      }
+    }
+
+    /** Outputs the final state for output times the steps ended short of. */
+    void outputRemaining(double[] finalState) {
+      while (nextOutput < outputSeconds.length) {
+        outputConsumer.accept(outputSeconds[nextOutput++], finalState);
+      }
+    }
+
+    /**
+     * Locates the given time within a step of the SundmanEquations into outputState. Time advances
+     * monotonically with s, so bisection finds it.
+     */
+    private void interpolateRegularized(ODEStateInterpolator interpolator, double seconds) {
+      double low = interpolator.getPreviousState().getTime();
+      double high = interpolator.getCurrentState().getTime();
+      double[] y = interpolator.getCurrentState().getPrimaryState();
+      for (int i = 0; i < OUTPUT_BISECTIONS && y[6] != seconds; i++) {
+        double s = (low + high) / 2;
+        y = interpolator.getInterpolatedState(s).getPrimaryState();
+        if (direction * (y[6] - seconds) < 0) {
+          low = s;
+        } else {
+          high = s;
+        }
+      }
+      System.arraycopy(y, 0, outputState, 0, 6);
+    }
+
+    private void accept(ODEStateAndDerivative current) {
+      if (regularized) {
+        double[] y = current.getPrimaryState();
+        lastSeconds = y[6];
+        System.arraycopy(y, 0, state, 0, 6);
+      } else {
+        lastSeconds = current.getTime();
+        equations.toTotal(lastSeconds, current.getPrimaryState(), state);
+      }
+      if (stepConsumer != null) {
+        stepConsumer.accept(lastSeconds, state);
+      }
+    }
+  }
+}
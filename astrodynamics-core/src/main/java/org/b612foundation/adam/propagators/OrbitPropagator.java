@@ -1,8 +1,11 @@
 package org.b612foundation.adam.propagators;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import org.b612foundation.adam.datamodel.PropagationParameters;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 
 /**
@@ -21,5 +24,67 @@ public interface OrbitPropagator {
       PropagatorConfiguration config,
       String propagationIdForLogging)
       throws AdamPropagationException;
-}
 
+  /**
+   * Propagates like {@link #propagate(PropagationParameters, PropagatorConfiguration, String)},
+   * honouring the cancellation and budgets of the given control.
+   *
+   * <p>The default implementation only checks the control before starting. Implementations that can
+   * hook into their integration loop should override this and call {@link
+   * PropagationControl#checkStep()} from there.
+   *
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   * @throws AdamPropagationException if something else went wrong.
+   */
+  default OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control)
+      throws AdamPropagationException {
+    control.start();
+    return propagate(propagationParams, config, propagationIdForLogging);
+  }
+
+  /**
+   * Runs {@link #propagate(PropagationParameters, PropagatorConfiguration, String,
+   * PropagationControl)} on the given executor. Cancelling the returned future cancels the control,
+   * so the propagation stops at its next check and releases the worker.
+   *
+   * <p>Propagators keep the state of their last run, so an instance must not run several
+   * propagations at once.
+   *
+   * @return a future completed with the ephemeris, or exceptionally with an {@link
+   *     AdamPropagationException} or {@link PropagationAbortedException}.
+   */
+  default CompletableFuture<OrbitEphemerisMessage> propagateAsync(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control,
+      Executor executor) {
+    CompletableFuture<OrbitEphemerisMessage> future =
+        new CompletableFuture<OrbitEphemerisMessage>() {
+          @Override
+          public boolean cancel(boolean mayInterruptIfRunning) {
+            // Cancel the future first, so the worker cannot complete it with the abort it sees.
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            control.cancel();
+            return cancelled;
+          }
+        };
+    executor.execute(
+        () -> {
+          if (future.isDone()) {
+            return;
+          }
+          try {
+            future.complete(
+                propagate(propagationParams, config, propagationIdForLogging, control));
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          }
+        });
+    return future;
+  }
+}
@@ -0,0 +1,181 @@
+package org.b612foundation.adam.propagators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gravity of a central body and of perturbing bodies, all treated as point masses, for {@link
+ * NBodyPropagator}. Positions are relative to the central body, so the perturbations include the
+ * indirect term of the central body's own acceleration by each perturber.
+ *
+ * <p>Units are meters and seconds throughout, matching {@link BodyEphemeris}. Not thread-safe;
+ * use one force model per propagation.
+ */
+public class PointMassForceModel {
+  private final double centralGm;
+  private final List<Perturber> perturbers = new ArrayList<>();
+  private long evaluations;
+
+  /** @param centralGm gravitational parameter of the central body, m^3/s^2. */
+  public PointMassForceModel(double centralGm) {
+    if (!(centralGm > 0)) {
+      throw new IllegalArgumentException(
+          "Gravitational parameter must be positive, got " + centralGm);
+    }
+    this.centralGm = centralGm;
+  }
+
+  /**
+   * Adds a perturbing body.
+   *
+   * @param gm gravitational parameter of the body, m^3/s^2.
+   * @param ephemeris the body's state relative to the central body.
+   */
+  public PointMassForceModel addPerturber(String name, double gm, BodyEphemeris ephemeris) {
+    perturbers.add(new Perturber(name, gm, ephemeris));
+    return this;
+  }
+
+  public double getCentralGm() {
+    return centralGm;
+  }
+
+  /** Names of the perturbing bodies, in the order they were added. */
+  public List<String> getPerturberNames() {
+    List<String> names = new ArrayList<>(perturbers.size());
+    for (Perturber perturber : perturbers) {
+      names.add(perturber.name);
+    }
+    return names;
+  }
+
+  /** Number of times the perturbations have been evaluated. */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Writes the acceleration of the central body's gravity at the given position to {@code out},
+   * starting at {@code outOffset}.
+   */
+  public void centralAcceleration(double[] position, int offset, double[] out, int outOffset) {
+    double x = position[offset];
+    double y = position[offset + 1];
+    double z = position[offset + 2];
+    double r2 = x * x + y * y + z * z;
+    double factor = -centralGm / (r2 * Math.sqrt(r2));
+    out[outOffset] = factor * x;
+    out[outOffset + 1] = factor * y;
+    out[outOffset + 2] = factor * z;
+  }
+
+  /**
+   * Adds the acceleration by the perturbing bodies at the given time and position to {@code out},
+   * starting at {@code outOffset}.
+   *
+   * @param epochSeconds seconds since the propagation epoch.
+   */
+  public void addPerturbations(
+      double epochSeconds, double[] position, int offset, double[] out, int outOffset) {
+    evaluations++;
+    double x = position[offset];
+    double y = position[offset + 1];
+    double z = position[offset + 2];
+    for (Perturber perturber : perturbers) {
+      double[] bodyState = perturber.stateAt(epochSeconds);
+      double dx = bodyState[0] - x;
+      double dy = bodyState[1] - y;
+      double dz = bodyState[2] - z;
+      double d2 = dx * dx + dy * dy + dz * dz;
+      double direct = perturber.gm / (d2 * Math.sqrt(d2));
+      double s2 =
+          bodyState[0] * bodyState[0] + bodyState[1] * bodyState[1] + bodyState[2] * bodyState[2];
+      double indirect = perturber.gm / (s2 * Math.sqrt(s2));
+      out[outOffset] += direct * dx - indirect * bodyState[0];
+      out[outOffset + 1] += direct * dy - indirect * bodyState[1];
+      out[outOffset + 2] += direct * dz - indirect * bodyState[2];
+    }
+  }
+
+  /**
+   * Returns the distance from the given position to the nearest perturbing body, in units of that
+   * body's Hill radius about the central body, or infinity without perturbers. Within about one
+   * Hill radius the body's gravity dominates the motion.
+   *
+   * @param epochSeconds seconds since the propagation epoch.
+   */
+  public double hillRadiiToNearestPerturber(double epochSeconds, double[] position, int offset) {
+    double nearest = Double.POSITIVE_INFINITY;
+    for (Perturber perturber : perturbers) {
+      double[] bodyState = perturber.stateAt(epochSeconds);
+      double dx = bodyState[0] - position[offset];
+      double dy = bodyState[1] - position[offset + 1];
+      double dz = bodyState[2] - position[offset + 2];
+      double bodyRadius =
+          Math.sqrt(
+              bodyState[0] * bodyState[0]
+                  + bodyState[1] * bodyState[1]
+                  + bodyState[2] * bodyState[2]);
+      double hillRadius = bodyRadius * Math.cbrt(perturber.gm / (3 * centralGm));
+      nearest = Math.min(nearest, Math.sqrt(dx * dx + dy * dy + dz * dz) / hillRadius);
+    }
+    return nearest;
+  }
+
+  /**
+   * Returns the index, in the order of {@link #getPerturberNames()}, of the perturbing body nearest
+   * to the given position, or -1 without perturbers.
+   *
+   * @param epochSeconds seconds since the propagation epoch.
+   */
+  public int nearestPerturber(double epochSeconds, double[] position, int offset) {
+    int nearest = -1;
+    double nearestDistance = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < perturbers.size(); i++) {
+      double distance = perturberDistance(i, epochSeconds, position, offset);
+      if (distance < nearestDistance) {
+        nearest = i;
+        nearestDistance = distance;
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Returns the distance from the given position to a perturbing body, m.
+   *
+   * @param index index of the body in the order of {@link #getPerturberNames()}.
+   * @param epochSeconds seconds since the propagation epoch.
+   */
+  public double perturberDistance(int index, double epochSeconds, double[] position, int offset) {
+    double[] bodyState = perturbers.get(index).stateAt(epochSeconds);
+    double dx = bodyState[0] - position[offset];
+    double dy = bodyState[1] - position[offset + 1];
+    double dz = bodyState[2] - position[offset + 2];
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  private static final class Perturber {
+    final String name;
+    final double gm;
+    final BodyEphemeris ephemeris;
+    // The state at the last time evaluated, which the accelerations and the distance checks of an
+    // integrator step usually share.
+    private final double[] state = new double[6];
+    private double seconds = Double.NaN;
+
+    Perturber(String name, double gm, BodyEphemeris ephemeris) {
+      this.name = name;
+      this.gm = gm;
+      this.ephemeris = ephemeris;
+    }
+
+    double[] stateAt(double epochSeconds) {
+      if (epochSeconds != seconds) {
+        ephemeris.stateAt(epochSeconds, state);
+        seconds = epochSeconds;
+      }
+      return state;
+    }
+  }
+}
@@ -0,0 +1,277 @@
+package org.b612foundation.adam.propagators;
+
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+
+/**
+ * Snapshot of a running propagation: the integrator steps taken so far and the events detected so
+ * far. A propagation can be resumed from its last step instead of starting again from the epoch.
+ *
+ * <p>Steps are kept as seconds since the propagation epoch and flat position and velocity arrays,
+ * so the file stays compact. Events are opaque to this class; each propagator stores its own event
+ * type.
+ *
+ * <p>The file is a header followed by blocks, each holding further steps and all events detected
+ * up to them, so a running propagation {@link #append appends} only its new steps. The header
+ * records how many bytes of the file hold complete blocks, and is only updated once a block is
+ * written, so a block cut short by a crash while appending is ignored on reading.
+ */
+public class PropagationCheckpoint implements Serializable {
+  private static final long serialVersionUID = 1L;
+  private static final int MAGIC = 0x41434b50; // "ACKP"
+  // Offset of the length of the complete blocks, right after the magic number.
+  private static final long COMPLETE_LENGTH_OFFSET = 4;
+
+  /** Epoch of the propagation, ISO formatted UTC. Step times count from it. */
+  private final String epoch;
+  /** Whether the propagation runs forward in time. */
+  private final boolean increasing;
+  /** Seconds since the epoch of each step. */
+  private final double[] times;
+  /** Position (m) and velocity (m/s) of each step, six values per step. */
+  private final double[] states;
+
+  private final ArrayList<Serializable> events;
+
+  public PropagationCheckpoint(
+      String epoch,
+      boolean increasing,
+      double[] times,
+      double[] states,
+      List<? extends Serializable> events) {
+    if (states.length != 6 * times.length) {
+      throw new IllegalArgumentException(
+          "Expected " + 6 * times.length + " state values, got " + states.length);
+    }
+    this.epoch = epoch;
+    this.increasing = increasing;
+    this.times = times;
+    this.states = states;
+    this.events = new ArrayList<>(events);
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #write(Path)} and {@link #append}.
+   *
+   * @throws AdamPropagationException if the file is corrupt.
+   */
+  public static PropagationCheckpoint read(Path file)
+      throws IOException, AdamPropagationException {
+    long fileLength = Files.size(file);
+    try (CountingInputStream counting =
+            new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        DataInputStream in = new DataInputStream(counting)) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a propagation checkpoint: " + file);
+      }
+      long completeLength = in.readLong();
+      if (completeLength > fileLength) {
+        throw new AdamPropagationException(
+            "Propagation checkpoint "
+                + file
+                + " claims "
+                + completeLength
+                + " bytes of blocks, but holds "
+                + fileLength);
+      }
+      String epoch = in.readUTF();
+      boolean increasing = in.readBoolean();
+      double[] times = new double[0];
+      double[] states = new double[0];
+      List<Serializable> events = new ArrayList<>();
+      while (counting.getCount() < completeLength) {
+        int length = in.readInt();
+        if (length <= 0 || length > completeLength - counting.getCount()) {
+          throw new AdamPropagationException(
+              "Corrupt block of "
+                  + length
+                  + " bytes at "
+                  + (counting.getCount() - 4)
+                  + " of propagation checkpoint "
+                  + file);
+        }
+        byte[] block = new byte[length];
+        in.readFully(block);
+        DataInputStream blockIn = new DataInputStream(new ByteArrayInputStream(block));
+        int size = times.length;
+        int count = blockIn.readInt();
+        if (count < 0 || count > length / 56) {
+          throw new AdamPropagationException(
+              "Corrupt block of " + count + " steps in propagation checkpoint " + file);
+        }
+        times = Arrays.copyOf(times, size + count);
+        states = Arrays.copyOf(states, 6 * (size + count));
+        for (int i = size; i < size + count; i++) {
+          times[i] = blockIn.readDouble();
+          for (int j = 0; j < 6; j++) {
+            states[6 * i + j] = blockIn.readDouble();
+          }
+        }
+        events = readEvents(blockIn);
+      }
+      return new PropagationCheckpoint(epoch, increasing, times, states, events);
+    } catch (EOFException e) {
+      throw new AdamPropagationException("Truncated propagation checkpoint: " + file, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Serializable> readEvents(DataInputStream in) throws IOException {
+    try {
+      return (List<Serializable>) new ObjectInputStream(in).readObject();
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException("Unreadable events in propagation checkpoint", e);
+    }
+  }
+
+  /**
+   * Writes this checkpoint to the given file. The file is replaced atomically, so a crash while
+   * writing leaves the previous checkpoint intact.
+   */
+  public void write(Path file) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    Path temp =
+        Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeLong(0);
+      out.writeUTF(epoch);
+      out.writeBoolean(increasing);
+      writeBlock(out, times, states, 0, times.length, events);
+    }
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      writeCompleteLength(channel, channel.size());
+    }
+    Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Appends steps {@code from} (inclusive) to {@code to} (exclusive) of the given arrays, and the
+   * events detected up to them, to a checkpoint file written by {@link #write(Path)}. The block
+   * replaces any left incomplete by an earlier append, and only counts once it is on disk.
+   */
+  public static void append(
+      Path file,
+      double[] times,
+      double[] states,
+      int from,
+      int to,
+      List<? extends Serializable> events)
+      throws IOException {
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    writeBlock(block, times, states, from, to, events);
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer completeLength = ByteBuffer.allocate(8);
+      if (channel.read(completeLength, COMPLETE_LENGTH_OFFSET) != 8) {
+        throw new IOException("Not a propagation checkpoint: " + file);
+      }
+      completeLength.flip();
+      long end = completeLength.getLong();
+      channel.truncate(end);
+      channel.write(ByteBuffer.wrap(block.toByteArray()), end);
+      channel.force(false);
+      writeCompleteLength(channel, end + block.size());
+      channel.force(false);
+    }
+  }
+
+  private static void writeCompleteLength(FileChannel channel, long length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, length);
+    channel.write(buffer, COMPLETE_LENGTH_OFFSET);
+  }
+
+  private static void writeBlock(
+      OutputStream out,
+      double[] times,
+      double[] states,
+      int from,
+      int to,
+      List<? extends Serializable> events)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + 56 * (to - from));
+    DataOutputStream block = new DataOutputStream(bytes);
+    block.writeInt(to - from);
+    for (int i = from; i < to; i++) {
+      block.writeDouble(times[i]);
+      for (int j = 0; j < 6; j++) {
+        block.writeDouble(states[6 * i + j]);
+      }
+    }
+    ObjectOutputStream eventsOut = new ObjectOutputStream(block);
+    eventsOut.writeObject(new ArrayList<Serializable>(events));
+    eventsOut.flush();
+    // The length goes first, so blocks can be skipped and checked against the file.
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(bytes.size());
+    bytes.writeTo(data);
+    data.flush();
+  }
+
+  public String getEpoch() {
+    return epoch;
+  }
+
+  public boolean isIncreasing() {
+    return increasing;
+  }
+
+  /** Number of steps taken. */
+  public int size() {
+    return times.length;
+  }
+
+  /** Seconds since the epoch of the given step. */
+  public double getTime(int step) {
+    return times[step];
+  }
+
+  /** Position (m) and velocity (m/s) of the given step. */
+  public double[] getState(int step) {
+    return Arrays.copyOfRange(states, 6 * step, 6 * step + 6);
+  }
+
+  /** Seconds since the epoch of the last step; the propagation resumes from there. */
+  public double getLastTime() {
+    return times[times.length - 1];
+  }
+
+  public double[] getLastState() {
+    return getState(times.length - 1);
+  }
+
+  /** Size of the last integrator step in seconds, or zero if fewer than two steps were taken. */
+  public double getLastStepSeconds() {
+    if (times.length < 2) {
+      return 0;
+    }
+    return Math.abs(times[times.length - 1] - times[times.length - 2]);
+  }
+
+  /** Events detected up to the last step, in the order they were detected. */
+  public List<Serializable> getEvents() {
+    return events;
+  }
+}
@@ -0,0 +1,136 @@
+package org.b612foundation.adam.propagators;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Collects integrator steps and periodically writes them, with the events detected so far, to a
+ * {@link PropagationCheckpoint} file. Each write after the first appends only the steps collected
+ * since the previous one, so writing costs the same however long the propagation runs. Pass it to
+ * a propagator as a {@link StepConsumer}, combined with any other consumer through {@link
+ * StepConsumer#andThen(StepConsumer)}.
+ *
+ * <p>Times are expected in seconds since the epoch given here. Steps that do not advance past the
+ * last collected one are ignored, which lets a checkpointer seeded from a checkpoint see the resume
+ * step again.
+ */
+public class PropagationCheckpointer implements StepConsumer {
+  private final Path file;
+  private final String epoch;
+  private final boolean increasing;
+  private final long everySteps;
+  private Supplier<List<? extends Serializable>> events = Collections::emptyList;
+
+  private double[] times = new double[1024];
+  private double[] states = new double[6 * 1024];
+  private int size = 0;
+  private long stepsSinceWrite = 0;
+  // Steps already in the file; the first write replaces whatever the file held.
+  private int written = 0;
+
+  /**
+   * @param file checkpoint file, replaced on the first write and appended to afterwards.
+   * @param epoch ISO formatted UTC epoch of the propagation.
+   * @param increasing whether the propagation runs forward in time.
+   * @param everySteps number of steps between checkpoints.
+   */
+  public PropagationCheckpointer(Path file, String epoch, boolean increasing, long everySteps) {
+    if (everySteps <= 0) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive, got " + everySteps);
+    }
+    this.file = file;
+    this.epoch = epoch;
+    this.increasing = increasing;
+    this.everySteps = everySteps;
+  }
+
+  /** Returns a checkpointer that continues collecting after the steps of the given checkpoint. */
+  public static PropagationCheckpointer resuming(
+      Path file, PropagationCheckpoint checkpoint, long everySteps) {
+    PropagationCheckpointer checkpointer =
+        new PropagationCheckpointer(
+            file, checkpoint.getEpoch(), checkpoint.isIncreasing(), everySteps);
+    for (int i = 0; i < checkpoint.size(); i++) {
+      checkpointer.append(checkpoint.getTime(i), checkpoint.getState(i));
+    }
+    return checkpointer;
+  }
+
+  /** Sets where the events included in each checkpoint come from. None by default. */
+  public PropagationCheckpointer setEvents(Supplier<List<? extends Serializable>> events) {
+    this.events = events;
+    return this;
+  }
+
+  public String getEpoch() {
+    return epoch;
+  }
+
+  public boolean isIncreasing() {
+    return increasing;
+  }
+
+  /**
+   * Collects the step and writes a checkpoint every {@code everySteps} steps.
+   *
+   * @throws UncheckedIOException if the checkpoint cannot be written.
+   */
+  @Override
+  public void accept(double epochSeconds, double[] state) {
+    if (size > 0) {
+      double last = times[size - 1];
+      if (increasing ? epochSeconds <= last : epochSeconds >= last) {
+        return;
+      }
+    }
+    append(epochSeconds, state);
+    if (++stepsSinceWrite >= everySteps) {
+      writeCheckpoint();
+    }
+  }
+
+  /**
+   * Writes a checkpoint of the steps collected so far now.
+   *
+   * @throws UncheckedIOException if the checkpoint cannot be written.
+   */
+  public void writeCheckpoint() {
+    try {
+      if (written == 0) {
+        getCheckpoint().write(file);
+      } else {
+        PropagationCheckpoint.append(file, times, states, written, size, events.get());
+      }
+      written = size;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write propagation checkpoint " + file, e);
+    }
+    stepsSinceWrite = 0;
+  }
+
+  /** Returns a checkpoint of the steps collected so far. */
+  public PropagationCheckpoint getCheckpoint() {
+    return new PropagationCheckpoint(
+        epoch,
+        increasing,
+        Arrays.copyOf(times, size),
+        Arrays.copyOf(states, 6 * size),
+        events.get());
+  }
+
+  private void append(double epochSeconds, double[] state) {
+    if (size == times.length) {
+      times = Arrays.copyOf(times, 2 * size);
+      states = Arrays.copyOf(states, 12 * size);
+    }
+    times[size] = epochSeconds;
+    System.arraycopy(state, 0, states, 6 * size, 6);
+    size++;
+  }
+}
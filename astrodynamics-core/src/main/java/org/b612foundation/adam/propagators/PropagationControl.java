@@ -0,0 +1,102 @@
+package org.b612foundation.adam.propagators;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException.Reason;
+
+/**
+ * Lets a caller cancel a running propagation, or bound it by wall-clock time or integrator steps.
+ *
+ * <p>Propagators call {@link #start()} once before integrating and {@link #checkStep()} from their
+ * step handlers and stopping condition callbacks. {@link #cancel()} may be called from any thread.
+ * A control tracks a single propagation, whose steps may be taken on several threads, and should
+ * not be shared between separate runs.
+ */
+public class PropagationControl {
+  private volatile boolean cancelled = false;
+  private Duration maxWallClock = null;
+  private long maxSteps = 0;
+
+  private long deadlineNanos;
+  private final AtomicLong steps = new AtomicLong();
+
+  /** Asks the propagation to stop at its next check. */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public Duration getMaxWallClock() {
+    return maxWallClock;
+  }
+
+  /** Wall-clock budget measured from {@link #start()}. Null, the default, means unbounded. */
+  public PropagationControl setMaxWallClock(Duration maxWallClock) {
+    this.maxWallClock = maxWallClock;
+    return this;
+  }
+
+  public long getMaxSteps() {
+    return maxSteps;
+  }
+
+  /** Maximum number of checked steps. Zero or less, the default, means unbounded. */
+  public PropagationControl setMaxSteps(long maxSteps) {
+    this.maxSteps = maxSteps;
+    return this;
+  }
+
+  /** Number of steps checked since {@link #start()}. */
+  public long getSteps() {
+    return steps.get();
+  }
+
+  /**
+   * Starts the wall-clock budget and resets the step count.
+   *
+   * @throws PropagationAbortedException if the control was cancelled before the start.
+   */
+  public void start() {
+    steps.set(0);
+    deadlineNanos = maxWallClock == null ? 0 : System.nanoTime() + maxWallClock.toNanos();
+    checkCancelled();
+  }
+
+  /**
+   * Counts one integrator step and checks all limits.
+   *
+   * @throws PropagationAbortedException if the propagation was cancelled or is over budget.
+   */
+  public void checkStep() {
+    long checked = steps.incrementAndGet();
+    check();
+    if (maxSteps > 0 && checked > maxSteps) {
+      throw new PropagationAbortedException(
+          Reason.STEP_BUDGET_EXCEEDED, "Propagation exceeded " + maxSteps + " steps");
+    }
+  }
+
+  /**
+   * Checks cancellation and the wall-clock budget without counting a step. Useful in callbacks that
+   * are evaluated several times per step.
+   *
+   * @throws PropagationAbortedException if the propagation was cancelled or is out of time.
+   */
+  public void check() {
+    checkCancelled();
+    if (maxWallClock != null && System.nanoTime() - deadlineNanos > 0) {
+      throw new PropagationAbortedException(
+          Reason.DEADLINE_EXCEEDED, "Propagation exceeded wall-clock budget of " + maxWallClock);
+    }
+  }
+
+  private void checkCancelled() {
+    if (cancelled) {
+      throw new PropagationAbortedException(Reason.CANCELLED, "Propagation was cancelled");
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.b612foundation.adam.propagators;
+
+/**
+ * Receives progress and instrumentation callbacks from a propagator. All methods default to doing
+ * nothing, so implementations only override what they need.
+ *
+ * <p>Callbacks are made on the propagating thread, from inside the integration loop for {@link
+ * #stepTaken(double)} and {@link #eventDetected(OrbitEventType)}, so they should be cheap. A
+ * listener shared by propagators running in parallel must be thread-safe.
+ */
+public interface PropagationListener {
+  /** Parts of a propagation that are timed separately. */
+  enum Phase {
+    /** Parsing inputs, building the force model and the propagator. */
+    SETUP,
+    /** Running the integrator, including event detection. */
+    INTEGRATION,
+    /** Sampling the integrated trajectory at the requested output step. */
+    INTERPOLATION,
+    /** Building the output ephemeris. */
+    EXPORT
+  }
+
+  /** Listener that ignores all callbacks. */
+  PropagationListener NO_OP = new PropagationListener() {};
+
+  /** Called once before anything else for a propagation. */
+  default void propagationStarted(String propagationId) {}
+
+  /** Called once after everything else for a propagation, whether or not it succeeded. */
+  default void propagationFinished(String propagationId, boolean succeeded) {}
+
+  /** Called when a phase ends, with the wall-clock time it took. */
+  default void phaseFinished(Phase phase, long elapsedNanos) {}
+
+  /**
+   * Called after each integrator step.
+   *
+   * @param fractionComplete fraction of the requested time span covered so far, between 0 and 1.
+   */
+  default void stepTaken(double fractionComplete) {}
+
+  /** Called when the propagator detects an event such as a close approach or impact. */
+  default void eventDetected(OrbitEventType eventType) {}
+}
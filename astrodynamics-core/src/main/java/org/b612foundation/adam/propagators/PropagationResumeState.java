@@ -0,0 +1,78 @@
+package org.b612foundation.adam.propagators;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Final integrator state of a propagation, enough to continue it to a later end time without
+ * integrating again from the OPM epoch.
+ *
+ * <p>The state is expressed in the reference frame and about the center of the OPM the propagation
+ * started from.
+ */
+public class PropagationResumeState implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** Epoch of the state, ISO formatted UTC. */
+  private String epoch;
+  /** Position and velocity, in m and m/s. */
+  private double[] state;
+  /** Size of the last integrator step, in seconds. Zero if unknown. */
+  private double lastStepSeconds;
+  /** Whether the propagation ran forward in time. */
+  private boolean increasing = true;
+
+  public String getEpoch() {
+    return epoch;
+  }
+
+  public PropagationResumeState setEpoch(String epoch) {
+    this.epoch = epoch;
+    return this;
+  }
+
+  public double[] getState() {
+    return state;
+  }
+
+  public PropagationResumeState setState(double[] state) {
+    this.state = state;
+    return this;
+  }
+
+  public double getLastStepSeconds() {
+    return lastStepSeconds;
+  }
+
+  public PropagationResumeState setLastStepSeconds(double lastStepSeconds) {
+    this.lastStepSeconds = lastStepSeconds;
+    return this;
+  }
+
+  public boolean isIncreasing() {
+    return increasing;
+  }
+
+  public PropagationResumeState setIncreasing(boolean increasing) {
+    this.increasing = increasing;
+    return this;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(epoch, Arrays.hashCode(state), lastStepSeconds, increasing);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (obj == null) return false;
+    if (getClass() != obj.getClass()) return false;
+    PropagationResumeState other = (PropagationResumeState) obj;
+    return Objects.equals(epoch, other.epoch)
+        && Arrays.equals(state, other.state)
+        && lastStepSeconds == other.lastStepSeconds
+        && increasing == other.increasing;
+  }
+}
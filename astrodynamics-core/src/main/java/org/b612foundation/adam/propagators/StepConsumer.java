@@ -0,0 +1,26 @@
+package org.b612foundation.adam.propagators;
+
+/**
+ * Receives integrator steps while a propagation is running, so that output can be written or
+ * analyzed without buffering the whole trajectory.
+ */
+@FunctionalInterface
+public interface StepConsumer {
+  /**
+   * Called once per integrator step, in the order the steps are taken.
+   *
+   * @param epochSeconds seconds since the propagation epoch (the OPM epoch). Negative when
+   *     propagating backwards.
+   * @param state position (m) followed by velocity (m/s) in the propagation reference frame. The
+   *     array may be reused between calls, so copy it if it needs to be kept.
+   */
+  void accept(double epochSeconds, double[] state);
+
+  /** Returns a consumer that hands each step to this consumer and then to the given one. */
+  default StepConsumer andThen(StepConsumer after) {
+    return (epochSeconds, state) -> {
+      accept(epochSeconds, state);
+      after.accept(epochSeconds, state);
+    };
+  }
+}
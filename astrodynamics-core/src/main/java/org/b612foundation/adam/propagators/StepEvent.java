@@ -0,0 +1,34 @@
+package org.b612foundation.adam.propagators;
+
+/** An event located between two integrator steps by {@link StepEventSearch}. */
+public final class StepEvent {
+  private final double epochSeconds;
+  private final double value;
+  private final double[] state;
+
+  public StepEvent(double epochSeconds, double value, double[] state) {
+    this.epochSeconds = epochSeconds;
+    this.value = value;
+    this.state = state;
+  }
+
+  /** Seconds on the time scale of the searched steps. */
+  public double getEpochSeconds() {
+    return epochSeconds;
+  }
+
+  /** Value of the searched function at the event, e.g. the distance at a minimum. */
+  public double getValue() {
+    return value;
+  }
+
+  /** Interpolated position (m) and velocity (m/s) at the event. */
+  public double[] getState() {
+    return state;
+  }
+
+  @Override
+  public String toString() {
+    return "StepEvent[" + epochSeconds + " s, " + value + "]";
+  }
+}
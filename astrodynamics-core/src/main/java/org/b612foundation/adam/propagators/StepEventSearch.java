@@ -0,0 +1,202 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches the integrator steps of a trajectory for events, instead of re-sampling it on a fixed
+ * grid.
+ *
+ * <p>Events are bracketed by the states at the step boundaries: a distance minimum by a change of
+ * sign of the range rate, a crossing by a change of side of the threshold. Only bracketing steps
+ * are refined: the event time is refined by a cubic Hermite fit over the step through its end
+ * states and derivatives, with an error that depends on the step size. On long arcs that is a few
+ * evaluations per step instead of a sample every few hours.
+ *
+ * <p>Positions are relative to the center the events refer to, e.g. Earth for closest approaches
+ * and impacts. Steps of a backward propagation are searched in time order, so events are always
+ * reported in increasing time.
+ */
+public final class StepEventSearch {
+  private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+  private static final int REFINEMENT_ITERATIONS = 60;
+
+  /** A scalar function of a position and velocity, such as the altitude above a surface. */
+  @FunctionalInterface
+  public interface StateFunction {
+    double valueAt(double[] state);
+  }
+
+  private final double[] seconds;
+  private final double[] states;
+  private final double[] interpolated = new double[6];
+  private long evaluations;
+
+  /**
+   * @param seconds times of the integrator steps, increasing or decreasing. A step at the time of
+   *     the one before it, as propagators record at segment boundaries, is skipped.
+   * @param states position (m) and velocity (m/s) of each step in turn, six values per step.
+   */
+  public StepEventSearch(double[] seconds, double[] states) {
+    checkArgument(
+        states.length == 6 * seconds.length,
+        "Expected %s state values, got %s",
+        6 * seconds.length,
+        states.length);
+    int size = seconds.length;
+    boolean decreasing = size > 1 && seconds[size - 1] < seconds[0];
+    double[] sortedSeconds = new double[size];
+    double[] sortedStates = new double[6 * size];
+    int count = 0;
+    for (int k = 0; k < size; k++) {
+      int i = decreasing ? size - 1 - k : k;
+      if (count > 0) {
+        checkArgument(
+            seconds[i] >= sortedSeconds[count - 1], "Steps should be in time order at %s", i);
+        if (seconds[i] == sortedSeconds[count - 1]) {
+          continue;
+        }
+      }
+      sortedSeconds[count] = seconds[i];
+      System.arraycopy(states, 6 * i, sortedStates, 6 * count, 6);
+      count++;
+    }
+    this.seconds = Arrays.copyOf(sortedSeconds, count);
+    this.states = Arrays.copyOf(sortedStates, 6 * count);
+  }
+
+  /** Returns the local minima of the distance from the origin between the first and last steps. */
+  public List<StepEvent> findDistanceMinima() {
+    List<StepEvent> minima = new ArrayList<>();
+    for (int i = 0; i + 1 < seconds.length; i++) {
+      if (bracketsMinimum(i)) {
+        double fraction = minimizeDistance(i);
+        double[] state = interpolate(i, fraction).clone();
+        minima.add(new StepEvent(timeAt(i, fraction), norm(state), state));
+      }
+    }
+    return minima;
+  }
+
+  /**
+   * Returns the times the function falls from above the threshold to at or below it.
+   *
+   * <p>The function should decrease towards the origin, like an altitude. Besides steps that end
+   * on either side of the threshold, steps that dip below it and come back up between their ends
+   * are found by checking the function at their distance minimum.
+   */
+  public List<StepEvent> findDescendingCrossings(StateFunction function, double threshold) {
+    List<StepEvent> crossings = new ArrayList<>();
+    double[] state = new double[6];
+    double previous = Double.NaN;
+    for (int i = 0; i < seconds.length; i++) {
+      System.arraycopy(states, 6 * i, state, 0, 6);
+      double value = function.valueAt(state);
+      evaluations++;
+      if (i > 0 && previous > threshold) {
+        double end = Double.NaN;
+        if (value <= threshold) {
+          end = 1;
+        } else if (bracketsMinimum(i - 1)) {
+          double fraction = minimizeDistance(i - 1);
+          evaluations++;
+          if (function.valueAt(interpolate(i - 1, fraction)) <= threshold) {
+            end = fraction;
+          }
+        }
+        if (!Double.isNaN(end)) {
+          crossings.add(locateCrossing(function, threshold, i - 1, end));
+        }
+      }
+      previous = value;
+    }
+    return crossings;
+  }
+
+  /** Number of function evaluations made by crossing searches so far. */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /** Whether the range rate turns from negative to non-negative over the step. */
+  private boolean bracketsMinimum(int step) {
+    return rangeRate(6 * step) < 0 && rangeRate(6 * (step + 1)) >= 0;
+  }
+
+  private double rangeRate(int offset) {
+    return states[offset] * states[offset + 3]
+        + states[offset + 1] * states[offset + 4]
+        + states[offset + 2] * states[offset + 5];
+  }
+
+  /** Golden-section search for the fraction of the step with the smallest distance. */
+  private double minimizeDistance(int step) {
+    double a = 0;
+    double b = 1;
+    double c = b - GOLDEN_RATIO * (b - a);
+    double d = a + GOLDEN_RATIO * (b - a);
+    double fc = norm(interpolate(step, c));
+    double fd = norm(interpolate(step, d));
+    for (int i = 0; i < REFINEMENT_ITERATIONS; i++) {
+      if (fc < fd) {
+        b = d;
+        d = c;
+        fd = fc;
+        c = b - GOLDEN_RATIO * (b - a);
+        fc = norm(interpolate(step, c));
+      } else {
+        a = c;
+        c = d;
+        fc = fd;
+        d = a + GOLDEN_RATIO * (b - a);
+        fd = norm(interpolate(step, d));
+      }
+    }
+    return (a + b) / 2;
+  }
+
+  /**
+   * Bisection for the crossing between the start of the step, above the threshold, and the given
+   * fraction of it, at or below.
+   */
+  private StepEvent locateCrossing(StateFunction function, double threshold, int step, double end) {
+    double above = 0;
+    double below = end;
+    for (int i = 0; i < REFINEMENT_ITERATIONS; i++) {
+      double middle = (above + below) / 2;
+      evaluations++;
+      if (function.valueAt(interpolate(step, middle)) > threshold) {
+        above = middle;
+      } else {
+        below = middle;
+      }
+    }
+    double[] state = interpolate(step, below).clone();
+    evaluations++;
+    return new StepEvent(timeAt(step, below), function.valueAt(state), state);
+  }
+
+  /** Interpolates the given step into a buffer that the next call overwrites. */
+  private double[] interpolate(int step, double fraction) {
+    CubicHermite.interpolate(
+        states,
+        6 * step,
+        states,
+        6 * (step + 1),
+        seconds[step + 1] - seconds[step],
+        fraction,
+        interpolated);
+    return interpolated;
+  }
+
+  private double timeAt(int step, double fraction) {
+    return seconds[step] + fraction * (seconds[step + 1] - seconds[step]);
+  }
+
+  private static double norm(double[] state) {
+    return Math.sqrt(state[0] * state[0] + state[1] * state[1] + state[2] * state[2]);
+  }
+}
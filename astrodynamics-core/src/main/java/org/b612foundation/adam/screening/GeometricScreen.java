@@ -0,0 +1,208 @@
+package org.b612foundation.adam.screening;
+
+import static org.b612foundation.adam.astro.AstroConstants.AU_TO_KM;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.astro.AstroUtils;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.OdmCommonMetadata.CenterName;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.propagators.KeplerPropagator;
+
+/**
+ * First stage of screening, without numerical integration. Rejects heliocentric objects whose
+ * orbit never comes within a MOID threshold of Earth's, or whose two-body trajectory stays farther
+ * than a distance threshold from Earth's two-body position over the requested span.
+ *
+ * <p>Two-body motion ignores planetary perturbations, so the distance threshold has to be generous
+ * for long spans. Objects not centered on the Sun always pass, since geocentric orbits are near
+ * Earth by definition.
+ */
+public class GeometricScreen {
+  private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+  private static final int REFINEMENT_ITERATIONS = 60;
+
+  /** J2000 epoch of {@link MoidCalculator#earthOrbitJ2000()}. */
+  public static final String J2000_EPOCH = "2000-01-01T12:00:00";
+
+  /** The MOID threshold of potentially hazardous asteroids. */
+  private double moidThresholdKm = 0.05 * AU_TO_KM;
+
+  private double closeApproachThresholdKm = 0.2 * AU_TO_KM;
+  private long stepSeconds = 86400;
+  private KeplerianElements earthOrbit = MoidCalculator.earthOrbitJ2000();
+  private String earthOrbitEpoch = J2000_EPOCH;
+
+  public double getMoidThresholdKm() {
+    return moidThresholdKm;
+  }
+
+  /** Objects with a larger MOID are rejected. Defaults to 0.05 AU. */
+  public GeometricScreen setMoidThresholdKm(double moidThresholdKm) {
+    this.moidThresholdKm = moidThresholdKm;
+    return this;
+  }
+
+  public double getCloseApproachThresholdKm() {
+    return closeApproachThresholdKm;
+  }
+
+  /**
+   * Objects whose two-body closest approach to Earth is farther are rejected. Defaults to 0.2 AU;
+   * {@link Double#POSITIVE_INFINITY} screens on the MOID only.
+   */
+  public GeometricScreen setCloseApproachThresholdKm(double closeApproachThresholdKm) {
+    this.closeApproachThresholdKm = closeApproachThresholdKm;
+    return this;
+  }
+
+  public long getStepSeconds() {
+    return stepSeconds;
+  }
+
+  /** Spacing of the grid searched for two-body close approaches before refinement. */
+  public GeometricScreen setStepSeconds(long stepSeconds) {
+    if (stepSeconds <= 0) {
+      throw new IllegalArgumentException("Step must be positive, got " + stepSeconds);
+    }
+    this.stepSeconds = stepSeconds;
+    return this;
+  }
+
+  /**
+   * Sets Earth's heliocentric orbit, in the axes of the screened OPMs, and the epoch of its
+   * elements. Defaults to {@link MoidCalculator#earthOrbitJ2000()}.
+   */
+  public GeometricScreen setEarthOrbit(KeplerianElements earthOrbit, String epoch) {
+    this.earthOrbit = earthOrbit;
+    this.earthOrbitEpoch = epoch;
+    return this;
+  }
+
+  /** Whether the object of the parameters may come close to Earth within their time span. */
+  public boolean passes(PropagationParameters propagationParams) {
+    return moidKm(propagationParams.getOpm()) <= moidThresholdKm
+        && (closeApproachThresholdKm == Double.POSITIVE_INFINITY
+            || closestApproachKm(propagationParams) <= closeApproachThresholdKm);
+  }
+
+  /** Returns the MOID of the OPM's orbit with Earth's, or zero if it is not heliocentric. */
+  public double moidKm(OrbitParameterMessage opm) {
+    if (opm.getMetadata().getCenter_name() != CenterName.SUN) {
+      return 0;
+    }
+    double gm = KeplerPropagator.gravitationalParameter(opm);
+    return MoidCalculator.moid(
+        KeplerPropagator.initialState(opm, gm), KeplerPropagator.toCartesian(earthOrbit), gm);
+  }
+
+  /**
+   * Returns the smallest distance between the object and Earth, both in two-body motion about the
+   * Sun, between the start and end times of the parameters, or zero if the object is not
+   * heliocentric.
+   */
+  public double closestApproachKm(PropagationParameters propagationParams) {
+    OrbitParameterMessage opm = propagationParams.getOpm();
+    if (opm.getMetadata().getCenter_name() != CenterName.SUN) {
+      return 0;
+    }
+    double gm = KeplerPropagator.gravitationalParameter(opm);
+    double[] object = KeplerPropagator.initialState(opm, gm);
+    double[] earth = KeplerPropagator.toCartesian(earthOrbit);
+    LocalDateTime epoch = AstroUtils.parseIsoDateTime(opm.getState_vector().getEpoch());
+    LocalDateTime start = AstroUtils.parseIsoDateTime(propagationParams.getStart_time());
+    LocalDateTime end = AstroUtils.parseIsoDateTime(propagationParams.getEnd_time());
+    TwoBodyDistance distance =
+        new TwoBodyDistance(
+            object,
+            earth,
+            gm,
+            secondsBetween(AstroUtils.parseIsoDateTime(earthOrbitEpoch), epoch));
+
+    double startSeconds = secondsBetween(epoch, start);
+    double spanSeconds = secondsBetween(start, end);
+    int steps = (int) Math.ceil(Math.abs(spanSeconds) / stepSeconds);
+    double[] grid = new double[steps + 1];
+    double[] distances = new double[steps + 1];
+    for (int i = 0; i <= steps; i++) {
+      grid[i] =
+          i == steps
+              ? startSeconds + spanSeconds
+              : startSeconds + Math.copySign((double) i * stepSeconds, spanSeconds);
+      distances[i] = distance.at(grid[i]);
+    }
+
+    double closest = Double.POSITIVE_INFINITY;
+    for (int i = 0; i <= steps; i++) {
+      boolean localMinimum =
+          (i == 0 || distances[i] <= distances[i - 1])
+              && (i == steps || distances[i] <= distances[i + 1]);
+      if (localMinimum) {
+        double from = grid[Math.max(0, i - 1)];
+        double to = grid[Math.min(steps, i + 1)];
+        closest = Math.min(closest, Math.min(distances[i], minimize(distance, from, to)));
+      }
+    }
+    return closest;
+  }
+
+  /** Golden-section search for the smallest distance between two times. */
+  private static double minimize(TwoBodyDistance distance, double from, double to) {
+    double a = from;
+    double b = to;
+    double c = b - GOLDEN_RATIO * (b - a);
+    double d = a + GOLDEN_RATIO * (b - a);
+    double fc = distance.at(c);
+    double fd = distance.at(d);
+    for (int i = 0; i < REFINEMENT_ITERATIONS; i++) {
+      if (fc < fd) {
+        b = d;
+        d = c;
+        fd = fc;
+        c = b - GOLDEN_RATIO * (b - a);
+        fc = distance.at(c);
+      } else {
+        a = c;
+        c = d;
+        fc = fd;
+        d = a + GOLDEN_RATIO * (b - a);
+        fd = distance.at(d);
+      }
+    }
+    return Math.min(fc, fd);
+  }
+
+  private static double secondsBetween(LocalDateTime from, LocalDateTime to) {
+    return ChronoUnit.NANOS.between(from, to) / AstroConstants.SEC_TO_NANO;
+  }
+
+  /** Distance between an object and Earth in two-body motion, reusing its buffers. */
+  private static final class TwoBodyDistance {
+    private final double[] object;
+    private final double[] earth;
+    private final double gm;
+    private final double earthSecondsAtObjectEpoch;
+    private final double[] objectAt = new double[6];
+    private final double[] earthAt = new double[6];
+
+    TwoBodyDistance(double[] object, double[] earth, double gm, double earthSecondsAtObjectEpoch) {
+      this.object = object;
+      this.earth = earth;
+      this.gm = gm;
+      this.earthSecondsAtObjectEpoch = earthSecondsAtObjectEpoch;
+    }
+
+    /** Returns the distance in km at the given seconds since the object's epoch. */
+    double at(double seconds) {
+      KeplerPropagator.propagate(object, 0, gm, seconds, objectAt, 0);
+      KeplerPropagator.propagate(earth, 0, gm, earthSecondsAtObjectEpoch + seconds, earthAt, 0);
+      double dx = objectAt[0] - earthAt[0];
+      double dy = objectAt[1] - earthAt[1];
+      double dz = objectAt[2] - earthAt[2];
+      return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package org.b612foundation.adam.screening;
+
+import static org.b612foundation.adam.common.OrbitDataHelper.STATE_DIMENSION;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.common.OrbitDataHelper;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.StateVector;
+
+/**
+ * Computes the minimum orbit intersection distance (MOID), the smallest distance between any point
+ * of one osculating orbit and any point of another, regardless of where the objects are on them.
+ * Objects whose MOID with Earth's orbit is large cannot come close to Earth without their orbits
+ * changing, so they need no numerical propagation.
+ *
+ * <p>Both orbits are sampled on a grid of true anomalies. Every local minimum of the distance on
+ * the grid is then refined by a Newton iteration on the two anomalies, so each of the up to four
+ * local minima of the distance function is found. Elliptic, parabolic and hyperbolic orbits are
+ * supported. Distances are in the units of the input, km for ODM data.
+ */
+public final class MoidCalculator {
+  /** Number of true anomalies per orbit sampled before refinement. */
+  public static final int GRID_POINTS = 72;
+
+  private static final int MAX_ITERATIONS = 50;
+  private static final double ANOMALY_TOLERANCE = 1e-12;
+  // Eccentricity below which the orbit is treated as circular and its pericenter is arbitrary.
+  private static final double CIRCULAR_ECCENTRICITY = 1e-12;
+
+  private MoidCalculator() {}
+
+  /** Returns the MOID between the orbits of two sets of Keplerian elements. */
+  public static double moid(KeplerianElements first, KeplerianElements second) {
+    return moid(Conic.fromElements(first), Conic.fromElements(second));
+  }
+
+  /**
+   * Returns the MOID between the osculating orbits of two state vectors about the same body.
+   *
+   * @param gm gravitational parameter of the central body, km^3/s^2.
+   */
+  public static double moid(StateVector first, StateVector second, double gm) {
+    return moid(
+        OrbitDataHelper.extractStateVector(first), OrbitDataHelper.extractStateVector(second), gm);
+  }
+
+  /**
+   * Returns the MOID between the osculating orbits of two states, each position (km) and velocity
+   * (km/s), about the same body.
+   *
+   * @param gm gravitational parameter of the central body, km^3/s^2.
+   */
+  public static double moid(double[] first, double[] second, double gm) {
+    return moid(Conic.fromState(first, gm), Conic.fromState(second, gm));
+  }
+
+  /**
+   * Returns the MOID of each orbit of a catalog with a reference orbit, typically {@link
+   * #earthOrbitJ2000()}, computed in parallel.
+   */
+  public static double[] moids(List<KeplerianElements> catalog, KeplerianElements reference) {
+    Conic referenceConic = Conic.fromElements(reference);
+    double[] moids = new double[catalog.size()];
+    IntStream.range(0, catalog.size())
+        .parallel()
+        .forEach(i -> moids[i] = moid(Conic.fromElements(catalog.get(i)), referenceConic));
+    return moids;
+  }
+
+  /**
+   * Returns Earth's heliocentric orbit at J2000 in equatorial (ICRF) axes, from JPL's mean
+   * elements. It is off the osculating orbit by up to some 10^4 km, so screening thresholds should
+   * allow for that.
+   */
+  public static KeplerianElements earthOrbitJ2000() {
+    return new KeplerianElements()
+        .setSemi_major_axis(1.00000261 * AstroConstants.AU_TO_KM)
+        .setEccentricity(0.01671123)
+        .setInclination(23.43928)
+        .setRa_of_asc_node(0)
+        .setArg_of_pericenter(102.93768193)
+        .setMean_anomaly(357.52911)
+        .setGm(AstroConstants.GM);
+  }
+
+  private static double moid(Conic first, Conic second) {
+    double[] firstGrid = first.anomalyGrid();
+    double[] secondGrid = second.anomalyGrid();
+    double[][] firstPoints = new double[GRID_POINTS][];
+    double[][] secondPoints = new double[GRID_POINTS][];
+    for (int i = 0; i < GRID_POINTS; i++) {
+      firstPoints[i] = first.position(firstGrid[i]);
+      secondPoints[i] = second.position(secondGrid[i]);
+    }
+    double[][] distances = new double[GRID_POINTS][GRID_POINTS];
+    for (int i = 0; i < GRID_POINTS; i++) {
+      for (int j = 0; j < GRID_POINTS; j++) {
+        distances[i][j] = squaredDistance(firstPoints[i], secondPoints[j]);
+      }
+    }
+
+    double best = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < GRID_POINTS; i++) {
+      for (int j = 0; j < GRID_POINTS; j++) {
+        if (isLocalMinimum(distances, i, j, first.closed, second.closed)) {
+          best = Math.min(best, refine(first, second, firstGrid[i], secondGrid[j]));
+        }
+      }
+    }
+    return Math.sqrt(best);
+  }
+
+  private static boolean isLocalMinimum(
+      double[][] distances, int i, int j, boolean firstClosed, boolean secondClosed) {
+    for (int di = -1; di <= 1; di++) {
+      for (int dj = -1; dj <= 1; dj++) {
+        int ni = neighbour(i + di, firstClosed);
+        int nj = neighbour(j + dj, secondClosed);
+        if (ni >= 0 && nj >= 0 && distances[ni][nj] < distances[i][j]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Grid index of a neighbour, wrapping around closed orbits, or -1 off an open one. */
+  private static int neighbour(int index, boolean closed) {
+    if (closed) {
+      return Math.floorMod(index, GRID_POINTS);
+    }
+    return index < 0 || index >= GRID_POINTS ? -1 : index;
+  }
+
+  /**
+   * Minimizes the squared distance from the given anomalies with Newton steps, falling back to
+   * gradient steps where the distance is not locally convex, and halving steps that do not reduce
+   * it. Returns the squared distance.
+   */
+  private static double refine(Conic first, Conic second, double nu1, double nu2) {
+    double[] r1 = first.position(nu1);
+    double[] r2 = second.position(nu2);
+    double d = squaredDistance(r1, r2);
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      double[] dr1 = first.derivative(nu1);
+      double[] dr2 = second.derivative(nu2);
+      double[] ddr1 = first.secondDerivative(nu1);
+      double[] ddr2 = second.secondDerivative(nu2);
+      double[] delta = {r1[0] - r2[0], r1[1] - r2[1], r1[2] - r2[2]};
+      double g1 = 2 * dot(delta, dr1);
+      double g2 = -2 * dot(delta, dr2);
+      double h11 = 2 * (dot(dr1, dr1) + dot(delta, ddr1));
+      double h22 = 2 * (dot(dr2, dr2) - dot(delta, ddr2));
+      double h12 = -2 * dot(dr1, dr2);
+      double det = h11 * h22 - h12 * h12;
+      double step1;
+      double step2;
+      if (h11 > 0 && det > 0) {
+        step1 = (-h22 * g1 + h12 * g2) / det;
+        step2 = (h12 * g1 - h11 * g2) / det;
+      } else {
+        double scale = Math.abs(h11) + Math.abs(h22) + 2 * Math.abs(h12);
+        if (scale == 0) {
+          break;
+        }
+        step1 = -g1 / scale;
+        step2 = -g2 / scale;
+      }
+
+      boolean improved = false;
+      for (int halving = 0; halving < 30 && !improved; halving++) {
+        double next1 = first.clamp(nu1 + step1);
+        double next2 = second.clamp(nu2 + step2);
+        double[] nextR1 = first.position(next1);
+        double[] nextR2 = second.position(next2);
+        double nextD = squaredDistance(nextR1, nextR2);
+        if (nextD <= d) {
+          improved = true;
+          nu1 = next1;
+          nu2 = next2;
+          r1 = nextR1;
+          r2 = nextR2;
+          d = nextD;
+        } else {
+          step1 /= 2;
+          step2 /= 2;
+        }
+      }
+      if (!improved || Math.abs(step1) + Math.abs(step2) < ANOMALY_TOLERANCE) {
+        break;
+      }
+    }
+    return d;
+  }
+
+  private static double squaredDistance(double[] a, double[] b) {
+    double dx = a[0] - b[0];
+    double dy = a[1] - b[1];
+    double dz = a[2] - b[2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  private static double dot(double[] a, double[] b) {
+    return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+  }
+
+  /** An orbit as a conic: position as a function of true anomaly. */
+  private static final class Conic {
+    /** Semi-latus rectum. */
+    final double p;
+
+    final double e;
+    /** Perifocal unit vector towards pericenter. */
+    final double[] unitP;
+    /** Perifocal unit vector 90 degrees ahead of pericenter in the orbit plane. */
+    final double[] unitQ;
+
+    final boolean closed;
+    /** Largest reachable true anomaly, in radians, for open orbits. */
+    final double maxAnomaly;
+
+    Conic(double p, double e, double[] unitP, double[] unitQ) {
+      this.p = p;
+      this.e = e;
+      this.unitP = unitP;
+      this.unitQ = unitQ;
+      this.closed = e < 1;
+      // Stay short of the asymptotes, where the distance is infinite.
+      this.maxAnomaly = closed ? Math.PI : Math.acos(-1 / e) * (1 - 1e-6);
+    }
+
+    static Conic fromElements(KeplerianElements elements) {
+      double a = elements.getSemi_major_axis();
+      double e = elements.getEccentricity();
+      if (e == 1 || (e < 1) != (a > 0)) {
+        throw new IllegalArgumentException(
+            "Semi-major axis " + a + " is inconsistent with eccentricity " + e);
+      }
+      double raan = Math.toRadians(elements.getRa_of_asc_node());
+      double argPeri = Math.toRadians(elements.getArg_of_pericenter());
+      double i = Math.toRadians(elements.getInclination());
+      double cosO = Math.cos(raan);
+      double sinO = Math.sin(raan);
+      double cosW = Math.cos(argPeri);
+      double sinW = Math.sin(argPeri);
+      double cosI = Math.cos(i);
+      double sinI = Math.sin(i);
+      double[] unitP = {
+        cosO * cosW - sinO * sinW * cosI, sinO * cosW + cosO * sinW * cosI, sinW * sinI
+      };
+      double[] unitQ = {
+        -cosO * sinW - sinO * cosW * cosI, -sinO * sinW + cosO * cosW * cosI, cosW * sinI
+      };
+      return new Conic(a * (1 - e * e), e, unitP, unitQ);
+    }
+
+    static Conic fromState(double[] state, double gm) {
+      if (state.length != STATE_DIMENSION) {
+        throw new IllegalArgumentException("Expected position and velocity, got " + state.length);
+      }
+      double[] r = {state[0], state[1], state[2]};
+      double[] v = {state[3], state[4], state[5]};
+      double[] h = cross(r, v);
+      double hNorm = Math.sqrt(dot(h, h));
+      double rNorm = Math.sqrt(dot(r, r));
+      double radialFactor = dot(v, v) / gm - 1 / rNorm;
+      double velocityFactor = dot(r, v) / gm;
+      double[] eccentricity = {
+        radialFactor * r[0] - velocityFactor * v[0],
+        radialFactor * r[1] - velocityFactor * v[1],
+        radialFactor * r[2] - velocityFactor * v[2]
+      };
+      double e = Math.sqrt(dot(eccentricity, eccentricity));
+      double[] towardsPericenter = e < CIRCULAR_ECCENTRICITY ? r : eccentricity;
+      double norm = Math.sqrt(dot(towardsPericenter, towardsPericenter));
+      double[] unitP = {
+        towardsPericenter[0] / norm, towardsPericenter[1] / norm, towardsPericenter[2] / norm
+      };
+      double[] unitH = {h[0] / hNorm, h[1] / hNorm, h[2] / hNorm};
+      return new Conic(hNorm * hNorm / gm, e, unitP, cross(unitH, unitP));
+    }
+
+    double[] anomalyGrid() {
+      double[] grid = new double[GRID_POINTS];
+      for (int i = 0; i < GRID_POINTS; i++) {
+        grid[i] =
+            closed
+                ? 2 * Math.PI * i / GRID_POINTS
+                : -maxAnomaly + 2 * maxAnomaly * (i + 0.5) / GRID_POINTS;
+      }
+      return grid;
+    }
+
+    double clamp(double nu) {
+      return closed ? nu : Math.max(-maxAnomaly, Math.min(maxAnomaly, nu));
+    }
+
+    double[] position(double nu) {
+      double cos = Math.cos(nu);
+      double sin = Math.sin(nu);
+      double radius = p / (1 + e * cos);
+      return inSpace(radius * cos, radius * sin);
+    }
+
+    double[] derivative(double nu) {
+      double cos = Math.cos(nu);
+      double sin = Math.sin(nu);
+      double w = 1 + e * cos;
+      return inSpace(-p * sin / (w * w), p * (cos + e) / (w * w));
+    }
+
+    double[] secondDerivative(double nu) {
+      double cos = Math.cos(nu);
+      double sin = Math.sin(nu);
+      double w = 1 + e * cos;
+      double w3 = w * w * w;
+      return inSpace(
+          -p * (cos * w + 2 * e * sin * sin) / w3,
+          p * (-sin * w + 2 * e * sin * (cos + e)) / w3);
+    }
+
+    private double[] inSpace(double x, double y) {
+      return new double[] {
+        x * unitP[0] + y * unitQ[0], x * unitP[1] + y * unitQ[1], x * unitP[2] + y * unitQ[2]
+      };
+    }
+  }
+
+  private static double[] cross(double[] a, double[] b) {
+    return new double[] {
+      a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]
+    };
+  }
+}
@@ -0,0 +1,82 @@
+package org.b612foundation.adam.screening;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage counts and timings of a screening pipeline: how many objects each stage processed and
+ * rejected, and how long it spent on them. Thread-safe, so one instance can be shared by pipelines
+ * running on several workers.
+ */
+public class ScreeningCounters {
+  private final Map<ScreeningStage, LongAdder> processed = new EnumMap<>(ScreeningStage.class);
+  private final Map<ScreeningStage, LongAdder> rejected = new EnumMap<>(ScreeningStage.class);
+  private final Map<ScreeningStage, LongAdder> nanos = new EnumMap<>(ScreeningStage.class);
+
+  public ScreeningCounters() {
+    for (ScreeningStage stage : ScreeningStage.values()) {
+      processed.put(stage, new LongAdder());
+      rejected.put(stage, new LongAdder());
+      nanos.put(stage, new LongAdder());
+    }
+  }
+
+  /** Records that the given stage processed one object. */
+  public void record(ScreeningStage stage, boolean passed, long elapsedNanos) {
+    processed.get(stage).increment();
+    if (!passed) {
+      rejected.get(stage).increment();
+    }
+    nanos.get(stage).add(elapsedNanos);
+  }
+
+  public long getProcessed(ScreeningStage stage) {
+    return processed.get(stage).sum();
+  }
+
+  public long getRejected(ScreeningStage stage) {
+    return rejected.get(stage).sum();
+  }
+
+  public long getPassed(ScreeningStage stage) {
+    return getProcessed(stage) - getRejected(stage);
+  }
+
+  public long getNanos(ScreeningStage stage) {
+    return nanos.get(stage).sum();
+  }
+
+  /** Objects processed per second spent in the given stage, or zero if it processed none. */
+  public double getThroughputPerSecond(ScreeningStage stage) {
+    long stageNanos = getNanos(stage);
+    if (stageNanos == 0) {
+      return 0;
+    }
+    return getProcessed(stage) * (double) TimeUnit.SECONDS.toNanos(1) / stageNanos;
+  }
+
+  public void reset() {
+    for (ScreeningStage stage : ScreeningStage.values()) {
+      processed.get(stage).reset();
+      rejected.get(stage).reset();
+      nanos.get(stage).reset();
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (ScreeningStage stage : ScreeningStage.values()) {
+      builder.append(
+          String.format(
+              "%s: %d processed, %d rejected, %.1f/s%n",
+              stage,
+              getProcessed(stage),
+              getRejected(stage),
+              getThroughputPerSecond(stage)));
+    }
+    return builder.toString();
+  }
+}
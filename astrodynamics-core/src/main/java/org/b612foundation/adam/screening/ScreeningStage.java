@@ -0,0 +1,11 @@
+package org.b612foundation.adam.screening;
+
+/** Stages of a screening pipeline, from cheapest to most expensive. */
+public enum ScreeningStage {
+  /** MOID with Earth's orbit and two-body closest approach. Microseconds per object. */
+  GEOMETRIC,
+  /** Numerical integration with coarse tolerances. */
+  COARSE,
+  /** Full-fidelity integration with close approach and impact detection. */
+  FULL
+}
@@ -0,0 +1,66 @@
+package org.b612foundation.adam.astro;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.b612foundation.adam.propagators.KeplerPropagator;
+import org.junit.Test;
+
+public class TargetPlaneTest {
+  private static final double GM = AstroConstants.GM_EARTH;
+  private static final double EARTH_RADIUS = 6378.137;
+  private static final double[] EARTH_VELOCITY = {0, 29.78, 0};
+
+  /** Relative state of an object coming in along +x, offset by the given distance along +y. */
+  private static double[] incoming(double offset, double speed) {
+    return new double[] {-2e6, offset, 0, speed, 0, 0};
+  }
+
+  @Test
+  public void testCoordinates() {
+    double[] state = incoming(20000, 5);
+    TargetPlane plane = TargetPlane.of(state, EARTH_VELOCITY, GM).get();
+
+    double vInfinity = Math.sqrt(25 - 2 * GM / Math.hypot(2e6, 20000));
+    assertThat(plane.getVInfinity()).isWithin(1e-12).of(vInfinity);
+    // The angular momentum is offset * speed, and b * vInfinity far from Earth.
+    assertThat(plane.getImpactParameter()).isWithin(1e-6).of(20000 * 5 / vInfinity);
+    // In the plane of Earth's velocity, so all on zeta, opposite Earth's velocity.
+    assertThat(plane.getXi()).isWithin(1e-6).of(0);
+    assertThat(plane.getZeta()).isWithin(1e-6).of(-plane.getImpactParameter());
+
+    double h = 20000 * 5;
+    double e = Math.sqrt(1 + h * h * vInfinity * vInfinity / (GM * GM));
+    assertThat(plane.getMinimumDistance()).isWithin(1e-6).of(h * h / (GM * (1 + e)));
+    assertThat(plane.isImpact(EARTH_RADIUS)).isFalse();
+  }
+
+  @Test
+  public void testSameAlongTheFlyby() {
+    double[] state = new double[] {-1.5e6, 3000, 12000, 7, 0.2, -0.1};
+    TargetPlane before = TargetPlane.of(state, EARTH_VELOCITY, GM).get();
+    double[] after = new double[6];
+    KeplerPropagator.propagate(state, 0, GM, 3e5, after, 0);
+
+    TargetPlane later = TargetPlane.of(after, EARTH_VELOCITY, GM).get();
+
+    assertThat(later.getXi()).isWithin(1e-4).of(before.getXi());
+    assertThat(later.getZeta()).isWithin(1e-4).of(before.getZeta());
+    assertThat(later.getMinimumDistance()).isWithin(1e-4).of(before.getMinimumDistance());
+  }
+
+  @Test
+  public void testImpactWithinCaptureRadius() {
+    // Gravitational focusing makes the capture radius larger than Earth's.
+    TargetPlane plane = TargetPlane.of(incoming(8000, 3), EARTH_VELOCITY, GM).get();
+
+    assertThat(plane.getCaptureRadius(EARTH_RADIUS)).isGreaterThan(8000.0);
+    assertThat(plane.isImpact(EARTH_RADIUS)).isTrue();
+    assertThat(plane.getMinimumDistance()).isLessThan(EARTH_RADIUS);
+  }
+
+  @Test
+  public void testBoundOrbitHasNoTargetPlane() {
+    double[] circular = new double[] {7000, 0, 0, 0, Math.sqrt(GM / 7000), 0};
+    assertThat(TargetPlane.of(circular, EARTH_VELOCITY, GM).isPresent()).isFalse();
+  }
+}
@@ -50,4 +50,56 @@ public class PropagationHelperTest {
         .setZ_dot(testVz);
     assertEquals(expected, PropagationHelper.toStateVector(state, epoch));
   }
+
+  @Test
+  public void testAppendEphemeris() {
+    OrbitEphemerisMessage previous = ephemeris("2000-01-01T00:00:00", "2000-01-01T00:01:00");
+    OrbitEphemerisMessage extension =
+        ephemeris("2000-01-01T00:01:00", "2000-01-01T00:02:00", "2000-01-01T00:03:00");
+
+    OrbitEphemerisMessage extended = PropagationHelper.appendEphemeris(previous, extension);
+
+    OemDataBlock block = extended.getBlocks().get(0);
+    assertEquals(4, block.getLines().size());
+    assertEquals("2000-01-01T00:00:00", block.getLines().get(0).getDate());
+    assertEquals("2000-01-01T00:01:00", block.getLines().get(1).getDate());
+    assertEquals("2000-01-01T00:02:00", block.getLines().get(2).getDate());
+    assertEquals("2000-01-01T00:00:00", block.getMetadata().getStart_time());
+    assertEquals("2000-01-01T00:03:00", block.getMetadata().getStop_time());
+    assertEquals("2000-01-01T00:03:00", block.getMetadata().getUsable_stop_time());
+  }
+
+  @Test
+  public void testReverseEphemerisThenAppend() {
+    // A leg propagated backwards from the epoch, then one forwards.
+    OrbitEphemerisMessage backward =
+        ephemeris("2000-01-01T00:02:00", "2000-01-01T00:01:00", "2000-01-01T00:00:00");
+    OrbitEphemerisMessage forward = ephemeris("2000-01-01T00:02:00", "2000-01-01T00:03:00");
+
+    OrbitEphemerisMessage stitched =
+        PropagationHelper.appendEphemeris(PropagationHelper.reverseEphemeris(backward), forward);
+
+    OemDataBlock block = stitched.getBlocks().get(0);
+    assertEquals(4, block.getLines().size());
+    assertEquals("2000-01-01T00:00:00", block.getLines().get(0).getDate());
+    assertEquals(2.0, block.getLines().get(0).getPoint()[0], 0.0);
+    assertEquals("2000-01-01T00:02:00", block.getLines().get(2).getDate());
+    assertEquals("2000-01-01T00:03:00", block.getLines().get(3).getDate());
+    assertEquals("2000-01-01T00:00:00", block.getMetadata().getStart_time());
+    assertEquals("2000-01-01T00:03:00", block.getMetadata().getStop_time());
+  }
+
+  private static OrbitEphemerisMessage ephemeris(String... dates) {
+    OemMetadata metadata = new OemMetadata();
+    metadata.setStart_time(dates[0]);
+    metadata.setStop_time(dates[dates.length - 1]);
+    metadata.setUsable_stop_time(dates[dates.length - 1]);
+    OemDataBlock block = new OemDataBlock().setMetadata(metadata);
+    for (int i = 0; i < dates.length; i++) {
+      block.addLine(dates[i], i, 0, 0, 0, 0, 0);
+    }
+    OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
+    oem.addBlock(block);
+    return oem;
+  }
 }
@@ -0,0 +1,99 @@
+package org.b612foundation.adam.datamodel;
+
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.Formulation;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorMethod;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorProfile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PropagatorConfigurationTest {
+
+  @Test
+  public void testDefaultIntegratorProfileMatchesStkDesktop() {
+    PropagatorConfiguration config = new PropagatorConfiguration();
+    assertEquals(IntegratorProfile.PRECISE, config.getIntegratorProfile());
+    assertEquals(1e-13, config.getIntegratorProfile().getRelativeTolerance(), 0.0);
+    assertEquals(1e-11, config.getIntegratorProfile().getAbsoluteTolerance(), 0.0);
+    assertEquals(1, config.getIntegratorProfile().getMinimumStepSize(), 0.0);
+    assertEquals(86400, config.getIntegratorProfile().getMaximumStepSize(), 0.0);
+  }
+
+  @Test
+  public void testProfilesGetCoarser() {
+    IntegratorProfile[] profiles = IntegratorProfile.values();
+    for (int i = 1; i < profiles.length; i++) {
+      assertTrue(
+          profiles[i].getRelativeTolerance() > profiles[i - 1].getRelativeTolerance());
+      assertTrue(
+          profiles[i].getMinimumStepSize() >= profiles[i - 1].getMinimumStepSize());
+      assertTrue(
+          profiles[i].getMaximumStepSize() >= profiles[i - 1].getMaximumStepSize());
+    }
+  }
+
+  @Test
+  public void testIntegratorProfileInEquals() {
+    PropagatorConfiguration precise = new PropagatorConfiguration();
+    PropagatorConfiguration screening =
+        new PropagatorConfiguration().setIntegratorProfile(IntegratorProfile.SCREENING);
+    assertNotEquals(precise, screening);
+    assertNotEquals(precise.hashCode(), screening.hashCode());
+    assertEquals(
+        screening, new PropagatorConfiguration().setIntegratorProfile(IntegratorProfile.SCREENING));
+  }
+
+  @Test
+  public void testFormulationDefaultsToCowellAndIsInEquals() {
+    PropagatorConfiguration cowell = new PropagatorConfiguration();
+    PropagatorConfiguration encke = new PropagatorConfiguration().setFormulation(Formulation.ENCKE);
+    assertEquals(Formulation.COWELL, cowell.getFormulation());
+    assertNotEquals(cowell, encke);
+    assertNotEquals(cowell.hashCode(), encke.hashCode());
+    assertEquals(encke, encke.deepCopy());
+  }
+
+  @Test
+  public void testIntegratorMethodDefaultsToRungeKuttaAndIsInEquals() {
+    PropagatorConfiguration rungeKutta = new PropagatorConfiguration();
+    PropagatorConfiguration adams =
+        new PropagatorConfiguration().setIntegratorMethod(IntegratorMethod.ADAMS);
+    assertEquals(IntegratorMethod.RUNGE_KUTTA, rungeKutta.getIntegratorMethod());
+    assertNotEquals(rungeKutta, adams);
+    assertNotEquals(rungeKutta.hashCode(), adams.hashCode());
+    assertEquals(adams, adams.deepCopy());
+  }
+
+  @Test
+  public void testRegularizationDistanceIsInEquals() {
+    PropagatorConfiguration plain = new PropagatorConfiguration();
+    PropagatorConfiguration regularized =
+        new PropagatorConfiguration().setRegularizationDistanceMeters(1e8);
+    assertEquals(0, plain.getRegularizationDistanceMeters(), 0.0);
+    assertNotEquals(plain, regularized);
+    assertNotEquals(plain.hashCode(), regularized.hashCode());
+    assertEquals(regularized, regularized.deepCopy());
+  }
+
+  @Test
+  public void testDeepCopy() {
+    PropagatorConfiguration config =
+        new PropagatorConfiguration()
+            .setDescription("all bodies")
+            .setMoon(PropagatorConfiguration.PlanetGravityMode.OMIT)
+            .addAsteroid("Ceres")
+            .setIntegratorProfile(IntegratorProfile.STANDARD);
+    config.setUuid("uuid");
+
+    PropagatorConfiguration copy = config.deepCopy();
+    assertEquals(config, copy);
+    assertEquals("all bodies", copy.getDescription());
+
+    copy.addAsteroid("Vesta");
+    copy.setIntegratorProfile(IntegratorProfile.SCREENING);
+    assertEquals(1, config.getAsteroids().size());
+    assertEquals(IntegratorProfile.STANDARD, config.getIntegratorProfile());
+  }
+}
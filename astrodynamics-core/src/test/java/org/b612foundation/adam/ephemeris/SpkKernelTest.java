@@ -0,0 +1,209 @@
+package org.b612foundation.adam.ephemeris;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpkKernelTest {
+  private static final int EARTH = 399;
+  private static final int EARTH_MOON_BARYCENTER = 3;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** A segment to write, with its records of Chebyshev coefficients. */
+  private static final class TestSegment {
+    final int target;
+    final int center;
+    final int type;
+    final double init;
+    final double intervalLength;
+    final double[][] records;
+    int frame = SpkWriter.J2000;
+
+    TestSegment(
+        int target, int center, int type, double init, double intervalLength, double[][] records) {
+      this.target = target;
+      this.center = center;
+      this.type = type;
+      this.init = init;
+      this.intervalLength = intervalLength;
+      this.records = records;
+    }
+
+    int doubles() {
+      return records.length * records[0].length + 4;
+    }
+  }
+
+  /** Writes a DAF/SPK file: file record, one summary record, one name record and the data. */
+  private Path write(ByteOrder order, TestSegment... segments) throws IOException {
+    int dataDoubles = 0;
+    for (TestSegment segment : segments) {
+      dataDoubles += segment.doubles();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(3 * 1024 + dataDoubles * 8).order(order);
+    buffer.put("DAF/SPK ".getBytes(StandardCharsets.US_ASCII));
+    buffer.putInt(8, 2);
+    buffer.putInt(12, 6);
+    buffer.putInt(76, 2);
+    buffer.putInt(80, 2);
+    buffer.putInt(84, 3 * 128 + dataDoubles + 1);
+    buffer.position(88);
+    String format = order == ByteOrder.LITTLE_ENDIAN ? "LTL-IEEE" : "BIG-IEEE";
+    buffer.put(format.getBytes(StandardCharsets.US_ASCII));
+
+    buffer.putDouble(1024 + 16, segments.length);
+    int address = 3 * 128 + 1;
+    for (int i = 0; i < segments.length; i++) {
+      TestSegment segment = segments[i];
+      int summary = 1024 + (3 + 5 * i) * 8;
+      int end = address + segment.doubles() - 1;
+      buffer.putDouble(summary, segment.init);
+      buffer.putDouble(summary + 8, segment.init + segment.records.length * segment.intervalLength);
+      int[] ints = {segment.target, segment.center, segment.frame, segment.type, address, end};
+      for (int j = 0; j < 6; j++) {
+        buffer.putInt(summary + 16 + 4 * j, ints[j]);
+      }
+      int offset = (address - 1) * 8;
+      for (double[] record : segment.records) {
+        for (double value : record) {
+          buffer.putDouble(offset, value);
+          offset += 8;
+        }
+      }
+      buffer.putDouble(offset, segment.init);
+      buffer.putDouble(offset + 8, segment.intervalLength);
+      buffer.putDouble(offset + 16, segment.records[0].length);
+      buffer.putDouble(offset + 24, segment.records.length);
+      address = end + 1;
+    }
+    Path file = folder.newFile().toPath();
+    Files.write(file, buffer.array());
+    return file;
+  }
+
+  /**
+   * Type 2 segment of Earth about the Earth-Moon barycenter over two records of 100 s, where x is
+   * 1 + 2 T1 + 3 T2, y is 5 T1 in the first record and -5 T1 in the second, and z is 7.
+   */
+  private static TestSegment earthType2() {
+    return new TestSegment(
+        EARTH,
+        EARTH_MOON_BARYCENTER,
+        2,
+        0,
+        100,
+        new double[][] {
+          {50, 50, 1, 2, 3, 0, 5, 0, 7, 0, 0},
+          {150, 50, 1, 2, 3, 0, -5, 0, 7, 0, 0}
+        });
+  }
+
+  /** Type 3 segment of the barycenter moving along x at 2 km/s, at 1000 km when t = 100 s. */
+  private static TestSegment barycenterType3() {
+    return new TestSegment(
+        EARTH_MOON_BARYCENTER,
+        SpkKernel.SOLAR_SYSTEM_BARYCENTER,
+        3,
+        0,
+        200,
+        new double[][] {{100, 100, 1000, 200, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0}});
+  }
+
+  @Test
+  public void testEvaluatesType2PositionAndVelocity() throws IOException {
+    SpkKernel kernel = SpkKernel.open(write(ByteOrder.LITTLE_ENDIAN, earthType2()));
+    double[] state = new double[6];
+
+    kernel.state(EARTH, EARTH_MOON_BARYCENTER, 75, state);
+
+    // s = 0.5: T1 = 0.5, T2 = 2 s^2 - 1 = -0.5; dT1/ds = 1, dT2/ds = 4 s = 2.
+    assertThat(state[0]).isWithin(1e-12).of(1 + 2 * 0.5 - 3 * 0.5);
+    assertThat(state[1]).isWithin(1e-12).of(2.5);
+    assertThat(state[2]).isWithin(1e-12).of(7);
+    assertThat(state[3]).isWithin(1e-12).of((2 + 3 * 2) / 50.0);
+    assertThat(state[4]).isWithin(1e-12).of(5 / 50.0);
+    assertThat(state[5]).isWithin(1e-12).of(0);
+
+    kernel.state(EARTH, EARTH_MOON_BARYCENTER, 175, state);
+    assertThat(state[1]).isWithin(1e-12).of(-2.5);
+  }
+
+  @Test
+  public void testChainsSegmentsThroughCenters() throws IOException {
+    SpkKernel kernel =
+        SpkKernel.open(write(ByteOrder.BIG_ENDIAN, earthType2(), barycenterType3()));
+    double[] state = new double[6];
+
+    kernel.state(EARTH, SpkKernel.SOLAR_SYSTEM_BARYCENTER, 150, state);
+    assertThat(state[0]).isWithin(1e-9).of(1000 + 100 + (1 - 3));
+    assertThat(state[3]).isWithin(1e-12).of(2 + 2 / 50.0);
+
+    kernel.state(EARTH_MOON_BARYCENTER, EARTH, 150, state);
+    assertThat(state[0]).isWithin(1e-9).of(-(1 - 3));
+    assertThat(state[4]).isWithin(1e-12).of(5 / 50.0);
+
+    assertThat(kernel.getTargets()).containsExactly(EARTH, EARTH_MOON_BARYCENTER);
+  }
+
+  @Test
+  public void testRejectsChainsThroughSegmentsInDifferentFrames() throws IOException {
+    TestSegment barycenter = barycenterType3();
+    barycenter.frame = SpkWriter.ECLIPJ2000;
+    SpkKernel kernel = SpkKernel.open(write(ByteOrder.LITTLE_ENDIAN, earthType2(), barycenter));
+    double[] state = new double[6];
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> kernel.state(EARTH, SpkKernel.SOLAR_SYSTEM_BARYCENTER, 150, state));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> kernel.state(SpkKernel.SOLAR_SYSTEM_BARYCENTER, EARTH, 150, state));
+    // Chains through a single frame are still evaluated.
+    kernel.state(EARTH, EARTH_MOON_BARYCENTER, 150, state);
+    assertThat(state[0]).isWithin(1e-9).of(1 - 3);
+    kernel.state(EARTH_MOON_BARYCENTER, SpkKernel.SOLAR_SYSTEM_BARYCENTER, 150, state);
+    assertThat(state[0]).isWithin(1e-9).of(1100);
+  }
+
+  @Test
+  public void testBodyEphemerisIsInMetersFromEpoch() throws IOException {
+    SpkKernel kernel = SpkKernel.open(write(ByteOrder.LITTLE_ENDIAN, barycenterType3()));
+    double[] state = new double[6];
+
+    kernel
+        .bodyEphemeris(EARTH_MOON_BARYCENTER, SpkKernel.SOLAR_SYSTEM_BARYCENTER, 50)
+        .stateAt(100, state);
+
+    assertThat(state[0]).isWithin(1e-6).of(1.1e6);
+    assertThat(state[3]).isWithin(1e-9).of(2e3);
+  }
+
+  @Test
+  public void testRejectsTimesOutsideSegments() throws IOException {
+    SpkKernel kernel = SpkKernel.open(write(ByteOrder.LITTLE_ENDIAN, earthType2()));
+
+    assertThat(kernel.covers(EARTH, 200)).isTrue();
+    assertThat(kernel.covers(EARTH, 201)).isFalse();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> kernel.state(EARTH, SpkKernel.SOLAR_SYSTEM_BARYCENTER, 50, new double[6]));
+  }
+
+  @Test
+  public void testRejectsOtherFiles() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, new byte[2048]);
+
+    assertThrows(IOException.class, () -> SpkKernel.open(file));
+  }
+}
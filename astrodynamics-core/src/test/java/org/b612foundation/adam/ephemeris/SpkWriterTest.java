@@ -0,0 +1,121 @@
+package org.b612foundation.adam.ephemeris;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OemDataBlock;
+import org.b612foundation.adam.opm.OemMetadata;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.propagators.KeplerPropagator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpkWriterTest {
+  private static final int SUN = 10;
+  private static final int ASTEROID = 2000101;
+  // An eccentric heliocentric orbit, in km and km/s.
+  private static final double[] INITIAL = {1.5e8, 2e7, 5e6, -4, 28, 1};
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Epochs spaced unevenly, like integrator steps, from 0 to about 200 days. */
+  private static double[] epochs(int count) {
+    double[] epochs = new double[count];
+    for (int i = 1; i < count; i++) {
+      epochs[i] = epochs[i - 1] + 86400 * (1 + 0.5 * Math.sin(i));
+    }
+    return epochs;
+  }
+
+  private static double[] kepler(double[] epochs) {
+    double[] states = new double[6 * epochs.length];
+    KeplerPropagator.propagate(INITIAL, AstroConstants.GM, epochs, states);
+    return states;
+  }
+
+  @Test
+  public void testRoundTripInterpolatesBetweenStates() throws IOException {
+    Path file = folder.newFile().toPath();
+    double[] epochs = epochs(150);
+    try (SpkWriter writer = SpkWriter.create(file, "test")) {
+      writer.writeSegment(
+          ASTEROID, SUN, SpkWriter.J2000, epochs, kepler(epochs), SpkWriter.DEFAULT_DEGREE, "101");
+    }
+
+    SpkKernel kernel = SpkKernel.open(file);
+    double[] state = new double[6];
+    double[] expected = new double[6];
+    for (double et : new double[] {epochs[0], epochs[10], 0.5 * (epochs[70] + epochs[71])}) {
+      kernel.state(ASTEROID, SUN, et, state);
+      KeplerPropagator.propagate(INITIAL, 0, AstroConstants.GM, et, expected, 0);
+      for (int i = 0; i < 3; i++) {
+        assertThat(state[i]).isWithin(1e-3).of(expected[i]);
+        assertThat(state[i + 3]).isWithin(1e-9).of(expected[i + 3]);
+      }
+    }
+    assertThat(kernel.covers(ASTEROID, epochs[149] + 1)).isFalse();
+  }
+
+  @Test
+  public void testChainsSummaryRecordsForManySegments() throws IOException {
+    Path file = folder.newFile().toPath();
+    double[] epochs = epochs(10);
+    double[] states = kepler(epochs);
+    try (SpkWriter writer = SpkWriter.create(file, "many")) {
+      for (int i = 0; i < 60; i++) {
+        writer.writeSegment(ASTEROID + i, SUN, SpkWriter.J2000, epochs, states, 3, "" + i);
+      }
+      assertThat(writer.getSegmentCount()).isEqualTo(60);
+    }
+
+    SpkKernel kernel = SpkKernel.open(file);
+    assertThat(kernel.getTargets()).hasSize(60);
+    double[] state = new double[6];
+    kernel.state(ASTEROID + 59, SUN, epochs[3], state);
+    assertThat(state[0]).isWithin(1e-6).of(states[18]);
+    kernel.state(ASTEROID + 30, ASTEROID, epochs[5], state);
+    assertThat(state[0]).isWithin(1e-6).of(0);
+  }
+
+  @Test
+  public void testWritesOemBlocks() throws IOException {
+    OemMetadata metadata = new OemMetadata();
+    metadata
+        .setCenter_name(OdmCommonMetadata.CenterName.SUN)
+        .setRef_frame(OdmCommonMetadata.ReferenceFrame.ICRF)
+        .setTime_system(OdmCommonMetadata.TimeSystem.TDB);
+    OemDataBlock block =
+        new OemDataBlock()
+            .setMetadata(metadata)
+            .addLine("2000-01-01T12:00:00", 1, 2, 3, 0.1, 0.2, 0.3)
+            .addLine("2000-01-01T12:01:40", 11, 22, 33, 0.1, 0.2, 0.3);
+    OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
+    oem.addBlock(block);
+    Path file = folder.newFile().toPath();
+    try (SpkWriter writer = SpkWriter.create(file, "oem")) {
+      writer.writeOem(ASTEROID, oem);
+    }
+
+    double[] state = new double[6];
+    SpkKernel.open(file).state(ASTEROID, SUN, 50, state);
+    assertThat(state[0]).isWithin(1e-9).of(6);
+    assertThat(state[2]).isWithin(1e-9).of(18);
+    assertThat(state[5]).isWithin(1e-12).of(0.3);
+  }
+
+  @Test
+  public void testRejectsUnorderedEpochs() throws IOException {
+    try (SpkWriter writer = SpkWriter.create(folder.newFile().toPath(), "bad")) {
+      assertThrows(
+          IllegalArgumentException.class,
+          () ->
+              writer.writeSegment(
+                  ASTEROID, SUN, SpkWriter.J2000, new double[] {1, 0}, new double[12], 1, "bad"));
+    }
+  }
+}
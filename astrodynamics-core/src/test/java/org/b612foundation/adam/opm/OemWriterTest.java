@@ -28,6 +28,17 @@ public class OemWriterTest {
     assertEquals(sha256Expected, sha256Actual);
   }
 
+  @Test
+  public void testCcsdsEphemerisParsesBack() throws OdmParseException {
+    // Header and metadata comments, and several blocks.
+    OrbitEphemerisMessage oem = OdmScenarioBuilder.buildOemWithAccelerations();
+    oem.getBlocks().get(0).getMetadata().addComment("first block");
+    oem.addBlock(OdmScenarioBuilder.buildOemWithCovariance().getBlocks().get(0));
+
+    String ccsdsOemString = OemWriter.toCcsdsOemString(oem);
+    assertEquals(oem, OdmFormatter.parseOemString(ccsdsOemString));
+  }
+
   private static String getSha256HashString(String string) throws NoSuchAlgorithmException {
     MessageDigest digest = MessageDigest.getInstance("SHA-256");
     byte[] encodedhash = digest.digest(string.getBytes(StandardCharsets.UTF_8));
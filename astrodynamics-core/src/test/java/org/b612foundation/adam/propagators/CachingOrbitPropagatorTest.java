@@ -0,0 +1,198 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.opm.OdmFormatter;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingOrbitPropagatorTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Returns a fixed ephemeris and counts how often it was asked to integrate. */
+  private static final class CountingPropagator implements OrbitPropagator {
+    private int calls = 0;
+
+    @Override
+    public OrbitEphemerisMessage propagate(
+        PropagationParameters propagationParams,
+        PropagatorConfiguration config,
+        String propagationIdForLogging) {
+      calls++;
+      return OdmScenarioBuilder.buildOemWithAccelerations();
+    }
+  }
+
+  private static PropagationParameters params(long step) {
+    return new PropagationParameters()
+        .setStart_time("2000-01-01T00:00:00Z")
+        .setEnd_time("2000-01-02T00:00:00Z")
+        .setStep_duration_sec(step)
+        .setOpm(OdmScenarioBuilder.buildSimpleOpm());
+  }
+
+  @Test
+  public void testCacheKey_ignoresRequestIdentity() {
+    PropagatorConfiguration config = new PropagatorConfiguration();
+    String key = CachingOrbitPropagator.cacheKey(CountingPropagator.class, params(60), config);
+
+    PropagationParameters relabelled = params(60).setPropagator_uuid("abc");
+    PropagatorConfiguration renamed = new PropagatorConfiguration().setDescription("renamed");
+    renamed.setUuid("xyz");
+
+    assertThat(CachingOrbitPropagator.cacheKey(CountingPropagator.class, relabelled, renamed))
+        .isEqualTo(key);
+    assertThat(key).hasLength(64);
+  }
+
+  @Test
+  public void testCacheKey_changesWithInputs() {
+    PropagatorConfiguration config = new PropagatorConfiguration();
+    String key = CachingOrbitPropagator.cacheKey(CountingPropagator.class, params(60), config);
+
+    assertThat(CachingOrbitPropagator.cacheKey(CountingPropagator.class, params(120), config))
+        .isNotEqualTo(key);
+    assertThat(
+            CachingOrbitPropagator.cacheKey(
+                CountingPropagator.class, params(60).setStopOnImpact(true), config))
+        .isNotEqualTo(key);
+    // Different backends, whether chosen by the executor or by the delegate, get their own entries.
+    assertThat(
+            CachingOrbitPropagator.cacheKey(
+                CountingPropagator.class, params(60).setExecutor("OpenOrb"), config))
+        .isNotEqualTo(key);
+    assertThat(CachingOrbitPropagator.cacheKey(KeplerPropagator.class, params(60), config))
+        .isNotEqualTo(key);
+    assertThat(
+            CachingOrbitPropagator.cacheKey(
+                CountingPropagator.class,
+                params(60),
+                new PropagatorConfiguration()
+                    .setIntegratorProfile(PropagatorConfiguration.IntegratorProfile.SCREENING)))
+        .isNotEqualTo(key);
+    assertThat(
+            CachingOrbitPropagator.cacheKey(
+                CountingPropagator.class,
+                params(60),
+                new PropagatorConfiguration().setMoon(PropagatorConfiguration.PlanetGravityMode.OMIT)))
+        .isNotEqualTo(key);
+  }
+
+  @Test
+  public void testRepeatedPropagationIsServedFromMemory() throws Exception {
+    CountingPropagator counting = new CountingPropagator();
+    CachingOrbitPropagator cache = new CachingOrbitPropagator(counting, 1 << 20);
+    PropagatorConfiguration config = new PropagatorConfiguration();
+
+    OrbitEphemerisMessage first = cache.propagate(params(60), config, "first");
+    OrbitEphemerisMessage second = cache.propagate(params(60), config, "second");
+
+    assertThat(counting.calls).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getMemoryHits()).isEqualTo(1);
+    assertThat(second).isEqualTo(first);
+    assertThat(second).isNotSameInstanceAs(first);
+
+    cache.propagate(params(120), config, "third");
+    assertThat(counting.calls).isEqualTo(2);
+  }
+
+  @Test
+  public void testOutputModesWithoutEphemerisAreNotCached() throws Exception {
+    CountingPropagator counting = new CountingPropagator();
+    CachingOrbitPropagator cache = new CachingOrbitPropagator(counting, 1 << 20);
+    PropagatorConfiguration config = new PropagatorConfiguration();
+
+    for (PropagationOutputMode mode :
+        new PropagationOutputMode[] {
+          PropagationOutputMode.EVENTS_ONLY, PropagationOutputMode.FINAL_STATE_ONLY
+        }) {
+      cache.propagate(params(60).setOutputMode(mode), config, "first");
+      cache.propagate(params(60).setOutputMode(mode), config, "second");
+    }
+
+    assertThat(counting.calls).isEqualTo(4);
+    assertThat(cache.getMemoryHits()).isEqualTo(0);
+    assertThat(cache.getMemoryBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEvictedEntriesSpillToDisk() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    CountingPropagator counting = new CountingPropagator();
+    PropagatorConfiguration config = new PropagatorConfiguration();
+
+    // A bound this small keeps nothing in memory, so every result goes straight to disk.
+    CachingOrbitPropagator cache = new CachingOrbitPropagator(counting, 1, dir);
+    OrbitEphemerisMessage first = cache.propagate(params(60), config, "first");
+    assertThat(cache.getMemoryBytes()).isEqualTo(0);
+
+    OrbitEphemerisMessage second = cache.propagate(params(60), config, "second");
+    assertThat(counting.calls).isEqualTo(1);
+    assertThat(cache.getDiskHits()).isEqualTo(1);
+    assertThat(second).isEqualTo(first);
+
+    // A new cache over the same directory picks up the spilled result.
+    CachingOrbitPropagator restarted = new CachingOrbitPropagator(counting, 1 << 20, dir);
+    restarted.propagate(params(60), config, "third");
+    assertThat(counting.calls).isEqualTo(1);
+    assertThat(restarted.getDiskHits()).isEqualTo(1);
+
+    // Spilled entries are OEM text.
+    try (Stream<Path> files = Files.list(dir)) {
+      Path file = files.filter(f -> f.toString().endsWith(".oem")).findFirst().get();
+      assertThat(OdmFormatter.parseOemString(new String(Files.readAllBytes(file), UTF_8)))
+          .isEqualTo(first);
+    }
+  }
+
+  @Test
+  public void testUnreadableDiskEntryIsAMiss() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    CountingPropagator counting = new CountingPropagator();
+    PropagatorConfiguration config = new PropagatorConfiguration();
+    String key = CachingOrbitPropagator.cacheKey(CountingPropagator.class, params(60), config);
+    Files.write(dir.resolve(key + ".oem"), "not an ephemeris".getBytes(UTF_8));
+
+    CachingOrbitPropagator cache = new CachingOrbitPropagator(counting, 1 << 20, dir);
+    OrbitEphemerisMessage result = cache.propagate(params(60), config, "first");
+
+    assertThat(counting.calls).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(result).isEqualTo(OdmScenarioBuilder.buildOemWithAccelerations());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+    CountingPropagator counting = new CountingPropagator();
+    PropagatorConfiguration config = new PropagatorConfiguration();
+    CachingOrbitPropagator probe = new CachingOrbitPropagator(counting, 1 << 20);
+    probe.propagate(params(1), config, "probe");
+    long entryBytes = probe.getMemoryBytes();
+
+    CachingOrbitPropagator cache = new CachingOrbitPropagator(counting, 2 * entryBytes);
+    counting.calls = 0;
+    cache.propagate(params(1), config, "a");
+    cache.propagate(params(2), config, "b");
+    cache.propagate(params(1), config, "a again");
+    cache.propagate(params(3), config, "c");
+    assertThat(counting.calls).isEqualTo(3);
+
+    // b was least recently used when c arrived, so only b has to be integrated again.
+    cache.propagate(params(1), config, "a once more");
+    assertThat(counting.calls).isEqualTo(3);
+    cache.propagate(params(2), config, "b again");
+    assertThat(counting.calls).isEqualTo(4);
+  }
+}
@@ -0,0 +1,158 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class EventDetectorEngineTest {
+  private static final double SPEED = 2e4;
+  private static final double MISS = 1e6;
+
+  /** A body at rest at the origin. */
+  private static final BodyEphemeris ORIGIN = (seconds, out) -> Arrays.fill(out, 0);
+
+  /**
+   * Feeds steps of an object moving along +x and +z at constant speed, passing at MISS from the
+   * origin along y at t = 50000.
+   */
+  private static void run(StepConsumer consumer, double first, double last, double step) {
+    int count = (int) Math.round(Math.abs(last - first) / step);
+    double[] state = new double[6];
+    for (int i = 0; i <= count; i++) {
+      double t = first + Math.copySign(i * step, last - first);
+      state[0] = SPEED * (t - 50000);
+      state[1] = MISS;
+      state[2] = SPEED * (t - 50000) / 2;
+      state[3] = SPEED;
+      state[5] = SPEED / 2;
+      consumer.accept(t, state);
+    }
+  }
+
+  private static EventDetectorEngine engine() {
+    return new EventDetectorEngine(body -> "ORIGIN".equals(body) ? ORIGIN : null);
+  }
+
+  @Test
+  public void testLocatesEventsOfAllDetectors() {
+    EventDetectorEngine engine =
+        engine()
+            .addDetector(EventDetectors.closeApproach("ORIGIN", 2 * MISS, EventAction.LOG))
+            .addDetector(EventDetectors.nodeCrossing("ORIGIN", EventAction.LOG))
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", 1e8, EventDetector.Direction.BOTH, EventAction.LOG));
+
+    run(engine, 0, 100000, 1000);
+
+    List<DetectedEvent> events = engine.getEvents();
+    assertThat(events).hasSize(4);
+    double crossing = Math.sqrt(1e16 - MISS * MISS) / (SPEED * Math.sqrt(1.25));
+    assertThat(events.get(0).getDetector()).startsWith("Region");
+    assertThat(events.get(0).isIncreasing()).isFalse();
+    assertThat(events.get(0).getEpochSeconds()).isWithin(1e-2).of(50000 - crossing);
+    // The node and the minimum coincide; both are located within the tolerance.
+    assertThat(events.get(1).getEpochSeconds()).isWithin(1e-2).of(50000);
+    assertThat(events.get(2).getEpochSeconds()).isWithin(1e-2).of(50000);
+    assertThat(events.get(3).getDetector()).startsWith("Region");
+    assertThat(events.get(3).isIncreasing()).isTrue();
+    assertThat(events.get(3).getEpochSeconds()).isWithin(1e-2).of(50000 + crossing);
+  }
+
+  @Test
+  public void testLocatesSeveralEventsWithinOneStep() {
+    double radius = 5e7;
+    EventDetectorEngine engine =
+        engine()
+            .addDetector(EventDetectors.nodeCrossing("ORIGIN", EventAction.LOG))
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", radius, EventDetector.Direction.BOTH, EventAction.LOG));
+
+    // A single step holding the node at t = 50000 and the exit from the region after it.
+    run(engine, 49000, 53000, 4000);
+
+    List<DetectedEvent> events = engine.getEvents();
+    double exit = 50000 + Math.sqrt(radius * radius - MISS * MISS) / (SPEED * Math.sqrt(1.25));
+    assertThat(events).hasSize(2);
+    assertThat(events.get(0).getDetector()).startsWith("Node");
+    assertThat(events.get(0).getEpochSeconds()).isWithin(1e-2).of(50000);
+    assertThat(events.get(1).getDetector()).startsWith("Region");
+    assertThat(events.get(1).getEpochSeconds()).isWithin(1e-2).of(exit);
+    assertThat(events.get(1).getState()[3]).isWithin(1e-6).of(SPEED);
+  }
+
+  @Test
+  public void testSharesBodyEvaluationsBetweenDetectors() {
+    EventDetectorEngine single =
+        engine().addDetector(EventDetectors.periapsis("ORIGIN", EventAction.LOG));
+    EventDetectorEngine several =
+        engine()
+            .addDetector(EventDetectors.periapsis("ORIGIN", EventAction.LOG))
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", 1e12, EventDetector.Direction.BOTH, EventAction.LOG));
+
+    run(single, 0, 100000, 1000);
+    run(several, 0, 100000, 1000);
+
+    // The region is never crossed, so the extra detector costs no evaluations.
+    assertThat(several.getEvaluations()).isEqualTo(single.getEvaluations());
+  }
+
+  @Test
+  public void testFiltersByDirectionAndDistance() {
+    EventDetectorEngine engine =
+        engine()
+            .addDetector(EventDetectors.closeApproach("ORIGIN", MISS / 2, EventAction.LOG))
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", 1e8, EventDetector.Direction.DECREASING, EventAction.LOG));
+
+    run(engine, 0, 100000, 1000);
+
+    assertThat(engine.getEvents()).hasSize(1);
+    assertThat(engine.getEvents().get(0).isIncreasing()).isFalse();
+  }
+
+  @Test
+  public void testStopIgnoresLaterEvents() {
+    List<DetectedEvent> heard = new ArrayList<>();
+    EventDetectorEngine engine =
+        engine()
+            .addDetector(EventDetectors.periapsis("ORIGIN", EventAction.CONTINUE))
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", 1e8, EventDetector.Direction.DECREASING, EventAction.STOP))
+            .setListener(heard::add);
+
+    run(engine, 0, 100000, 1000);
+
+    assertThat(engine.getEvents()).hasSize(1);
+    assertThat(engine.getStopEvent()).isSameInstanceAs(engine.getEvents().get(0));
+    assertThat(engine.getStopEvent().getEpochSeconds()).isLessThan(50000.0);
+    assertThat(heard).containsExactly(engine.getStopEvent());
+  }
+
+  @Test
+  public void testDetectsIncreasingWithTimeWhenPropagatingBackwards() {
+    EventDetectorEngine engine =
+        engine()
+            .addDetector(
+                EventDetectors.region(
+                    "ORIGIN", 1e8, EventDetector.Direction.INCREASING, EventAction.LOG));
+
+    run(engine, 100000, 0, 1000);
+
+    assertThat(engine.getEvents()).hasSize(1);
+    assertThat(engine.getEvents().get(0).getEpochSeconds()).isGreaterThan(50000.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownBody() {
+    run(engine().addDetector(EventDetectors.periapsis("MARS", EventAction.LOG)), 0, 1000, 1000);
+  }
+}
@@ -0,0 +1,108 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class GatedCloseApproachDetectorTest {
+  private static final double SPEED = 2e4;
+
+  /** A body at rest at the given position. */
+  private static BodyEphemeris fixed(double x, double y, double z) {
+    return (seconds, out) -> {
+      out[0] = x;
+      out[1] = y;
+      out[2] = z;
+      out[3] = 0;
+      out[4] = 0;
+      out[5] = 0;
+    };
+  }
+
+  /** Feeds steps of an object moving along +x at constant speed, through x = 0 at t = 50000. */
+  private static void run(StepConsumer consumer, double first, double last, double step) {
+    int count = (int) Math.round(Math.abs(last - first) / step);
+    double[] state = new double[6];
+    for (int i = 0; i <= count; i++) {
+      double t = first + Math.copySign(i * step, last - first);
+      state[0] = SPEED * (t - 50000);
+      state[3] = SPEED;
+      consumer.accept(t, state);
+    }
+  }
+
+  @Test
+  public void testRecordsMinimaWithinRadius() {
+    GatedCloseApproachDetector detector =
+        new GatedCloseApproachDetector()
+            .addBody("near", 1e8, fixed(0, 1e6, 0))
+            .addBody("far", 1e8, fixed(3e8, 5e8, 0));
+
+    run(detector, 0, 100000, 1000);
+
+    List<BodyCloseApproach> approaches = detector.getCloseApproaches();
+    assertThat(approaches).hasSize(1);
+    BodyCloseApproach approach = approaches.get(0);
+    assertThat(approach.getBody()).isEqualTo("near");
+    assertThat(approach.getEpochSeconds()).isWithin(1e-3).of(50000);
+    assertThat(approach.getDistance()).isWithin(1e-3).of(1e6);
+    assertThat(approach.getRelativeState()[1]).isWithin(1e-3).of(-1e6);
+    assertThat(approach.getRelativeState()[3]).isWithin(1e-6).of(SPEED);
+  }
+
+  @Test
+  public void testGatesSkipDistantBodies() {
+    GatedCloseApproachDetector detector =
+        new GatedCloseApproachDetector()
+            .setMaximumClosingSpeed(SPEED)
+            .addBody("near", 1e8, fixed(0, 1e6, 0))
+            .addBody("distant", 1e8, fixed(0, 1e11, 0));
+
+    run(detector, 0, 100000, 1000);
+
+    // The distant body is evaluated once; the near one only once the object may be within 1e8 m,
+    // 5000 s either side of the flyby, and until it leaves again.
+    assertThat(detector.getSkippedEvaluations()).isGreaterThan(100L + 80L);
+    assertThat(detector.getCloseApproaches()).hasSize(1);
+  }
+
+  @Test
+  public void testFlybyWithinOneStep() {
+    GatedCloseApproachDetector detector =
+        new GatedCloseApproachDetector().addBody("near", 1e8, fixed(0, 2e7, 0));
+
+    // Steps of 20000 s cover 4e8 m each, so the whole flyby within the radius falls in one step.
+    run(detector, 3000, 103000, 20000);
+
+    assertThat(detector.getCloseApproaches()).hasSize(1);
+    assertThat(detector.getCloseApproaches().get(0).getDistance()).isWithin(1e-3).of(2e7);
+  }
+
+  @Test
+  public void testBackwardPropagation() {
+    GatedCloseApproachDetector detector =
+        new GatedCloseApproachDetector().addBody("near", 1e8, fixed(0, 1e6, 0));
+
+    run(detector, 100000, 0, 700);
+
+    assertThat(detector.getCloseApproaches()).hasSize(1);
+    assertThat(detector.getCloseApproaches().get(0).getEpochSeconds()).isWithin(1e-3).of(50000);
+  }
+
+  @Test
+  public void testDistanceGate() {
+    DistanceGate gate = new DistanceGate(100);
+    assertThat(gate.isOpen(0)).isTrue();
+
+    gate.update(0, 1100, 10);
+
+    assertThat(gate.isOpen(99)).isFalse();
+    assertThat(gate.isOpen(-99)).isFalse();
+    assertThat(gate.isOpen(100)).isTrue();
+    assertThat(gate.minimumDistance(-30)).isEqualTo(800.0);
+    assertThat(gate.minimumDistance(500)).isEqualTo(0.0);
+    gate.reset();
+    assertThat(gate.isOpen(1)).isTrue();
+  }
+}
@@ -0,0 +1,58 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.b612foundation.adam.propagators.PropagationListener.Phase;
+import org.junit.Test;
+
+public class JmxPropagationMetricsTest {
+
+  @Test
+  public void testAggregatesCallbacks() {
+    JmxPropagationMetrics metrics = new JmxPropagationMetrics();
+    metrics.propagationStarted("a");
+    metrics.phaseFinished(Phase.SETUP, 3_000_000);
+    metrics.stepTaken(0.25);
+    metrics.stepTaken(0.5);
+    metrics.eventDetected(OrbitEventType.CLOSE_APPROACH);
+    metrics.eventDetected(OrbitEventType.IMPACT);
+    metrics.eventDetected(OrbitEventType.MISS);
+    metrics.phaseFinished(Phase.INTEGRATION, 2_000_000_000L);
+    metrics.propagationFinished("a", true);
+    metrics.propagationStarted("b");
+    metrics.propagationFinished("b", false);
+
+    assertThat(metrics.getPropagationsStarted()).isEqualTo(2);
+    assertThat(metrics.getPropagationsSucceeded()).isEqualTo(1);
+    assertThat(metrics.getPropagationsFailed()).isEqualTo(1);
+    assertThat(metrics.getSteps()).isEqualTo(2);
+    assertThat(metrics.getCloseApproaches()).isEqualTo(1);
+    assertThat(metrics.getImpacts()).isEqualTo(1);
+    assertThat(metrics.getSetupMillis()).isEqualTo(3);
+    assertThat(metrics.getIntegrationMillis()).isEqualTo(2000);
+    assertThat(metrics.getStepsPerSecond()).isWithin(1e-12).of(1.0);
+
+    metrics.reset();
+
+    assertThat(metrics.getSteps()).isEqualTo(0);
+    assertThat(metrics.getIntegrationMillis()).isEqualTo(0);
+    assertThat(metrics.getStepsPerSecond()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void testRegister() throws Exception {
+    JmxPropagationMetrics metrics = new JmxPropagationMetrics();
+    metrics.stepTaken(1.0);
+
+    ObjectName name = metrics.register("test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertThat(server.getAttribute(name, "Steps")).isEqualTo(1L);
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OemDataLine;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.junit.Test;
+
+public class KeplerPropagatorTest {
+  private static final double GM = AstroConstants.GM_EARTH;
+  // Circular equatorial orbit of 7000 km radius.
+  private static final double RADIUS = 7000;
+  private static final double[] CIRCULAR =
+      new double[] {RADIUS, 0, 0, 0, Math.sqrt(GM / RADIUS), 0};
+  private static final double PERIOD = 2 * Math.PI * Math.sqrt(RADIUS * RADIUS * RADIUS / GM);
+
+  private static double[] propagate(double[] state, double seconds) {
+    double[] out = new double[6];
+    KeplerPropagator.propagate(state, 0, GM, seconds, out, 0);
+    return out;
+  }
+
+  private static double energy(double[] s) {
+    double r = Math.sqrt(s[0] * s[0] + s[1] * s[1] + s[2] * s[2]);
+    return (s[3] * s[3] + s[4] * s[4] + s[5] * s[5]) / 2 - GM / r;
+  }
+
+  private static double[] angularMomentum(double[] s) {
+    return new double[] {
+      s[1] * s[5] - s[2] * s[4], s[2] * s[3] - s[0] * s[5], s[0] * s[4] - s[1] * s[3]
+    };
+  }
+
+  private static void assertStateWithin(double[] actual, double[] expected, double tolerance) {
+    for (int i = 0; i < 6; i++) {
+      assertThat(actual[i]).isWithin(tolerance).of(expected[i]);
+    }
+  }
+
+  @Test
+  public void testCircularOrbit() {
+    double[] quarter = propagate(CIRCULAR, PERIOD / 4);
+    assertStateWithin(quarter, new double[] {0, RADIUS, 0, -CIRCULAR[4], 0, 0}, 1e-6);
+
+    assertStateWithin(propagate(CIRCULAR, PERIOD), CIRCULAR, 1e-6);
+    assertStateWithin(propagate(CIRCULAR, 1000 * PERIOD + PERIOD / 4), quarter, 1e-5);
+    assertStateWithin(propagate(CIRCULAR, -3 * PERIOD / 4), quarter, 1e-6);
+  }
+
+  @Test
+  public void testHyperbolicOrbitConservesEnergyAndMomentum() {
+    double[] hyperbolic = new double[] {RADIUS, 0, 0, 0, 1.5 * Math.sqrt(2 * GM / RADIUS), 1};
+    for (double seconds : new double[] {-1e6, -100, 60, 3600, 1e7}) {
+      double[] state = propagate(hyperbolic, seconds);
+      assertThat(energy(state)).isWithin(1e-9).of(energy(hyperbolic));
+      double[] h = angularMomentum(state);
+      double[] h0 = angularMomentum(hyperbolic);
+      for (int i = 0; i < 3; i++) {
+        assertThat(h[i]).isWithin(1e-8 * Math.abs(h0[1])).of(h0[i]);
+      }
+      // Going back lands on the initial state again.
+      assertStateWithin(propagate(state, -seconds), hyperbolic, 1e-6 * Math.abs(seconds));
+    }
+  }
+
+  @Test
+  public void testBatchMatchesSinglePropagations() {
+    double[] eccentric = new double[] {RADIUS, 0, 0, 0, 9, 2};
+    double[] times = new double[] {0, 100, -2500, 86400};
+    double[] out = new double[6 * times.length];
+    KeplerPropagator.propagate(eccentric, GM, times, out);
+    for (int i = 0; i < times.length; i++) {
+      double[] single = propagate(eccentric, times[i]);
+      for (int j = 0; j < 6; j++) {
+        assertThat(out[6 * i + j]).isEqualTo(single[j]);
+      }
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> KeplerPropagator.propagate(eccentric, GM, times, new double[6]));
+  }
+
+  @Test
+  public void testToCartesian() {
+    KeplerianElements pericenter =
+        new KeplerianElements()
+            .setSemi_major_axis(10000)
+            .setEccentricity(0.3)
+            .setInclination(90)
+            .setRa_of_asc_node(90)
+            .setArg_of_pericenter(0)
+            .setGm(GM);
+    // Along +y at pericenter, moving along +z.
+    double[] state = KeplerPropagator.toCartesian(pericenter);
+    double speed = Math.sqrt(GM * (2 / 7000.0 - 1 / 10000.0));
+    assertStateWithin(state, new double[] {0, 7000, 0, 0, 0, speed}, 1e-9);
+
+    // A mean anomaly is the time since pericenter.
+    double meanMotion = Math.sqrt(GM / 1e12);
+    double[] later = KeplerPropagator.toCartesian(pericenter.deepCopy().setMean_anomaly(30));
+    assertStateWithin(later, propagate(state, Math.toRadians(30) / meanMotion), 1e-9);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> KeplerPropagator.toCartesian(pericenter.deepCopy().setEccentricity(1.2)));
+  }
+
+  @Test
+  public void testPropagateOpmOnTimeGrid() {
+    PropagationParameters params =
+        new PropagationParameters()
+            .setStart_time("1998-12-18T14:28:15.1172")
+            .setEnd_time("1998-12-18T15:28:00")
+            .setStep_duration_sec(600)
+            .setOpm(OdmScenarioBuilder.buildSimpleOpm());
+
+    OrbitEphemerisMessage oem =
+        new KeplerPropagator().propagate(params, new PropagatorConfiguration(), "kepler");
+
+    List<OemDataLine> lines = oem.getBlocks().get(0).getLines();
+    assertThat(lines).hasSize(7);
+    assertThat(lines.get(0).getDate()).isEqualTo("1998-12-18T14:28:15.1172");
+    assertThat(lines.get(1).getDate()).isEqualTo("1998-12-18T14:38:15.1172");
+    assertThat(lines.get(6).getDate()).isEqualTo("1998-12-18T15:28:00");
+    assertThat(lines.get(0).getPoint()[0]).isEqualTo(6503.514);
+    assertThat(oem.getBlocks().get(0).getMetadata().getObject_id()).isEqualTo("1998-057A");
+
+    params.setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY);
+    OrbitEphemerisMessage finalState =
+        new KeplerPropagator().propagate(params, new PropagatorConfiguration(), "kepler");
+    assertThat(finalState.getBlocks().get(0).getLines()).hasSize(1);
+    assertThat(finalState.getBlocks().get(0).getLines().get(0).getPoint())
+        .isEqualTo(lines.get(6).getPoint());
+  }
+}
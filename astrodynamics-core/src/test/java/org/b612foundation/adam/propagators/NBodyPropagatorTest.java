@@ -0,0 +1,330 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.Formulation;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorMethod;
+import org.junit.Test;
+
+public class NBodyPropagatorTest {
+  private static final double GM_SUN = 1.32712440041e20; // m^3/s^2
+  private static final double GM_JUPITER = 1.26712764e17; // m^3/s^2
+  private static final double GM_EARTH = 3.98600435436e14; // m^3/s^2
+  private static final double AU = AstroConstants.AU_TO_KM * AstroConstants.KM_TO_M;
+  private static final double YEAR = 365.25 * 86400;
+  // Eccentric orbit with perihelion at 1 AU and aphelion at 3 AU.
+  private static final double[] ASTEROID = {AU, 0, 0, 0, Math.sqrt(GM_SUN * 1.5 / AU), 1000};
+
+  /** Jupiter on a circular orbit of 5.2 AU. */
+  private static BodyEphemeris jupiter() {
+    double radius = 5.2 * AU;
+    double[] initial = {0, radius, 0, -Math.sqrt(GM_SUN / radius), 0, 0};
+    return (epochSeconds, out) ->
+        KeplerPropagator.propagate(initial, 0, GM_SUN, epochSeconds, out, 0);
+  }
+
+  private static NBodyPropagator propagator(
+      PointMassForceModel forces, Formulation formulation) {
+    return new NBodyPropagator(
+        forces,
+        new PropagatorConfiguration()
+            .setIntegratorProfile(PropagatorConfiguration.IntegratorProfile.STANDARD)
+            .setFormulation(formulation));
+  }
+
+  private static double distance(double[] a, double[] b) {
+    double dx = a[0] - b[0];
+    double dy = a[1] - b[1];
+    double dz = a[2] - b[2];
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  @Test
+  public void testEnckeWithoutPerturbationsFollowsReferenceOrbit() {
+    NBodyPropagator propagator =
+        propagator(new PointMassForceModel(GM_SUN), Formulation.ENCKE);
+    double[] state = propagator.propagate(ASTEROID, 0, 10 * YEAR, null);
+
+    double[] expected = new double[6];
+    KeplerPropagator.propagate(ASTEROID, 0, GM_SUN, 10 * YEAR, expected, 0);
+    assertThat(distance(state, expected)).isLessThan(1e-3);
+    assertThat(propagator.getRectifications()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCowellMatchesTwoBodyOrbit() {
+    NBodyPropagator propagator =
+        propagator(new PointMassForceModel(GM_SUN), Formulation.COWELL);
+    double[] state = propagator.propagate(ASTEROID, 0, 10 * YEAR, null);
+
+    double[] expected = new double[6];
+    KeplerPropagator.propagate(ASTEROID, 0, GM_SUN, 10 * YEAR, expected, 0);
+    assertThat(distance(state, expected)).isLessThan(100);
+  }
+
+  @Test
+  public void testEnckeIsMoreAccurateWithFewerEvaluations() {
+    double span = 20 * YEAR;
+    double maximumStep = 100 * 86400;
+    NBodyPropagator reference =
+        new NBodyPropagator(
+                new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+                new PropagatorConfiguration())
+            .setMaximumStepSize(maximumStep);
+    NBodyPropagator cowell =
+        propagator(
+                new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+                Formulation.COWELL)
+            .setMaximumStepSize(maximumStep);
+    NBodyPropagator encke =
+        propagator(
+                new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+                Formulation.ENCKE)
+            .setMaximumStepSize(maximumStep);
+    double[] expected = reference.propagate(ASTEROID, 0, span, null);
+    double[] cowellState = cowell.propagate(ASTEROID, 0, span, null);
+    double[] enckeState = encke.propagate(ASTEROID, 0, span, null);
+
+    // Jupiter moves the asteroid by far more than the errors.
+    double[] twoBody = new double[6];
+    KeplerPropagator.propagate(ASTEROID, 0, GM_SUN, span, twoBody, 0);
+    assertThat(distance(expected, twoBody)).isGreaterThan(1e8);
+    assertThat(distance(enckeState, expected)).isLessThan(2e3);
+    assertThat(distance(enckeState, expected)).isLessThan(distance(cowellState, expected));
+    assertThat(encke.getRectifications()).isGreaterThan(0);
+    assertThat(encke.getEvaluations()).isLessThan(cowell.getEvaluations() * 3 / 4);
+  }
+
+  @Test
+  public void testMaximumStepDefaultsToProfile() {
+    NBodyPropagator propagator = propagator(new PointMassForceModel(GM_SUN), Formulation.COWELL);
+    assertThat(propagator.getMaximumStepSize()).isEqualTo(86400.0);
+    propagator.propagate(ASTEROID, 0, 100 * 86400, null);
+    assertThat(propagator.getSteps()).isAtLeast(100);
+
+    propagator.setFormulation(Formulation.ENCKE);
+    assertThat(propagator.getMaximumStepSize())
+        .isEqualTo(NBodyPropagator.DEFAULT_ENCKE_MAXIMUM_STEP_SIZE);
+    propagator.setMaximumStepSize(3600);
+    assertThat(propagator.getMaximumStepSize()).isEqualTo(3600.0);
+  }
+
+  @Test
+  public void testEnckeIsMoreAccurateAtItsDefaultMaximumStep() {
+    double span = 20 * YEAR;
+    NBodyPropagator reference =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            new PropagatorConfiguration());
+    NBodyPropagator cowell =
+        new NBodyPropagator(
+                new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+                new PropagatorConfiguration())
+            .setMaximumStepSize(NBodyPropagator.DEFAULT_ENCKE_MAXIMUM_STEP_SIZE);
+    NBodyPropagator encke =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            new PropagatorConfiguration().setFormulation(Formulation.ENCKE));
+    assertThat(encke.getMaximumStepSize()).isEqualTo(cowell.getMaximumStepSize());
+    double[] expected = reference.propagate(ASTEROID, 0, span, null);
+    double[] cowellState = cowell.propagate(ASTEROID, 0, span, null);
+    double[] enckeState = encke.propagate(ASTEROID, 0, span, null);
+
+    // At the same step bound Cowell's error grows with the step, while Encke's stays small.
+    assertThat(distance(enckeState, expected)).isLessThan(10);
+    assertThat(distance(cowellState, expected)).isGreaterThan(4 * distance(enckeState, expected));
+    assertThat(encke.getEvaluations()).isLessThan(cowell.getEvaluations() * 4 / 5);
+  }
+
+  @Test
+  public void testOutputsInterpolatedStates() {
+    NBodyPropagator propagator =
+        propagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            Formulation.ENCKE);
+    double[] outputSeconds = new double[37];
+    for (int i = 0; i < outputSeconds.length; i++) {
+      outputSeconds[i] = -i * 10 * 86400.0;
+    }
+    List<Double> seconds = new ArrayList<>();
+    List<double[]> states = new ArrayList<>();
+    double[] end =
+        propagator.propagate(
+            ASTEROID,
+            0,
+            -360 * 86400,
+            null,
+            outputSeconds,
+            (t, s) -> {
+              seconds.add(t);
+              states.add(s.clone());
+            });
+    // Far fewer steps than outputs, so most outputs are interpolated.
+    assertThat(propagator.getSteps()).isLessThan(outputSeconds.length / 2);
+    assertThat(seconds).hasSize(outputSeconds.length);
+    assertThat(states.get(0)).isEqualTo(ASTEROID);
+    assertThat(states.get(states.size() - 1)).isEqualTo(end);
+    for (int i = 1; i < outputSeconds.length - 1; i += 5) {
+      assertThat(seconds.get(i)).isEqualTo(outputSeconds[i]);
+      double[] expected = propagator.propagate(ASTEROID, 0, outputSeconds[i], null);
+      assertThat(distance(states.get(i), expected)).isLessThan(10);
+    }
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> propagator.propagate(ASTEROID, 0, -YEAR, null, new double[] {86400}, (t, s) -> {}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> propagator.propagate(ASTEROID, 0, -YEAR, null, new double[] {-2, -1}, (t, s) -> {}));
+  }
+
+  @Test
+  public void testAdamsTakesFewerEvaluations() {
+    double span = 20 * YEAR;
+    NBodyPropagator rungeKutta =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            new PropagatorConfiguration());
+    NBodyPropagator adams =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            new PropagatorConfiguration().setIntegratorMethod(IntegratorMethod.ADAMS));
+    double[] expected = rungeKutta.propagate(ASTEROID, 0, span, null);
+    double[] state = adams.propagate(ASTEROID, 0, span, null);
+
+    // Both in the Cowell formulation, at the same step bounds.
+    assertThat(distance(state, expected)).isLessThan(1e3);
+    assertThat(adams.getMultistepSeconds()).isEqualTo(span);
+    assertThat(adams.getEvaluations()).isLessThan(rungeKutta.getEvaluations() / 4);
+  }
+
+  @Test
+  public void testAdamsFallsBackToRungeKuttaNearEncounters() {
+    // Earth on a circular orbit, and an object starting 0.02 AU outside it and drifting away.
+    double[] earthInitial = {AU, 0, 0, 0, Math.sqrt(GM_SUN / AU), 0};
+    BodyEphemeris earth =
+        (epochSeconds, out) ->
+            KeplerPropagator.propagate(earthInitial, 0, GM_SUN, epochSeconds, out, 0);
+    double[] object = {1.02 * AU, 0, 0, 0, Math.sqrt(GM_SUN / AU), 100};
+    double span = 2 * YEAR;
+    NBodyPropagator rungeKutta =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+            new PropagatorConfiguration());
+    NBodyPropagator adams =
+        new NBodyPropagator(
+                new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+                new PropagatorConfiguration())
+            .setIntegratorMethod(IntegratorMethod.ADAMS);
+    List<Double> seconds = new ArrayList<>();
+    double[] expected = rungeKutta.propagate(object, 0, span, null);
+    double[] state = adams.propagate(object, 0, span, (t, s) -> seconds.add(t));
+
+    assertThat(adams.getMultistepSeconds()).isGreaterThan(0.0);
+    assertThat(adams.getMultistepSeconds()).isLessThan(span);
+    assertThat(distance(state, expected)).isLessThan(100);
+    assertThat(seconds).isInStrictOrder();
+    assertThat(seconds).hasSize(adams.getSteps() + 1);
+  }
+
+  @Test
+  public void testRegularizesCloseEncounters() {
+    // Earth on a circular orbit, and an object passing 7000 km from its center at 11 km/s.
+    double[] earthInitial = {AU, 0, 0, 0, Math.sqrt(GM_SUN / AU), 0};
+    BodyEphemeris earth =
+        (epochSeconds, out) ->
+            KeplerPropagator.propagate(earthInitial, 0, GM_SUN, epochSeconds, out, 0);
+    double[] flyby = {AU + 7e6, 0, 0, 0, Math.sqrt(GM_SUN / AU), 11e3};
+    double day = 86400;
+    NBodyPropagator plain =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+            new PropagatorConfiguration());
+    NBodyPropagator regularized =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+            new PropagatorConfiguration().setRegularizationDistanceMeters(1e8));
+    double[] start = plain.propagate(flyby, 0, -10 * day, null);
+    double[] expected = plain.propagate(start, -10 * day, 10 * day, null);
+    List<Double> seconds = new ArrayList<>();
+    double[] state = regularized.propagate(start, -10 * day, 10 * day, (t, s) -> seconds.add(t));
+
+    assertThat(regularized.getRegularizedSeconds()).isGreaterThan(0.0);
+    assertThat(regularized.getRegularizedSeconds()).isLessThan(day);
+    assertThat(distance(state, expected)).isLessThan(10);
+    assertThat(regularized.getSteps()).isLessThan(plain.getSteps() * 9 / 10);
+    assertThat(regularized.getEvaluations()).isLessThan(plain.getEvaluations() * 9 / 10);
+    assertThat(seconds).isInStrictOrder();
+    assertThat(seconds).hasSize(regularized.getSteps() + 1);
+
+    // Backwards from the closest approach, regularized from the start.
+    double[] back = regularized.propagate(flyby, 0, -10 * day, null);
+    assertThat(distance(back, start)).isLessThan(10);
+  }
+
+  @Test
+  public void testOutputsInterpolatedStatesWhileRegularized() {
+    double[] earthInitial = {AU, 0, 0, 0, Math.sqrt(GM_SUN / AU), 0};
+    BodyEphemeris earth =
+        (epochSeconds, out) ->
+            KeplerPropagator.propagate(earthInitial, 0, GM_SUN, epochSeconds, out, 0);
+    double[] flyby = {AU + 7e6, 0, 0, 0, Math.sqrt(GM_SUN / AU), 11e3};
+    NBodyPropagator plain =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+            new PropagatorConfiguration());
+    NBodyPropagator regularized =
+        new NBodyPropagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Earth", GM_EARTH, earth),
+            new PropagatorConfiguration().setRegularizationDistanceMeters(1e8));
+    // Every 10 minutes for two hours from the closest approach, all within the distance.
+    double[] outputSeconds = new double[13];
+    for (int i = 0; i < outputSeconds.length; i++) {
+      outputSeconds[i] = i * 600.0;
+    }
+    List<double[]> expected = new ArrayList<>();
+    List<double[]> states = new ArrayList<>();
+    plain.propagate(flyby, 0, 7200, null, outputSeconds, (t, s) -> expected.add(s.clone()));
+    regularized.propagate(flyby, 0, 7200, null, outputSeconds, (t, s) -> states.add(s.clone()));
+
+    assertThat(regularized.getRegularizedSeconds()).isEqualTo(7200.0);
+    assertThat(states).hasSize(outputSeconds.length);
+    for (int i = 0; i < outputSeconds.length; i++) {
+      assertThat(distance(states.get(i), expected.get(i))).isLessThan(1);
+    }
+  }
+
+  @Test
+  public void testBackwardsAndSteps() {
+    NBodyPropagator propagator =
+        propagator(
+            new PointMassForceModel(GM_SUN).addPerturber("Jupiter", GM_JUPITER, jupiter()),
+            Formulation.ENCKE);
+    List<Double> seconds = new ArrayList<>();
+    double[] back = propagator.propagate(ASTEROID, 0, -5 * YEAR, (t, s) -> seconds.add(t));
+    assertThat(seconds.get(0)).isEqualTo(0.0);
+    assertThat(seconds.get(seconds.size() - 1)).isEqualTo(-5 * YEAR);
+    assertThat(seconds).isInOrder(Comparator.reverseOrder());
+    assertThat(seconds).hasSize(propagator.getSteps() + 1);
+
+    double[] forth = propagator.propagate(back, -5 * YEAR, 0, null);
+    assertThat(distance(forth, ASTEROID)).isLessThan(1e3);
+  }
+
+  @Test
+  public void testRejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new PointMassForceModel(0));
+    NBodyPropagator propagator = propagator(new PointMassForceModel(GM_SUN), Formulation.ENCKE);
+    assertThrows(IllegalArgumentException.class, () -> propagator.setRectificationThreshold(0));
+    assertThrows(IllegalArgumentException.class, () -> propagator.setMaximumStepSize(0.5));
+    assertThrows(IllegalArgumentException.class, () -> propagator.setEncounterHillRadii(-1));
+    assertThrows(
+        IllegalArgumentException.class, () -> propagator.setRegularizationDistance(-1));
+  }
+}
@@ -0,0 +1,153 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropagationCheckpointerTest {
+  private static final String EPOCH = "2020-01-01T00:00:00Z";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static double[] state(double t) {
+    return new double[] {t, 2 * t, 3 * t, 4 * t, 5 * t, 6 * t};
+  }
+
+  @Test
+  public void testWritesEveryNSteps() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("run.ckpt");
+    PropagationCheckpointer checkpointer = new PropagationCheckpointer(file, EPOCH, true, 3);
+
+    checkpointer.accept(0, state(0));
+    checkpointer.accept(10, state(10));
+    assertThat(Files.exists(file)).isFalse();
+
+    checkpointer.accept(30, state(30));
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(file);
+    assertThat(checkpoint.getEpoch()).isEqualTo(EPOCH);
+    assertThat(checkpoint.isIncreasing()).isTrue();
+    assertThat(checkpoint.size()).isEqualTo(3);
+    assertThat(checkpoint.getLastTime()).isEqualTo(30.0);
+    assertThat(checkpoint.getLastState()).isEqualTo(state(30));
+    assertThat(checkpoint.getLastStepSeconds()).isEqualTo(20.0);
+
+    checkpointer.accept(60, state(60));
+    assertThat(PropagationCheckpoint.read(file).size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testAppendsOnlyNewSteps() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("appended.ckpt");
+    List<String> events = new ArrayList<>();
+    PropagationCheckpointer checkpointer = new PropagationCheckpointer(file, EPOCH, true, 100);
+    checkpointer.setEvents(() -> events);
+    List<Long> sizes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      checkpointer.accept(i, state(i));
+      if (i % 100 == 99) {
+        sizes.add(Files.size(file));
+        events.add("event " + i);
+      }
+    }
+
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(file);
+    assertThat(checkpoint.size()).isEqualTo(1000);
+    assertThat(checkpoint.getState(567)).isEqualTo(state(567));
+    assertThat(checkpoint.getEvents()).hasSize(9);
+    // Each write adds about the same number of bytes, however many steps came before.
+    long first = sizes.get(1) - sizes.get(0);
+    long last = sizes.get(9) - sizes.get(8);
+    assertThat((double) last).isWithin(0.1 * first).of(first);
+
+    // A block cut short by a crash while appending is ignored, and replaced by the next one.
+    byte[] complete = Files.readAllBytes(file);
+    Files.write(file, new byte[] {0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+    checkpoint = PropagationCheckpoint.read(file);
+    assertThat(checkpoint.size()).isEqualTo(1000);
+    assertThat(checkpoint.getLastState()).isEqualTo(state(999));
+    for (int i = 1000; i < 1100; i++) {
+      checkpointer.accept(i, state(i));
+    }
+    assertThat((double) (Files.size(file) - complete.length)).isWithin(0.1 * first).of(first);
+    assertThat(PropagationCheckpoint.read(file).getLastState()).isEqualTo(state(1099));
+  }
+
+  @Test
+  public void testRejectsCorruptCheckpoints() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("corrupt.ckpt");
+    PropagationCheckpointer checkpointer = new PropagationCheckpointer(file, EPOCH, true, 10);
+    for (int i = 0; i < 20; i++) {
+      checkpointer.accept(i, state(i));
+    }
+    byte[] bytes = Files.readAllBytes(file);
+
+    // Complete blocks cut off.
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+    assertThrows(AdamPropagationException.class, () -> PropagationCheckpoint.read(file));
+
+    // The length of the first block, after the header of magic number, complete length, epoch
+    // and direction, overwritten with a negative and a too large one.
+    int firstBlock = 4 + 8 + 2 + EPOCH.length() + 1;
+    ByteBuffer.wrap(bytes).putInt(firstBlock, -1);
+    Files.write(file, bytes);
+    assertThrows(AdamPropagationException.class, () -> PropagationCheckpoint.read(file));
+    ByteBuffer.wrap(bytes).putInt(firstBlock, Integer.MAX_VALUE);
+    Files.write(file, bytes);
+    assertThrows(AdamPropagationException.class, () -> PropagationCheckpoint.read(file));
+  }
+
+  @Test
+  public void testIgnoresStepsThatDoNotAdvance() {
+    PropagationCheckpointer checkpointer =
+        new PropagationCheckpointer(folder.getRoot().toPath().resolve("b.ckpt"), EPOCH, false, 10);
+
+    checkpointer.accept(0, state(0));
+    checkpointer.accept(-10, state(-10));
+    checkpointer.accept(-10, state(-10));
+    checkpointer.accept(-5, state(-5));
+    checkpointer.accept(-20, state(-20));
+
+    PropagationCheckpoint checkpoint = checkpointer.getCheckpoint();
+    assertThat(checkpoint.size()).isEqualTo(3);
+    assertThat(checkpoint.getTime(1)).isEqualTo(-10.0);
+    assertThat(checkpoint.getLastTime()).isEqualTo(-20.0);
+  }
+
+  @Test
+  public void testResumingContinuesAfterCheckpoint() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("resumed.ckpt");
+    List<String> events = new ArrayList<>();
+    events.add("first close approach");
+    PropagationCheckpointer original = new PropagationCheckpointer(file, EPOCH, true, 1000);
+    original.setEvents(() -> events);
+    // Enough steps to grow the buffers.
+    for (int i = 0; i < 2000; i++) {
+      original.accept(i, state(i));
+    }
+    original.writeCheckpoint();
+
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(file);
+    assertThat(checkpoint.size()).isEqualTo(2000);
+    assertThat(checkpoint.getState(1234)).isEqualTo(state(1234));
+    assertThat(checkpoint.getEvents()).containsExactly("first close approach");
+
+    PropagationCheckpointer resumed = PropagationCheckpointer.resuming(file, checkpoint, 1000);
+    // The resumed propagation starts where the checkpoint ends.
+    resumed.accept(1999, state(1999));
+    resumed.accept(2000, state(2000));
+    PropagationCheckpoint after = resumed.getCheckpoint();
+    assertThat(after.size()).isEqualTo(2001);
+    assertThat(after.getLastState()).isEqualTo(state(2000));
+  }
+}
@@ -0,0 +1,139 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException.Reason;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.junit.Test;
+
+public class PropagationControlTest {
+
+  /** Steps forever, checking the control, until the control aborts it. */
+  private static final class RunawayPropagator implements OrbitPropagator {
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    @Override
+    public OrbitEphemerisMessage propagate(
+        PropagationParameters propagationParams,
+        PropagatorConfiguration config,
+        String propagationIdForLogging) {
+      return propagate(propagationParams, config, propagationIdForLogging, new PropagationControl());
+    }
+
+    @Override
+    public OrbitEphemerisMessage propagate(
+        PropagationParameters propagationParams,
+        PropagatorConfiguration config,
+        String propagationIdForLogging,
+        PropagationControl control) {
+      control.start();
+      started.countDown();
+      while (true) {
+        control.checkStep();
+        Thread.yield();
+      }
+    }
+  }
+
+  @Test
+  public void testStepBudget() {
+    PropagationControl control = new PropagationControl().setMaxSteps(3);
+    control.start();
+    control.checkStep();
+    control.checkStep();
+    control.checkStep();
+    PropagationAbortedException e =
+        assertThrows(PropagationAbortedException.class, control::checkStep);
+    assertThat(e.getReason()).isEqualTo(Reason.STEP_BUDGET_EXCEEDED);
+  }
+
+  @Test
+  public void testDeadline() throws Exception {
+    PropagationControl control = new PropagationControl().setMaxWallClock(Duration.ofMillis(1));
+    control.start();
+    Thread.sleep(5);
+    PropagationAbortedException e =
+        assertThrows(PropagationAbortedException.class, control::checkStep);
+    assertThat(e.getReason()).isEqualTo(Reason.DEADLINE_EXCEEDED);
+  }
+
+  @Test
+  public void testUnboundedByDefault() {
+    PropagationControl control = new PropagationControl();
+    control.start();
+    for (int i = 0; i < 10000; i++) {
+      control.checkStep();
+    }
+    assertThat(control.getSteps()).isEqualTo(10000);
+  }
+
+  @Test
+  public void testCancelledBeforeStart() {
+    PropagationControl control = new PropagationControl();
+    control.cancel();
+    PropagationAbortedException e =
+        assertThrows(PropagationAbortedException.class, control::start);
+    assertThat(e.getReason()).isEqualTo(Reason.CANCELLED);
+  }
+
+  @Test
+  public void testFindInCauses() {
+    PropagationAbortedException abort =
+        new PropagationAbortedException(Reason.CANCELLED, "cancelled");
+    RuntimeException wrapped = new RuntimeException(new IllegalStateException(abort));
+    assertThat(PropagationAbortedException.findInCauses(wrapped)).isSameInstanceAs(abort);
+    assertThat(PropagationAbortedException.findInCauses(new RuntimeException())).isNull();
+  }
+
+  @Test
+  public void testAsyncCancelStopsPropagation() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      RunawayPropagator propagator = new RunawayPropagator();
+      PropagationControl control = new PropagationControl();
+      CompletableFuture<OrbitEphemerisMessage> future =
+          propagator.propagateAsync(
+              new PropagationParameters(), new PropagatorConfiguration(), "test", control, executor);
+      assertThat(propagator.started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      assertThat(future.cancel(true)).isTrue();
+
+      assertThat(control.isCancelled()).isTrue();
+      // The worker is released once the propagation sees the cancellation.
+      executor.shutdown();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testAsyncStepBudgetCompletesExceptionally() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CompletableFuture<OrbitEphemerisMessage> future =
+          new RunawayPropagator()
+              .propagateAsync(
+                  new PropagationParameters(),
+                  new PropagatorConfiguration(),
+                  "test",
+                  new PropagationControl().setMaxSteps(100),
+                  executor);
+      ExecutionException e = assertThrows(ExecutionException.class, future::get);
+      assertThat(e).hasCauseThat().isInstanceOf(PropagationAbortedException.class);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.b612foundation.adam.propagators;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class StepEventSearchTest {
+  private static final double SPEED = 2e4;
+  private static final double MISS = 1e6;
+
+  /** Steps of an object moving along +x at constant speed, passing the origin at t = 50000. */
+  private static StepEventSearch flyby(double step) {
+    int count = (int) Math.round(100000 / step);
+    double[] seconds = new double[count + 1];
+    double[] states = new double[6 * (count + 1)];
+    for (int i = 0; i <= count; i++) {
+      seconds[i] = i * step;
+      states[6 * i] = SPEED * (seconds[i] - 50000);
+      states[6 * i + 1] = MISS;
+      states[6 * i + 3] = SPEED;
+    }
+    return new StepEventSearch(seconds, states);
+  }
+
+  private static double radius(double[] state) {
+    return Math.sqrt(state[0] * state[0] + state[1] * state[1] + state[2] * state[2]);
+  }
+
+  @Test
+  public void testFindsDistanceMinimumWithinStep() {
+    List<StepEvent> minima = flyby(3000).findDistanceMinima();
+
+    assertThat(minima).hasSize(1);
+    assertThat(minima.get(0).getEpochSeconds()).isWithin(1e-3).of(50000);
+    assertThat(minima.get(0).getValue()).isWithin(1e-3).of(MISS);
+    assertThat(minima.get(0).getState()[1]).isWithin(1e-3).of(MISS);
+  }
+
+  @Test
+  public void testFindsCrossingAtStepBoundaries() {
+    double threshold = 2e6;
+    StepEventSearch search = flyby(1000);
+
+    List<StepEvent> crossings = search.findDescendingCrossings(StepEventSearchTest::radius, threshold);
+
+    double expected = 50000 - Math.sqrt(threshold * threshold - MISS * MISS) / SPEED;
+    assertThat(crossings).hasSize(1);
+    assertThat(crossings.get(0).getEpochSeconds()).isWithin(1e-3).of(expected);
+    assertThat(crossings.get(0).getValue()).isWithin(1e-3).of(threshold);
+  }
+
+  @Test
+  public void testFindsCrossingWithinOneStep() {
+    // Both ends of the step around the flyby are farther than the threshold.
+    double threshold = 2e6;
+    StepEventSearch search = flyby(20000);
+
+    List<StepEvent> crossings =
+        search.findDescendingCrossings(StepEventSearchTest::radius, threshold);
+
+    double expected = 50000 - Math.sqrt(threshold * threshold - MISS * MISS) / SPEED;
+    assertThat(crossings).hasSize(1);
+    assertThat(crossings.get(0).getEpochSeconds()).isWithin(1e-3).of(expected);
+    assertThat(search.getEvaluations()).isLessThan(200L);
+  }
+
+  @Test
+  public void testNoCrossingAboveThreshold() {
+    assertThat(flyby(1000).findDescendingCrossings(StepEventSearchTest::radius, 5e5)).isEmpty();
+  }
+
+  @Test
+  public void testSkipsRepeatedStepsAndSearchesBackwardStepsInTimeOrder() {
+    // Steps of a backward propagation from t = 100000, with the last step recorded twice.
+    int count = 100;
+    double[] seconds = new double[count + 2];
+    double[] states = new double[6 * (count + 2)];
+    for (int i = 0; i <= count + 1; i++) {
+      seconds[i] = 100000 - Math.min(i, count) * 1000.0;
+      states[6 * i] = SPEED * (seconds[i] - 50000);
+      states[6 * i + 1] = MISS;
+      states[6 * i + 3] = SPEED;
+    }
+    StepEventSearch search = new StepEventSearch(seconds, states);
+
+    List<StepEvent> minima = search.findDistanceMinima();
+    assertThat(minima).hasSize(1);
+    assertThat(minima.get(0).getEpochSeconds()).isWithin(1e-3).of(50000);
+    List<StepEvent> crossings = search.findDescendingCrossings(StepEventSearchTest::radius, 2e6);
+    assertThat(crossings).hasSize(1);
+    assertThat(crossings.get(0).getEpochSeconds()).isLessThan(50000.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsStepsOutOfOrder() {
+    new StepEventSearch(new double[] {0, 2, 1}, new double[18]);
+  }
+}
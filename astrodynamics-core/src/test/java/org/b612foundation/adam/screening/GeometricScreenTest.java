@@ -0,0 +1,103 @@
+package org.b612foundation.adam.screening;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OdmScenarioBuilder;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.opm.StateVector;
+import org.junit.Test;
+
+public class GeometricScreenTest {
+  private static final double AU = AstroConstants.AU_TO_KM;
+
+  private static PropagationParameters params(KeplerianElements elements) {
+    OrbitParameterMessage opm = new OrbitParameterMessage();
+    opm.setMetadata(
+        new OdmCommonMetadata()
+            .setCenter_name(OdmCommonMetadata.CenterName.SUN)
+            .setRef_frame(OdmCommonMetadata.ReferenceFrame.ICRF));
+    opm.setState_vector(new StateVector().setEpoch(GeometricScreen.J2000_EPOCH));
+    opm.setKeplerian(elements);
+    return new PropagationParameters()
+        .setStart_time("2000-01-01T12:00:00")
+        .setEnd_time("2001-01-01T12:00:00")
+        .setOpm(opm);
+  }
+
+  /** Earth's orbit with the object the given angle ahead of Earth. */
+  private static KeplerianElements earthOrbitAhead(double degrees) {
+    KeplerianElements earth = MoidCalculator.earthOrbitJ2000();
+    return earth.setMean_anomaly(earth.getMean_anomaly() + degrees);
+  }
+
+  @Test
+  public void testObjectTrailingEarthPasses() {
+    GeometricScreen screen = new GeometricScreen();
+    PropagationParameters params = params(earthOrbitAhead(1));
+
+    assertThat(screen.moidKm(params.getOpm())).isLessThan(1.0);
+    // The same orbit keeps the object a degree of arc away from Earth.
+    assertThat(screen.closestApproachKm(params)).isWithin(0.001 * AU).of(0.0175 * AU);
+    assertThat(screen.passes(params)).isTrue();
+  }
+
+  @Test
+  public void testMainBeltObjectIsRejectedOnMoid() {
+    KeplerianElements mainBelt =
+        new KeplerianElements()
+            .setSemi_major_axis(2.7 * AU)
+            .setEccentricity(0.1)
+            .setInclination(10)
+            .setTrue_anomaly(0)
+            .setGm(AstroConstants.GM);
+    GeometricScreen screen = new GeometricScreen();
+
+    assertThat(screen.moidKm(params(mainBelt).getOpm())).isGreaterThan(1.0 * AU);
+    assertThat(screen.passes(params(mainBelt))).isFalse();
+  }
+
+  @Test
+  public void testObjectOppositeEarthIsRejectedOnCloseApproach() {
+    PropagationParameters params = params(earthOrbitAhead(180));
+    GeometricScreen screen = new GeometricScreen();
+
+    assertThat(screen.moidKm(params.getOpm())).isLessThan(1.0);
+    assertThat(screen.closestApproachKm(params)).isGreaterThan(1.9 * AU);
+    assertThat(screen.passes(params)).isFalse();
+    assertThat(screen.setCloseApproachThresholdKm(Double.POSITIVE_INFINITY).passes(params))
+        .isTrue();
+  }
+
+  @Test
+  public void testGeocentricObjectPasses() {
+    PropagationParameters params =
+        new PropagationParameters()
+            .setStart_time("1998-12-18T14:28:15.1172")
+            .setEnd_time("1998-12-19T14:28:15.1172")
+            .setOpm(OdmScenarioBuilder.buildSimpleOpm());
+
+    assertThat(new GeometricScreen().setMoidThresholdKm(0).passes(params)).isTrue();
+  }
+
+  @Test
+  public void testCounters() {
+    ScreeningCounters counters = new ScreeningCounters();
+    counters.record(ScreeningStage.GEOMETRIC, true, 1000);
+    counters.record(ScreeningStage.GEOMETRIC, false, 3000);
+    counters.record(ScreeningStage.COARSE, true, 2_000_000_000L);
+
+    assertThat(counters.getProcessed(ScreeningStage.GEOMETRIC)).isEqualTo(2);
+    assertThat(counters.getRejected(ScreeningStage.GEOMETRIC)).isEqualTo(1);
+    assertThat(counters.getPassed(ScreeningStage.COARSE)).isEqualTo(1);
+    assertThat(counters.getThroughputPerSecond(ScreeningStage.GEOMETRIC)).isEqualTo(500_000.0);
+    assertThat(counters.getThroughputPerSecond(ScreeningStage.COARSE)).isEqualTo(0.5);
+    assertThat(counters.getThroughputPerSecond(ScreeningStage.FULL)).isEqualTo(0.0);
+
+    counters.reset();
+    assertThat(counters.getProcessed(ScreeningStage.GEOMETRIC)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,109 @@
+package org.b612foundation.adam.screening;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.b612foundation.adam.astro.AstroConstants;
+import org.b612foundation.adam.opm.KeplerianElements;
+import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.propagators.KeplerPropagator;
+import org.junit.Test;
+
+public class MoidCalculatorTest {
+  private static final double AU = AstroConstants.AU_TO_KM;
+  private static final double TOLERANCE = 1e-9 * AU;
+
+  private static KeplerianElements orbit(
+      double a, double e, double inclination, double raan, double argPeri) {
+    return new KeplerianElements()
+        .setSemi_major_axis(a * AU)
+        .setEccentricity(e)
+        .setInclination(inclination)
+        .setRa_of_asc_node(raan)
+        .setArg_of_pericenter(argPeri)
+        .setTrue_anomaly(40)
+        .setGm(AstroConstants.GM);
+  }
+
+  @Test
+  public void testConcentricCircles() {
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), orbit(1.2, 0, 0, 0, 0)))
+        .isWithin(TOLERANCE)
+        .of(0.2 * AU);
+    // Circles of the same radius meet at the line of nodes, however inclined.
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), orbit(1, 0, 35, 70, 0)))
+        .isWithin(TOLERANCE)
+        .of(0);
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), orbit(1.5, 0, 90, 0, 0)))
+        .isWithin(TOLERANCE)
+        .of(0.5 * AU);
+  }
+
+  @Test
+  public void testEllipseWithPericenterOnNodeLine() {
+    // Every point of the ellipse is at least its pericenter distance from the Sun, and the
+    // pericenter lies in the plane of the circle, so the MOID is the difference in radius.
+    KeplerianElements ellipse = orbit(2, 0.35, 10, 30, 0);
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), ellipse))
+        .isWithin(TOLERANCE)
+        .of(0.3 * AU);
+    assertThat(MoidCalculator.moid(ellipse, orbit(1, 0, 0, 0, 0)))
+        .isWithin(TOLERANCE)
+        .of(0.3 * AU);
+  }
+
+  @Test
+  public void testCrossingOrbits() {
+    // A coplanar ellipse from 0.5 to 1.5 AU crosses the 1 AU circle.
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), orbit(1, 0.5, 0, 0, 123)))
+        .isWithin(TOLERANCE)
+        .of(0);
+  }
+
+  @Test
+  public void testHyperbola() {
+    KeplerianElements hyperbola = orbit(-2, 1.55, 20, 0, 180);
+    assertThat(MoidCalculator.moid(orbit(1, 0, 0, 0, 0), hyperbola))
+        .isWithin(TOLERANCE)
+        .of(0.1 * AU);
+  }
+
+  @Test
+  public void testStateVectorsMatchElements() {
+    KeplerianElements first = orbit(1.3, 0.2, 12, 45, 80);
+    KeplerianElements second = orbit(1.1, 0.4, 3, 200, 10);
+    double[] firstState = KeplerPropagator.toCartesian(first);
+    double[] secondState = KeplerPropagator.toCartesian(second);
+
+    assertThat(MoidCalculator.moid(state(firstState), state(secondState), AstroConstants.GM))
+        .isWithin(1e-6 * AU)
+        .of(MoidCalculator.moid(first, second));
+  }
+
+  @Test
+  public void testCatalogAgainstEarth() {
+    KeplerianElements earth = MoidCalculator.earthOrbitJ2000();
+    ImmutableList<KeplerianElements> catalog =
+        ImmutableList.of(
+            orbit(1.3, 0.2, 12, 45, 80), orbit(2.7, 0.1, 8, 100, 30), orbit(0.9, 0.3, 2, 0, 0));
+
+    double[] moids = MoidCalculator.moids(catalog, earth);
+
+    assertThat(moids).hasLength(3);
+    for (int i = 0; i < catalog.size(); i++) {
+      assertThat(moids[i]).isEqualTo(MoidCalculator.moid(catalog.get(i), earth));
+    }
+    // Pericenter at 2.43 AU keeps the second orbit well away from Earth's.
+    assertThat(moids[1]).isGreaterThan(1.4 * AU);
+  }
+
+  private static StateVector state(double[] values) {
+    return new StateVector()
+        .setX(values[0])
+        .setY(values[1])
+        .setZ(values[2])
+        .setX_dot(values[3])
+        .setY_dot(values[4])
+        .setZ_dot(values[5]);
+  }
+}
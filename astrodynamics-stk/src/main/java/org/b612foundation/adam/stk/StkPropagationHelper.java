@@ -72,14 +72,27 @@ public final class StkPropagationHelper {
   }
 
   /**
-   * Returns a {@link NumericalPropagatorDefinition} for the given point with a force model as
-   * defined in the given config.
+   * Returns a {@link NumericalPropagatorDefinition} for the given point, integrated with the STK
+   * desktop integrator settings.
    */
   public static NumericalPropagatorDefinition getNumericalPropagator(
       PropagationNewtonianPoint propagationPoint, JulianDate epoch) {
+    return getNumericalPropagator(
+        propagationPoint, epoch, PropagatorConfiguration.IntegratorProfile.PRECISE);
+  }
+
+  /**
+   * Returns a {@link NumericalPropagatorDefinition} for the given point, integrated with the
+   * tolerances and step size bounds of the given integrator profile.
+   */
+  public static NumericalPropagatorDefinition getNumericalPropagator(
+      PropagationNewtonianPoint propagationPoint,
+      JulianDate epoch,
+      PropagatorConfiguration.IntegratorProfile integratorProfile) {
     NumericalPropagatorDefinition propagatorDefinition = new NumericalPropagatorDefinition();
     propagatorDefinition.getIntegrationElements().add(propagationPoint);
-    propagatorDefinition.setIntegrator(ForceModelHelper.getRungeKuttaFehlberg78Integrator());
+    propagatorDefinition.setIntegrator(
+        ForceModelHelper.getRungeKuttaFehlberg78Integrator(integratorProfile));
     propagatorDefinition.setEpoch(epoch);
 
     return propagatorDefinition;
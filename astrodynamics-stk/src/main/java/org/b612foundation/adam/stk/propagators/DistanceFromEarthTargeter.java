@@ -20,6 +20,8 @@ import agi.foundation.time.JulianDate;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.datamodel.TargetingParameters;
 import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.propagators.PropagationListener;
+import org.b612foundation.adam.propagators.PropagationListener.Phase;
 import org.b612foundation.stk.StkLicense;
 
 import java.io.IOException;
@@ -38,6 +40,8 @@ public class DistanceFromEarthTargeter {
   // Maximum number of iterations for the differential correctors.
   private int dcMaxIterations = 20;
 
+  private PropagationListener listener = PropagationListener.NO_OP;
+
   public DistanceFromEarthTargeter() throws IOException {
     StkLicense.activate();
     ForceModelHelper.loadStandardObjects();
@@ -51,6 +55,14 @@ public class DistanceFromEarthTargeter {
     dcMaxIterations = maxIterations;
   }
 
+  /**
+   * Sets the listener notified of how long setup, propagation (including all targeting iterations)
+   * and ephemeris export take.
+   */
+  public void setListener(PropagationListener listener) {
+    this.listener = listener;
+  }
+
   private <T> T last(List<T> list) {
     return list.get(list.size() - 1);
   }
@@ -91,6 +103,7 @@ public class DistanceFromEarthTargeter {
       TargetingParameters targetingParams,
       PropagatorConfiguration propagatorConfig)
       throws IllegalArgumentException {
+    long setupStart = System.nanoTime();
     this.referenceFrame = referenceFrame;
 
     SunCentralBody sun = CentralBodiesFacet.getFromContext().getSun();
@@ -300,6 +313,7 @@ public class DistanceFromEarthTargeter {
     targetedSegmentList.getSegments().add(propagateToPerigeeSegment);
     targetedSegmentList.getOperators().add(bPlaneDifferentialCorrector);
     targetedSegmentList.getOperators().add(rMagDifferentialCorrector);
+    listener.phaseFinished(Phase.SETUP, System.nanoTime() - setupStart);
   }
 
   /**
@@ -317,8 +331,10 @@ public class DistanceFromEarthTargeter {
 
     // Run the nominal sequence to get the trajectory without a maneuver.
     targetedSegmentList.setOperatorAction(TargetedSegmentListOperatorBehavior.RUN_NOMINAL_SEQUENCE);
+    long integrationStart = System.nanoTime();
     SegmentPropagator propagator = targetedSegmentList.getSegmentPropagator(new EvaluatorGroup());
     segmentResults = propagator.propagate();
+    listener.phaseFinished(Phase.INTEGRATION, System.nanoTime() - integrationStart);
 
     // Restore the settings of the segment list.
     if (targetingParams.isRunNominalOnly()) {
@@ -358,8 +374,10 @@ public class DistanceFromEarthTargeter {
    * Runs the targeted propagator, with or without targeting according to how it was initialized.
    */
   public void propagate() {
+    long integrationStart = System.nanoTime();
     SegmentPropagator propagator = targetedSegmentList.getSegmentPropagator(new EvaluatorGroup());
     segmentResults = propagator.propagate();
+    listener.phaseFinished(Phase.INTEGRATION, System.nanoTime() - integrationStart);
   }
 
   /**
@@ -368,9 +386,11 @@ public class DistanceFromEarthTargeter {
    * propagate, gets whichever ephemeris the targeter was initialized to produce.
    */
   public String getEphemeris() {
+    long exportStart = System.nanoTime();
     StkEphemerisFile ephemeris = getEphemerisFromResults(segmentResults, motionId);
     StringWriter writer = new StringWriter();
     ephemeris.writeTo(writer);
+    listener.phaseFinished(Phase.EXPORT, System.nanoTime() - exportStart);
     return writer.toString();
   }
 
@@ -473,7 +493,8 @@ public class DistanceFromEarthTargeter {
     // Create the propagator
     NumericalPropagatorDefinition propagator = new NumericalPropagatorDefinition();
     propagator.getIntegrationElements().add(propagationPoint);
-    propagator.setIntegrator(ForceModelHelper.getRungeKuttaFehlberg78Integrator());
+    propagator.setIntegrator(
+        ForceModelHelper.getRungeKuttaFehlberg78Integrator(config.getIntegratorProfile()));
     propagator.setEpoch(epoch);
 
     return propagator;
@@ -5,6 +5,7 @@ import agi.foundation.time.JulianDate;
 import java.io.Serializable;
 import lombok.Builder;
 import lombok.Value;
+import org.b612foundation.adam.astro.TargetPlane;
 import org.b612foundation.adam.common.DistanceType;
 import org.b612foundation.adam.common.DistanceUnits;
 import org.b612foundation.adam.opm.OdmCommonMetadata.ReferenceFrame;
@@ -16,7 +17,7 @@ import org.b612foundation.adam.propagators.OrbitEventType;
  * body and reference frame.
  */
 @Value
-@Builder
+@Builder(toBuilder = true)
 public class EventEphemerisPoint implements Serializable {
 
   private static final long serialVersionUID = -8428599044581198764L;
@@ -51,4 +52,8 @@ public class EventEphemerisPoint implements Serializable {
   DistanceType distanceType;
 
   DistanceUnits distanceUnits;
+
+  // Encounter geometry on the target body's b-plane, in meters and m/s. Null if the object is bound
+  // to the target body or the point is not an encounter.
+  TargetPlane targetPlane;
 }
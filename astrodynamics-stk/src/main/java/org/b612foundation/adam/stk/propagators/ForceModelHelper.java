@@ -1,14 +1,23 @@
 package org.b612foundation.adam.stk.propagators;
 
+import agi.foundation.EvaluatorGroup;
+import agi.foundation.Motion1;
 import agi.foundation.celestial.*;
+import agi.foundation.coordinates.Cartesian;
+import agi.foundation.geometry.GeometryTransformer;
 import agi.foundation.geometry.Point;
+import agi.foundation.geometry.PointEvaluator;
+import agi.foundation.geometry.ReferenceFrame;
 import agi.foundation.numericalmethods.KindOfStepSize;
 import agi.foundation.numericalmethods.RungeKuttaFehlberg78Integrator;
 import agi.foundation.propagators.PropagationNewtonianPoint;
 import agi.foundation.stk.StkEphemerisFile;
+import agi.foundation.time.JulianDate;
 import agi.foundation.time.TimeInterval;
 import com.google.common.base.Preconditions;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.propagators.NBodyPropagator;
+import org.b612foundation.adam.propagators.PointMassForceModel;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -27,6 +36,9 @@ public class ForceModelHelper {
   // Gravity model.
   private static final String EGM96_FILE = "data/EGM96.grv";
 
+  // A Sun-centered frame puts the Sun's center of mass within this distance of its origin.
+  private static final double SUN_CENTER_TOLERANCE_METERS = 1;
+
   // Load JPL Ephemerides.
   // TODO: allow user to specify DE file.
   private static final String DE_FILE = "data/plneph.430";
@@ -46,22 +58,29 @@ public class ForceModelHelper {
 
   /** Obtains an integrator configured to match STK desktop. */
   public static RungeKuttaFehlberg78Integrator getRungeKuttaFehlberg78Integrator() {
-    // TODO: We probably want to pull all the constants out into solver config that would be
-    // specifiable by the user.
+    return getRungeKuttaFehlberg78Integrator(PropagatorConfiguration.IntegratorProfile.PRECISE);
+  }
+
+  /**
+   * Obtains an integrator with the tolerances and step size bounds of the given profile. {@link
+   * PropagatorConfiguration.IntegratorProfile#PRECISE} matches STK desktop.
+   */
+  public static RungeKuttaFehlberg78Integrator getRungeKuttaFehlberg78Integrator(
+      PropagatorConfiguration.IntegratorProfile profile) {
     RungeKuttaFehlberg78Integrator integrator = new RungeKuttaFehlberg78Integrator();
     integrator.setStepSizeBehavior(KindOfStepSize.RELATIVE);
-    // Parameters are set to match STK Desktop settings.
-    integrator.setInitialStepSize(1);
-    integrator.setMaximumStepSize(86400);
-    integrator.setMinimumStepSize(1);
-    integrator.setAbsoluteTolerance(1e-11);
-    integrator.setRelativeTolerance(1e-13);
+    integrator.setInitialStepSize(profile.getInitialStepSize());
+    integrator.setMaximumStepSize(profile.getMaximumStepSize());
+    integrator.setMinimumStepSize(profile.getMinimumStepSize());
+    integrator.setAbsoluteTolerance(profile.getAbsoluteTolerance());
+    integrator.setRelativeTolerance(profile.getRelativeTolerance());
     return integrator;
   }
 
   /** Sets up earth-centered forces, including other bodies according to the given config. */
   public static void initializeEarthCenteredForces(
       PropagatorConfiguration config, PropagationNewtonianPoint object) {
+    checkSupportedByAgiIntegrators(config);
     switch (config.getEarth()) {
       case OMIT:
         log.warning("Earth is the central body, but Earth gravity is not included");
@@ -76,6 +95,28 @@ public class ForceModelHelper {
     // TODO: other bodies? We probably won't use the Earth frame often.
   }
 
+  /**
+   * Checks that the config asks for nothing the AGI integrators lack, so that it is not silently
+   * ignored. Only {@link StkNBodyPropagator} integrates other formulations and methods.
+   */
+  private static void checkSupportedByAgiIntegrators(PropagatorConfiguration config) {
+    Preconditions.checkArgument(
+        config.getFormulation() == PropagatorConfiguration.Formulation.COWELL,
+        "The AGI propagators only integrate the Cowell formulation, got %s; use %s",
+        config.getFormulation(),
+        PropagatorFactory.STK_NBODY_PROPAGATOR_STRING);
+    Preconditions.checkArgument(
+        config.getIntegratorMethod() == PropagatorConfiguration.IntegratorMethod.RUNGE_KUTTA,
+        "The AGI propagators only integrate with Runge-Kutta, got %s; use %s",
+        config.getIntegratorMethod(),
+        PropagatorFactory.STK_NBODY_PROPAGATOR_STRING);
+    Preconditions.checkArgument(
+        config.getRegularizationDistanceMeters() == 0,
+        "The AGI propagators do not regularize, got a regularization distance of %s m; use %s",
+        config.getRegularizationDistanceMeters(),
+        PropagatorFactory.STK_NBODY_PROPAGATOR_STRING);
+  }
+
   /** Adds a third body defined in JPL epehemerides to the given third body gravity force. */
   private static void addThirdBody(
       String name,
@@ -102,6 +143,7 @@ public class ForceModelHelper {
    */
   public static void initializeSunCenteredForces(
       PropagatorConfiguration config, PropagationNewtonianPoint object) {
+    checkSupportedByAgiIntegrators(config);
     // Add Sun's gravity.
     SunCentralBody sun = CentralBodiesFacet.getFromContext().getSun();
     Preconditions.checkArgument(
@@ -141,6 +183,93 @@ public class ForceModelHelper {
     }
   }
 
+  /**
+   * Builds the Sun-centered forces of the given config as a {@link PointMassForceModel} for {@link
+   * NBodyPropagator}, as {@link StkNBodyPropagator} does to integrate them in formulations and with
+   * methods the AGI integrators do not offer. Bodies come from the same JPL ephemerides as {@link
+   * #initializeSunCenteredForces}.
+   *
+   * @param frame Sun-centered frame of the propagation.
+   * @param origin date of zero seconds of the propagation.
+   * @throws IllegalArgumentException if the frame is not centered on the Sun.
+   */
+  public static PointMassForceModel createSunCenteredForceModel(
+      PropagatorConfiguration config, ReferenceFrame frame, JulianDate origin) {
+    Preconditions.checkArgument(
+        config.getSun() == PropagatorConfiguration.PlanetGravityMode.POINT_MASS,
+        "Expect Sun to be treated as point-mass in the Sun-centered frame, got %s",
+        config.getSun());
+    Preconditions.checkArgument(
+        config.getAsteroids() == null || config.getAsteroids().isEmpty(),
+        "Asteroid perturbers are only supported by initializeSunCenteredForces, got %s",
+        config.getAsteroids());
+    double sunOffset =
+        GeometryTransformer.observePoint(JPL_DE.getCenterOfMassPoint(JplDECentralBody.SUN), frame)
+            .evaluate(origin)
+            .getMagnitude();
+    Preconditions.checkArgument(
+        sunOffset < SUN_CENTER_TOLERANCE_METERS,
+        "Expect a Sun-centered frame, got one %s m from the Sun",
+        sunOffset);
+    PointMassForceModel forces =
+        new PointMassForceModel(JPL_DE.getGravitationalParameter(JplDECentralBody.SUN));
+    // One group for all bodies, so they share the evaluation of the ephemerides.
+    EvaluatorGroup group = new EvaluatorGroup();
+    addPerturber(
+        "Mercury", config.getMercury(), JplDECentralBody.MERCURY, forces, frame, origin, group);
+    addPerturber("Venus", config.getVenus(), JplDECentralBody.VENUS, forces, frame, origin, group);
+    addPerturber("Earth", config.getEarth(), JplDECentralBody.EARTH, forces, frame, origin, group);
+    addPerturber("Mars", config.getMars(), JplDECentralBody.MARS, forces, frame, origin, group);
+    addPerturber(
+        "Jupiter", config.getJupiter(), JplDECentralBody.JUPITER, forces, frame, origin, group);
+    addPerturber(
+        "Saturn", config.getSaturn(), JplDECentralBody.SATURN, forces, frame, origin, group);
+    addPerturber(
+        "Uranus", config.getUranus(), JplDECentralBody.URANUS, forces, frame, origin, group);
+    addPerturber(
+        "Neptune", config.getNeptune(), JplDECentralBody.NEPTUNE, forces, frame, origin, group);
+    addPerturber("Pluto", config.getPluto(), JplDECentralBody.PLUTO, forces, frame, origin, group);
+    addPerturber("Moon", config.getMoon(), JplDECentralBody.MOON, forces, frame, origin, group);
+    return forces;
+  }
+
+  /** Adds a body defined in JPL ephemerides to the given point-mass force model. */
+  private static void addPerturber(
+      String name,
+      PropagatorConfiguration.PlanetGravityMode mode,
+      JplDECentralBody body,
+      PointMassForceModel forces,
+      ReferenceFrame frame,
+      JulianDate origin,
+      EvaluatorGroup group) {
+    switch (mode) {
+      case OMIT:
+        log.fine("Skipping '" + name + "' in planetary mode");
+        break;
+      case POINT_MASS:
+        PointEvaluator evaluator =
+            GeometryTransformer.observePoint(JPL_DE.getCenterOfMassPoint(body), frame, group);
+        forces.addPerturber(
+            name,
+            JPL_DE.getGravitationalParameter(body),
+            (seconds, out) -> {
+              Motion1<Cartesian> motion = evaluator.evaluate(origin.addSeconds(seconds), 1);
+              Cartesian position = motion.getValue();
+              Cartesian velocity = motion.getFirstDerivative();
+              out[0] = position.getX();
+              out[1] = position.getY();
+              out[2] = position.getZ();
+              out[3] = velocity.getX();
+              out[4] = velocity.getY();
+              out[5] = velocity.getZ();
+            });
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "Do not support " + mode + " for " + name + " in planetary mode");
+    }
+  }
+
   /** Attaches the given asteroid as a third body to the gravity model. Returns true on success. */
   private static boolean loadAsteroid(String name, ThirdBodyGravity bodies) {
     String resourceName = ASTEROIDS_DIR + name + ".e";
@@ -9,11 +9,13 @@ import agi.foundation.Motion1;
 import agi.foundation.MotionEvaluator1;
 import agi.foundation.compatibility.EventHandler;
 import agi.foundation.coordinates.Cartesian;
+import agi.foundation.geometry.Point;
 import agi.foundation.geometry.PointInterpolator;
 import agi.foundation.geometry.ReferenceFrame;
 import agi.foundation.geometry.Scalar;
 import agi.foundation.numericalmethods.IntegrationSense;
 import agi.foundation.numericalmethods.InterpolationAlgorithmType;
+import agi.foundation.numericalmethods.RungeKuttaFehlberg78Integrator;
 import agi.foundation.propagators.NumericalPropagator;
 import agi.foundation.propagators.NumericalPropagatorDefinition;
 import agi.foundation.propagators.PropagationEventArgs;
@@ -34,12 +36,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
 import org.b612foundation.adam.opm.OdmCommonHeader;
 import org.b612foundation.adam.opm.OdmCommonMetadata;
 import org.b612foundation.adam.opm.OemDataBlock;
 import org.b612foundation.adam.opm.OemMetadata;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.propagators.PropagationCheckpoint;
+import org.b612foundation.adam.propagators.PropagationCheckpointer;
+import org.b612foundation.adam.propagators.PropagationControl;
+import org.b612foundation.adam.propagators.PropagationListener;
+import org.b612foundation.adam.propagators.PropagationListener.Phase;
+import org.b612foundation.adam.propagators.StepConsumer;
 import org.b612foundation.adam.stk.StkOpmHelper;
 import org.b612foundation.adam.stk.propagators.ForceModelHelper;
 
@@ -50,7 +60,7 @@ import org.b612foundation.adam.stk.propagators.ForceModelHelper;
  * JulianDate, pass that time standard as the second argument. When creating Joda DateTime from a
  * String, make sure the string has "Z" in the end, otherwise the time zones get screwy.
  *
- * <p>: Will probably want to add some sort of progress monitors to longer running functions.
+ * <p>Progress of propagation and export can be monitored with a {@link PropagationListener}.
  *
  * <p>TODO: Move to astrodynamics.
  */
@@ -99,6 +109,18 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
 
   private List<double[]> rawValues = new ArrayList<>();
 
+  /** Integrator settings used for this orbit, recorded in the exported ephemeris. */
+  private PropagatorConfiguration.IntegratorProfile integratorProfile;
+
+  /** Receives integrator steps while propagating, if set. */
+  private StepConsumer stepConsumer;
+
+  /** Checked after every integrator step, if set. */
+  private PropagationControl control;
+
+  /** Notified of steps and phases. */
+  private PropagationListener listener = PropagationListener.NO_OP;
+
   private PropagatedInterplanetaryOrbit() {}
 
   /**
@@ -108,10 +130,143 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
    */
   public static PropagatedInterplanetaryOrbit fromOpm(
       OrbitParameterMessage opm, JulianDate endDate, PropagatorConfiguration config) {
-    ForceModelHelper.loadStandardObjects();
+    return fromOpm(opm, endDate, config, null);
+  }
+
+  /**
+   * Builds an orbit from CCSDS OPM message and propagates it up to the specified date, handing each
+   * integrator step to the given consumer as soon as it is taken.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @throws IllegalArgumentException if some parts of the message are not supported.
+   */
+  public static PropagatedInterplanetaryOrbit fromOpm(
+      OrbitParameterMessage opm,
+      JulianDate endDate,
+      PropagatorConfiguration config,
+      StepConsumer stepConsumer) {
+    return fromOpm(opm, endDate, config, stepConsumer, null);
+  }
+
+  /**
+   * Builds an orbit from CCSDS OPM message and propagates it up to the specified date, streaming
+   * integrator steps to the given consumer and checking the given control after every step.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @param control started control checked during propagation; may be null.
+   * @throws IllegalArgumentException if some parts of the message are not supported.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  public static PropagatedInterplanetaryOrbit fromOpm(
+      OrbitParameterMessage opm,
+      JulianDate endDate,
+      PropagatorConfiguration config,
+      StepConsumer stepConsumer,
+      PropagationControl control) {
+    return fromOpm(opm, endDate, config, stepConsumer, control, PropagationListener.NO_OP);
+  }
 
+  /**
+   * Builds an orbit from CCSDS OPM message and propagates it up to the specified date, streaming
+   * integrator steps to the given consumer, checking the given control after every step and
+   * reporting progress to the given listener.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @param control started control checked during propagation; may be null.
+   * @param listener notified of phases and steps, here and in the exports of the returned orbit.
+   * @throws IllegalArgumentException if some parts of the message are not supported.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  public static PropagatedInterplanetaryOrbit fromOpm(
+      OrbitParameterMessage opm,
+      JulianDate endDate,
+      PropagatorConfiguration config,
+      StepConsumer stepConsumer,
+      PropagationControl control,
+      PropagationListener listener) {
+    long setupStart = System.nanoTime();
+    JulianDate epoch = parseUtcAsJulian(opm.getState_vector().getEpoch());
+    PropagatedInterplanetaryOrbit orbit =
+        initialize(opm, config, stepConsumer, control, listener);
+    listener.phaseFinished(Phase.SETUP, System.nanoTime() - setupStart);
+    orbit.initializeAndRunPropagator(epoch, epoch, endDate, 0);
+    return orbit;
+  }
+
+  /**
+   * Continues propagating an orbit from the last step of a checkpoint taken while propagating the
+   * given OPM, e.g. by passing a {@link PropagationCheckpointer} as step consumer to {@link
+   * #fromOpm}. The returned orbit covers the whole span from the OPM epoch, including the
+   * checkpointed steps, and matches an uninterrupted propagation to within the integrator
+   * tolerances. Steps are reported to the consumer in seconds since the OPM epoch.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @param control started control checked during propagation; may be null.
+   * @param listener notified of phases and steps, here and in the exports of the returned orbit.
+   * @throws IllegalArgumentException if the checkpoint is empty or was taken of a propagation from
+   *     another epoch.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  public static PropagatedInterplanetaryOrbit fromCheckpoint(
+      OrbitParameterMessage opm,
+      PropagationCheckpoint checkpoint,
+      JulianDate endDate,
+      PropagatorConfiguration config,
+      StepConsumer stepConsumer,
+      PropagationControl control,
+      PropagationListener listener) {
+    long setupStart = System.nanoTime();
     JulianDate epoch = parseUtcAsJulian(opm.getState_vector().getEpoch());
+    Preconditions.checkArgument(checkpoint.size() > 0, "Checkpoint has no steps to resume from");
+    Preconditions.checkArgument(
+        epoch.secondsDifference(parseUtcAsJulian(checkpoint.getEpoch())) == 0,
+        "Checkpoint epoch %s does not match OPM epoch %s",
+        checkpoint.getEpoch(),
+        opm.getState_vector().getEpoch());
+    JulianDate resumeEpoch = epoch.addSeconds(checkpoint.getLastTime());
+
+    // Only the Cartesian state is read from the OPM, so elements must not override it.
+    OrbitParameterMessage resumed = opm.deepCopy();
+    resumed.setKeplerian(null);
+    double[] state = checkpoint.getLastState();
+    resumed.setState_vector(
+        new StateVector()
+            .setEpoch(
+                TimeHelper.toIsoFormat(
+                    resumeEpoch.toTimeStandard(TimeStandard.getCoordinatedUniversalTime())))
+            .setX(state[0] * M_TO_KM)
+            .setY(state[1] * M_TO_KM)
+            .setZ(state[2] * M_TO_KM)
+            .setX_dot(state[3] * M_TO_KM)
+            .setY_dot(state[4] * M_TO_KM)
+            .setZ_dot(state[5] * M_TO_KM));
+    PropagatedInterplanetaryOrbit orbit =
+        initialize(resumed, config, stepConsumer, control, listener);
+    // The step handler records the resume step itself as the previous time of the first step.
+    for (int i = 0; i < checkpoint.size() - 1; i++) {
+      orbit.rawDates.add(epoch.addSeconds(checkpoint.getTime(i)));
+      orbit.rawValues.add(checkpoint.getState(i));
+    }
+    listener.phaseFinished(Phase.SETUP, System.nanoTime() - setupStart);
+    orbit.initializeAndRunPropagator(
+        epoch, resumeEpoch, endDate, checkpoint.getLastStepSeconds());
+    return orbit;
+  }
+
+  /** Sets up the object and the forces acting on it, as described by the OPM and configuration. */
+  private static PropagatedInterplanetaryOrbit initialize(
+      OrbitParameterMessage opm,
+      PropagatorConfiguration config,
+      StepConsumer stepConsumer,
+      PropagationControl control,
+      PropagationListener listener) {
+    ForceModelHelper.loadStandardObjects();
+
     PropagatedInterplanetaryOrbit orbit = new PropagatedInterplanetaryOrbit();
+    orbit.stepConsumer = stepConsumer;
+    orbit.control = control;
+    orbit.listener = listener;
+    orbit.integratorProfile = config.getIntegratorProfile();
     orbit.setReferenceFrame(opm.getMetadata());
     orbit.initializeObject(opm, orbit.referenceFrame);
     if (opm.getSpacecraft() != null) {
@@ -130,7 +285,6 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
         throw new IllegalArgumentException(
             "Can't initialize forces for central body " + opm.getMetadata().getCenter_name());
     }
-    orbit.initializeAndRunPropagator(epoch, endDate);
     return orbit;
   }
 
@@ -147,18 +301,43 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
 
   /**
    * Configures the numeric propagator part assuming the object and forces acting on it have been
-   * initialized. Propagates until the given end date.
+   * initialized. Propagates from the given epoch until the given end date.
+   *
+   * @param timeOrigin date step times are reported from; the epoch, unless resuming.
+   * @param initialStepSeconds first integrator step; zero keeps the integrator profile's.
    */
-  private void initializeAndRunPropagator(JulianDate epoch, JulianDate endDate) {
+  private void initializeAndRunPropagator(
+      JulianDate timeOrigin, JulianDate epoch, JulianDate endDate, double initialStepSeconds) {
     NumericalPropagatorDefinition state = new NumericalPropagatorDefinition();
     state.setEpoch(epoch);
     state.getIntegrationElements().add(object);
-    state.setIntegrator(ForceModelHelper.getRungeKuttaFehlberg78Integrator());
+    RungeKuttaFehlberg78Integrator integrator =
+        ForceModelHelper.getRungeKuttaFehlberg78Integrator(integratorProfile);
+    if (initialStepSeconds > 0) {
+      integrator.setInitialStepSize(
+          Math.max(
+              integratorProfile.getMinimumStepSize(),
+              Math.min(integratorProfile.getMaximumStepSize(), initialStepSeconds)));
+    }
+    state.setIntegrator(integrator);
     propagator = state.createPropagator();
+    // Steps restored from a checkpoint precede the ones taken here.
+    boolean restored = !rawDates.isEmpty();
+    double totalSeconds = Math.abs(timeOrigin.secondsDifference(endDate));
     propagator.addStepTaken(
         new EventHandler<PropagationEventArgs>() {
+          // Last time handed to the step consumer, in seconds from epoch. The final step can be
+          // reported twice, so it is used to skip repeats.
+          private double lastSeconds = Double.NaN;
+
           @Override
           public void invoke(Object sender, PropagationEventArgs args) {
+            if (control != null) {
+              control.checkStep();
+            }
+            double seconds = timeOrigin.secondsDifference(args.getPreviousTime());
+            listener.stepTaken(
+                totalSeconds == 0 ? 1 : Math.min(1, Math.abs(seconds) / totalSeconds));
             // Extract non-interpolated ephemerides.
             rawDates.add(args.getPreviousTime());
             // Integrator state interleaves positions and velocities, so we reorder to get all
@@ -167,6 +346,12 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
             double[] cur = args.getPreviousState();
             double[] reordered = {cur[0], cur[2], cur[4], cur[1], cur[3], cur[5]};
             rawValues.add(reordered);
+            if (stepConsumer != null) {
+              if (seconds != lastSeconds) {
+                lastSeconds = seconds;
+                stepConsumer.accept(seconds, reordered);
+              }
+            }
           }
         });
     // 1 indicates to output after every integration step, 2 every other step, etc
@@ -177,6 +362,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
     DurationStoppingCondition byDuration = new DurationStoppingCondition(propagationTime);
     conditions.add(byDuration.getEvaluator(evaluatorGroup));
     boolean increasing = JulianDate.lessThanOrEqual(epoch, endDate);
+    long integrationStart = System.nanoTime();
     StoppableNumericalPropagatorResults results =
         propagator.propagateUntilStop(
             conditions,
@@ -184,6 +370,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
             true /* initialize conditions */,
             outputSparsity,
             null /* tracker */);
+    listener.phaseFinished(Phase.INTEGRATION, System.nanoTime() - integrationStart);
     log.info(
         "Propagating in direction "
             + propagator.getPropagationDirection().toString()
@@ -195,6 +382,18 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
     // here.
     DateMotionCollection1<Cartesian> ephemeris =
         results.getPropagationHistory().getDateMotionCollection(objectId);
+    if (restored) {
+      // Interpolate over the checkpointed steps too, so exports cover the whole propagation.
+      ephemeris = new DateMotionCollection1<>();
+      int last = validateDatesAndReturnValidSize(rawDates);
+      for (int i = 0; i <= last; i++) {
+        double[] value = rawValues.get(i);
+        ephemeris.add(
+            rawDates.get(i),
+            new Cartesian(value[0], value[1], value[2]),
+            new Cartesian(value[3], value[4], value[5]));
+      }
+    }
     interpolator =
         new PointInterpolator(
             object.getIntegrationFrame(), InterpolationAlgorithmType.HERMITE, 6, ephemeris);
@@ -210,6 +409,11 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
     return interpolator.getReferenceFrame();
   }
 
+  @Override
+  public Point getPoint() {
+    return interpolator;
+  }
+
   /**
    * Sets the STK CentralBody and ReferenceFrame according to metadata, throws if not supported.
    * Currently ignores ReferenceFrame epoch.
@@ -248,6 +452,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
 
   public OrbitEphemerisMessage exportOrbitEphemerisMessage(
       JulianDate startDate, JulianDate stopDate, Duration timeStep) {
+    long interpolationStart = System.nanoTime();
     StkEphemerisFile ephemeris = getEphemeris(startDate, stopDate, timeStep);
     StkEphemerisFile.EphemerisTimePosVel posVelData =
         (StkEphemerisFile.EphemerisTimePosVel) ephemeris.getData();
@@ -269,6 +474,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
             velocity.getZ()
           });
     }
+    listener.phaseFinished(Phase.INTERPOLATION, System.nanoTime() - interpolationStart);
 
     return exportOrbitEphemerisMessage(dates, posVel);
   }
@@ -279,6 +485,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
 
   private OrbitEphemerisMessage exportOrbitEphemerisMessage(
       List<JulianDate> dates, List<double[]> posVelValues) {
+    long exportStart = System.nanoTime();
     int last = validateDatesAndReturnValidSize(dates);
     OdmCommonHeader header = new OdmCommonHeader();
     header.setCreation_date(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
@@ -303,6 +510,7 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
 
     OemDataBlock block = new OemDataBlock();
     block.getComments().add("ADAM AGI-components based propagation");
+    block.getComments().add("Integrator profile: " + integratorProfile);
     block.setMetadata(metadata);
 
     for (int i = 0; i <= last; i++) {
@@ -322,11 +530,13 @@ public final class PropagatedInterplanetaryOrbit extends PropagatedOrbit {
     OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
     oem.setHeader(header);
     oem.addBlock(block);
+    listener.phaseFinished(Phase.EXPORT, System.nanoTime() - exportStart);
 
     return oem;
   }
 
   /** Returns the list of dates corresponding to integrator steps, not interpolated. */
+  @Override
   public List<JulianDate> getRawDates() {
     return rawDates;
   }
@@ -4,12 +4,14 @@ import agi.foundation.DateMotionCollection1;
 import agi.foundation.Motion1;
 import agi.foundation.MotionEvaluator1;
 import agi.foundation.coordinates.Cartesian;
+import agi.foundation.geometry.Point;
 import agi.foundation.geometry.ReferenceFrame;
 import agi.foundation.numericalmethods.InterpolationAlgorithmType;
 import agi.foundation.numericalmethods.TranslationalMotionInterpolator;
 import agi.foundation.stk.StkEphemerisFile;
 import agi.foundation.time.Duration;
 import agi.foundation.time.JulianDate;
+import java.util.List;
 
 /**
  * PropagatedOrbit provides a way to query object position and velocity over time.
@@ -24,6 +26,15 @@ public abstract class PropagatedOrbit {
   /** Returns the reference frame in which all values are specified. */
   public abstract ReferenceFrame getReferenceFrame();
 
+  /**
+   * Returns the interpolated trajectory as a point, defined over the propagated interval, so it
+   * can be observed from other frames without exporting an ephemeris first.
+   */
+  public abstract Point getPoint();
+
+  /** Returns the list of dates corresponding to integrator steps, not interpolated. */
+  public abstract List<JulianDate> getRawDates();
+
   /** Returns object location, velocity, and acceleration at the given time. */
   public Motion1<Cartesian> getMotion(JulianDate when) {
     return getEvaluator().evaluate(when, 2); // 2nd order - up to acceleration
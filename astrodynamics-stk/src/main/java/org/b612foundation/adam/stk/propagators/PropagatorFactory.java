@@ -7,6 +7,7 @@ import java.io.IOException;
 public final class PropagatorFactory {
   public static final String STK_PROPAGATOR_STRING = "STK";
   public static final String STK_PROPAGATOR_WITH_STOPPING_CONDITIONS = "STK_WITH_STOPPING_CONDS";
+  public static final String STK_NBODY_PROPAGATOR_STRING = "STK_NBODY";
   public static final String OORB_PROPAGATOR_STRING = "OORB";
 
   public static OrbitPropagator getPropagator(String propagatorTypeString) throws IOException {
@@ -15,6 +16,8 @@ public final class PropagatorFactory {
         return new StkPropagator();
       case STK_PROPAGATOR_WITH_STOPPING_CONDITIONS:
         return new StkSegmentPropagator();
+      case STK_NBODY_PROPAGATOR_STRING:
+        return new StkNBodyPropagator();
       default:
         throw new IllegalArgumentException("Propagator type not found: " + propagatorTypeString);
     }
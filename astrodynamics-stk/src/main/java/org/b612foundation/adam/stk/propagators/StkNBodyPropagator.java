@@ -0,0 +1,356 @@
+package org.b612foundation.adam.stk.propagators;
+
+import agi.foundation.celestial.JplDECentralBody;
+import agi.foundation.celestial.WorldGeodeticSystem1984;
+import agi.foundation.geometry.GeometryTransformer;
+import agi.foundation.geometry.PointEvaluator;
+import agi.foundation.geometry.ReferenceFrame;
+import agi.foundation.time.JulianDate;
+import agi.foundation.time.TimeStandard;
+import org.b612foundation.adam.astro.TargetPlane;
+import org.b612foundation.adam.common.DistanceType;
+import org.b612foundation.adam.common.DistanceUnits;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
+import org.b612foundation.adam.opm.OdmCommonHeader;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OemDataBlock;
+import org.b612foundation.adam.opm.OemMetadata;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.propagators.BodyCloseApproach;
+import org.b612foundation.adam.propagators.BodyEphemeris;
+import org.b612foundation.adam.propagators.GatedCloseApproachDetector;
+import org.b612foundation.adam.propagators.KeplerPropagator;
+import org.b612foundation.adam.propagators.NBodyPropagator;
+import org.b612foundation.adam.propagators.OrbitEventType;
+import org.b612foundation.adam.propagators.OrbitPropagator;
+import org.b612foundation.adam.propagators.PointMassForceModel;
+import org.b612foundation.adam.propagators.PropagationControl;
+import org.b612foundation.adam.propagators.StepConsumer;
+import org.b612foundation.stk.StkLicense;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.b612foundation.adam.astro.AstroConstants.GM_EARTH;
+import static org.b612foundation.adam.astro.AstroConstants.KM_TO_M;
+import static org.b612foundation.adam.astro.AstroConstants.M_TO_KM;
+import static org.b612foundation.adam.stk.StkPropagationHelper.parseUtcAsJulian;
+import static org.b612foundation.adam.stk.StkPropagationHelper.validateStartAndEndDate;
+
+/**
+ * Propagator that integrates Sun-centered orbits with {@link NBodyPropagator}, in the formulation
+ * and with the integrator method of the configuration, which the AGI integrators do not offer.
+ * Forces are those of {@link ForceModelHelper#createSunCenteredForceModel}: the Sun and the
+ * configured planets and Moon as point masses from the JPL ephemerides, without asteroids.
+ *
+ * <p>The ephemeris holds the states on the time grid of the parameters, interpolated within the
+ * integrator steps, or only the final state, or none, following the output mode. If logging of
+ * close approaches is on, close approaches to Earth within {@link
+ * PropagationParameters#getCloseApproachRadiusFromTargetMeters()}, or its sphere of influence if
+ * that is not set, are found from the integrator steps. An approach within {@link
+ * PropagationParameters#getStopOnImpactAltitudeMeters()} of Earth's surface is reported as the
+ * impact, at the time of closest approach. Propagations never stop on these events. If the
+ * configuration sets a regularization distance, encounters within it, and so the close approaches
+ * and impacts found in them, are integrated regularized.
+ *
+ * <p>Not thread-safe; use one propagator per propagation at a time.
+ */
+public class StkNBodyPropagator implements OrbitPropagator {
+  private static final Logger log = Logger.getLogger(StkNBodyPropagator.class.getName());
+  private static final double GM_EARTH_METERS = GM_EARTH * KM_TO_M * KM_TO_M * KM_TO_M;
+  // Laplace sphere of influence of Earth, in meters, the default close approach radius.
+  private static final double EARTH_SPHERE_OF_INFLUENCE_METERS = 9.25e8;
+
+  private List<EventEphemerisPoint> closeApproaches = Collections.emptyList();
+  private Optional<EventEphemerisPoint> impact = Optional.empty();
+
+  public StkNBodyPropagator() throws IOException {
+    StkLicense.activate();
+  }
+
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, null);
+  }
+
+  /**
+   * Propagates like {@link #propagate(PropagationParameters, PropagatorConfiguration, String)},
+   * checking the given control after every integrator step.
+   *
+   * @param control cancellation and budgets for this propagation; may be null.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control)
+      throws AdamPropagationException {
+    closeApproaches = Collections.emptyList();
+    impact = Optional.empty();
+    try {
+      if (control != null) {
+        control.start();
+      }
+      log.info("Starting N-body propagation for " + propagationIdForLogging);
+      return run(propagationParams, config, control);
+    } catch (PropagationAbortedException e) {
+      log.info("Propagation aborted for " + propagationIdForLogging + ": " + e.getMessage());
+      throw e;
+    } catch (RuntimeException e) {
+      log.info("Failed to propagate orbit: " + e);
+      throw new AdamPropagationException(
+          "Failed to propagate orbit for " + propagationIdForLogging, e);
+    }
+  }
+
+  /** Close approaches to Earth in the last propagation, impacts included, ordered by time. */
+  public List<EventEphemerisPoint> getCloseApproaches() {
+    return closeApproaches;
+  }
+
+  /** The first close approach of the last propagation that came within the impact altitude. */
+  public Optional<EventEphemerisPoint> getImpact() {
+    return impact;
+  }
+
+  private OrbitEphemerisMessage run(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      PropagationControl control) {
+    checkArgument(
+        !propagationParams.getStopOnImpact() && !propagationParams.getStopOnCloseApproach(),
+        "The N-body propagator does not stop on impacts or close approaches");
+    checkArgument(
+        !propagationParams.getEnableLogPlanetaryCloseApproaches(),
+        "The N-body propagator only logs close approaches to Earth");
+    ForceModelHelper.loadStandardObjects();
+    OrbitParameterMessage opm = propagationParams.getOpm();
+    JulianDate epoch = parseUtcAsJulian(opm.getState_vector().getEpoch());
+    JulianDate startDate =
+        TimeHelper.fromIsoFormat(
+            propagationParams.getStart_time(), TimeStandard.getCoordinatedUniversalTime());
+    JulianDate endDate =
+        TimeHelper.fromIsoFormat(
+            propagationParams.getEnd_time(), TimeStandard.getCoordinatedUniversalTime());
+    validateStartAndEndDate(startDate, endDate);
+    ReferenceFrame frame =
+        new ReferenceFrameGenerator()
+            .getReferenceFrame(
+                opm.getMetadata().getRef_frame(), opm.getMetadata().getCenter_name());
+    PointMassForceModel forces = ForceModelHelper.createSunCenteredForceModel(config, frame, epoch);
+    NBodyPropagator propagator = new NBodyPropagator(forces, config);
+
+    double[] state =
+        KeplerPropagator.initialState(opm, KeplerPropagator.gravitationalParameter(opm));
+    for (int i = 0; i < state.length; i++) {
+      state[i] *= KM_TO_M;
+    }
+    double startSeconds = epoch.secondsDifference(startDate);
+    double endSeconds = epoch.secondsDifference(endDate);
+    StepConsumer controlCheck = control == null ? null : (seconds, s) -> control.checkStep();
+    if (startSeconds != 0) {
+      state = propagator.propagate(state, 0, startSeconds, controlCheck);
+    }
+
+    PointEvaluator earthEvaluator =
+        GeometryTransformer.observePoint(
+            ForceModelHelper.JPL_DE.getCenterOfMassPoint(JplDECentralBody.EARTH), frame);
+    double impactRadius =
+        propagationParams.getStopOnImpactAltitudeMeters() + WorldGeodeticSystem1984.SemimajorAxis;
+    GatedCloseApproachDetector detector = null;
+    StepConsumer stepConsumer = controlCheck;
+    if (propagationParams.getEnableLogCloseApproaches()) {
+      double radius =
+          propagationParams.getCloseApproachRadiusFromTargetMeters() > 0
+              ? propagationParams.getCloseApproachRadiusFromTargetMeters()
+              : EARTH_SPHERE_OF_INFLUENCE_METERS;
+      detector =
+          new GatedCloseApproachDetector()
+              .addBody(
+                  JplDECentralBody.EARTH.toString(),
+                  Math.max(radius, impactRadius),
+                  StkSegmentPropagatedOrbit.toBodyEphemeris(earthEvaluator, epoch));
+      stepConsumer = stepConsumer == null ? detector : detector.andThen(stepConsumer);
+    }
+
+    double[] outputSeconds =
+        outputSeconds(
+            propagationParams.getOutputMode(),
+            startSeconds,
+            endSeconds,
+            propagationParams.getStep_duration_sec());
+    List<double[]> states = new ArrayList<>();
+    propagator.propagate(
+        state,
+        startSeconds,
+        endSeconds,
+        stepConsumer,
+        outputSeconds,
+        (seconds, s) -> states.add(s.clone()));
+    if (detector != null) {
+      recordCloseApproaches(
+          detector.getCloseApproaches(),
+          StkSegmentPropagatedOrbit.toBodyEphemeris(earthEvaluator, epoch),
+          epoch,
+          impactRadius);
+    }
+    return exportOrbitEphemerisMessage(
+        opm, epoch, outputSeconds, states, config, propagationParams.getOutputMode());
+  }
+
+  /**
+   * Returns the start, every whole step after it up to the end, and the end, or just the end or
+   * nothing for the output modes without an ephemeris.
+   */
+  private static double[] outputSeconds(
+      PropagationOutputMode outputMode, double startSeconds, double endSeconds, long stepSeconds) {
+    switch (outputMode) {
+      case FINAL_STATE_ONLY:
+        return new double[] {endSeconds};
+      case EVENTS_ONLY:
+        return new double[0];
+      default:
+        break;
+    }
+    double span = endSeconds - startSeconds;
+    if (stepSeconds <= 0 || span == 0) {
+      return span == 0 ? new double[] {startSeconds} : new double[] {startSeconds, endSeconds};
+    }
+    int steps = (int) Math.floor(Math.abs(span) / stepSeconds);
+    boolean endOnGrid = steps * (double) stepSeconds == Math.abs(span);
+    double[] grid = new double[steps + (endOnGrid ? 1 : 2)];
+    for (int i = 0; i <= steps; i++) {
+      grid[i] = startSeconds + Math.copySign(i * (double) stepSeconds, span);
+    }
+    grid[grid.length - 1] = endSeconds;
+    return grid;
+  }
+
+  private void recordCloseApproaches(
+      List<BodyCloseApproach> approaches,
+      BodyEphemeris earth,
+      JulianDate epoch,
+      double impactRadius) {
+    List<EventEphemerisPoint> points = new ArrayList<>();
+    double[] earthState = new double[6];
+    for (BodyCloseApproach approach : approaches) {
+      JulianDate date = epoch.addSeconds(approach.getEpochSeconds());
+      double[] relativeState = approach.getRelativeState();
+      // The frame is Sun-centered, so Earth's velocity in it is heliocentric.
+      earth.stateAt(approach.getEpochSeconds(), earthState);
+      boolean impacted = approach.getDistance() <= impactRadius;
+      EventEphemerisPoint point =
+          EventEphemerisPoint.builder()
+              .orbitEventType(impacted ? OrbitEventType.IMPACT : OrbitEventType.CLOSE_APPROACH)
+              .stopped(false)
+              .time(date)
+              .timeIsoFormat(TimeHelper.toIsoFormat(date))
+              .timeSystem(OdmCommonMetadata.TimeSystem.UTC)
+              .targetBody(JplDECentralBody.EARTH)
+              .targetBodyCenteredPosition(
+                  new double[] {relativeState[0], relativeState[1], relativeState[2]})
+              .targetBodyCenteredPositionUnits(DistanceUnits.METERS)
+              .targetBodyReferenceFrame(OdmCommonMetadata.ReferenceFrame.ICRF)
+              .velocity(
+                  new double[] {
+                    relativeState[3] + earthState[3],
+                    relativeState[4] + earthState[4],
+                    relativeState[5] + earthState[5]
+                  })
+              .distanceFromTarget(approach.getDistance())
+              .distanceType(DistanceType.RADIUS)
+              .distanceUnits(DistanceUnits.METERS)
+              .targetPlane(
+                  TargetPlane.of(
+                          relativeState,
+                          new double[] {earthState[3], earthState[4], earthState[5]},
+                          GM_EARTH_METERS)
+                      .orElse(null))
+              .build();
+      points.add(point);
+      if (impacted && !impact.isPresent()) {
+        impact = Optional.of(point);
+      }
+    }
+    closeApproaches = Collections.unmodifiableList(points);
+  }
+
+  private static OrbitEphemerisMessage exportOrbitEphemerisMessage(
+      OrbitParameterMessage opm,
+      JulianDate epoch,
+      double[] outputSeconds,
+      List<double[]> states,
+      PropagatorConfiguration config,
+      PropagationOutputMode outputMode) {
+    OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
+    OdmCommonHeader header = new OdmCommonHeader();
+    header.setCreation_date(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    header.setOriginator("ADAM N-body propagator");
+    oem.setHeader(header);
+    if (outputMode == PropagationOutputMode.EVENTS_ONLY) {
+      return oem;
+    }
+
+    OdmCommonMetadata opmMetadata = opm.getMetadata();
+    OemMetadata metadata = new OemMetadata();
+    metadata.setInterpolation("HERMITE");
+    metadata.setInterpolation_degree(5);
+    metadata.setObject_name(opmMetadata.getObject_name());
+    metadata.setObject_id(opmMetadata.getObject_id());
+    metadata.setCenter_name(opmMetadata.getCenter_name());
+    metadata.setRef_frame(opmMetadata.getRef_frame());
+    metadata.setTime_system(OdmCommonMetadata.TimeSystem.UTC);
+    metadata.setStart_time(formatDate(epoch, outputSeconds[0]));
+    metadata.setUsable_start_time(metadata.getStart_time());
+    metadata.setStop_time(formatDate(epoch, outputSeconds[outputSeconds.length - 1]));
+    metadata.setUsable_stop_time(metadata.getStop_time());
+
+    OemDataBlock block = new OemDataBlock();
+    block.getComments().add("ADAM N-body propagation");
+    block.getComments().add("Integrator profile: " + config.getIntegratorProfile());
+    block.getComments().add("Formulation: " + config.getFormulation());
+    block.getComments().add("Integrator method: " + config.getIntegratorMethod());
+    block
+        .getComments()
+        .add("Regularization distance: " + config.getRegularizationDistanceMeters() + " m");
+    block.setMetadata(metadata);
+    for (int i = 0; i < outputSeconds.length; i++) {
+      double[] posVel = states.get(i);
+      block.addLine(
+          formatDate(epoch, outputSeconds[i]),
+          posVel[0] * M_TO_KM,
+          posVel[1] * M_TO_KM,
+          posVel[2] * M_TO_KM,
+          posVel[3] * M_TO_KM,
+          posVel[4] * M_TO_KM,
+          posVel[5] * M_TO_KM);
+    }
+    oem.addBlock(block);
+    return oem;
+  }
+
+  private static String formatDate(JulianDate epoch, double secondsSinceEpoch) {
+    return epoch
+        .addSeconds(secondsSinceEpoch)
+        .toDateTime(TimeStandard.getCoordinatedUniversalTime())
+        .toString();
+  }
+}
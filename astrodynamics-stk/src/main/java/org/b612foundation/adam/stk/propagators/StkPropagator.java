@@ -1,11 +1,14 @@
 package org.b612foundation.adam.stk.propagators;
 
+import agi.foundation.EvaluatorGroup;
+import agi.foundation.Motion1;
 import agi.foundation.celestial.CentralBodiesFacet;
 import agi.foundation.compatibility.EventHandler;
 import agi.foundation.coordinates.Cartesian;
 import agi.foundation.geometry.GeometryTransformer;
 import agi.foundation.geometry.Point;
 import agi.foundation.geometry.PointEvaluator;
+import agi.foundation.geometry.ReferenceFrame;
 import agi.foundation.geometry.shapes.Ellipsoid;
 import agi.foundation.numericalmethods.*;
 import agi.foundation.numericalmethods.advanced.JulianDateFunctionExtremumFound;
@@ -18,32 +21,143 @@ import agi.foundation.time.TimeStandard;
 import org.b612foundation.adam.datamodel.PropagationParameters;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 import org.b612foundation.adam.opm.OrbitParameterMessage;
 import org.b612foundation.adam.propagators.OrbitPropagator;
+import org.b612foundation.adam.propagators.PropagationCheckpoint;
+import org.b612foundation.adam.propagators.PropagationCheckpointer;
+import org.b612foundation.adam.propagators.PropagationControl;
+import org.b612foundation.adam.propagators.PropagationListener;
+import org.b612foundation.adam.propagators.StepConsumer;
+import org.b612foundation.adam.propagators.StepEvent;
+import org.b612foundation.adam.propagators.StepEventSearch;
 import org.b612foundation.adam.stk.analysis.DatedValue;
 import org.b612foundation.stk.StkLicense;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.b612foundation.adam.stk.StkPropagationHelper.parseUtcAsJulian;
 import static org.b612foundation.adam.stk.StkPropagationHelper.validateStartAndEndDate;
 
 /**
  * Propagator that uses STK components.
  *
+ * <p>Transformations of many points to the Earth frame are split into chunks evaluated on an
+ * evaluation executor. Unless one is given to the constructor, each instance owns a thread per
+ * processor for it, which exit when idle and are shut down by {@link #close()}.
+ *
  * <p>TODO: Move to astrodynamics.
  */
-public class StkPropagator implements OrbitPropagator {
+public class StkPropagator implements OrbitPropagator, AutoCloseable {
   private static Logger log = Logger.getLogger(StkPropagator.class.getName());
 
+  /** Fewest points per chunk of a parallel transformation, below which threads cost more. */
+  private static final int MIN_POINTS_PER_CHUNK = 512;
+
+  // How long the threads of an owned evaluation executor wait for another chunk before exiting.
+  private static final long EVALUATION_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private PropagationListener listener = PropagationListener.NO_OP;
+  private Path checkpointFile;
+  private long checkpointEverySteps;
+  // Evaluates the chunks of transformations to the Earth frame.
+  private final ExecutorService evaluationExecutor;
+  // Whether close() shuts down the evaluation executor, which is only the case for the default one.
+  private final boolean ownsEvaluationExecutor;
+  // Most chunks a transformation is split into.
+  private final int parallelism;
+  private final int minPointsPerChunk;
+
   public StkPropagator() throws IOException {
     StkLicense.activate();
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+    this.evaluationExecutor = newEvaluationExecutor(parallelism);
+    this.ownsEvaluationExecutor = true;
+    this.minPointsPerChunk = MIN_POINTS_PER_CHUNK;
+  }
+
+  /**
+   * Creates a propagator that evaluates transformations to the Earth frame in up to {@code
+   * parallelism} chunks on the given executor. The caller keeps ownership of the executor: {@link
+   * #close()} does not shut it down.
+   */
+  public StkPropagator(ExecutorService evaluationExecutor, int parallelism) throws IOException {
+    this(evaluationExecutor, parallelism, MIN_POINTS_PER_CHUNK);
+  }
+
+  @VisibleForTesting
+  StkPropagator(ExecutorService evaluationExecutor, int parallelism, int minPointsPerChunk)
+      throws IOException {
+    checkArgument(evaluationExecutor != null, "Evaluation executor must not be null");
+    checkArgument(parallelism > 0, "Parallelism must be positive, got %s", parallelism);
+    checkArgument(
+        minPointsPerChunk > 0, "Points per chunk must be positive, got %s", minPointsPerChunk);
+    StkLicense.activate();
+    this.evaluationExecutor = evaluationExecutor;
+    this.ownsEvaluationExecutor = false;
+    this.parallelism = parallelism;
+    this.minPointsPerChunk = minPointsPerChunk;
+  }
+
+  /**
+   * Shuts down the evaluation executor if this propagator created it. Transformations that need
+   * more than one chunk then throw {@link IllegalStateException}.
+   */
+  @Override
+  public void close() {
+    if (ownsEvaluationExecutor) {
+      evaluationExecutor.shutdown();
+    }
+  }
+
+  /** Daemon threads that exit when idle, so unclosed propagators leave nothing behind. */
+  private static ExecutorService newEvaluationExecutor(int threads) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            EVALUATION_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            task -> {
+              Thread thread = new Thread(task, "stk-earth-frame-evaluation");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Sets the listener notified of progress, phases and events of subsequent propagations. */
+  public void setListener(PropagationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Makes subsequent propagations write a {@link PropagationCheckpoint} of their steps to the given
+   * file every {@code everySteps} integrator steps, so they can be continued with {@link #resume}
+   * if the worker is lost. A null file turns checkpointing off.
+   */
+  public void setCheckpointing(Path file, long everySteps) {
+    this.checkpointFile = file;
+    this.checkpointEverySteps = everySteps;
   }
 
   /**
@@ -55,7 +169,86 @@ public class StkPropagator implements OrbitPropagator {
       PropagatorConfiguration config,
       String propagationIdForLogging)
       throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, null, null);
+  }
+
+  /**
+   * Propagates one orbit like {@link #propagate(PropagationParameters, PropagatorConfiguration,
+   * String)}, checking the given control after every integrator step.
+   *
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control)
+      throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, null, control);
+  }
+
+  /**
+   * Propagates one orbit like {@link #propagate(PropagationParameters, PropagatorConfiguration,
+   * String)}, handing each integrator step to the given consumer as soon as it is taken.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   */
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer)
+      throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, stepConsumer, null);
+  }
+
+  /**
+   * Propagates one orbit, streaming integrator steps to the given consumer and checking the given
+   * control after every step.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @param control cancellation and budgets for this propagation; may be null.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer,
+      PropagationControl control)
+      throws AdamPropagationException {
+    return run(propagationParams, config, propagationIdForLogging, stepConsumer, control, null);
+  }
+
+  /**
+   * Continues a propagation from the last step of a checkpoint written while propagating with the
+   * same parameters and configuration. See {@link PropagatedInterplanetaryOrbit#fromCheckpoint}.
+   * If checkpointing is on, the resumed propagation keeps writing checkpoints.
+   */
+  public OrbitEphemerisMessage resume(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      PropagationCheckpoint checkpoint,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    return run(propagationParams, config, propagationIdForLogging, null, null, checkpoint);
+  }
+
+  private OrbitEphemerisMessage run(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer,
+      PropagationControl control,
+      PropagationCheckpoint resumeFrom)
+      throws AdamPropagationException {
+    listener.propagationStarted(propagationIdForLogging);
+    boolean succeeded = false;
     try {
+      if (control != null) {
+        control.start();
+      }
       JulianDate startDate =
           TimeHelper.fromIsoFormat(
               propagationParams.getStart_time(), TimeStandard.getCoordinatedUniversalTime());
@@ -65,8 +258,26 @@ public class StkPropagator implements OrbitPropagator {
       validateStartAndEndDate(startDate, endDate);
       OrbitParameterMessage opm = propagationParams.getOpm();
       log.info("Starting propagation for " + propagationIdForLogging);
+      if (checkpointFile != null) {
+        PropagationCheckpointer checkpointer =
+            resumeFrom == null
+                ? new PropagationCheckpointer(
+                    checkpointFile,
+                    opm.getState_vector().getEpoch(),
+                    JulianDate.lessThanOrEqual(
+                        parseUtcAsJulian(opm.getState_vector().getEpoch()), endDate),
+                    checkpointEverySteps)
+                : PropagationCheckpointer.resuming(
+                    checkpointFile, resumeFrom, checkpointEverySteps);
+        stepConsumer = stepConsumer == null ? checkpointer : stepConsumer.andThen(checkpointer);
+      }
       PropagatedInterplanetaryOrbit orbit =
-          PropagatedInterplanetaryOrbit.fromOpm(opm, endDate, config);
+          resumeFrom == null
+              ? PropagatedInterplanetaryOrbit.fromOpm(
+                  opm, endDate, config, stepConsumer, control, listener)
+              : PropagatedInterplanetaryOrbit.fromCheckpoint(
+                  opm, resumeFrom, endDate, config, stepConsumer, control, listener);
+      OrbitEphemerisMessage oem;
       boolean interpolated = propagationParams.getStep_duration_sec() > 0;
       if (interpolated) {
         Duration step = Duration.fromSeconds(propagationParams.getStep_duration_sec());
@@ -76,11 +287,19 @@ public class StkPropagator implements OrbitPropagator {
                   -1); // getEphemeris requires a negative step for a backwards propagation.
         }
 
-        return orbit.exportOrbitEphemerisMessage(startDate, endDate, step);
+        oem = orbit.exportOrbitEphemerisMessage(startDate, endDate, step);
       } else {
-        return orbit.exportOrbitEphemerisMessage();
+        oem = orbit.exportOrbitEphemerisMessage();
       }
+      succeeded = true;
+      return oem;
     } catch (Exception e) {
+      PropagationAbortedException aborted = PropagationAbortedException.findInCauses(e);
+      if (aborted != null) {
+        log.info(
+            "Propagation aborted for " + propagationIdForLogging + ": " + aborted.getMessage());
+        throw aborted;
+      }
       String cause = e.getCause() == null ? "" : " Caused by: " + e.getCause().toString();
       log.info("Failed to propagate orbit: " + e.toString() + cause);
       e.printStackTrace();
@@ -89,6 +308,8 @@ public class StkPropagator implements OrbitPropagator {
       }
       throw new AdamPropagationException(
           "Failed to propagate orbit for " + propagationIdForLogging, e);
+    } finally {
+      listener.propagationFinished(propagationIdForLogging, succeeded);
     }
   }
 
@@ -101,22 +322,205 @@ public class StkPropagator implements OrbitPropagator {
   /** Load the point from the ephemeris and evaluate it in Earth inertial frame. */
   public PointEvaluator getPointInEarthInertialFrame(StkEphemerisFile originalEphem) {
     ForceModelHelper.loadStandardObjects(); // Load a DE file.
-    Point original = originalEphem.createPoint();
+    return observeInEarthInertialFrame(originalEphem.createPoint());
+  }
+
+  /**
+   * Evaluates the trajectory of an orbit in Earth inertial frame, reusing its interpolator instead
+   * of writing and reading back an ephemeris.
+   */
+  public PointEvaluator getPointInEarthInertialFrame(PropagatedOrbit orbit) {
+    ForceModelHelper.loadStandardObjects(); // Load a DE file.
+    return observeInEarthInertialFrame(orbit.getPoint());
+  }
+
+  private static PointEvaluator observeInEarthInertialFrame(Point original) {
     return GeometryTransformer.observePoint(
         original, CentralBodiesFacet.getFromContext().getEarth().getInertialFrame());
   }
 
   /** Returns the list of original points in the ephemeris in the Earth inertial frame. */
   public List<DatedValue<Cartesian>> transformToEarthFrame(StkEphemerisFile originalEphem) {
-    PointEvaluator observed = getPointInEarthInertialFrame(originalEphem);
-    List<DatedValue<Cartesian>> toEarth = new ArrayList<>();
-    for (JulianDate date : originalEphem.getData().getTimes()) {
+    return transformToEarthFrame(
+        getPointInEarthInertialFrame(originalEphem), originalEphem.getData().getTimes());
+  }
+
+  /** Returns the integrator steps of the orbit in the Earth inertial frame. */
+  public List<DatedValue<Cartesian>> transformToEarthFrame(PropagatedOrbit orbit) {
+    return transformToEarthFrame(getPointInEarthInertialFrame(orbit), orbit.getRawDates());
+  }
+
+  private static List<DatedValue<Cartesian>> transformToEarthFrame(
+      PointEvaluator observed, List<JulianDate> dates) {
+    List<DatedValue<Cartesian>> toEarth = new ArrayList<>(dates.size());
+    for (JulianDate date : dates) {
       Cartesian position = observed.evaluate(date);
       toEarth.add(new DatedValue<>(date, position));
     }
     return toEarth;
   }
 
+  /**
+   * Like {@link #transformToEarthFrame(PropagatedOrbit)}, writing into flat arrays instead of
+   * allocating a date and a vector per point. The points are split into chunks evaluated in
+   * parallel on the evaluation executor, each with its own evaluator.
+   *
+   * @param seconds receives the seconds of each integrator step since the first one; its length
+   *     must be the number of steps.
+   * @param positions receives the x, y and z of each step in turn, in meters; its length must be
+   *     three times the number of steps.
+   */
+  public void transformToEarthFrame(PropagatedOrbit orbit, double[] seconds, double[] positions) {
+    ForceModelHelper.loadStandardObjects(); // Load a DE file.
+    transformToEarthFrame(orbit.getPoint(), orbit.getRawDates(), seconds, positions);
+  }
+
+  /**
+   * Like {@link #transformToEarthFrame(StkEphemerisFile)}, writing into flat arrays as {@link
+   * #transformToEarthFrame(PropagatedOrbit, double[], double[])} does.
+   */
+  public void transformToEarthFrame(
+      StkEphemerisFile originalEphem, double[] seconds, double[] positions) {
+    ForceModelHelper.loadStandardObjects(); // Load a DE file.
+    transformToEarthFrame(
+        originalEphem.createPoint(), originalEphem.getData().getTimes(), seconds, positions);
+  }
+
+  private void transformToEarthFrame(
+      Point original, List<JulianDate> dates, double[] seconds, double[] positions) {
+    int size = dates.size();
+    checkArgument(seconds.length == size, "Expected %s seconds, got %s", size, seconds.length);
+    checkArgument(
+        positions.length == 3 * size, "Expected %s positions, got %s", 3 * size, positions.length);
+    evaluateInEarthFrame(original, dates, seconds, positions, false);
+  }
+
+  /**
+   * Evaluates the point in the Earth inertial frame at the dates, in parallel chunks. Writes the
+   * position, followed by the velocity if requested, of each date in turn.
+   */
+  private void evaluateInEarthFrame(
+      Point original, List<JulianDate> dates, double[] seconds, double[] values, boolean velocity) {
+    int size = dates.size();
+    if (size == 0) {
+      return;
+    }
+    int chunks = Math.max(1, Math.min(parallelism, size / minPointsPerChunk));
+    if (chunks == 1) {
+      evaluateChunk(original, dates, 0, size, seconds, values, velocity);
+      return;
+    }
+    checkState(!evaluationExecutor.isShutdown(), "The executor of this propagator is shut down");
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int from = (int) ((long) size * chunk / chunks);
+      int to = (int) ((long) size * (chunk + 1) / chunks);
+      futures[chunk] =
+          CompletableFuture.runAsync(
+              () -> evaluateChunk(original, dates, from, to, seconds, values, velocity),
+              evaluationExecutor);
+    }
+    try {
+      CompletableFuture.allOf(futures).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Evaluates the dates from index {@code from} to {@code to} like {@link #evaluateInEarthFrame}.
+   * Evaluators are not thread-safe and the calculation context is per thread, so the evaluator is
+   * created here, in the context of the thread that uses it.
+   */
+  private static void evaluateChunk(
+      Point original,
+      List<JulianDate> dates,
+      int from,
+      int to,
+      double[] seconds,
+      double[] values,
+      boolean velocity) {
+    ForceModelHelper.loadStandardObjects(); // Load a DE file.
+    ReferenceFrame earthFrame = CentralBodiesFacet.getFromContext().getEarth().getInertialFrame();
+    PointEvaluator evaluator =
+        GeometryTransformer.observePoint(original, earthFrame, new EvaluatorGroup());
+    int stride = velocity ? 6 : 3;
+    JulianDate start = dates.get(0);
+    for (int i = from; i < to; i++) {
+      JulianDate date = dates.get(i);
+      seconds[i] = start.secondsDifference(date);
+      int offset = stride * i;
+      if (velocity) {
+        Motion1<Cartesian> motion = evaluator.evaluate(date, 1);
+        write(motion.getValue(), values, offset);
+        write(motion.getFirstDerivative(), values, offset + 3);
+      } else {
+        write(evaluator.evaluate(date), values, offset);
+      }
+    }
+  }
+
+  private static void write(Cartesian vector, double[] values, int offset) {
+    values[offset] = vector.getX();
+    values[offset + 1] = vector.getY();
+    values[offset + 2] = vector.getZ();
+  }
+
+  /**
+   * Like {@link #findClosestApproachesToEarth(PropagatedOrbit)}, bracketing the minima by the
+   * orbit's integrator steps instead of re-sampling its interpolator every few hours. The distance
+   * is only refined within steps where the range rate to Earth changes sign.
+   */
+  public List<DatedValue<Double>> findClosestApproachesToEarthAtSteps(PropagatedOrbit orbit) {
+    List<JulianDate> dates = orbit.getRawDates();
+    List<DatedValue<Double>> approaches = new ArrayList<>();
+    for (StepEvent minimum : searchStepsInEarthFrame(orbit).findDistanceMinima()) {
+      approaches.add(new DatedValue<>(dateAt(dates, minimum), minimum.getValue()));
+    }
+    return approaches;
+  }
+
+  /**
+   * Like {@link #findEarthImpacts(PropagatedOrbit, double)}, bracketing the crossings by the
+   * orbit's integrator steps instead of re-sampling its interpolator every few hours.
+   */
+  public List<DatedValue<Double>> findEarthImpactsAtSteps(
+      PropagatedOrbit orbit, double metersToSurfaceThreshold) {
+    StepEventSearch search = searchStepsInEarthFrame(orbit);
+    final Ellipsoid earthSurface = CentralBodiesFacet.getFromContext().getEarth().getShape();
+    List<JulianDate> dates = orbit.getRawDates();
+    List<DatedValue<Double>> impacts = new ArrayList<>();
+    List<StepEvent> crossings =
+        search.findDescendingCrossings(
+            state ->
+                earthSurface.computeApproximateHeight(new Cartesian(state[0], state[1], state[2])),
+            metersToSurfaceThreshold);
+    for (StepEvent crossing : crossings) {
+      impacts.add(new DatedValue<>(dateAt(dates, crossing), crossing.getValue()));
+    }
+    return impacts;
+  }
+
+  private StepEventSearch searchStepsInEarthFrame(PropagatedOrbit orbit) {
+    ForceModelHelper.loadStandardObjects(); // Load a DE file.
+    List<JulianDate> dates = orbit.getRawDates();
+    double[] seconds = new double[dates.size()];
+    double[] states = new double[6 * dates.size()];
+    evaluateInEarthFrame(orbit.getPoint(), dates, seconds, states, true);
+    return new StepEventSearch(seconds, states);
+  }
+
+  /**
+   * Step times count from the first raw date, which is the latest one for a backward propagation,
+   * so events convert back to dates from there.
+   */
+  private static JulianDate dateAt(List<JulianDate> dates, StepEvent event) {
+    return dates.get(0).addSeconds(event.getEpochSeconds());
+  }
+
   /**
    * Collects all minima of the distance to Earth center from the given ephemeris by using numeric
    * extrema search. Note that in case of impact the distance would be less than Earth radius.
@@ -124,10 +528,20 @@ public class StkPropagator implements OrbitPropagator {
    */
   // TODO: expose this
   public List<DatedValue<Double>> findClosestApproachesToEarth(StkEphemerisFile originalEphem) {
-    // Pull out a point and wrap it in a function of date. To get the distance to Earth center,
-    // transform the point into
-    // Earth ICRF and take magnitude of the coordinate vector.
-    PointEvaluator observed = getPointInEarthInertialFrame(originalEphem);
+    return findClosestApproachesToEarth(getPointInEarthInertialFrame(originalEphem));
+  }
+
+  /**
+   * Like {@link #findClosestApproachesToEarth(StkEphemerisFile)}, searching the orbit's own
+   * interpolator instead of an ephemeris file.
+   */
+  public List<DatedValue<Double>> findClosestApproachesToEarth(PropagatedOrbit orbit) {
+    return findClosestApproachesToEarth(getPointInEarthInertialFrame(orbit));
+  }
+
+  private static List<DatedValue<Double>> findClosestApproachesToEarth(PointEvaluator observed) {
+    // Wrap the point in a function of date. To get the distance to Earth center, the point is
+    // observed in Earth ICRF and we take magnitude of the coordinate vector.
     JulianDateSimpleFunction function =
         JulianDateSimpleFunction.of((date) -> observed.evaluate(date).getMagnitude());
 
@@ -184,10 +598,22 @@ public class StkPropagator implements OrbitPropagator {
   // TODO: expose this
   public List<DatedValue<Double>> findEarthImpacts(
       StkEphemerisFile originalEphem, double metersToSurfaceThreshold) {
-    // Pull out a point and wrap it in a function of date. First transform the point to Earth ICRF
-    // and then get height
-    // above the ellipsoid from that.
-    PointEvaluator observed = getPointInEarthInertialFrame(originalEphem);
+    return findEarthImpacts(getPointInEarthInertialFrame(originalEphem), metersToSurfaceThreshold);
+  }
+
+  /**
+   * Like {@link #findEarthImpacts(StkEphemerisFile, double)}, searching the orbit's own
+   * interpolator instead of an ephemeris file.
+   */
+  public List<DatedValue<Double>> findEarthImpacts(
+      PropagatedOrbit orbit, double metersToSurfaceThreshold) {
+    return findEarthImpacts(getPointInEarthInertialFrame(orbit), metersToSurfaceThreshold);
+  }
+
+  private static List<DatedValue<Double>> findEarthImpacts(
+      PointEvaluator observed, double metersToSurfaceThreshold) {
+    // Wrap the point, observed in Earth ICRF, in a function of date and get height above the
+    // ellipsoid from that.
     final Ellipsoid earthSurface = CentralBodiesFacet.getFromContext().getEarth().getShape();
     JulianDateSimpleFunction function =
         JulianDateSimpleFunction.of(
@@ -2,6 +2,8 @@ package org.b612foundation.adam.stk.propagators;
 
 import static agi.foundation.stoppingconditions.StoppingConditionTriggeredBehavior.CONTINUE_TO_NEXT_EVENT;
 import static agi.foundation.stoppingconditions.StoppingConditionTriggeredBehavior.STOP_FUNCTION;
+import static org.b612foundation.adam.astro.AstroConstants.GM_EARTH;
+import static org.b612foundation.adam.astro.AstroConstants.KM_TO_M;
 import static org.b612foundation.adam.astro.AstroConstants.M_TO_KM;
 import static org.b612foundation.adam.stk.StkPropagationHelper.getNumericalPropagator;
 import static org.b612foundation.adam.stk.StkPropagationHelper.initializeCentralBodyForces;
@@ -19,18 +21,18 @@ import agi.foundation.celestial.WorldGeodeticSystem1984;
 import agi.foundation.coordinates.Cartesian;
 import agi.foundation.coordinates.ITimeBasedState;
 import agi.foundation.coordinates.KinematicTransformation;
-import agi.foundation.coordinates.SphericalElement;
 import agi.foundation.coordinates.UnitCartesian;
 import agi.foundation.geometry.GeometryTransformer;
+import agi.foundation.geometry.Point;
 import agi.foundation.geometry.PointEvaluator;
 import agi.foundation.geometry.PointInterpolator;
 import agi.foundation.geometry.ReferenceFrame;
 import agi.foundation.geometry.ReferenceFrameEvaluator;
 import agi.foundation.geometry.Scalar;
-import agi.foundation.geometry.ScalarSphericalElement;
 import agi.foundation.numericalmethods.IntegrationSense;
 import agi.foundation.numericalmethods.InterpolationAlgorithmType;
 import agi.foundation.numericalmethods.NumericalIntegrator;
+import agi.foundation.numericalmethods.RungeKuttaFehlberg78Integrator;
 import agi.foundation.propagators.NumericalPropagatorDefinition;
 import agi.foundation.propagators.PropagationNewtonianPoint;
 import agi.foundation.segmentpropagation.NumericalInitialStateSegment;
@@ -43,7 +45,6 @@ import agi.foundation.stoppingconditions.ConditionCheckCallback;
 import agi.foundation.stoppingconditions.ConstraintSatisfiedCallback;
 import agi.foundation.stoppingconditions.DelegateStoppingCondition;
 import agi.foundation.stoppingconditions.DelegateStoppingConditionConstraint;
-import agi.foundation.stoppingconditions.ScalarStoppingCondition;
 import agi.foundation.stoppingconditions.StopType;
 import agi.foundation.stoppingconditions.StoppingTriggeredCallback;
 import agi.foundation.stoppingconditions.WhenToCheckConstraint;
@@ -51,14 +52,21 @@ import agi.foundation.time.Duration;
 import agi.foundation.time.JulianDate;
 import agi.foundation.time.TimeStandard;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Logger;
+import org.b612foundation.adam.astro.TargetPlane;
 import org.b612foundation.adam.common.DistanceType;
 import org.b612foundation.adam.common.DistanceUnits;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
 import org.b612foundation.adam.datamodel.PropagationParameters;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.opm.OdmCommonHeader;
@@ -68,7 +76,20 @@ import org.b612foundation.adam.opm.OemDataBlock;
 import org.b612foundation.adam.opm.OemMetadata;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.propagators.BodyCloseApproach;
+import org.b612foundation.adam.propagators.BodyEphemeris;
+import org.b612foundation.adam.propagators.DetectedEvent;
+import org.b612foundation.adam.propagators.DistanceGate;
+import org.b612foundation.adam.propagators.EventDetector;
+import org.b612foundation.adam.propagators.EventDetectorEngine;
+import org.b612foundation.adam.propagators.GatedCloseApproachDetector;
 import org.b612foundation.adam.propagators.OrbitEventType;
+import org.b612foundation.adam.propagators.PropagationCheckpoint;
+import org.b612foundation.adam.propagators.PropagationControl;
+import org.b612foundation.adam.propagators.PropagationListener;
+import org.b612foundation.adam.propagators.PropagationListener.Phase;
+import org.b612foundation.adam.propagators.PropagationResumeState;
+import org.b612foundation.adam.propagators.StepConsumer;
 
 /**
  * Sets up and propagates an orbit, given an {@link OrbitParameterMessage}, {@link
@@ -84,6 +105,22 @@ import org.b612foundation.adam.propagators.OrbitEventType;
 final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
   private static final Logger log = Logger.getLogger(StkSegmentPropagatedOrbit.class.getName());
   private static final String POINT_OBJECT_ID = "propagatedOrbit";
+  private static final double GM_EARTH_METERS = GM_EARTH * KM_TO_M * KM_TO_M * KM_TO_M;
+  // Laplace sphere of influence radii, in meters, within which planetary close approaches are
+  // recorded.
+  private static final ImmutableMap<JplDECentralBody, Double> SPHERE_OF_INFLUENCE_METERS =
+      ImmutableMap.<JplDECentralBody, Double>builder()
+          .put(JplDECentralBody.MERCURY, 1.12e8)
+          .put(JplDECentralBody.VENUS, 6.16e8)
+          .put(JplDECentralBody.EARTH, 9.25e8)
+          .put(JplDECentralBody.MOON, 6.61e7)
+          .put(JplDECentralBody.MARS, 5.77e8)
+          .put(JplDECentralBody.JUPITER, 4.82e10)
+          .put(JplDECentralBody.SATURN, 5.48e10)
+          .put(JplDECentralBody.URANUS, 5.18e10)
+          .put(JplDECentralBody.NEPTUNE, 8.66e10)
+          .put(JplDECentralBody.PLUTO, 3.08e9)
+          .build();
 
   private final EvaluatorGroup evaluatorGroup = new EvaluatorGroup();
   private PointInterpolator interpolator;
@@ -91,10 +128,51 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
   private List<double[]> rawValues = new ArrayList<>();
   private boolean stoppedOnCloseApproach;
   private List<EventEphemerisPoint> closeApproaches = new ArrayList<>();
+  private List<EventEphemerisPoint> planetaryCloseApproaches = new ArrayList<>();
+  private List<EventDetector> eventDetectors = Collections.emptyList();
+  private List<DetectedEvent> detectedEvents = new ArrayList<>();
   private Optional<EventEphemerisPoint> impact = Optional.empty();
   private ReferenceFrame referenceFrame;
   private PropagationNewtonianPoint pointObject;
   private EventEphemerisPoint finalState;
+  private PropagatorConfiguration.IntegratorProfile integratorProfile;
+  private PropagationOutputMode outputMode = PropagationOutputMode.FULL_EPHEMERIS;
+  // Date and position/velocity of the last propagated state, kept in every output mode.
+  private JulianDate finalDate;
+  private double[] finalValues;
+  // Receives integrator steps while propagating, if set.
+  private StepConsumer stepConsumer;
+  // Checked after every integrator step, if set.
+  private PropagationControl control;
+  private PropagationListener listener = PropagationListener.NO_OP;
+  private PointEvaluator sunEvaluator;
+  // Initial integrator step in seconds when resuming a propagation. Zero keeps the profile's.
+  private double initialStepSeconds = 0;
+  private boolean increasing = true;
+  // Set when resuming from a checkpoint: the epoch its step times count from, and its steps.
+  private JulianDate timeOrigin;
+  private PropagationCheckpoint restoredCheckpoint;
+  // Close approaches to the Moon and planets found before the restored checkpoint.
+  private List<BodyCloseApproach> restoredPlanetaryApproaches = new ArrayList<>();
+  // Finds close approaches to the Moon and planets while propagating, if enabled.
+  private GatedCloseApproachDetector planetaryDetector;
+  // Events of the event detectors found before the restored checkpoint.
+  private List<DetectedEvent> restoredDetectedEvents = new ArrayList<>();
+  // Runs the event detectors while propagating, if any.
+  private EventDetectorEngine eventEngine;
+
+  /** A detected event as kept in a checkpoint, with its exact time since the time origin. */
+  private static final class CheckpointedEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final EventEphemerisPoint point;
+    final double secondsSinceOrigin;
+
+    CheckpointedEvent(EventEphemerisPoint point, double secondsSinceOrigin) {
+      this.point = point;
+      this.secondsSinceOrigin = secondsSinceOrigin;
+    }
+  }
 
   private StkSegmentPropagatedOrbit() {}
 
@@ -106,6 +184,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
       OrbitParameterMessage opm, PropagatorConfiguration config) {
     ForceModelHelper.loadStandardObjects();
     StkSegmentPropagatedOrbit orbit = new StkSegmentPropagatedOrbit();
+    orbit.integratorProfile = config.getIntegratorProfile();
     orbit.setReferenceFrame(opm.getMetadata());
     orbit.pointObject =
         initializePropagationObjectWithReferenceFrame(opm, orbit.referenceFrame, POINT_OBJECT_ID);
@@ -119,11 +198,110 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
   }
 
   protected MotionEvaluator1<Cartesian> getEvaluator() {
+    Preconditions.checkState(
+        interpolator != null, "Trajectory is not stored in %s output mode", outputMode);
     return interpolator.getEvaluator(evaluatorGroup);
   }
 
   public ReferenceFrame getReferenceFrame() {
-    return interpolator.getReferenceFrame();
+    return pointObject.getIntegrationFrame();
+  }
+
+  @Override
+  public Point getPoint() {
+    Preconditions.checkState(
+        interpolator != null, "Trajectory is not stored in %s output mode", outputMode);
+    return interpolator;
+  }
+
+  /**
+   * Sets a consumer that is handed each integrator step while {@link #propagate} runs. It is called
+   * in addition to whatever the output mode stores, so pair it with {@link
+   * PropagationOutputMode#EVENTS_ONLY} to stream the trajectory without buffering it.
+   */
+  void setStepConsumer(StepConsumer stepConsumer) {
+    this.stepConsumer = stepConsumer;
+  }
+
+  /**
+   * Sets a control that is checked after every integrator step and from the stopping condition
+   * callbacks while {@link #propagate} runs. The control must already be started.
+   */
+  void setControl(PropagationControl control) {
+    this.control = control;
+  }
+
+  /** Sets a listener notified of steps, events and the interpolation and export phases. */
+  void setListener(PropagationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Sets detectors run on every integrator step while {@link #propagate} runs. They may refer to
+   * any {@link JplDECentralBody} by name, evaluated in the propagation frame through this orbit's
+   * evaluator group.
+   */
+  void setEventDetectors(List<EventDetector> eventDetectors) {
+    this.eventDetectors = eventDetectors;
+  }
+
+  /**
+   * Sets the size of the first integrator step, e.g. the last step of the propagation this one
+   * resumes, so the integrator does not ramp up from the profile's initial step again. The size is
+   * clamped to the profile's step size bounds. Zero, the default, keeps the profile's initial step.
+   */
+  void setInitialStepSize(double seconds) {
+    this.initialStepSeconds = seconds;
+  }
+
+  /**
+   * Continues the propagation a checkpoint was taken of. The steps and events of the checkpoint
+   * become part of the results of the next {@link #propagate}, which must start from the last
+   * checkpointed step. Step times reported while propagating count from the given origin.
+   *
+   * @param timeOrigin epoch of the checkpointed propagation.
+   */
+  void restore(JulianDate timeOrigin, PropagationCheckpoint checkpoint) {
+    this.timeOrigin = timeOrigin;
+    this.restoredCheckpoint = checkpoint;
+    for (Serializable event : checkpoint.getEvents()) {
+      if (event instanceof BodyCloseApproach) {
+        // Converted with the other planetary close approaches once the body evaluators exist.
+        restoredPlanetaryApproaches.add((BodyCloseApproach) event);
+        continue;
+      }
+      if (event instanceof DetectedEvent) {
+        restoredDetectedEvents.add((DetectedEvent) event);
+        detectedEvents.add((DetectedEvent) event);
+        continue;
+      }
+      CheckpointedEvent checkpointed = (CheckpointedEvent) event;
+      // The time of an event point is transient, so it is restored from the checkpoint.
+      closeApproaches.add(
+          checkpointed.point.toBuilder()
+              .time(timeOrigin.addSeconds(checkpointed.secondsSinceOrigin))
+              .build());
+    }
+  }
+
+  /**
+   * The close approaches to Earth, the Moon and planets and the events of the event detectors
+   * detected so far, in the form kept by {@link PropagationCheckpoint}.
+   */
+  List<Serializable> getCheckpointEvents(JulianDate timeOrigin) {
+    List<Serializable> events = new ArrayList<>();
+    for (EventEphemerisPoint point : closeApproaches) {
+      events.add(new CheckpointedEvent(point, timeOrigin.secondsDifference(point.getTime())));
+    }
+    events.addAll(restoredPlanetaryApproaches);
+    if (planetaryDetector != null) {
+      events.addAll(planetaryDetector.getCloseApproaches());
+    }
+    events.addAll(restoredDetectedEvents);
+    if (eventEngine != null) {
+      events.addAll(eventEngine.getEvents());
+    }
+    return events;
   }
 
   private void setReferenceFrame(OdmCommonMetadata metadata) {
@@ -140,16 +318,24 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
    *
    * <p>2. Create stopping conditions on impact and close approach.
    *
+   * <p>Unless the output mode is {@link PropagationOutputMode#FULL_EPHEMERIS}, the trajectory is
+   * not copied out of the propagation results and no interpolator is built. Only the events and
+   * the final state are kept.
+   *
    * @see <a href="https://help.agi.com/AGIComponentsJava/html/SegmentPropagationCodeSample.htm">STK
    *     Components Segment Propagation sample</a>
    */
   void propagate(PropagationParameters propagationParams, JulianDate epoch, JulianDate endDate) {
     EarthCentralBody earth = CentralBodiesFacet.getFromContext().getEarth();
+    sunEvaluator =
+        GeometryTransformer.observePoint(
+            CentralBodiesFacet.getFromContext().getSun().getCenterOfMassPoint(), referenceFrame);
 
     SegmentList segmentList = new SegmentList();
     segmentList.setName("Segment list");
 
-    NumericalPropagatorDefinition propagatorDefinition = getNumericalPropagator(pointObject, epoch);
+    NumericalPropagatorDefinition propagatorDefinition =
+        getNumericalPropagator(pointObject, epoch, integratorProfile);
 
     // Initial state
     NumericalInitialStateSegment initialStateSegment = new NumericalInitialStateSegment();
@@ -160,9 +346,16 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     NumericalPropagatorSegment propagateSegment = new NumericalPropagatorSegment();
     propagateSegment.setName("Propagate for duration");
     // Set the integration direction
-    boolean increasing = JulianDate.lessThanOrEqual(epoch, endDate);
+    increasing = JulianDate.lessThanOrEqual(epoch, endDate);
     NumericalIntegrator integrator = propagatorDefinition.getIntegrator();
     integrator.setDirection(increasing ? IntegrationSense.INCREASING : IntegrationSense.DECREASING);
+    if (initialStepSeconds > 0 && integrator instanceof RungeKuttaFehlberg78Integrator) {
+      ((RungeKuttaFehlberg78Integrator) integrator)
+          .setInitialStepSize(
+              Math.max(
+                  integratorProfile.getMinimumStepSize(),
+                  Math.min(integratorProfile.getMaximumStepSize(), initialStepSeconds)));
+    }
     propagatorDefinition.setIntegrator(integrator);
     propagateSegment.setPropagatorDefinition(propagatorDefinition);
     Duration propagationTime = endDate.subtract(epoch);
@@ -183,10 +376,50 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     // Record impacts, some altitude above target body's surface.
     // TODO: user inputs either a radius (dist from coordinate system) OR altitude (distance from
     //   surface) stopping condition
-    ScalarStoppingCondition altitudeStoppingCondition =
-        buildImpactAltitudeFromEarthStoppingCondition(earth, propagationParams);
+    JulianDate origin = timeOrigin == null ? epoch : timeOrigin;
+    DelegateStoppingCondition altitudeStoppingCondition =
+        buildImpactAltitudeFromEarthStoppingCondition(earth, propagationParams, origin);
     propagateSegment.getStoppingConditions().add(altitudeStoppingCondition);
 
+    // Close approaches to the Moon and planets are found from the integrator steps, evaluating
+    // each body only when its sphere of influence is within reach.
+    StepConsumer consumer = null;
+    Map<String, PointEvaluator> planetaryEvaluators = new LinkedHashMap<>();
+    planetaryDetector = null;
+    if (propagationParams.getEnableLogPlanetaryCloseApproaches()) {
+      planetaryDetector = buildPlanetaryCloseApproachDetector(origin, planetaryEvaluators);
+      consumer = planetaryDetector;
+    }
+    eventEngine = null;
+    if (!eventDetectors.isEmpty()) {
+      eventEngine = new EventDetectorEngine(name -> buildBodyEphemeris(name, origin));
+      eventDetectors.forEach(eventEngine::addDetector);
+      consumer = consumer == null ? eventEngine : consumer.andThen(eventEngine);
+    }
+    // The detectors see each step first, so a checkpoint of a step includes the events it found.
+    if (stepConsumer != null) {
+      consumer = consumer == null ? stepConsumer : consumer.andThen(stepConsumer);
+    }
+
+    if (consumer != null || control != null || listener != PropagationListener.NO_OP) {
+      propagateSegment
+          .getStoppingConditions()
+          .add(
+              buildStepObserverStoppingCondition(
+                  origin,
+                  increasing,
+                  Math.abs(origin.secondsDifference(endDate)),
+                  consumer,
+                  control,
+                  listener));
+    }
+    if (eventEngine != null) {
+      // Added after the step observer, so it sees a stop requested by the step just handed over.
+      propagateSegment
+          .getStoppingConditions()
+          .add(buildEventStopStoppingCondition(origin, increasing, eventEngine));
+    }
+
     // Add segments
     segmentList.getSegments().add(initialStateSegment);
     segmentList.getSegments().add(propagateSegment);
@@ -201,26 +434,66 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
             + " to "
             + endDate.toString());
     SegmentListResults segmentResults = (SegmentListResults) propagator.propagate();
+    if (planetaryDetector != null) {
+      addPlanetaryCloseApproaches(planetaryDetector, origin, planetaryEvaluators);
+    }
+    if (eventEngine != null) {
+      detectedEvents.addAll(eventEngine.getEvents());
+      log.fine("Event detectors made " + eventEngine.getEvaluations() + " body evaluations");
+    }
 
-    // Recover the position and velocity. OPM does not include acceleration data, so we won't get
-    // it here.
-    DateMotionCollection1<Cartesian> ephemeris =
-        segmentResults.getDateMotionCollectionOfOverallTrajectory(
-            POINT_OBJECT_ID, pointObject.getIntegrationFrame());
-    interpolator =
-        new PointInterpolator(
-            pointObject.getIntegrationFrame(), InterpolationAlgorithmType.HERMITE, 6, ephemeris);
-    List<ITimeBasedState> ephemOverallTrajectory =
-        segmentResults.getEphemerisForOverallTrajectory();
-    for (ITimeBasedState state : ephemOverallTrajectory) {
-      rawDates.add(state.getCurrentDate());
-      Cartesian pos = (Cartesian) state.getMotion(POINT_OBJECT_ID).getValue();
-      Cartesian vel = (Cartesian) state.getMotion(POINT_OBJECT_ID).getFirstDerivative();
-      rawValues.add(cartesianToArray(pos));
+    outputMode = propagationParams.getOutputMode();
+    ITimeBasedState lastState;
+    if (outputMode == PropagationOutputMode.FULL_EPHEMERIS) {
+      // Recover the position and velocity. OPM does not include acceleration data, so we won't get
+      // it here.
+      DateMotionCollection1<Cartesian> ephemeris =
+          segmentResults.getDateMotionCollectionOfOverallTrajectory(
+              POINT_OBJECT_ID, pointObject.getIntegrationFrame());
+      List<ITimeBasedState> ephemOverallTrajectory =
+          segmentResults.getEphemerisForOverallTrajectory();
+      if (restoredCheckpoint != null) {
+        addRestoredSteps(ephemOverallTrajectory.get(0).getCurrentDate());
+      }
+      for (ITimeBasedState state : ephemOverallTrajectory) {
+        rawDates.add(state.getCurrentDate());
+        rawValues.add(motionToCartesianArray(state.getMotion(POINT_OBJECT_ID)));
+      }
+      if (restoredCheckpoint != null) {
+        // Interpolate over the checkpointed steps too, so exports cover the whole propagation.
+        ephemeris = new DateMotionCollection1<>();
+        for (int i = 0; i < rawDates.size(); i++) {
+          double[] value = rawValues.get(i);
+          ephemeris.add(
+              rawDates.get(i),
+              new Cartesian(value[0], value[1], value[2]),
+              new Cartesian(value[3], value[4], value[5]));
+        }
+      }
+      interpolator =
+          new PointInterpolator(
+              pointObject.getIntegrationFrame(), InterpolationAlgorithmType.HERMITE, 6, ephemeris);
+      lastState = ephemOverallTrajectory.get(ephemOverallTrajectory.size() - 1);
+    } else {
+      lastState = segmentResults.getFinalPropagatedState();
+    }
+    finalDate = lastState.getCurrentDate();
+    finalValues = motionToCartesianArray(lastState.getMotion(POINT_OBJECT_ID));
+    finalState = buildFinalStateDetails(earth, lastState, referenceFrame);
+  }
+
+  /** Adds the checkpointed steps strictly before the given date to the raw trajectory. */
+  private void addRestoredSteps(JulianDate firstPropagatedDate) {
+    for (int i = 0; i < restoredCheckpoint.size(); i++) {
+      JulianDate date = timeOrigin.addSeconds(restoredCheckpoint.getTime(i));
+      if (increasing
+          ? !JulianDate.lessThan(date, firstPropagatedDate)
+          : !JulianDate.greaterThan(date, firstPropagatedDate)) {
+        break;
+      }
+      rawDates.add(date);
+      rawValues.add(restoredCheckpoint.getState(i));
     }
-    finalState =
-        buildFinalStateDetails(
-            earth, ephemOverallTrajectory.get(ephemOverallTrajectory.size() - 1), referenceFrame);
   }
 
   /**
@@ -231,7 +504,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
    * <ul>
    *   <li>Impact: return the impact as the final state. The {@link Optional} impact is set in
    *       {@link #buildImpactAltitudeFromEarthStoppingCondition(EarthCentralBody,
-   *       PropagationParameters)}.
+   *       PropagationParameters, JulianDate)}.
    *   <li>Stopped on a close approach: if user turned on the stopOnCloseApproach flag and the
    *       propagation stopped on a close approach, return the last close approach in the list of
    *       detected intervening close approaches. Close approaches are logged in {@link
@@ -277,6 +550,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
 
   OrbitEphemerisMessage exportOrbitEphemerisMessage(
       JulianDate startDate, JulianDate stopDate, Duration timeStep) {
+    long interpolationStart = System.nanoTime();
     StkEphemerisFile ephemeris = getEphemeris(startDate, stopDate, timeStep);
     StkEphemerisFile.EphemerisTimePosVel posVelData =
         (StkEphemerisFile.EphemerisTimePosVel) ephemeris.getData();
@@ -298,6 +572,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
             velocity.getZ()
           });
     }
+    listener.phaseFinished(Phase.INTERPOLATION, System.nanoTime() - interpolationStart);
 
     return exportOrbitEphemerisMessage(dates, posVel);
   }
@@ -306,13 +581,34 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     return exportOrbitEphemerisMessage(rawDates, rawValues);
   }
 
+  /** Exports an ephemeris with a single line, the final propagated state. */
+  OrbitEphemerisMessage exportFinalStateOrbitEphemerisMessage() {
+    return exportOrbitEphemerisMessage(
+        Collections.singletonList(finalDate), Collections.singletonList(finalValues));
+  }
+
+  /** Exports an ephemeris with a header only, for when only the events are of interest. */
+  OrbitEphemerisMessage exportEventsOnlyOrbitEphemerisMessage() {
+    long exportStart = System.nanoTime();
+    OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
+    oem.setHeader(buildHeader());
+    listener.phaseFinished(Phase.EXPORT, System.nanoTime() - exportStart);
+    return oem;
+  }
+
+  private static OdmCommonHeader buildHeader() {
+    OdmCommonHeader header = new OdmCommonHeader();
+    header.setCreation_date(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    header.setOriginator("ADAM AGI-components based propagator");
+    return header;
+  }
+
   // TODO: Maybe this should be made common
   private OrbitEphemerisMessage exportOrbitEphemerisMessage(
       List<JulianDate> dates, List<double[]> posVelValues) {
+    long exportStart = System.nanoTime();
     int last = validateDatesAndReturnValidSize(dates);
-    OdmCommonHeader header = new OdmCommonHeader();
-    header.setCreation_date(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-    header.setOriginator("ADAM AGI-components based propagator");
+    OdmCommonHeader header = buildHeader();
 
     String startDateString =
         dates.get(0).toDateTime(TimeStandard.getCoordinatedUniversalTime()).toString();
@@ -333,6 +629,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
 
     OemDataBlock block = new OemDataBlock();
     block.getComments().add("ADAM AGI-components based propagation");
+    block.getComments().add("Integrator profile: " + integratorProfile);
     block.setMetadata(metadata);
 
     for (int i = 0; i <= last; i++) {
@@ -352,6 +649,7 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     OrbitEphemerisMessage oem = new OrbitEphemerisMessage();
     oem.setHeader(header);
     oem.addBlock(block);
+    listener.phaseFinished(Phase.EXPORT, System.nanoTime() - exportStart);
 
     return oem;
   }
@@ -396,6 +694,16 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     return closeApproaches;
   }
 
+  /** Close approaches to the Moon and planets, including Earth, ordered by propagation. */
+  public List<EventEphemerisPoint> getPlanetaryCloseApproaches() {
+    return planetaryCloseApproaches;
+  }
+
+  /** Events recorded by the event detectors, ordered by propagation. */
+  public List<DetectedEvent> getDetectedEvents() {
+    return detectedEvents;
+  }
+
   public Optional<EventEphemerisPoint> getImpact() {
     return impact;
   }
@@ -404,6 +712,39 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
     return finalState;
   }
 
+  /**
+   * Returns the final integrator state, from which a propagation to a later end time can continue.
+   * The epoch is rounded to the microsecond.
+   *
+   * @throws IllegalStateException if the propagation stopped on an event rather than at its end
+   *     time, since continuing past an impact or requested stop is meaningless.
+   */
+  PropagationResumeState getResumeState() {
+    Preconditions.checkState(finalState != null, "Orbit has not been propagated");
+    Preconditions.checkState(
+        finalState.getOrbitEventType() == OrbitEventType.MISS,
+        "Propagation stopped on %s and cannot be resumed",
+        finalState.getOrbitEventType());
+    return new PropagationResumeState()
+        .setEpoch(
+            TimeHelper.toIsoFormat(
+                finalDate.toTimeStandard(TimeStandard.getCoordinatedUniversalTime())))
+        .setState(finalValues.clone())
+        .setLastStepSeconds(getLastStepSeconds())
+        .setIncreasing(increasing);
+  }
+
+  /** Size of the last integrator step, from the raw trajectory. Zero if it was not stored. */
+  private double getLastStepSeconds() {
+    for (int i = rawDates.size() - 1; i > 0; i--) {
+      double step = Math.abs(rawDates.get(i - 1).secondsDifference(rawDates.get(i)));
+      if (step > 0) {
+        return step;
+      }
+    }
+    return 0;
+  }
+
   /**
    * Builds a {@link DelegateStoppingCondition} for perigee.
    *
@@ -456,9 +797,9 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
               Cartesian position = (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getValue();
               Cartesian velocity =
                   (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getFirstDerivative();
-              Cartesian earthPos =
-                  earthEvaluator.evaluate(currentState.getCurrentDate(), 2).getValue();
-              Cartesian relPos = position.subtract(earthPos);
+              Motion1<Cartesian> earthPosAndVel =
+                  earthEvaluator.evaluate(currentState.getCurrentDate(), 2);
+              Cartesian relPos = position.subtract(earthPosAndVel.getValue());
               double distanceFromTarget = relPos.getMagnitude();
 
               EventEphemerisPoint closeApproach =
@@ -476,8 +817,12 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
                       .distanceFromTarget(distanceFromTarget)
                       .distanceType(DistanceType.RADIUS)
                       .distanceUnits(DistanceUnits.METERS)
+                      .targetPlane(
+                          mapToTargetPlane(
+                              currentState.getCurrentDate(), position, velocity, earthPosAndVel))
                       .build();
               closeApproaches.add(closeApproach);
+              listener.eventDetected(OrbitEventType.CLOSE_APPROACH);
               if (propagationParams.getStopOnCloseApproach()) {
                 stoppedOnCloseApproach = true;
                 return STOP_FUNCTION;
@@ -527,29 +872,260 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
   }
 
   /**
-   * Builds the impact {@link ScalarStoppingCondition} when object reaches some altitude above
+   * Builds a detector of close approaches to the bodies of {@link #SPHERE_OF_INFLUENCE_METERS},
+   * filling the given map with an evaluator of each body in the propagation frame, by body name.
+   */
+  private GatedCloseApproachDetector buildPlanetaryCloseApproachDetector(
+      JulianDate origin, Map<String, PointEvaluator> evaluators) {
+    GatedCloseApproachDetector detector = new GatedCloseApproachDetector();
+    for (Map.Entry<JplDECentralBody, Double> body : SPHERE_OF_INFLUENCE_METERS.entrySet()) {
+      PointEvaluator evaluator =
+          GeometryTransformer.observePoint(
+              ForceModelHelper.JPL_DE.getCenterOfMassPoint(body.getKey()), referenceFrame);
+      evaluators.put(body.getKey().toString(), evaluator);
+      detector.addBody(
+          body.getKey().toString(), body.getValue(), toBodyEphemeris(evaluator, origin));
+    }
+    return detector;
+  }
+
+  /**
+   * Returns the ephemeris of the named {@link JplDECentralBody} in the propagation frame, or null
+   * if there is no such body. Evaluators share this orbit's evaluator group, so detectors of one
+   * body reuse its computations.
+   */
+  private BodyEphemeris buildBodyEphemeris(String name, JulianDate origin) {
+    JplDECentralBody body;
+    try {
+      body = JplDECentralBody.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return toBodyEphemeris(
+        GeometryTransformer.observePoint(
+            ForceModelHelper.JPL_DE.getCenterOfMassPoint(body), referenceFrame, evaluatorGroup),
+        origin);
+  }
+
+  /** Returns the given evaluator as the ephemeris of a body, by seconds since the origin. */
+  static BodyEphemeris toBodyEphemeris(PointEvaluator evaluator, JulianDate origin) {
+    return (seconds, out) -> {
+      Motion1<Cartesian> motion = evaluator.evaluate(origin.addSeconds(seconds), 1);
+      Cartesian position = motion.getValue();
+      Cartesian velocity = motion.getFirstDerivative();
+      out[0] = position.getX();
+      out[1] = position.getY();
+      out[2] = position.getZ();
+      out[3] = velocity.getX();
+      out[4] = velocity.getY();
+      out[5] = velocity.getZ();
+    };
+  }
+
+  private void addPlanetaryCloseApproaches(
+      GatedCloseApproachDetector detector,
+      JulianDate origin,
+      Map<String, PointEvaluator> evaluators) {
+    List<BodyCloseApproach> approaches = new ArrayList<>(restoredPlanetaryApproaches);
+    approaches.addAll(detector.getCloseApproaches());
+    for (BodyCloseApproach approach : approaches) {
+      JplDECentralBody body = null;
+      for (JplDECentralBody candidate : SPHERE_OF_INFLUENCE_METERS.keySet()) {
+        if (candidate.toString().equals(approach.getBody())) {
+          body = candidate;
+        }
+      }
+      JulianDate date = origin.addSeconds(approach.getEpochSeconds());
+      double[] relativeState = approach.getRelativeState();
+      Cartesian bodyVelocity =
+          evaluators.get(approach.getBody()).evaluate(date, 1).getFirstDerivative();
+      Cartesian bodyHeliocentricVelocity =
+          bodyVelocity.subtract(sunEvaluator.evaluate(date, 1).getFirstDerivative());
+      planetaryCloseApproaches.add(
+          EventEphemerisPoint.builder()
+              .orbitEventType(OrbitEventType.CLOSE_APPROACH)
+              .stopped(false)
+              .time(date)
+              .timeIsoFormat(TimeHelper.toIsoFormat(date))
+              .timeSystem(TimeSystem.UTC)
+              .targetBody(body)
+              .targetBodyCenteredPosition(
+                  new double[] {relativeState[0], relativeState[1], relativeState[2]})
+              .targetBodyCenteredPositionUnits(DistanceUnits.METERS)
+              .targetBodyReferenceFrame(OdmCommonMetadata.ReferenceFrame.ICRF)
+              .velocity(
+                  new double[] {
+                    relativeState[3] + bodyVelocity.getX(),
+                    relativeState[4] + bodyVelocity.getY(),
+                    relativeState[5] + bodyVelocity.getZ()
+                  })
+              .distanceFromTarget(approach.getDistance())
+              .distanceType(DistanceType.RADIUS)
+              .distanceUnits(DistanceUnits.METERS)
+              .targetPlane(
+                  TargetPlane.of(
+                          relativeState,
+                          cartesianToArray(bodyHeliocentricVelocity),
+                          ForceModelHelper.JPL_DE.getGravitationalParameter(body))
+                      .orElse(null))
+              .build());
+    }
+    log.fine(
+        "Planetary close approach detection made "
+            + detector.getEvaluations()
+            + " body evaluations and skipped "
+            + detector.getSkippedEvaluations());
+  }
+
+  /**
+   * Maps an encounter with Earth to its b-plane, from the object's state and Earth's position and
+   * velocity in the propagation frame. Returns null if the object is bound to Earth.
+   */
+  private TargetPlane mapToTargetPlane(
+      JulianDate date, Cartesian position, Cartesian velocity, Motion1<Cartesian> earthPosAndVel) {
+    Cartesian relPos = position.subtract(earthPosAndVel.getValue());
+    Cartesian relVel = velocity.subtract(earthPosAndVel.getFirstDerivative());
+    Cartesian earthHeliocentricVel =
+        earthPosAndVel
+            .getFirstDerivative()
+            .subtract(sunEvaluator.evaluate(date, 2).getFirstDerivative());
+    double[] relativeState =
+        new double[] {
+          relPos.getX(), relPos.getY(), relPos.getZ(), relVel.getX(), relVel.getY(), relVel.getZ()
+        };
+    return TargetPlane.of(relativeState, cartesianToArray(earthHeliocentricVel), GM_EARTH_METERS)
+        .orElse(null);
+  }
+
+  /**
+   * Builds a {@link DelegateStoppingCondition} that never triggers. It only forwards states to the
+   * given consumer, checks the given control and reports progress to the given listener. The
+   * consumer and control may be null. Stopping conditions are checked after every integrator step,
+   * which makes this a hook into the integration loop.
+   *
+   * <p>Conditions are also checked at intermediate times while another stopping condition is being
+   * located, so only states past the last forwarded one, in the direction of propagation, count
+   * as steps. The consumer therefore sees monotonic times. The control is still checked for
+   * cancellation and its deadline at the intermediate times.
+   */
+  private static DelegateStoppingCondition buildStepObserverStoppingCondition(
+      JulianDate epoch,
+      boolean increasing,
+      double totalSeconds,
+      StepConsumer consumer,
+      PropagationControl control,
+      PropagationListener listener) {
+    final double[] state = new double[6];
+    final double[] lastSeconds = {increasing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY};
+    DelegateStoppingCondition stoppingCondition =
+        new DelegateStoppingCondition(
+            ConditionCheckCallback.of(
+                currentState -> {
+                  double seconds = epoch.secondsDifference(currentState.getCurrentDate());
+                  if (!(increasing ? seconds > lastSeconds[0] : seconds < lastSeconds[0])) {
+                    if (control != null) {
+                      control.check();
+                    }
+                    return 1.0;
+                  }
+                  lastSeconds[0] = seconds;
+                  if (control != null) {
+                    control.checkStep();
+                  }
+                  listener.stepTaken(
+                      totalSeconds == 0 ? 1 : Math.min(1, Math.abs(seconds) / totalSeconds));
+                  if (consumer != null) {
+                    Cartesian pos = (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getValue();
+                    Cartesian vel =
+                        (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getFirstDerivative();
+                    state[0] = pos.getX();
+                    state[1] = pos.getY();
+                    state[2] = pos.getZ();
+                    state[3] = vel.getX();
+                    state[4] = vel.getY();
+                    state[5] = vel.getZ();
+                    consumer.accept(seconds, state);
+                  }
+                  // Constant and above the threshold, so this condition never triggers.
+                  return 1.0;
+                }),
+            0.0,
+            1e-7,
+            StopType.THRESHOLD_INCREASING);
+    stoppingCondition.setName("Step observer");
+    return stoppingCondition;
+  }
+
+  /**
+   * Builds a {@link DelegateStoppingCondition} that stops at the time of the engine's {@link
+   * org.b612foundation.adam.propagators.EventAction#STOP} event. Its value is constant until an
+   * event requests a stop, and from then on is the time left until the event, so the stopping
+   * condition locates the event's time.
+   */
+  private static DelegateStoppingCondition buildEventStopStoppingCondition(
+      JulianDate origin, boolean increasing, EventDetectorEngine engine) {
+    DelegateStoppingCondition stoppingCondition =
+        new DelegateStoppingCondition(
+            ConditionCheckCallback.of(
+                currentState -> {
+                  DetectedEvent stop = engine.getStopEvent();
+                  if (stop == null) {
+                    return 1.0;
+                  }
+                  double seconds = origin.secondsDifference(currentState.getCurrentDate());
+                  double left = stop.getEpochSeconds() - seconds;
+                  return increasing ? left : -left;
+                }),
+            0.0,
+            1e-3,
+            StopType.THRESHOLD_DECREASING);
+    stoppingCondition.setName("Event detector stop");
+    return stoppingCondition;
+  }
+
+  /**
+   * Builds the impact {@link DelegateStoppingCondition} when object reaches some altitude above
    * Earth's surface.
    *
    * <p>The actual distance will be provided via {@link
    * PropagationParameters#getStopOnImpactAltitudeMeters()}.
    *
+   * <p>Earth's position is only evaluated when the object could have come within the impact
+   * distance since it was last evaluated, given {@link DistanceGate#DEFAULT_MAXIMUM_CLOSING_SPEED}.
+   * Otherwise the condition returns the lower bound of the distance from the {@link DistanceGate},
+   * which is above the threshold, so impacts are still located exactly while steps far from Earth
+   * cost no ephemeris evaluation.
+   *
    * <p>This might be more accurate than we need, but revisit later. We might just be happy with a
    * certain distance from the Earth.
    *
    * <p>TODO: make this not Earth-specific
    */
-  private ScalarStoppingCondition buildImpactAltitudeFromEarthStoppingCondition(
-      EarthCentralBody earth, PropagationParameters propagationParams) {
-    ScalarSphericalElement distanceFromEarth =
-        new ScalarSphericalElement(
-            pointObject.getIntegrationPoint(),
-            earth.getInternationalCelestialReferenceFrame(),
-            SphericalElement.MAGNITUDE);
-    ScalarStoppingCondition distanceFromEarthStoppingCondition =
-        new ScalarStoppingCondition(
-            /* scalar= */ distanceFromEarth,
-            /* threshold= */ propagationParams.getStopOnImpactAltitudeMeters()
-                + WorldGeodeticSystem1984.SemimajorAxis,
+  private DelegateStoppingCondition buildImpactAltitudeFromEarthStoppingCondition(
+      EarthCentralBody earth, PropagationParameters propagationParams, JulianDate origin) {
+    double threshold =
+        propagationParams.getStopOnImpactAltitudeMeters() + WorldGeodeticSystem1984.SemimajorAxis;
+    DistanceGate gate = new DistanceGate(threshold);
+    PointEvaluator earthPositionEvaluator =
+        GeometryTransformer.observePoint(earth.getCenterOfMassPoint(), referenceFrame);
+    DelegateStoppingCondition distanceFromEarthStoppingCondition =
+        new DelegateStoppingCondition(
+            ConditionCheckCallback.of(
+                currentState -> {
+                  double seconds = origin.secondsDifference(currentState.getCurrentDate());
+                  if (!gate.isOpen(seconds)) {
+                    return gate.minimumDistance(seconds) - threshold;
+                  }
+                  Cartesian position =
+                      (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getValue();
+                  double distance =
+                      position
+                          .subtract(earthPositionEvaluator.evaluate(currentState.getCurrentDate()))
+                          .getMagnitude();
+                  gate.update(seconds, distance, DistanceGate.DEFAULT_MAXIMUM_CLOSING_SPEED);
+                  return distance - threshold;
+                }),
+            /* threshold= */ 0.0,
             /* valueTolerance= */ 1e3 /* 1 km tolerance */,
             /* stopType= */ StopType.ANY_THRESHOLD);
     distanceFromEarthStoppingCondition.setName("Distance from earth stopping condition");
@@ -561,9 +1137,9 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
               Cartesian position = (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getValue();
               Cartesian velocity =
                   (Cartesian) currentState.getMotion(POINT_OBJECT_ID).getFirstDerivative();
-              Cartesian earthPos =
-                  earthEvaluator.evaluate(currentState.getCurrentDate(), 2).getValue();
-              Cartesian relPosInertial = position.subtract(earthPos);
+              Motion1<Cartesian> earthPosAndVel =
+                  earthEvaluator.evaluate(currentState.getCurrentDate(), 2);
+              Cartesian relPosInertial = position.subtract(earthPosAndVel.getValue());
               double distanceFromTarget =
                   relPosInertial.getMagnitude() - WorldGeodeticSystem1984.SemimajorAxis;
               ReferenceFrameEvaluator frameEvaluator =
@@ -588,7 +1164,14 @@ final class StkSegmentPropagatedOrbit extends PropagatedOrbit {
                           .distanceFromTarget(distanceFromTarget)
                           .distanceType(DistanceType.ALTITUDE)
                           .distanceUnits(DistanceUnits.METERS)
+                          .targetPlane(
+                              mapToTargetPlane(
+                                  currentState.getCurrentDate(),
+                                  position,
+                                  velocity,
+                                  earthPosAndVel))
                           .build());
+              listener.eventDetected(OrbitEventType.IMPACT);
               if (propagationParams.getStopOnImpact()) {
                 return STOP_FUNCTION;
               }
@@ -1,5 +1,8 @@
 package org.b612foundation.adam.stk.propagators;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.b612foundation.adam.astro.AstroConstants.M_TO_KM;
 import static org.b612foundation.adam.stk.StkPropagationHelper.parseUtcAsJulian;
 import static org.b612foundation.adam.stk.StkPropagationHelper.validateStartAndEndDate;
 import static org.b612foundation.adam.stk.propagators.StkSegmentPropagatedOrbit.initializeOrbit;
@@ -9,35 +12,156 @@ import agi.foundation.segmentpropagation.SegmentPropagator;
 import agi.foundation.time.Duration;
 import agi.foundation.time.JulianDate;
 import agi.foundation.time.TimeStandard;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import org.b612foundation.adam.common.PropagationHelper;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
 import org.b612foundation.adam.datamodel.PropagationParameters;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.ephemeris.SpkWriter;
 import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
 import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.propagators.DetectedEvent;
+import org.b612foundation.adam.propagators.EventDetector;
+import org.b612foundation.adam.propagators.OrbitEventType;
 import org.b612foundation.adam.propagators.OrbitPropagator;
+import org.b612foundation.adam.propagators.PropagationCheckpoint;
+import org.b612foundation.adam.propagators.PropagationCheckpointer;
+import org.b612foundation.adam.propagators.PropagationControl;
+import org.b612foundation.adam.propagators.PropagationListener;
+import org.b612foundation.adam.propagators.PropagationListener.Phase;
+import org.b612foundation.adam.propagators.PropagationResumeState;
+import org.b612foundation.adam.propagators.StepConsumer;
 import org.b612foundation.stk.StkLicense;
 
 /**
  * An STK propagator that uses {@link SegmentPropagator}.
  *
  * <p>This is a wrapper class that delegates the propagation to {@link StkSegmentPropagatedOrbit}.
+ *
+ * <p>Bidirectional propagations run their leg towards the start time on a leg executor. Unless one
+ * is given to the constructor, each instance owns a single thread for it, which exits when idle
+ * and is shut down by {@link #close()}.
  */
-public final class StkSegmentPropagator implements OrbitPropagator {
+public final class StkSegmentPropagator implements OrbitPropagator, AutoCloseable {
   private static final Logger log = Logger.getLogger(StkSegmentPropagator.class.getName());
 
+  // How long the thread of an owned leg executor waits for another leg before exiting.
+  private static final long LEG_THREAD_KEEP_ALIVE_SECONDS = 60;
+
   private StkSegmentPropagatedOrbit orbit;
   private JulianDate startDate;
   private JulianDate endDate;
   private Duration step;
+  private PropagationListener listener = PropagationListener.NO_OP;
+  // First integrator step of the next propagation, set while extending one. Zero keeps the default.
+  private double initialStepSeconds = 0;
+  private Path checkpointFile;
+  private long checkpointEverySteps;
+  private List<EventDetector> eventDetectors = Collections.emptyList();
+  // Set by bidirectional propagations: the leg from the epoch towards the start time. The orbit
+  // field then holds the leg towards the end time.
+  private StkSegmentPropagatedOrbit towardStart;
+  // Runs the leg towards the start time of bidirectional propagations.
+  private final ExecutorService legExecutor;
+  // Whether close() shuts down the leg executor, which is only the case for the default one.
+  private final boolean ownsLegExecutor;
 
   public StkSegmentPropagator() {
     StkLicense.activate();
+    this.legExecutor = newLegExecutor();
+    this.ownsLegExecutor = true;
   }
 
   public StkSegmentPropagator(String stkLicense) {
     StkLicense.activate(stkLicense);
+    this.legExecutor = newLegExecutor();
+    this.ownsLegExecutor = true;
+  }
+
+  /**
+   * Creates a propagator whose bidirectional propagations run the leg towards the start time on
+   * the given executor, while the calling thread runs the leg towards the end time. The caller
+   * keeps ownership of the executor: {@link #close()} does not shut it down.
+   */
+  public StkSegmentPropagator(ExecutorService legExecutor) {
+    checkArgument(legExecutor != null, "Leg executor must not be null");
+    StkLicense.activate();
+    this.legExecutor = legExecutor;
+    this.ownsLegExecutor = false;
+  }
+
+  /**
+   * Shuts down the leg executor if this propagator created it. Bidirectional propagations then
+   * throw {@link IllegalStateException}; propagations in one direction do not need it and still
+   * run.
+   */
+  @Override
+  public void close() {
+    if (ownsLegExecutor) {
+      legExecutor.shutdown();
+    }
+  }
+
+  /** A single daemon thread that exits when idle, so unclosed propagators leave nothing behind. */
+  private static ExecutorService newLegExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            LEG_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            task -> {
+              Thread thread = new Thread(task, "stk-propagation-leg");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Sets the listener notified of progress, phases and events of subsequent propagations. The two
+   * legs of a bidirectional propagation call it from two threads, one at a time.
+   */
+  public void setListener(PropagationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Makes subsequent propagations write a {@link PropagationCheckpoint} of their steps and close
+   * approaches to the given file every {@code everySteps} integrator steps, so they can be
+   * continued with {@link #resume} if the worker is lost. A null file turns checkpointing off.
+   */
+  public void setCheckpointing(Path file, long everySteps) {
+    this.checkpointFile = file;
+    this.checkpointEverySteps = everySteps;
+  }
+
+  /**
+   * Sets detectors run on every integrator step of subsequent propagations. Their events are
+   * available from {@link #getDetectedEvents()} afterwards, and an {@link
+   * org.b612foundation.adam.propagators.EventAction#STOP} event ends the propagation at its time.
+   * Detectors refer to bodies by their {@link agi.foundation.celestial.JplDECentralBody} name,
+   * e.g. {@code "SUN"} for perihelia.
+   */
+  public void setEventDetectors(List<EventDetector> eventDetectors) {
+    this.eventDetectors = eventDetectors;
   }
 
   @Override
@@ -46,7 +170,104 @@ public final class StkSegmentPropagator implements OrbitPropagator {
       PropagatorConfiguration config,
       String propagationIdForLogging)
       throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, null, null);
+  }
+
+  /**
+   * Propagates like {@link #propagate(PropagationParameters, PropagatorConfiguration, String)},
+   * checking the given control after every integrator step.
+   *
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  @Override
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      PropagationControl control)
+      throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, null, control);
+  }
+
+  /**
+   * Propagates like {@link #propagate(PropagationParameters, PropagatorConfiguration, String)},
+   * handing each integrator step to the given consumer as soon as it is taken. Use {@link
+   * org.b612foundation.adam.datamodel.PropagationOutputMode#EVENTS_ONLY} to keep memory constant
+   * when the consumer writes or reduces the trajectory itself.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   */
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer)
+      throws AdamPropagationException {
+    return propagate(propagationParams, config, propagationIdForLogging, stepConsumer, null);
+  }
+
+  /**
+   * Propagates, streaming integrator steps to the given consumer and checking the given control
+   * after every step.
+   *
+   * @param stepConsumer receives integrator steps during propagation; may be null.
+   * @param control cancellation and budgets for this propagation; may be null.
+   * @throws PropagationAbortedException if the control stopped the propagation.
+   */
+  public OrbitEphemerisMessage propagate(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer,
+      PropagationControl control)
+      throws AdamPropagationException {
+    return run(propagationParams, config, propagationIdForLogging, stepConsumer, control, null);
+  }
+
+  /**
+   * Continues a propagation from the last step of a checkpoint written while propagating with the
+   * same parameters and configuration, instead of starting again from the OPM epoch. The result
+   * covers the whole requested span, including the checkpointed steps and close approaches, and
+   * matches an uninterrupted run to within the integrator tolerances. The integrator restarts at
+   * the checkpointed step, seeded with the last step size, so later steps are not bitwise
+   * identical.
+   *
+   * <p>If checkpointing is on, the resumed propagation keeps writing checkpoints.
+   *
+   * @throws IllegalArgumentException if the checkpoint is empty or was taken of a propagation from
+   *     another epoch.
+   */
+  public OrbitEphemerisMessage resume(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      PropagationCheckpoint checkpoint,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    checkArgument(checkpoint.size() > 0, "Checkpoint has no steps to resume from");
+    String epoch = propagationParams.getOpm().getState_vector().getEpoch();
+    checkArgument(
+        parseUtcAsJulian(epoch).secondsDifference(parseUtcAsJulian(checkpoint.getEpoch())) == 0,
+        "Checkpoint epoch %s does not match OPM epoch %s",
+        checkpoint.getEpoch(),
+        epoch);
+    return run(propagationParams, config, propagationIdForLogging, null, null, checkpoint);
+  }
+
+  private OrbitEphemerisMessage run(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging,
+      StepConsumer stepConsumer,
+      PropagationControl control,
+      PropagationCheckpoint resumeFrom)
+      throws AdamPropagationException {
+    listener.propagationStarted(propagationIdForLogging);
+    boolean succeeded = false;
     try {
+      long setupStart = System.nanoTime();
+      if (control != null) {
+        control.start();
+      }
       startDate =
           TimeHelper.fromIsoFormat(
               propagationParams.getStart_time(), TimeStandard.getCoordinatedUniversalTime());
@@ -59,27 +280,76 @@ public final class StkSegmentPropagator implements OrbitPropagator {
 
       log.info("Starting propagation for " + propagationIdForLogging);
       OrbitParameterMessage opm = propagationParams.getOpm();
-      JulianDate epoch = parseUtcAsJulian(opm.getState_vector().getEpoch());
-
-      orbit = initializeOrbit(opm, config);
-      orbit.propagate(propagationParams, epoch, endDate);
-
-      // Adjust end date to when the propagation actually ended, e.g. when using stopping conditions
-      if (orbit.getRawDates().size() > 0) {
-        endDate = orbit.getRawDates().get(orbit.getRawDates().size() - 1);
+      String epochString = opm.getState_vector().getEpoch();
+      JulianDate epoch = parseUtcAsJulian(epochString);
+      towardStart = null;
+      if (propagationParams.isBidirectional() && isStrictlyBetween(startDate, epoch, endDate)) {
+        checkArgument(
+            stepConsumer == null
+                && resumeFrom == null
+                && checkpointFile == null
+                && eventDetectors.isEmpty(),
+            "Bidirectional propagation does not stream steps, run event detectors or write"
+                + " checkpoints");
+        OrbitEphemerisMessage oem =
+            propagateBidirectional(propagationParams, config, epoch, control);
+        succeeded = true;
+        return oem;
+      }
+      JulianDate integrationEpoch = epoch;
+      if (resumeFrom != null) {
+        integrationEpoch = epoch.addSeconds(resumeFrom.getLastTime());
+        opm =
+            buildResumedOpm(
+                opm,
+                TimeHelper.toIsoFormat(
+                    integrationEpoch.toTimeStandard(TimeStandard.getCoordinatedUniversalTime())),
+                resumeFrom.getLastState());
+        log.info(
+            "Resuming " + propagationIdForLogging + " from checkpointed step " + resumeFrom.size());
       }
 
-      boolean interpolated = propagationParams.getStep_duration_sec() > 0;
-      if (interpolated) {
-        if (JulianDate.greaterThan(startDate, endDate)) {
-          // getEphemeris requires a negative step for a backwards propagation.
-          step = step.multiply(-1);
-        }
-        return orbit.exportOrbitEphemerisMessage(startDate, endDate, step);
+      orbit = initializeOrbit(opm, config);
+      StkSegmentPropagatedOrbit current = orbit;
+      if (resumeFrom != null) {
+        orbit.setInitialStepSize(resumeFrom.getLastStepSeconds());
+        orbit.restore(epoch, resumeFrom);
       } else {
-        return orbit.exportOrbitEphemerisMessageFromRawValues();
+        orbit.setInitialStepSize(initialStepSeconds);
+      }
+      if (checkpointFile != null) {
+        PropagationCheckpointer checkpointer =
+            resumeFrom == null
+                ? new PropagationCheckpointer(
+                    checkpointFile,
+                    epochString,
+                    JulianDate.lessThanOrEqual(epoch, endDate),
+                    checkpointEverySteps)
+                : PropagationCheckpointer.resuming(
+                    checkpointFile, resumeFrom, checkpointEverySteps);
+        checkpointer.setEvents(() -> current.getCheckpointEvents(epoch));
+        stepConsumer = stepConsumer == null ? checkpointer : stepConsumer.andThen(checkpointer);
       }
+      orbit.setStepConsumer(stepConsumer);
+      orbit.setControl(control);
+      orbit.setListener(listener);
+      orbit.setEventDetectors(eventDetectors);
+      listener.phaseFinished(Phase.SETUP, System.nanoTime() - setupStart);
+
+      long integrationStart = System.nanoTime();
+      orbit.propagate(propagationParams, integrationEpoch, endDate);
+      listener.phaseFinished(Phase.INTEGRATION, System.nanoTime() - integrationStart);
+
+      OrbitEphemerisMessage oem = export(propagationParams);
+      succeeded = true;
+      return oem;
     } catch (Exception e) {
+      PropagationAbortedException aborted = PropagationAbortedException.findInCauses(e);
+      if (aborted != null) {
+        log.info(
+            "Propagation aborted for " + propagationIdForLogging + ": " + aborted.getMessage());
+        throw aborted;
+      }
       String cause = e.getCause() == null ? "" : " Caused by: " + e.getCause().toString();
       log.info("Failed to propagate orbit: " + e.toString() + cause);
       e.printStackTrace();
@@ -88,19 +358,424 @@ public final class StkSegmentPropagator implements OrbitPropagator {
       }
       throw new AdamPropagationException(
           "Failed to propagate orbit for " + propagationIdForLogging, e);
+    } finally {
+      listener.propagationFinished(propagationIdForLogging, succeeded);
     }
   }
 
-  /** The close approaches that occurred during propagation. */
+  /**
+   * Integrates from the epoch towards the start time and towards the end time concurrently, and
+   * exports both legs as one ephemeris on the time grid of the parameters, from the start time to
+   * the end time. Each leg builds its own force model on the thread it runs on. If one leg fails,
+   * the other is cancelled through the control.
+   *
+   * <p>{@link PropagationOutputMode#FINAL_STATE_ONLY} exports the final states of both legs, at the
+   * start and end times, and {@link PropagationOutputMode#EVENTS_ONLY} a header only; the events of
+   * both legs are available from {@link #getCloseApproaches()}.
+   */
+  private OrbitEphemerisMessage propagateBidirectional(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      JulianDate epoch,
+      PropagationControl control) {
+    checkState(!legExecutor.isShutdown(), "The leg executor of this propagator is shut down");
+    PropagationControl legControl = control;
+    if (legControl == null) {
+      legControl = new PropagationControl();
+      legControl.start();
+    }
+    PropagationControl sharedControl = legControl;
+    OrbitParameterMessage opm = propagationParams.getOpm();
+    PropagationListener legListener = new SynchronizedListener(listener);
+
+    long integrationStart = System.nanoTime();
+    CompletableFuture<StkSegmentPropagatedOrbit> startLeg =
+        CompletableFuture.supplyAsync(
+            () ->
+                propagateLeg(
+                    propagationParams, config, opm, epoch, startDate, sharedControl, legListener),
+            legExecutor);
+    startLeg.whenComplete(
+        (leg, failure) -> {
+          if (failure != null) {
+            sharedControl.cancel();
+          }
+        });
+    StkSegmentPropagatedOrbit endLeg;
+    try {
+      endLeg =
+          propagateLeg(
+              propagationParams, config, opm, epoch, endDate, sharedControl, legListener);
+    } catch (RuntimeException e) {
+      sharedControl.cancel();
+      try {
+        startLeg.join();
+      } catch (CompletionException startLegFailure) {
+        if (PropagationAbortedException.findInCauses(e) != null) {
+          // This leg was cancelled because the other one failed first.
+          throw startLegFailure;
+        }
+      }
+      throw e;
+    }
+    towardStart = startLeg.join();
+    orbit = endLeg;
+    listener.phaseFinished(Phase.INTEGRATION, System.nanoTime() - integrationStart);
+
+    switch (propagationParams.getOutputMode()) {
+      case FINAL_STATE_ONLY:
+        return PropagationHelper.appendEphemeris(
+            towardStart.exportFinalStateOrbitEphemerisMessage(),
+            orbit.exportFinalStateOrbitEphemerisMessage());
+      case EVENTS_ONLY:
+        return orbit.exportEventsOnlyOrbitEphemerisMessage();
+      default:
+        break;
+    }
+
+    // Either leg may have ended early on a stopping condition.
+    JulianDate firstDate = lastPropagatedDate(towardStart, startDate);
+    endDate = lastPropagatedDate(orbit, endDate);
+    if (propagationParams.getStep_duration_sec() <= 0) {
+      OrbitEphemerisMessage first = towardStart.exportOrbitEphemerisMessageFromRawValues();
+      return PropagationHelper.appendEphemeris(
+          PropagationHelper.reverseEphemeris(first),
+          orbit.exportOrbitEphemerisMessageFromRawValues());
+    }
+    boolean increasing = JulianDate.lessThanOrEqual(startDate, endDate);
+    Duration signedStep = increasing ? step : step.multiply(-1);
+    OrbitEphemerisMessage first =
+        towardStart.exportOrbitEphemerisMessage(firstDate, epoch, signedStep);
+    JulianDate secondStart = firstExportDate(propagationParams, epoch, endDate, increasing);
+    return PropagationHelper.appendEphemeris(
+        first, orbit.exportOrbitEphemerisMessage(secondStart, endDate, signedStep));
+  }
+
+  /** Builds an orbit from the OPM and integrates it from the epoch to the given date. */
+  private StkSegmentPropagatedOrbit propagateLeg(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      OrbitParameterMessage opm,
+      JulianDate epoch,
+      JulianDate legEndDate,
+      PropagationControl control,
+      PropagationListener legListener) {
+    StkSegmentPropagatedOrbit leg = initializeOrbit(opm, config);
+    leg.setControl(control);
+    leg.setListener(legListener);
+    leg.propagate(propagationParams, epoch, legEndDate);
+    return leg;
+  }
+
+  private static JulianDate lastPropagatedDate(
+      StkSegmentPropagatedOrbit leg, JulianDate requested) {
+    List<JulianDate> dates = leg.getRawDates();
+    return dates.isEmpty() ? requested : dates.get(dates.size() - 1);
+  }
+
+  private static boolean isStrictlyBetween(JulianDate start, JulianDate date, JulianDate end) {
+    return JulianDate.lessThan(start, date) && JulianDate.lessThan(date, end)
+        || JulianDate.greaterThan(start, date) && JulianDate.greaterThan(date, end);
+  }
+
+  /**
+   * Extends a previous propagation to the end time of the given parameters, integrating only the
+   * new span from the resume state of the previous run rather than again from the OPM epoch.
+   *
+   * <p>The parameters are those of the previous run with a later end time (earlier, for backwards
+   * propagations). In {@link PropagationOutputMode#FULL_EPHEMERIS} mode the new lines, on the same
+   * time grid, are appended to {@code previous} in place and it is returned; in the other modes
+   * only the output of the new span is returned. Close approaches and
+   * the final state afterwards refer to the new span only, and {@link #getResumeState()} allows
+   * extending again.
+   *
+   * @param previous ephemeris of the previous run.
+   * @param resumeState {@link #getResumeState()} of the previous run.
+   * @throws IllegalArgumentException if the end time does not extend the previous run.
+   */
+  public OrbitEphemerisMessage extend(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      OrbitEphemerisMessage previous,
+      PropagationResumeState resumeState,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    JulianDate resumeEpoch = parseUtcAsJulian(resumeState.getEpoch());
+    JulianDate newEndDate =
+        TimeHelper.fromIsoFormat(
+            propagationParams.getEnd_time(), TimeStandard.getCoordinatedUniversalTime());
+    double remainingSeconds = resumeEpoch.secondsDifference(newEndDate);
+    checkArgument(
+        remainingSeconds != 0 && (remainingSeconds > 0) == resumeState.isIncreasing(),
+        "End time %s does not extend the propagation that ended at %s",
+        propagationParams.getEnd_time(),
+        resumeState.getEpoch());
+
+    PropagationParameters resumed = propagationParams.deepCopy();
+    resumed.setOpm(
+        buildResumedOpm(
+            propagationParams.getOpm(), resumeState.getEpoch(), resumeState.getState()));
+    JulianDate exportStart =
+        firstExportDate(propagationParams, resumeEpoch, newEndDate, resumeState.isIncreasing());
+    resumed.setStart_time(TimeHelper.toIsoFormat(exportStart));
+
+    log.info(
+        "Extending propagation " + propagationIdForLogging + " from " + resumeState.getEpoch());
+    OrbitEphemerisMessage extension;
+    initialStepSeconds = resumeState.getLastStepSeconds();
+    try {
+      extension = propagate(resumed, config, propagationIdForLogging);
+    } finally {
+      initialStepSeconds = 0;
+    }
+    if (propagationParams.getOutputMode() != PropagationOutputMode.FULL_EPHEMERIS) {
+      return extension;
+    }
+    return PropagationHelper.appendEphemeris(previous, extension);
+  }
+
+  /**
+   * Returns the state the last propagation ended in, to pass to {@link #extend}.
+   *
+   * @throws IllegalStateException if the last propagation stopped on an impact or close approach.
+   */
+  public PropagationResumeState getResumeState() {
+    return orbit.getResumeState();
+  }
+
+  /**
+   * Copies the OPM, replacing its state with the given Cartesian state, in m and m/s, at the given
+   * ISO formatted UTC epoch.
+   */
+  private static OrbitParameterMessage buildResumedOpm(
+      OrbitParameterMessage opm, String epoch, double[] state) {
+    OrbitParameterMessage resumed = opm.deepCopy();
+    resumed.setState_vector(
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(state[0] * M_TO_KM)
+            .setY(state[1] * M_TO_KM)
+            .setZ(state[2] * M_TO_KM)
+            .setX_dot(state[3] * M_TO_KM)
+            .setY_dot(state[4] * M_TO_KM)
+            .setZ_dot(state[5] * M_TO_KM));
+    // Elements, covariances and maneuvers describe the original epoch, not the resume state.
+    resumed.setKeplerian(null);
+    resumed.setCartesianCovariance(null);
+    resumed.setKeplerianCovariance(null);
+    resumed.setManeuvers(new ArrayList<>());
+    return resumed;
+  }
+
+  /**
+   * Returns the first date of the original time grid after the resume epoch, or the resume epoch
+   * itself for raw output, so the extension continues the previous ephemeris without overlap.
+   */
+  private static JulianDate firstExportDate(
+      PropagationParameters propagationParams,
+      JulianDate resumeEpoch,
+      JulianDate endDate,
+      boolean increasing) {
+    long stepSeconds = propagationParams.getStep_duration_sec();
+    if (stepSeconds <= 0) {
+      return resumeEpoch;
+    }
+    JulianDate startDate =
+        TimeHelper.fromIsoFormat(
+            propagationParams.getStart_time(), TimeStandard.getCoordinatedUniversalTime());
+    double elapsedSeconds = Math.abs(startDate.secondsDifference(resumeEpoch));
+    long steps = (long) Math.floor(elapsedSeconds / stepSeconds) + 1;
+    double offsetSeconds = steps * stepSeconds;
+    if (offsetSeconds > Math.abs(startDate.secondsDifference(endDate))) {
+      // The extension is shorter than a step, so only its end is exported.
+      return endDate;
+    }
+    return startDate.addSeconds(increasing ? offsetSeconds : -offsetSeconds);
+  }
+
+  /** Exports the propagated orbit according to the output mode and step of the parameters. */
+  private OrbitEphemerisMessage export(PropagationParameters propagationParams) {
+    switch (propagationParams.getOutputMode()) {
+      case FINAL_STATE_ONLY:
+        return orbit.exportFinalStateOrbitEphemerisMessage();
+      case EVENTS_ONLY:
+        return orbit.exportEventsOnlyOrbitEphemerisMessage();
+      default:
+        break;
+    }
+
+    // Adjust end date to when the propagation actually ended, e.g. when using stopping conditions
+    if (orbit.getRawDates().size() > 0) {
+      endDate = orbit.getRawDates().get(orbit.getRawDates().size() - 1);
+    }
+
+    boolean interpolated = propagationParams.getStep_duration_sec() > 0;
+    if (interpolated) {
+      if (JulianDate.greaterThan(startDate, endDate)) {
+        // getEphemeris requires a negative step for a backwards propagation.
+        step = step.multiply(-1);
+      }
+      return orbit.exportOrbitEphemerisMessage(startDate, endDate, step);
+    } else {
+      return orbit.exportOrbitEphemerisMessageFromRawValues();
+    }
+  }
+
+  /**
+   * The close approaches that occurred during propagation, in the order of the requested time span
+   * for bidirectional propagations.
+   */
   public List<EventEphemerisPoint> getCloseApproaches() {
-    return orbit.getCloseApproaches();
+    if (towardStart == null) {
+      return orbit.getCloseApproaches();
+    }
+    List<EventEphemerisPoint> closeApproaches = new ArrayList<>(towardStart.getCloseApproaches());
+    Collections.reverse(closeApproaches);
+    closeApproaches.addAll(orbit.getCloseApproaches());
+    return closeApproaches;
+  }
+
+  /**
+   * Close approaches to the Moon and planets, when enabled by {@link
+   * PropagationParameters#getEnableLogPlanetaryCloseApproaches()}, in time order, including those
+   * restored from the checkpoint of a resumed propagation.
+   */
+  public List<EventEphemerisPoint> getPlanetaryCloseApproaches() {
+    if (towardStart == null) {
+      return orbit.getPlanetaryCloseApproaches();
+    }
+    List<EventEphemerisPoint> closeApproaches =
+        new ArrayList<>(towardStart.getPlanetaryCloseApproaches());
+    Collections.reverse(closeApproaches);
+    closeApproaches.addAll(orbit.getPlanetaryCloseApproaches());
+    return closeApproaches;
+  }
+
+  /**
+   * Events recorded by the {@link #setEventDetectors event detectors} in the last propagation, with
+   * times in seconds since the OPM epoch, including those restored from the checkpoint of a resumed
+   * propagation.
+   */
+  public List<DetectedEvent> getDetectedEvents() {
+    return orbit.getDetectedEvents();
+  }
+
+  /**
+   * Writes the integrator steps of the last propagation to an SPK kernel as type 13 segments, one
+   * per propagated leg in time order, so the trajectory is interpolated from the steps themselves
+   * rather than refitted. Requires {@link PropagationOutputMode#FULL_EPHEMERIS} output.
+   *
+   * @param target NAIF code of the propagated object.
+   * @param center NAIF code of the center of the OPM, e.g. 10 for the Sun.
+   * @param frame NAIF code of the frame of the OPM, e.g. {@link SpkWriter#J2000}.
+   */
+  public void writeSpk(SpkWriter writer, int target, int center, int frame, String name)
+      throws IOException {
+    checkState(
+        orbit != null && !orbit.getRawDates().isEmpty(),
+        "Writing an SPK requires a FULL_EPHEMERIS propagation");
+    if (towardStart != null) {
+      writeSpkSegment(writer, towardStart, target, center, frame, name);
+    }
+    writeSpkSegment(writer, orbit, target, center, frame, name);
+  }
+
+  private static void writeSpkSegment(
+      SpkWriter writer,
+      StkSegmentPropagatedOrbit leg,
+      int target,
+      int center,
+      int frame,
+      String name)
+      throws IOException {
+    List<JulianDate> dates = leg.getRawDates();
+    List<double[]> values = leg.getRawValues();
+    TimeStandard tdb = TimeStandard.getBarycentricDynamicalTime();
+    JulianDate j2000 = new JulianDate(2451545, 0.0, tdb);
+    boolean backwards =
+        dates.size() > 1 && JulianDate.greaterThan(dates.get(0), dates.get(dates.size() - 1));
+    double[] epochs = new double[dates.size()];
+    double[] states = new double[6 * dates.size()];
+    int count = 0;
+    for (int i = 0; i < dates.size(); i++) {
+      int index = backwards ? dates.size() - 1 - i : i;
+      double et = j2000.secondsDifference(dates.get(index).toTimeStandard(tdb));
+      if (count > 0 && et <= epochs[count - 1]) {
+        // The step at a leg or segment boundary is recorded twice.
+        continue;
+      }
+      epochs[count] = et;
+      double[] value = values.get(index);
+      for (int j = 0; j < 6; j++) {
+        states[6 * count + j] = value[j] * M_TO_KM;
+      }
+      count++;
+    }
+    if (count < 2) {
+      return;
+    }
+    int degree = Math.min(SpkWriter.DEFAULT_DEGREE, 2 * count - 1);
+    writer.writeSegment(
+        target,
+        center,
+        frame,
+        Arrays.copyOf(epochs, count),
+        Arrays.copyOf(states, 6 * count),
+        degree,
+        name);
   }
 
+  /**
+   * The state the last propagation ended in. For bidirectional propagations this is the end of the
+   * leg towards the end time; {@link #getStartFinalState()} is the end of the other leg.
+   */
   public EventEphemerisPoint getFinalState() {
     return orbit.getFinalState();
   }
 
+  /**
+   * The state the leg towards the start time of the last propagation ended in, if it was
+   * bidirectional, or null otherwise.
+   */
+  public EventEphemerisPoint getStartFinalState() {
+    return towardStart == null ? null : towardStart.getFinalState();
+  }
+
   public ReferenceFrame getReferenceFrame() {
     return orbit.getReferenceFrame();
   }
+
+  /** Passes callbacks from the legs of a bidirectional propagation on one at a time. */
+  private static final class SynchronizedListener implements PropagationListener {
+    private final PropagationListener delegate;
+
+    SynchronizedListener(PropagationListener delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void propagationStarted(String propagationId) {
+      delegate.propagationStarted(propagationId);
+    }
+
+    @Override
+    public synchronized void propagationFinished(String propagationId, boolean succeeded) {
+      delegate.propagationFinished(propagationId, succeeded);
+    }
+
+    @Override
+    public synchronized void phaseFinished(Phase phase, long elapsedNanos) {
+      delegate.phaseFinished(phase, elapsedNanos);
+    }
+
+    @Override
+    public synchronized void stepTaken(double fractionComplete) {
+      delegate.stepTaken(fractionComplete);
+    }
+
+    @Override
+    public synchronized void eventDetected(OrbitEventType eventType) {
+      delegate.eventDetected(eventType);
+    }
+  }
 }
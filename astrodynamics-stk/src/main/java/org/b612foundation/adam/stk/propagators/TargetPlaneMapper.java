@@ -0,0 +1,113 @@
+package org.b612foundation.adam.stk.propagators;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+import org.b612foundation.adam.astro.TargetPlane;
+import org.b612foundation.adam.batches.MonteCarloGenerator;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
+import org.b612foundation.adam.propagators.OrbitEventType;
+
+/**
+ * Maps the Monte Carlo draws of a propagation to Earth's b-plane in one pass. Each draw is
+ * propagated for events only, and its deepest encounter, the impact if there is one and the closest
+ * close approach otherwise, is kept along with its {@link TargetPlane}. The scatter of the
+ * encounters on the plane outlines the impact corridor without exporting any ephemeris.
+ */
+public class TargetPlaneMapper {
+  private static final Logger log = Logger.getLogger(TargetPlaneMapper.class.getName());
+
+  private final StkSegmentPropagator propagator;
+
+  public TargetPlaneMapper() {
+    this(new StkSegmentPropagator());
+  }
+
+  public TargetPlaneMapper(StkSegmentPropagator propagator) {
+    this.propagator = propagator;
+  }
+
+  /**
+   * Generates the Monte Carlo draws of the parameters and maps each draw's deepest encounter.
+   *
+   * @return one point per draw, in the order of the draws: the impact, the closest close approach,
+   *     or the final state of draws that neither impacted nor came within the close approach
+   *     radius. Points without a b-plane have a null {@link EventEphemerisPoint#getTargetPlane()}.
+   */
+  public List<EventEphemerisPoint> map(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    checkArgument(
+        MonteCarloGenerator.isMonteCarlo(propagationParams),
+        "Propagation type should be MONTE_CARLO");
+    return map(
+        MonteCarloGenerator.generateMonteCarloDraws(propagationParams),
+        propagationParams,
+        config,
+        propagationIdForLogging);
+  }
+
+  /** Maps the deepest encounter of each of the given draws, propagated with the parameters. */
+  public List<EventEphemerisPoint> map(
+      Collection<OrbitParameterMessage> draws,
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    List<EventEphemerisPoint> encounters = new ArrayList<>(draws.size());
+    int index = 0;
+    for (OrbitParameterMessage draw : draws) {
+      PropagationParameters drawParams =
+          propagationParams
+              .deepCopy()
+              .setOpm(draw)
+              .setOutputMode(PropagationOutputMode.EVENTS_ONLY)
+              .setEnableLogCloseApproaches(true)
+              .setStopOnImpact(true);
+      propagator.propagate(drawParams, config, propagationIdForLogging + "-draw-" + index++);
+      encounters.add(deepestEncounter(propagator.getFinalState(), propagator.getCloseApproaches()));
+    }
+    log.info(
+        "Mapped "
+            + draws.size()
+            + " draws of "
+            + propagationIdForLogging
+            + ", impact fraction "
+            + impactFraction(encounters));
+    return encounters;
+  }
+
+  /** Fraction of the mapped draws that impacted. */
+  public static double impactFraction(List<EventEphemerisPoint> encounters) {
+    if (encounters.isEmpty()) {
+      return 0;
+    }
+    long impacts =
+        encounters.stream().filter(e -> e.getOrbitEventType() == OrbitEventType.IMPACT).count();
+    return (double) impacts / encounters.size();
+  }
+
+  private static EventEphemerisPoint deepestEncounter(
+      EventEphemerisPoint finalState, List<EventEphemerisPoint> closeApproaches) {
+    if (finalState.getOrbitEventType() == OrbitEventType.IMPACT) {
+      return finalState;
+    }
+    EventEphemerisPoint closest = finalState;
+    for (EventEphemerisPoint closeApproach : closeApproaches) {
+      if (closest.getOrbitEventType() != OrbitEventType.CLOSE_APPROACH
+          || closeApproach.getDistanceFromTarget() < closest.getDistanceFromTarget()) {
+        closest = closeApproach;
+      }
+    }
+    return closest;
+  }
+}
@@ -0,0 +1,189 @@
+package org.b612foundation.adam.stk.screening;
+
+import static org.b612foundation.adam.astro.AstroConstants.AU_TO_METERS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorProfile;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.propagators.OrbitEventType;
+import org.b612foundation.adam.screening.GeometricScreen;
+import org.b612foundation.adam.screening.ScreeningCounters;
+import org.b612foundation.adam.screening.ScreeningStage;
+import org.b612foundation.adam.stk.propagators.EventEphemerisPoint;
+import org.b612foundation.adam.stk.propagators.StkSegmentPropagator;
+
+/**
+ * Routes propagation requests through stages of increasing cost, so that full-fidelity integration
+ * is only spent on objects that may come close to Earth:
+ *
+ * <ol>
+ *   <li>{@link ScreeningStage#GEOMETRIC}: a {@link GeometricScreen} of the MOID and two-body
+ *       closest approach.
+ *   <li>{@link ScreeningStage#COARSE}: a {@link StkSegmentPropagator} run with the {@link
+ *       IntegratorProfile#SCREENING} profile that keeps only events. The object passes if it comes
+ *       within the coarse close approach radius of Earth or impacts.
+ *   <li>{@link ScreeningStage#FULL}: a {@link StkSegmentPropagator} run with the requested
+ *       configuration, logging close approaches and stopping on impact.
+ * </ol>
+ *
+ * <p>Per-stage throughput and rejections are recorded in a {@link ScreeningCounters}. Propagators
+ * keep the state of their last run, so a pipeline must not screen several objects at once; use one
+ * pipeline per worker, sharing the counters.
+ */
+public class StkScreeningPipeline {
+  private static final Logger log = Logger.getLogger(StkScreeningPipeline.class.getName());
+
+  private final GeometricScreen geometricScreen;
+  private final ScreeningCounters counters;
+  private final StkSegmentPropagator coarsePropagator;
+  private final StkSegmentPropagator fullPropagator;
+  private double coarseCloseApproachRadiusMeters = 0.05 * AU_TO_METERS;
+
+  public StkScreeningPipeline(GeometricScreen geometricScreen, ScreeningCounters counters) {
+    this(geometricScreen, counters, new StkSegmentPropagator(), new StkSegmentPropagator());
+  }
+
+  StkScreeningPipeline(
+      GeometricScreen geometricScreen,
+      ScreeningCounters counters,
+      StkSegmentPropagator coarsePropagator,
+      StkSegmentPropagator fullPropagator) {
+    this.geometricScreen = geometricScreen;
+    this.counters = counters;
+    this.coarsePropagator = coarsePropagator;
+    this.fullPropagator = fullPropagator;
+  }
+
+  public double getCoarseCloseApproachRadiusMeters() {
+    return coarseCloseApproachRadiusMeters;
+  }
+
+  /**
+   * Objects that the coarse integration does not bring this close to Earth are rejected. Defaults
+   * to 0.05 AU, generous enough to absorb the errors of the coarse tolerances.
+   */
+  public StkScreeningPipeline setCoarseCloseApproachRadiusMeters(double radiusMeters) {
+    this.coarseCloseApproachRadiusMeters = radiusMeters;
+    return this;
+  }
+
+  public ScreeningCounters getCounters() {
+    return counters;
+  }
+
+  /**
+   * Screens one object, running each stage only if the previous one passed it.
+   *
+   * @param propagationParams parameters of the full-fidelity propagation. Close approach logging
+   *     and stopping on impact are turned on for it.
+   * @param config force model of the full-fidelity propagation; the coarse stage uses a copy with
+   *     the screening integrator profile.
+   */
+  public Result screen(
+      PropagationParameters propagationParams,
+      PropagatorConfiguration config,
+      String propagationIdForLogging)
+      throws AdamPropagationException {
+    long start = System.nanoTime();
+    boolean passed = geometricScreen.passes(propagationParams);
+    counters.record(ScreeningStage.GEOMETRIC, passed, System.nanoTime() - start);
+    if (!passed) {
+      return Result.rejectedAt(ScreeningStage.GEOMETRIC);
+    }
+
+    PropagationParameters coarseParams =
+        propagationParams
+            .deepCopy()
+            .setOutputMode(PropagationOutputMode.EVENTS_ONLY)
+            .setEnableLogCloseApproaches(true)
+            .setCloseApproachRadiusFromTargetMeters(coarseCloseApproachRadiusMeters)
+            .setStopOnCloseApproach(false)
+            .setStopOnImpact(true);
+    PropagatorConfiguration coarseConfig =
+        config.deepCopy().setIntegratorProfile(IntegratorProfile.SCREENING);
+    start = System.nanoTime();
+    // A failed propagation counts as a rejection.
+    passed = false;
+    try {
+      coarsePropagator.propagate(coarseParams, coarseConfig, propagationIdForLogging);
+      passed =
+          !coarsePropagator.getCloseApproaches().isEmpty()
+              || coarsePropagator.getFinalState().getOrbitEventType() == OrbitEventType.IMPACT;
+    } finally {
+      counters.record(ScreeningStage.COARSE, passed, System.nanoTime() - start);
+    }
+    if (!passed) {
+      return Result.rejectedAt(ScreeningStage.COARSE);
+    }
+
+    log.info("Running full-fidelity propagation for screened object " + propagationIdForLogging);
+    PropagationParameters fullParams =
+        propagationParams.deepCopy().setEnableLogCloseApproaches(true).setStopOnImpact(true);
+    start = System.nanoTime();
+    OrbitEphemerisMessage ephemeris = null;
+    try {
+      ephemeris = fullPropagator.propagate(fullParams, config, propagationIdForLogging);
+    } finally {
+      counters.record(ScreeningStage.FULL, ephemeris != null, System.nanoTime() - start);
+    }
+    return new Result(
+        null,
+        ephemeris,
+        new ArrayList<>(fullPropagator.getCloseApproaches()),
+        fullPropagator.getFinalState());
+  }
+
+  /** Outcome of screening one object. */
+  public static final class Result {
+    private final ScreeningStage rejectedAt;
+    private final OrbitEphemerisMessage ephemeris;
+    private final List<EventEphemerisPoint> closeApproaches;
+    private final EventEphemerisPoint finalState;
+
+    private Result(
+        ScreeningStage rejectedAt,
+        OrbitEphemerisMessage ephemeris,
+        List<EventEphemerisPoint> closeApproaches,
+        EventEphemerisPoint finalState) {
+      this.rejectedAt = rejectedAt;
+      this.ephemeris = ephemeris;
+      this.closeApproaches = closeApproaches;
+      this.finalState = finalState;
+    }
+
+    private static Result rejectedAt(ScreeningStage stage) {
+      return new Result(stage, null, Collections.emptyList(), null);
+    }
+
+    public boolean isRejected() {
+      return rejectedAt != null;
+    }
+
+    /** The stage that rejected the object, or null if it went through the full propagation. */
+    public ScreeningStage getRejectedAt() {
+      return rejectedAt;
+    }
+
+    /** Ephemeris of the full-fidelity propagation, or null if the object was rejected. */
+    public OrbitEphemerisMessage getEphemeris() {
+      return ephemeris;
+    }
+
+    /** Close approaches of the full-fidelity propagation; empty if the object was rejected. */
+    public List<EventEphemerisPoint> getCloseApproaches() {
+      return closeApproaches;
+    }
+
+    /** Final state of the full-fidelity propagation, or null if the object was rejected. */
+    public EventEphemerisPoint getFinalState() {
+      return finalState;
+    }
+  }
+}
@@ -17,6 +17,7 @@ import agi.foundation.time.TimeStandard;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration.PlanetGravityMode;
 import org.b612foundation.adam.opm.OdmCommonHeader;
@@ -26,6 +27,7 @@ import org.b612foundation.adam.opm.OdmCommonMetadata.ReferenceFrame;
 import org.b612foundation.adam.opm.OdmCommonMetadata.TimeSystem;
 import org.b612foundation.adam.opm.OrbitParameterMessage;
 import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.propagators.PointMassForceModel;
 import org.b612foundation.adam.stk.propagators.ForceModelHelper;
 import org.b612foundation.stk.StkLicense;
 import org.junit.Assert;
@@ -305,6 +307,38 @@ public final class ForcesTest {
         0.01); // limit to 1 cm/s; actual < 5 mm
   }
 
+  @Test
+  public void testSunCenteredForceModel() {
+    ReferenceFrameGenerator rfg = new ReferenceFrameGenerator();
+    JulianDate origin =
+        new JulianDate(
+            ZonedDateTime.parse(INITIAL_OPM.getState_vector().getEpoch()),
+            TimeStandard.getCoordinatedUniversalTime());
+    PointMassForceModel forces =
+        ForceModelHelper.createSunCenteredForceModel(
+            SOLAR_SYSTEM_NO_GR_CONFIG,
+            rfg.getReferenceFrame(ReferenceFrame.ICRF, CenterName.SUN),
+            origin);
+
+    Assert.assertEquals(getJplSunG(), forces.getCentralGm(), 0);
+    Assert.assertEquals(
+        Arrays.asList(
+            "Mercury", "Venus", "Earth", "Mars", "Jupiter", "Saturn", "Uranus", "Neptune", "Pluto",
+            "Moon"),
+        forces.getPerturberNames());
+    // Earth is about 1 AU from the Sun, at the origin of the frame, a day after the origin date.
+    double earthDistance = forces.perturberDistance(2, 86400, new double[3], 0);
+    Assert.assertEquals(1.496e11, earthDistance, 0.03 * 1.496e11);
+
+    Assert.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            ForceModelHelper.createSunCenteredForceModel(
+                SOLAR_SYSTEM_NO_GR_CONFIG,
+                rfg.getReferenceFrame(ReferenceFrame.ICRF, CenterName.EARTH),
+                origin));
+  }
+
   private double getJplSunG() {
     // Returns gravitational constant in m^3/s^2.
     return ForceModelHelper.JPL_DE.getGravitationalParameter(JplDECentralBody.SUN);
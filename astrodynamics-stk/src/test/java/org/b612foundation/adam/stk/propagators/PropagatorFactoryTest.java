@@ -17,6 +17,13 @@ public class PropagatorFactoryTest {
     assertTrue(propagator instanceof StkPropagator);
   }
 
+  @Test
+  public void testGetStkNBodyPropagator() throws IOException {
+    OrbitPropagator propagator =
+        PropagatorFactory.getPropagator(PropagatorFactory.STK_NBODY_PROPAGATOR_STRING);
+    assertTrue(propagator instanceof StkNBodyPropagator);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testUnknownPropagatorError() throws IOException {
     PropagatorFactory.getPropagator(UUID.randomUUID().toString());
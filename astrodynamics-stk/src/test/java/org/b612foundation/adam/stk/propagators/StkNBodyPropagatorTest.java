@@ -0,0 +1,260 @@
+package org.b612foundation.adam.stk.propagators;
+
+import agi.foundation.Motion1;
+import agi.foundation.celestial.JplDECentralBody;
+import agi.foundation.coordinates.Cartesian;
+import agi.foundation.geometry.GeometryTransformer;
+import agi.foundation.time.JulianDate;
+import org.b612foundation.adam.datamodel.PropagationConfigurationFactory;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.Formulation;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration.IntegratorMethod;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.OdmCommonMetadata;
+import org.b612foundation.adam.opm.OemDataLine;
+import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.propagators.OrbitEventType;
+import org.b612foundation.adam.propagators.OrbitPropagator;
+import org.b612foundation.stk.StkLicense;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.b612foundation.adam.stk.PropagatorTestHelper.getOpm;
+import static org.b612foundation.adam.stk.StkPropagationHelper.parseUtcAsJulian;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class StkNBodyPropagatorTest extends PropagatorTests {
+  private static final String EPOCH = "2000-01-02T23:59:37.816Z";
+
+  @Override
+  OrbitPropagator getPropagator() throws IOException {
+    StkLicense.activate();
+
+    return new StkNBodyPropagator();
+  }
+
+  /** Ceres for the given number of 10-day steps from {@link #EPOCH}. */
+  private static PropagationParameters setupCeresParams(int steps) {
+    Cartesian position =
+        new Cartesian(-3.56739757814307e+011, 7.94196610361205e+010, 1.10007062491749e+011);
+    Cartesian velocity =
+        new Cartesian(-6.09566061804876e+003, -1.70715035989933e+004, -6.79473715143830e+003);
+    ZonedDateTime startDate = ZonedDateTime.parse(EPOCH);
+    return new PropagationParameters()
+        .setStart_time(startDate.format(DateTimeFormatter.ISO_ZONED_DATE_TIME))
+        .setEnd_time(startDate.plusDays(10L * steps).format(DateTimeFormatter.ISO_ZONED_DATE_TIME))
+        .setStep_duration_sec(10 * 86400)
+        .setOpm(getOpm("ceres", EPOCH, position, velocity));
+  }
+
+  /**
+   * An object 500000 km from Earth at {@link #EPOCH}, moving at 3 km/s relative to Earth mostly
+   * towards it, for 7 days.
+   */
+  private static PropagationParameters setupEarthFlybyParams() {
+    ForceModelHelper.loadStandardObjects();
+    JulianDate epoch = parseUtcAsJulian(EPOCH);
+    Motion1<Cartesian> earth =
+        GeometryTransformer.observePoint(
+                ForceModelHelper.JPL_DE.getCenterOfMassPoint(JplDECentralBody.EARTH),
+                new ReferenceFrameGenerator()
+                    .getReferenceFrame(
+                        OdmCommonMetadata.ReferenceFrame.ICRF, OdmCommonMetadata.CenterName.SUN))
+            .evaluate(epoch, 1);
+    ZonedDateTime startDate = ZonedDateTime.parse(EPOCH);
+    return new PropagationParameters()
+        .setStart_time(startDate.format(DateTimeFormatter.ISO_ZONED_DATE_TIME))
+        .setEnd_time(startDate.plusDays(7).format(DateTimeFormatter.ISO_ZONED_DATE_TIME))
+        .setStep_duration_sec(3600)
+        .setOpm(
+            getOpm(
+                "flyby",
+                EPOCH,
+                earth.getValue().add(new Cartesian(5e8, 0, 0)),
+                earth.getFirstDerivative().add(new Cartesian(-3000, 500, 0))));
+  }
+
+  private static double distanceKm(OemDataLine a, OemDataLine b) {
+    double[] p = a.getPoint();
+    double[] q = b.getPoint();
+    double dx = p[0] - q[0];
+    double dy = p[1] - q[1];
+    double dz = p[2] - q[2];
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  private static OemDataLine lastLine(OrbitEphemerisMessage oem) {
+    List<OemDataLine> lines = oem.getBlocks().get(0).getLines();
+    return lines.get(lines.size() - 1);
+  }
+
+  @Test
+  public void testEnckeMatchesAgiPropagation() throws Exception {
+    PropagationParameters params = setupCeresParams(365);
+    PropagatorConfiguration cowell =
+        PropagationConfigurationFactory.getAllMajorBodiesConfig().deepCopy();
+    PropagatorConfiguration encke = cowell.deepCopy().setFormulation(Formulation.ENCKE);
+
+    OrbitEphemerisMessage agiOem;
+    try (StkPropagator agi = new StkPropagator()) {
+      agiOem = agi.propagate(params, cowell, "agi");
+    }
+    OrbitEphemerisMessage enckeOem = new StkNBodyPropagator().propagate(params, encke, "encke");
+
+    List<OemDataLine> lines = enckeOem.getBlocks().get(0).getLines();
+    assertEquals(366, lines.size());
+    assertEquals(lastLine(agiOem).getDate(), lastLine(enckeOem).getDate());
+    assertTrue(distanceKm(lastLine(agiOem), lastLine(enckeOem)) < 1);
+    assertTrue(
+        enckeOem.getBlocks().get(0).getComments().contains("Formulation: " + Formulation.ENCKE));
+  }
+
+  @Test
+  public void testAdamsMatchesAgiPropagation() throws Exception {
+    PropagationParameters params = setupCeresParams(365);
+    PropagatorConfiguration rungeKutta =
+        PropagationConfigurationFactory.getAllMajorBodiesConfig().deepCopy();
+    PropagatorConfiguration adams =
+        rungeKutta.deepCopy().setIntegratorMethod(IntegratorMethod.ADAMS);
+
+    OrbitEphemerisMessage agiOem;
+    try (StkPropagator agi = new StkPropagator()) {
+      agiOem = agi.propagate(params, rungeKutta, "agi");
+    }
+    OrbitEphemerisMessage adamsOem = new StkNBodyPropagator().propagate(params, adams, "adams");
+
+    assertEquals(lastLine(agiOem).getDate(), lastLine(adamsOem).getDate());
+    assertTrue(distanceKm(lastLine(agiOem), lastLine(adamsOem)) < 1);
+    assertTrue(
+        adamsOem
+            .getBlocks()
+            .get(0)
+            .getComments()
+            .contains("Integrator method: " + IntegratorMethod.ADAMS));
+  }
+
+  @Test
+  public void testOutputModes() throws Exception {
+    StkNBodyPropagator propagator = new StkNBodyPropagator();
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    OrbitEphemerisMessage full = propagator.propagate(setupCeresParams(10), config, "full");
+    OrbitEphemerisMessage last =
+        propagator.propagate(
+            setupCeresParams(10).setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY),
+            config,
+            "last");
+    OrbitEphemerisMessage events =
+        propagator.propagate(
+            setupCeresParams(10).setOutputMode(PropagationOutputMode.EVENTS_ONLY),
+            config,
+            "events");
+
+    assertEquals(11, full.getBlocks().get(0).getLines().size());
+    assertEquals(1, last.getBlocks().get(0).getLines().size());
+    assertEquals(lastLine(full).getDate(), lastLine(last).getDate());
+    assertTrue(distanceKm(lastLine(full), lastLine(last)) < 1e-3);
+    assertTrue(events.getBlocks().isEmpty());
+  }
+
+  @Test
+  public void testLogsEarthCloseApproaches() throws Exception {
+    PropagationParameters params = setupEarthFlybyParams();
+    StkNBodyPropagator cowell = new StkNBodyPropagator();
+    StkNBodyPropagator encke = new StkNBodyPropagator();
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    cowell.propagate(params, config, "cowell");
+    encke.propagate(params, config.deepCopy().setFormulation(Formulation.ENCKE), "encke");
+
+    assertEquals(1, cowell.getCloseApproaches().size());
+    assertEquals(1, encke.getCloseApproaches().size());
+    EventEphemerisPoint approach = encke.getCloseApproaches().get(0);
+    assertEquals(OrbitEventType.CLOSE_APPROACH, approach.getOrbitEventType());
+    assertEquals(JplDECentralBody.EARTH, approach.getTargetBody());
+    assertTrue(approach.getDistanceFromTarget() < 1e8);
+    assertEquals(
+        cowell.getCloseApproaches().get(0).getDistanceFromTarget(),
+        approach.getDistanceFromTarget(),
+        1e3);
+    assertFalse(encke.getImpact().isPresent());
+
+    // No close approach within a radius below the miss distance.
+    cowell.propagate(
+        params.deepCopy().setCloseApproachRadiusFromTargetMeters(1e7), config, "cowell");
+    assertTrue(cowell.getCloseApproaches().isEmpty());
+  }
+
+  @Test
+  public void testLogsRegularizedEarthCloseApproaches() throws Exception {
+    PropagationParameters params = setupEarthFlybyParams();
+    StkNBodyPropagator plain = new StkNBodyPropagator();
+    StkNBodyPropagator regularized = new StkNBodyPropagator();
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    OrbitEphemerisMessage plainOem = plain.propagate(params, config, "plain");
+    OrbitEphemerisMessage regularizedOem =
+        regularized.propagate(
+            params, config.deepCopy().setRegularizationDistanceMeters(1e8), "regularized");
+
+    assertEquals(1, regularized.getCloseApproaches().size());
+    EventEphemerisPoint approach = regularized.getCloseApproaches().get(0);
+    assertEquals(JplDECentralBody.EARTH, approach.getTargetBody());
+    assertEquals(
+        plain.getCloseApproaches().get(0).getDistanceFromTarget(),
+        approach.getDistanceFromTarget(),
+        1e3);
+    assertTrue(distanceKm(lastLine(plainOem), lastLine(regularizedOem)) < 1);
+    assertTrue(
+        regularizedOem
+            .getBlocks()
+            .get(0)
+            .getComments()
+            .contains("Regularization distance: 1.0E8 m"));
+  }
+
+  @Test
+  public void testRejectsUnsupportedParameters() throws Exception {
+    StkNBodyPropagator propagator = new StkNBodyPropagator();
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    assertThrows(
+        AdamPropagationException.class,
+        () -> propagator.propagate(setupCeresParams(1).setStopOnImpact(true), config, "impact"));
+    assertThrows(
+        AdamPropagationException.class,
+        () ->
+            propagator.propagate(
+                setupCeresParams(1), config.deepCopy().addAsteroid("Vesta"), "asteroids"));
+  }
+
+  @Test
+  public void testAgiPropagatorsRejectUnsupportedIntegration() throws Exception {
+    PropagatorConfiguration encke =
+        PropagationConfigurationFactory.getAllMajorBodiesConfig()
+            .deepCopy()
+            .setFormulation(Formulation.ENCKE);
+    PropagatorConfiguration adams =
+        PropagationConfigurationFactory.getAllMajorBodiesConfig()
+            .deepCopy()
+            .setIntegratorMethod(IntegratorMethod.ADAMS);
+    PropagatorConfiguration regularized =
+        PropagationConfigurationFactory.getAllMajorBodiesConfig()
+            .deepCopy()
+            .setRegularizationDistanceMeters(1e8);
+    try (StkPropagator agi = new StkPropagator()) {
+      assertThrows(
+          AdamPropagationException.class, () -> agi.propagate(setupCeresParams(1), encke, "agi"));
+      assertThrows(
+          AdamPropagationException.class, () -> agi.propagate(setupCeresParams(1), adams, "agi"));
+      assertThrows(
+          AdamPropagationException.class,
+          () -> agi.propagate(setupCeresParams(1), regularized, "agi"));
+    }
+  }
+}
@@ -4,28 +4,46 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.b612foundation.adam.common.PropagationHelper.extractFinalState;
 import static org.b612foundation.adam.stk.PropagatorTestHelper.getOpm;
 import static org.b612foundation.adam.stk.StkPropagationHelper.parseUtcAsJulian;
+import static org.junit.Assert.assertThrows;
 
 import agi.foundation.celestial.JplDECentralBody;
 import agi.foundation.time.JulianDate;
 import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.b612foundation.adam.astro.TargetPlane;
 import org.b612foundation.adam.common.DistanceType;
 import org.b612foundation.adam.common.DistanceUnits;
 import org.b612foundation.adam.datamodel.PropagationConfigurationFactory;
+import org.b612foundation.adam.datamodel.PropagationOutputMode;
 import org.b612foundation.adam.datamodel.PropagationParameters;
 import org.b612foundation.adam.datamodel.PropagatorConfiguration;
 import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.exceptions.PropagationAbortedException;
 import org.b612foundation.adam.opm.OdmCommonMetadata;
 import org.b612foundation.adam.opm.OdmCommonMetadata.TimeSystem;
 import org.b612foundation.adam.opm.OemDataLine;
 import org.b612foundation.adam.opm.OrbitEphemerisMessage;
+import org.b612foundation.adam.opm.OrbitParameterMessage;
 import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.propagators.DetectedEvent;
+import org.b612foundation.adam.propagators.EventAction;
+import org.b612foundation.adam.propagators.EventDetector;
+import org.b612foundation.adam.propagators.EventDetectors;
 import org.b612foundation.adam.propagators.OrbitEventType;
+import org.b612foundation.adam.propagators.PropagationCheckpoint;
+import org.b612foundation.adam.propagators.PropagationControl;
 import org.b612foundation.stk.StkLicense;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 // TODO: The test assertion tolerances aren't really good, try to find how to make them closer.
 // see if can match up to 7 SD, even better 15 SD
@@ -66,6 +84,8 @@ public final class StkSegmentPropagatorTest {
               .distanceFromTarget(1.4693312359680953e9)
               .build());
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   @Before
   public void addLicense() {
     StkLicense.activate();
@@ -245,6 +265,146 @@ public final class StkSegmentPropagatorTest {
         .of(expectedCloseApproach2.getDistanceFromTarget());
   }
 
+  @Test
+  public void testStkPropagation_closeApproachesMappedToTargetPlane()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setEnableLogCloseApproaches(true);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.propagate(params, config, "test-propagator");
+
+    for (EventEphemerisPoint closeApproach : propagator.getCloseApproaches()) {
+      TargetPlane targetPlane = closeApproach.getTargetPlane();
+      assertThat(targetPlane).isNotNull();
+      // At perigee the osculating hyperbola's pericenter is the current distance.
+      assertThat(targetPlane.getMinimumDistance())
+          .isWithin(1e-6 * closeApproach.getDistanceFromTarget())
+          .of(closeApproach.getDistanceFromTarget());
+      assertThat(Math.hypot(targetPlane.getXi(), targetPlane.getZeta()))
+          .isWithin(1e-6 * targetPlane.getImpactParameter())
+          .of(targetPlane.getImpactParameter());
+      assertThat(targetPlane.isImpact(6.378137e6)).isFalse();
+    }
+  }
+
+  @Test
+  public void testStkPropagation_planetaryCloseApproaches_leaveEarthApproachesUnchanged()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setEnableLogCloseApproaches(true);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+    params.setEnableLogPlanetaryCloseApproaches(true);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.propagate(params, config, "test-propagator");
+
+    List<EventEphemerisPoint> earthApproaches = propagator.getCloseApproaches();
+    assertThat(earthApproaches).hasSize(2);
+    assertThat(earthApproaches.get(1).getDistanceFromTarget())
+        .isWithin(1e-7)
+        .of(ASTEROID_101_CLOSE_APPROACHES.get(1).getDistanceFromTarget());
+    // Both Earth approaches are outside Earth's sphere of influence, and the asteroid stays well
+    // away from the other planets.
+    for (EventEphemerisPoint approach : propagator.getPlanetaryCloseApproaches()) {
+      assertThat(approach.getTargetBody()).isNotNull();
+      assertThat(approach.getTargetBody()).isNotEqualTo(JplDECentralBody.EARTH);
+      assertThat(approach.getDistanceFromTarget()).isLessThan(8.66e10);
+    }
+  }
+
+  @Test
+  public void testStkPropagation_eventDetectorsMatchCloseApproaches()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setEnableLogCloseApproaches(true);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.setEventDetectors(
+        ImmutableList.of(
+            EventDetectors.closeApproach("EARTH", 7.0e9, EventAction.LOG),
+            EventDetectors.periapsis("SUN", EventAction.LOG)));
+    propagator.propagate(params, config, "test-propagator");
+
+    JulianDate epoch = parseUtcAsJulian(ASTEROID_101_EPOCH);
+    List<DetectedEvent> approaches = new ArrayList<>();
+    for (DetectedEvent event : propagator.getDetectedEvents()) {
+      if (event.getDetector().equals("Close approach to EARTH")) {
+        approaches.add(event);
+      }
+    }
+    List<EventEphemerisPoint> expected = propagator.getCloseApproaches();
+    assertThat(approaches).hasSize(expected.size());
+    for (int i = 0; i < approaches.size(); i++) {
+      JulianDate time = epoch.addSeconds(approaches.get(i).getEpochSeconds());
+      assertThat(time.secondsDifference(expected.get(i).getTime())).isWithin(1.0).of(0.0);
+    }
+    // The asteroid also passes perihelion several times in the decade propagated.
+    assertThat(propagator.getDetectedEvents().size()).isGreaterThan(approaches.size());
+  }
+
+  @Test
+  public void testStkPropagation_eventDetectorStopsPropagation() throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.setEventDetectors(
+        ImmutableList.of(
+            EventDetectors.region(
+                "EARTH", 7.0e9, EventDetector.Direction.DECREASING, EventAction.STOP)));
+    propagator.propagate(params, config, "test-propagator");
+
+    List<DetectedEvent> events = propagator.getDetectedEvents();
+    assertThat(events).hasSize(1);
+    JulianDate stop =
+        parseUtcAsJulian(ASTEROID_101_EPOCH).addSeconds(events.get(0).getEpochSeconds());
+    assertThat(stop.secondsDifference(propagator.getFinalState().getTime())).isWithin(1.0).of(0.0);
+  }
+
+  @Test
+  public void testTargetPlaneMapper_mapsEachDraw() throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+    List<OrbitParameterMessage> draws =
+        ImmutableList.of(params.getOpm(), params.getOpm().deepCopy());
+
+    List<EventEphemerisPoint> encounters =
+        new TargetPlaneMapper().map(draws, params, config, "test-propagator");
+
+    assertThat(encounters).hasSize(2);
+    for (EventEphemerisPoint encounter : encounters) {
+      // The closest of the two close approaches, at the end of 2007.
+      assertThat(encounter.getOrbitEventType()).isEqualTo(OrbitEventType.CLOSE_APPROACH);
+      assertThat(encounter.getDistanceFromTarget())
+          .isWithin(1e-7)
+          .of(ASTEROID_101_CLOSE_APPROACHES.get(1).getDistanceFromTarget());
+      assertThat(encounter.getTargetPlane()).isNotNull();
+    }
+    assertThat(TargetPlaneMapper.impactFraction(encounters)).isEqualTo(0.0);
+  }
+
   @Test
   public void testStkPropagation_stoppedOnFirstCloseApproach() throws AdamPropagationException {
     // 10 years from start, minus 30 days
@@ -323,5 +483,456 @@ public final class StkSegmentPropagatorTest {
     assertThat(actual).isEmpty();
   }
 
+  @Test
+  public void testStkPropagation_finalStateOnly_matchesFullEphemerisFinalState()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(ASTEROID_101_EPOCH, endEpoch, 0, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+
+    StkSegmentPropagator fullPropagator = new StkSegmentPropagator();
+    OemDataLine expected =
+        extractFinalState(fullPropagator.propagate(params, config, "test-propagator"));
+
+    params.setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY);
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage oem = propagator.propagate(params, config, "test-propagator");
+
+    assertThat(oem.getBlocks()).hasSize(1);
+    assertThat(oem.getBlocks().get(0).getLines()).hasSize(1);
+    assertThat(extractFinalState(oem).getPoint())
+        .usingTolerance(1e-6)
+        .containsExactly(expected.getPoint())
+        .inOrder();
+    assertThat(propagator.getCloseApproaches()).hasSize(2);
+  }
+
+  @Test
+  public void testStkPropagation_eventsOnly_keepsEventsWithoutEphemeris()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+            ASTEROID_101_EPOCH, endEpoch, SECONDS_IN_DAY, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setCloseApproachRadiusFromTargetMeters(7.0e9);
+    params.setOutputMode(PropagationOutputMode.EVENTS_ONLY);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage oem = propagator.propagate(params, config, "test-propagator");
+
+    assertThat(oem.getBlocks()).isEmpty();
+    assertThat(propagator.getCloseApproaches()).hasSize(2);
+    assertThat(propagator.getFinalState().getOrbitEventType()).isEqualTo(OrbitEventType.MISS);
+  }
+
+  @Test
+  public void testStkPropagation_stepConsumer_streamsStepsUpToFinalState()
+      throws AdamPropagationException {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(ASTEROID_101_EPOCH, endEpoch, 0, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setEnableLogCloseApproaches(false);
+    params.setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY);
+    List<Double> times = new ArrayList<>();
+    double[] lastState = new double[6];
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage oem =
+        propagator.propagate(
+            params,
+            config,
+            "test-propagator",
+            (epochSeconds, state) -> {
+              times.add(epochSeconds);
+              System.arraycopy(state, 0, lastState, 0, 6);
+            });
+
+    assertThat(times.size()).isGreaterThan(1);
+    assertThat(times).isInStrictOrder();
+    double[] finalState = extractFinalState(oem).getPoint();
+    for (int i = 0; i < 6; i++) {
+      // The OEM is in km and km/s, the streamed state in m and m/s.
+      assertThat(lastState[i] / 1000).isWithin(1e-3).of(finalState[i]);
+    }
+  }
+
+  @Test
+  public void testStkPropagation_stepBudgetExceeded_aborts() {
+    String endEpoch = "2010-12-01T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(ASTEROID_101_EPOCH, endEpoch, 0, ASTEROID_101_INITIAL_STATE_VECTOR);
+    PropagationControl control = new PropagationControl().setMaxSteps(10);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    PropagationAbortedException e =
+        assertThrows(
+            PropagationAbortedException.class,
+            () -> propagator.propagate(params, config, "test-propagator", control));
+
+    assertThat(e.getReason()).isEqualTo(PropagationAbortedException.Reason.STEP_BUDGET_EXCEEDED);
+    assertThat(control.getSteps()).isEqualTo(11);
+  }
+
+  @Test
+  public void testStkPropagation_extend_matchesSinglePropagation() throws AdamPropagationException {
+    String epoch = "2017-10-04T00:00:00.000Z";
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(130347560.13690618)
+            .setY(-74407287.6018632)
+            .setZ(-35247598.541470632)
+            .setX_dot(23.935241263310683)
+            .setY_dot(27.146279819258538)
+            .setZ_dot(10.346605942591514);
+    ZonedDateTime startDate = ZonedDateTime.parse(epoch);
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters fullParams =
+        setupPropagationParams(startDate, startDate.plusDays(7), 60 * 60, stateVector);
+    PropagationParameters shortParams =
+        setupPropagationParams(startDate, startDate.plusDays(3), 60 * 60, stateVector);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage expected = propagator.propagate(fullParams, config, "test-propagator");
+    OrbitEphemerisMessage previous = propagator.propagate(shortParams, config, "test-propagator");
+    OrbitEphemerisMessage extended =
+        propagator.extend(
+            fullParams, config, previous, propagator.getResumeState(), "test-propagator");
+
+    List<OemDataLine> expectedLines = expected.getBlocks().get(0).getLines();
+    List<OemDataLine> extendedLines = extended.getBlocks().get(0).getLines();
+    assertThat(extendedLines).hasSize(expectedLines.size());
+    assertThat(extendedLines.get(extendedLines.size() - 1).getDate())
+        .isEqualTo(expectedLines.get(expectedLines.size() - 1).getDate());
+    double[] expectedFinal = extractFinalState(expected).getPoint();
+    double[] extendedFinal = extractFinalState(extended).getPoint();
+    for (int i = 0; i < 3; i++) {
+      // Restarting the integrator changes its steps, so allow for a small drift, in km.
+      assertThat(extendedFinal[i]).isWithin(1.0).of(expectedFinal[i]);
+      assertThat(extendedFinal[i + 3]).isWithin(1.0e-6).of(expectedFinal[i + 3]);
+    }
+  }
+
+  @Test
+  public void testStkPropagation_extendToEarlierEndTime_throws() throws AdamPropagationException {
+    String endEpoch = "2002-01-02T01:13:46.620000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(ASTEROID_101_EPOCH, endEpoch, 0, ASTEROID_101_INITIAL_STATE_VECTOR);
+    params.setEnableLogCloseApproaches(false);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage oem = propagator.propagate(params, config, "test-propagator");
+    PropagationParameters earlier = params.deepCopy().setEnd_time("2001-06-02T01:13:46.620000Z");
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            propagator.extend(
+                earlier, config, oem, propagator.getResumeState(), "test-propagator"));
+  }
+
+  @Test
+  public void testStkPropagation_resumeFromCheckpoint_matchesUninterruptedRun() throws Exception {
+    String epoch = "2017-10-04T00:00:00.000Z";
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(130347560.13690618)
+            .setY(-74407287.6018632)
+            .setZ(-35247598.541470632)
+            .setX_dot(23.935241263310683)
+            .setY_dot(27.146279819258538)
+            .setZ_dot(10.346605942591514);
+    ZonedDateTime startDate = ZonedDateTime.parse(epoch);
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(startDate, startDate.plusDays(7), 60 * 60, stateVector);
+    Path checkpointFile = folder.getRoot().toPath().resolve("propagation.ckpt");
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage expected = propagator.propagate(params, config, "test-propagator");
+
+    // Lose the worker after a few steps, with a checkpoint taken every other step.
+    propagator.setCheckpointing(checkpointFile, 2);
+    assertThrows(
+        PropagationAbortedException.class,
+        () ->
+            propagator.propagate(
+                params, config, "test-propagator", new PropagationControl().setMaxSteps(4)));
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(checkpointFile);
+    assertThat(checkpoint.size()).isEqualTo(4);
+
+    OrbitEphemerisMessage resumed =
+        propagator.resume(params, config, checkpoint, "test-propagator");
+
+    List<OemDataLine> expectedLines = expected.getBlocks().get(0).getLines();
+    List<OemDataLine> resumedLines = resumed.getBlocks().get(0).getLines();
+    assertThat(resumedLines).hasSize(expectedLines.size());
+    for (int i = 0; i < expectedLines.size(); i++) {
+      assertThat(resumedLines.get(i).getDate()).isEqualTo(expectedLines.get(i).getDate());
+      double[] expectedPoint = expectedLines.get(i).getPoint();
+      double[] resumedPoint = resumedLines.get(i).getPoint();
+      for (int j = 0; j < 3; j++) {
+        // Restarting the integrator changes its steps, so allow for a small drift, in km.
+        assertThat(resumedPoint[j]).isWithin(1.0).of(expectedPoint[j]);
+        assertThat(resumedPoint[j + 3]).isWithin(1.0e-6).of(expectedPoint[j + 3]);
+      }
+    }
+  }
+
+  /**
+   * Parameters of a week-long Earth flyby from 500,000 km, in Earth's sphere of influence, which
+   * passes perigee about two days in.
+   */
+  private static PropagationParameters setupEarthFlybyParams(String epoch) {
+    ZonedDateTime epochDate = ZonedDateTime.parse(epoch);
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(500000)
+            .setY(0)
+            .setZ(0)
+            .setX_dot(-3)
+            .setY_dot(0.5)
+            .setZ_dot(0);
+    PropagationParameters params =
+        setupPropagationParams(epochDate, epochDate.plusDays(7), 60 * 60, stateVector);
+    params.getOpm().getMetadata().setCenter_name(OdmCommonMetadata.CenterName.EARTH);
+    return params;
+  }
+
+  /**
+   * Reads the checkpoint of an uninterrupted propagation and returns the number of steps to stop
+   * after so the interrupted one has passed the given time, in seconds since the epoch, by a step.
+   */
+  private static long stepsPast(Path fullCheckpointFile, double seconds) throws Exception {
+    PropagationCheckpoint full = PropagationCheckpoint.read(fullCheckpointFile);
+    for (int i = 0; i < full.size(); i++) {
+      if (full.getTime(i) > seconds) {
+        assertThat(i + 2).isLessThan(full.size());
+        return i + 2;
+      }
+    }
+    throw new AssertionError("No step after " + seconds + " s");
+  }
+
+  @Test
+  public void testStkPropagation_resumeFromCheckpoint_keepsPlanetaryCloseApproaches()
+      throws Exception {
+    String epochString = "2017-10-04T00:00:00.000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params = setupEarthFlybyParams(epochString);
+    params.setEnableLogPlanetaryCloseApproaches(true);
+    JulianDate epoch = parseUtcAsJulian(epochString);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.setCheckpointing(folder.getRoot().toPath().resolve("full.ckpt"), 1);
+    propagator.propagate(params, config, "test-propagator");
+    List<EventEphemerisPoint> expected = propagator.getPlanetaryCloseApproaches();
+    assertThat(expected).isNotEmpty();
+    assertThat(expected.get(0).getTargetBody()).isEqualTo(JplDECentralBody.EARTH);
+    double perigeeSeconds = epoch.secondsDifference(expected.get(0).getTime());
+
+    // Lose the worker a couple of steps after perigee.
+    Path checkpointFile = folder.getRoot().toPath().resolve("propagation.ckpt");
+    propagator.setCheckpointing(checkpointFile, 1);
+    long steps = stepsPast(folder.getRoot().toPath().resolve("full.ckpt"), perigeeSeconds);
+    assertThrows(
+        PropagationAbortedException.class,
+        () ->
+            propagator.propagate(
+                params, config, "test-propagator", new PropagationControl().setMaxSteps(steps)));
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(checkpointFile);
+    assertThat(checkpoint.getLastTime()).isGreaterThan(perigeeSeconds);
+
+    propagator.setCheckpointing(null, 0);
+    propagator.resume(params, config, checkpoint, "test-propagator");
+
+    // Perigee was only seen before the checkpoint, so it comes from the checkpoint.
+    List<EventEphemerisPoint> resumed = propagator.getPlanetaryCloseApproaches();
+    assertThat(resumed).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(resumed.get(i).getTargetBody()).isEqualTo(expected.get(i).getTargetBody());
+      assertThat(resumed.get(i).getTime().secondsDifference(expected.get(i).getTime()))
+          .isWithin(1.0)
+          .of(0.0);
+      assertThat(resumed.get(i).getDistanceFromTarget())
+          .isWithin(1.0)
+          .of(expected.get(i).getDistanceFromTarget());
+    }
+  }
+
+  @Test
+  public void testStkPropagation_resumeFromCheckpoint_keepsDetectedEvents() throws Exception {
+    String epochString = "2017-10-04T00:00:00.000Z";
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params = setupEarthFlybyParams(epochString);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    propagator.setEventDetectors(
+        ImmutableList.of(EventDetectors.periapsis("EARTH", EventAction.LOG)));
+    propagator.setCheckpointing(folder.getRoot().toPath().resolve("full.ckpt"), 1);
+    propagator.propagate(params, config, "test-propagator");
+    List<DetectedEvent> expected = propagator.getDetectedEvents();
+    assertThat(expected).hasSize(1);
+    double perigeeSeconds = expected.get(0).getEpochSeconds();
+
+    // Lose the worker a couple of steps after perigee.
+    Path checkpointFile = folder.getRoot().toPath().resolve("propagation.ckpt");
+    propagator.setCheckpointing(checkpointFile, 1);
+    long steps = stepsPast(folder.getRoot().toPath().resolve("full.ckpt"), perigeeSeconds);
+    assertThrows(
+        PropagationAbortedException.class,
+        () ->
+            propagator.propagate(
+                params, config, "test-propagator", new PropagationControl().setMaxSteps(steps)));
+    PropagationCheckpoint checkpoint = PropagationCheckpoint.read(checkpointFile);
+
+    propagator.setCheckpointing(null, 0);
+    propagator.resume(params, config, checkpoint, "test-propagator");
+
+    // Perigee was only seen before the checkpoint, so it comes from the checkpoint.
+    List<DetectedEvent> resumed = propagator.getDetectedEvents();
+    assertThat(resumed).hasSize(1);
+    assertThat(resumed.get(0).getDetector()).isEqualTo(expected.get(0).getDetector());
+    assertThat(resumed.get(0).getEpochSeconds()).isWithin(1e-6).of(perigeeSeconds);
+  }
+
+  @Test
+  public void testStkPropagation_bidirectional_stitchesBothLegs() throws AdamPropagationException {
+    String epoch = "2017-10-04T00:00:00.000Z";
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(130347560.13690618)
+            .setY(-74407287.6018632)
+            .setZ(-35247598.541470632)
+            .setX_dot(23.935241263310683)
+            .setY_dot(27.146279819258538)
+            .setZ_dot(10.346605942591514);
+    ZonedDateTime epochDate = ZonedDateTime.parse(epoch);
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(
+                epochDate.minusDays(3), epochDate.plusDays(3), 60 * 60, stateVector)
+            .setBidirectional(true);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage backward =
+        propagator.propagate(
+            setupPropagationParams(epochDate, epochDate.minusDays(3), 60 * 60, stateVector),
+            config,
+            "test-propagator");
+    OrbitEphemerisMessage forward =
+        propagator.propagate(
+            setupPropagationParams(epochDate, epochDate.plusDays(3), 60 * 60, stateVector),
+            config,
+            "test-propagator");
+    OrbitEphemerisMessage stitched = propagator.propagate(params, config, "test-propagator");
+
+    List<OemDataLine> lines = stitched.getBlocks().get(0).getLines();
+    assertThat(lines).hasSize(6 * 24 + 1);
+    assertThat(parseUtcAsJulian(lines.get(0).getDate()))
+        .isEqualTo(parseUtcAsJulian(params.getStart_time()));
+    assertThat(parseUtcAsJulian(lines.get(3 * 24).getDate())).isEqualTo(parseUtcAsJulian(epoch));
+    double[] expectedFirst = extractFinalState(backward).getPoint();
+    double[] expectedLast = extractFinalState(forward).getPoint();
+    double[] first = lines.get(0).getPoint();
+    double[] last = extractFinalState(stitched).getPoint();
+    for (int i = 0; i < 6; i++) {
+      // Each leg integrates exactly as a single propagation in its direction does.
+      assertThat(first[i]).isWithin(1.0e-6).of(expectedFirst[i]);
+      assertThat(last[i]).isWithin(1.0e-6).of(expectedLast[i]);
+    }
+  }
+
+  @Test
+  public void testStkPropagation_bidirectional_finalStatesOfBothLegs()
+      throws AdamPropagationException {
+    String epoch = "2017-10-04T00:00:00.000Z";
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(130347560.13690618)
+            .setY(-74407287.6018632)
+            .setZ(-35247598.541470632)
+            .setX_dot(23.935241263310683)
+            .setY_dot(27.146279819258538)
+            .setZ_dot(10.346605942591514);
+    ZonedDateTime epochDate = ZonedDateTime.parse(epoch);
+    PropagationParameters params =
+        setupPropagationParams(
+                epochDate.minusDays(3), epochDate.plusDays(3), 60 * 60, stateVector)
+            .setBidirectional(true)
+            .setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY);
+
+    StkSegmentPropagator propagator = new StkSegmentPropagator();
+    OrbitEphemerisMessage finalStates =
+        propagator.propagate(
+            params, PropagationConfigurationFactory.getAllMajorBodiesConfig(), "test-propagator");
+
+    List<OemDataLine> lines = finalStates.getBlocks().get(0).getLines();
+    assertThat(lines).hasSize(2);
+    assertThat(parseUtcAsJulian(lines.get(0).getDate()))
+        .isEqualTo(parseUtcAsJulian(params.getStart_time()));
+    assertThat(parseUtcAsJulian(lines.get(1).getDate()))
+        .isEqualTo(parseUtcAsJulian(params.getEnd_time()));
+    assertThat(
+            parseUtcAsJulian(params.getStart_time())
+                .secondsDifference(propagator.getStartFinalState().getTime()))
+        .isWithin(1.0e-3)
+        .of(0.0);
+  }
+
+  @Test
+  public void testStkPropagation_bidirectional_runsStartLegOnGivenExecutor() throws Exception {
+    String epoch = "2017-10-04T00:00:00.000Z";
+    StateVector stateVector =
+        new StateVector()
+            .setEpoch(epoch)
+            .setX(130347560.13690618)
+            .setY(-74407287.6018632)
+            .setZ(-35247598.541470632)
+            .setX_dot(23.935241263310683)
+            .setY_dot(27.146279819258538)
+            .setZ_dot(10.346605942591514);
+    ZonedDateTime epochDate = ZonedDateTime.parse(epoch);
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    PropagationParameters params =
+        setupPropagationParams(epochDate.minusDays(1), epochDate.plusDays(1), 60 * 60, stateVector)
+            .setBidirectional(true)
+            .setOutputMode(PropagationOutputMode.FINAL_STATE_ONLY);
+
+    ThreadPoolExecutor legExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+    try {
+      try (StkSegmentPropagator propagator = new StkSegmentPropagator(legExecutor)) {
+        propagator.propagate(params, config, "test-propagator");
+      }
+      // Closing the propagator leaves the caller's executor running.
+      assertThat(legExecutor.isShutdown()).isFalse();
+    } finally {
+      legExecutor.shutdown();
+    }
+    assertThat(legExecutor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+    assertThat(legExecutor.getCompletedTaskCount()).isEqualTo(1);
+
+    StkSegmentPropagator closed = new StkSegmentPropagator();
+    closed.close();
+    assertThrows(
+        IllegalStateException.class,
+        () -> closed.propagate(params, config, "test-propagator"));
+    // Propagations in one direction do not need the leg executor.
+    closed.propagate(
+        setupPropagationParams(epochDate, epochDate.plusDays(1), 60 * 60, stateVector),
+        config,
+        "test-propagator");
+  }
+
   // TODO: write more tests, eg testing backward propagation
 }
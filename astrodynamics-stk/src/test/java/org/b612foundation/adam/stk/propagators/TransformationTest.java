@@ -27,6 +27,9 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -396,4 +399,99 @@ public class TransformationTest {
     assertTrue(
         "One of the minima should be close in date to impact, scenario " + name, closestAfter < 20);
   }
+
+  @Test
+  public void testDetectImpactInMemoryMatchesEphemerisFile() throws Exception {
+    PropagatedInterplanetaryOrbit orbit = makeAsteroidThatHitsEarth(scenarios[0], "Scenario 1");
+    StringWriter writer = new StringWriter();
+    orbit.writeRawEphemeris(writer);
+    StkPropagator stk = new StkPropagator();
+    StkEphemerisFile recoveredEphem = stk.loadFromString(writer.toString());
+
+    List<DatedValue<Double>> impacts = stk.findEarthImpacts(orbit, 1e3);
+    List<DatedValue<Double>> fromFile = stk.findEarthImpacts(recoveredEphem, 1e3);
+    assertEquals(fromFile.size(), impacts.size());
+    for (int i = 0; i < impacts.size(); i++) {
+      // The file truncates values when printing, so allow a small difference.
+      double delta = impacts.get(i).getDate().secondsDifference(fromFile.get(i).getDate());
+      assertTrue("Impact times differ at " + i + " by " + delta + " s", Math.abs(delta) < 1);
+    }
+    assertEquals(
+        stk.findClosestApproachesToEarth(recoveredEphem).size(),
+        stk.findClosestApproachesToEarth(orbit).size());
+
+    List<DatedValue<Cartesian>> inEarth = stk.transformToEarthFrame(orbit);
+    assertEquals(orbit.getRawDates().size(), inEarth.size());
+    assertEquals(orbit.getRawDates().get(0), inEarth.get(0).getDate());
+  }
+
+  @Test
+  public void testFlatTransformationMatchesDatedValues() throws Exception {
+    PropagatedInterplanetaryOrbit orbit = makeAsteroidThatHitsEarth(scenarios[0], "Scenario 1");
+    StkPropagator stk = new StkPropagator();
+    List<DatedValue<Cartesian>> expected = stk.transformToEarthFrame(orbit);
+
+    double[] seconds = new double[expected.size()];
+    double[] positions = new double[3 * expected.size()];
+    stk.transformToEarthFrame(orbit, seconds, positions);
+    JulianDate start = expected.get(0).getDate();
+    for (int i = 0; i < expected.size(); i++) {
+      Cartesian position = expected.get(i).getValue();
+      assertEquals(start.secondsDifference(expected.get(i).getDate()), seconds[i], 1e-6);
+      assertEquals(position.getX(), positions[3 * i], 1e-6);
+      assertEquals(position.getY(), positions[3 * i + 1], 1e-6);
+      assertEquals(position.getZ(), positions[3 * i + 2], 1e-6);
+    }
+  }
+
+  @Test
+  public void testChunkedTransformationMatchesDatedValues() throws Exception {
+    PropagatedInterplanetaryOrbit orbit = makeAsteroidThatHitsEarth(scenarios[0], "Scenario 1");
+    List<DatedValue<Cartesian>> expected = new StkPropagator().transformToEarthFrame(orbit);
+    int chunks = 4;
+    int pointsPerChunk = expected.size() / chunks;
+    assertTrue("Too few steps for " + chunks + " chunks", pointsPerChunk > 0);
+
+    double[] seconds = new double[expected.size()];
+    double[] positions = new double[3 * expected.size()];
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(chunks);
+    try {
+      StkPropagator stk = new StkPropagator(executor, chunks, pointsPerChunk);
+      stk.transformToEarthFrame(orbit, seconds, positions);
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    // Every chunk ran on the executor, with evaluators created on its threads.
+    assertEquals(chunks, executor.getCompletedTaskCount());
+    JulianDate start = expected.get(0).getDate();
+    for (int i = 0; i < expected.size(); i++) {
+      Cartesian position = expected.get(i).getValue();
+      assertEquals(start.secondsDifference(expected.get(i).getDate()), seconds[i], 1e-6);
+      assertEquals(position.getX(), positions[3 * i], 1e-6);
+      assertEquals(position.getY(), positions[3 * i + 1], 1e-6);
+      assertEquals(position.getZ(), positions[3 * i + 2], 1e-6);
+    }
+  }
+
+  @Test
+  public void testStepBracketedEventsMatchSampledSearch() throws Exception {
+    PropagatedInterplanetaryOrbit orbit = makeAsteroidThatHitsEarth(scenarios[0], "Scenario 1");
+    StkPropagator stk = new StkPropagator();
+
+    List<DatedValue<Double>> sampled = stk.findEarthImpacts(orbit, 1e3);
+    List<DatedValue<Double>> atSteps = stk.findEarthImpactsAtSteps(orbit, 1e3);
+    assertEquals(sampled.size(), atSteps.size());
+    for (int i = 0; i < sampled.size(); i++) {
+      double delta = sampled.get(i).getDate().secondsDifference(atSteps.get(i).getDate());
+      assertTrue("Impact times differ at " + i + " by " + delta + " s", Math.abs(delta) < 1);
+    }
+
+    List<DatedValue<Double>> sampledMinima = stk.findClosestApproachesToEarth(orbit);
+    List<DatedValue<Double>> minimaAtSteps = stk.findClosestApproachesToEarthAtSteps(orbit);
+    assertEquals(sampledMinima.size(), minimaAtSteps.size());
+    for (int i = 0; i < sampledMinima.size(); i++) {
+      assertEquals(sampledMinima.get(i).getValue(), minimaAtSteps.get(i).getValue(), 1e3);
+    }
+  }
 }
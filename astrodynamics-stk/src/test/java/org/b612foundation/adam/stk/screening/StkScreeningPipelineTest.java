@@ -0,0 +1,111 @@
+package org.b612foundation.adam.stk.screening;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.b612foundation.adam.stk.PropagatorTestHelper.getOpm;
+
+import org.b612foundation.adam.datamodel.PropagationConfigurationFactory;
+import org.b612foundation.adam.datamodel.PropagationParameters;
+import org.b612foundation.adam.datamodel.PropagatorConfiguration;
+import org.b612foundation.adam.exceptions.AdamPropagationException;
+import org.b612foundation.adam.opm.StateVector;
+import org.b612foundation.adam.screening.GeometricScreen;
+import org.b612foundation.adam.screening.ScreeningCounters;
+import org.b612foundation.adam.screening.ScreeningStage;
+import org.b612foundation.stk.StkLicense;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class StkScreeningPipelineTest {
+  private static final String EPOCH = "2001-01-02T01:13:46.620000Z";
+  // Asteroid 101 comes within 1.5e9 meters of Earth at the end of 2007.
+  private static final StateVector ASTEROID_101 =
+      new StateVector()
+          .setEpoch(EPOCH)
+          .setX(-150874809.2)
+          .setY(-187234595.3)
+          .setZ(-73785026.7)
+          .setX_dot(14.64403935)
+          .setY_dot(-11.75744819)
+          .setZ_dot(-5.583528281);
+  // Circular orbit at 3 AU, in the main belt.
+  private static final StateVector MAIN_BELT =
+      new StateVector()
+          .setEpoch(EPOCH)
+          .setX(448793610)
+          .setY(0)
+          .setZ(0)
+          .setX_dot(0)
+          .setY_dot(17.198)
+          .setZ_dot(0);
+
+  @Before
+  public void addLicense() {
+    StkLicense.activate();
+  }
+
+  private static PropagationParameters params(StateVector stateVector) {
+    return new PropagationParameters()
+        .setStart_time(EPOCH)
+        .setEnd_time("2010-12-01T01:13:46.620000Z")
+        .setStep_duration_sec(86400)
+        .setOpm(getOpm("testObject", stateVector));
+  }
+
+  @Test
+  public void testScreen_distantObjectRejectedWithoutIntegration()
+      throws AdamPropagationException {
+    ScreeningCounters counters = new ScreeningCounters();
+    StkScreeningPipeline pipeline = new StkScreeningPipeline(new GeometricScreen(), counters);
+
+    StkScreeningPipeline.Result result =
+        pipeline.screen(
+            params(MAIN_BELT), PropagationConfigurationFactory.getAllMajorBodiesConfig(), "belt");
+
+    assertThat(result.isRejected()).isTrue();
+    assertThat(result.getRejectedAt()).isEqualTo(ScreeningStage.GEOMETRIC);
+    assertThat(result.getEphemeris()).isNull();
+    assertThat(counters.getRejected(ScreeningStage.GEOMETRIC)).isEqualTo(1);
+    assertThat(counters.getProcessed(ScreeningStage.COARSE)).isEqualTo(0);
+  }
+
+  @Test
+  public void testScreen_closeApproacherReachesFullPropagation() throws AdamPropagationException {
+    ScreeningCounters counters = new ScreeningCounters();
+    StkScreeningPipeline pipeline = new StkScreeningPipeline(new GeometricScreen(), counters);
+    PropagatorConfiguration config = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+
+    StkScreeningPipeline.Result result =
+        pipeline.screen(params(ASTEROID_101), config, "asteroid-101");
+
+    assertThat(result.isRejected()).isFalse();
+    assertThat(result.getEphemeris()).isNotNull();
+    assertThat(result.getCloseApproaches()).isNotEmpty();
+    for (ScreeningStage stage : ScreeningStage.values()) {
+      assertThat(counters.getPassed(stage)).isEqualTo(1);
+    }
+    // The coarse stage ran on a copy; the caller's configuration is untouched.
+    PropagatorConfiguration original = PropagationConfigurationFactory.getAllMajorBodiesConfig();
+    assertThat(config.getIntegratorProfile()).isEqualTo(original.getIntegratorProfile());
+  }
+
+  @Test
+  public void testScreen_failedCoarsePropagationCountsAsRejected() {
+    ScreeningCounters counters = new ScreeningCounters();
+    StkScreeningPipeline pipeline =
+        new StkScreeningPipeline(
+            new GeometricScreen().setCloseApproachThresholdKm(Double.POSITIVE_INFINITY), counters);
+    // Beyond the planetary ephemeris, so the propagation fails.
+    PropagationParameters params = params(ASTEROID_101).setEnd_time("3000-01-01T00:00:00Z");
+
+    assertThrows(
+        AdamPropagationException.class,
+        () ->
+            pipeline.screen(
+                params, PropagationConfigurationFactory.getAllMajorBodiesConfig(), "failing"));
+
+    assertThat(counters.getPassed(ScreeningStage.GEOMETRIC)).isEqualTo(1);
+    assertThat(counters.getRejected(ScreeningStage.COARSE)).isEqualTo(1);
+    assertThat(counters.getProcessed(ScreeningStage.FULL)).isEqualTo(0);
+  }
+}